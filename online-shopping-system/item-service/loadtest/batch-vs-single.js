@@ -0,0 +1,79 @@
+// k6 comparison of pricing a basket with one batch lookup against one
+// lookup per item, the way order-service priced orders before
+// POST /items/batch.
+//
+//   k6 run -e BASE_URL=http://localhost:8081 -e ITEM_IDS=id1,id2,...,id50 \
+//          -e BASKET_SIZES=1,5,20,50 loadtest/batch-vs-single.js
+//
+// Each basket size runs twice, back to back: once as N sequential
+// GET /items/{id} and once as a single POST /items/batch. Both run at
+// the same fixed basket rate, so compare the basket_duration trend per
+// mode and size: the single-lookup time grows with the basket, the batch
+// time should stay nearly flat.
+import http from 'k6/http';
+import { check } from 'k6';
+import { Trend } from 'k6/metrics';
+
+const BASE = __ENV.BASE_URL || 'http://localhost:8081';
+const IDS = (__ENV.ITEM_IDS || '').split(',').filter((id) => id);
+const SIZES = (__ENV.BASKET_SIZES || '1,5,20,50').split(',').map(Number);
+const STEP = __ENV.STEP || '30s';
+const STEP_SECONDS = parseInt(STEP, 10);
+
+const basketDuration = new Trend('basket_duration', true);
+
+function scenarios() {
+    const result = {};
+    let offset = 0;
+    SIZES.forEach((size) => {
+        ['single', 'batch'].forEach((mode) => {
+            result[`${mode}_${size}`] = {
+                executor: 'constant-arrival-rate',
+                rate: Number(__ENV.RATE || 100),
+                timeUnit: '1s',
+                duration: STEP,
+                startTime: `${offset}s`,
+                preAllocatedVUs: 50,
+                maxVUs: Number(__ENV.MAX_VUS || 500),
+                env: { MODE: mode, SIZE: String(size) },
+                tags: { mode, size: String(size) },
+            };
+            offset += STEP_SECONDS;
+        });
+    });
+    return result;
+}
+
+export const options = {
+    scenarios: scenarios(),
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+export function setup() {
+    if (IDS.length < Math.max(...SIZES)) {
+        throw new Error(`Pass at least ${Math.max(...SIZES)} existing item ids with ITEM_IDS`);
+    }
+}
+
+function basket(size) {
+    const start = Math.floor(Math.random() * (IDS.length - size + 1));
+    return IDS.slice(start, start + size);
+}
+
+export default function () {
+    const ids = basket(Number(__ENV.SIZE));
+    const began = Date.now();
+    if (__ENV.MODE === 'batch') {
+        const res = http.post(`${BASE}/items/batch`, JSON.stringify(ids), {
+            headers: { 'Content-Type': 'application/json' },
+        });
+        check(res, { ok: (r) => r.status === 200 && r.json().length === ids.length });
+    } else {
+        ids.forEach((id) => {
+            check(http.get(`${BASE}/items/${id}`), { ok: (r) => r.status === 200 });
+        });
+    }
+    basketDuration.add(Date.now() - began);
+}
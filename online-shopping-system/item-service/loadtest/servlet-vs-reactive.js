@@ -0,0 +1,70 @@
+// k6 comparison of the servlet and the reactive stack of item-service.
+//
+// Run the same script against each stack on the same host and data:
+//   SPRING_PROFILES_ACTIVE=docker          -> Spring MVC on Tomcat
+//   SPRING_PROFILES_ACTIVE=docker,reactive -> WebFlux on Netty
+//
+//   k6 run -e BASE_URL=http://localhost:8081 -e ITEM_IDS=id1,id2,id3 \
+//          -e RATE=2000 loadtest/servlet-vs-reactive.js
+//
+// The request rate is fixed (open model), so a stack that cannot keep up
+// shows growing latency and dropped iterations instead of silently
+// sending less. Compare http_reqs/s, http_req_duration p95/p99 and
+// dropped_iterations, plus the live thread count and Mongo connections
+// printed at the end.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE = __ENV.BASE_URL || 'http://localhost:8081';
+const IDS = (__ENV.ITEM_IDS || '').split(',').filter((id) => id);
+
+export const options = {
+    scenarios: {
+        mixed: {
+            executor: 'constant-arrival-rate',
+            rate: Number(__ENV.RATE || 1000),
+            timeUnit: '1s',
+            duration: __ENV.DURATION || '2m',
+            preAllocatedVUs: 200,
+            maxVUs: Number(__ENV.MAX_VUS || 2000),
+        },
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+export function setup() {
+    if (IDS.length === 0) {
+        throw new Error('Pass the ids of existing items with ITEM_IDS');
+    }
+    // give every item enough stock for the whole run
+    IDS.forEach((id) => http.put(`${BASE}/items/${id}/inventory?quantity=100000000`));
+}
+
+export default function () {
+    const id = IDS[Math.floor(Math.random() * IDS.length)];
+    const roll = Math.random();
+    let res;
+    if (roll < 0.5) {
+        res = http.get(`${BASE}/items/${id}`, { tags: { op: 'item' } });
+    } else if (roll < 0.8) {
+        res = http.get(`${BASE}/items/${id}/inventory`, { tags: { op: 'inventory' } });
+    } else {
+        res = http.post(`${BASE}/items/${id}/inventory/decrement?quantity=1`, null, {
+            headers: { 'Idempotency-Key': `lt-${__VU}-${__ITER}` },
+            tags: { op: 'decrement' },
+        });
+    }
+    check(res, { ok: (r) => r.status === 200 });
+}
+
+export function teardown() {
+    const metric = (name) => {
+        const res = http.get(`${BASE}/actuator/metrics/${name}`);
+        return res.status === 200 ? res.json('measurements.0.value') : 'n/a';
+    };
+    console.log(`jvm.threads.live=${metric('jvm.threads.live')} `
+        + `jvm.threads.peak=${metric('jvm.threads.peak')} `
+        + `mongodb.driver.pool.size=${metric('mongodb.driver.pool.size')}`);
+}
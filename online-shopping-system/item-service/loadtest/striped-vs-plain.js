@@ -0,0 +1,76 @@
+// k6 comparison of decrement contention on one hot item, kept in a
+// single inventory record or striped over buckets.
+//
+//   k6 run -e BASE_URL=http://localhost:8081 -e PLAIN_ID=id1 -e STRIPED_ID=id2 \
+//          -e STRIPES=16 -e RATE=3000 loadtest/striped-vs-plain.js
+//
+// Setup gives both items the same stock and stripes STRIPED_ID over
+// STRIPES buckets; PLAIN_ID is left unstriped. The two scenarios then
+// run one after the other at the same fixed decrement rate. Compare
+// http_req_duration p95/p99 and dropped_iterations per item tag, and the
+// final quantities printed at the end: both items must have lost
+// exactly the number of successful decrements.
+import http from 'k6/http';
+import { check } from 'k6';
+import { Counter } from 'k6/metrics';
+
+const BASE = __ENV.BASE_URL || 'http://localhost:8081';
+const PLAIN = __ENV.PLAIN_ID;
+const STRIPED = __ENV.STRIPED_ID;
+const STOCK = Number(__ENV.STOCK || 100000000);
+const DURATION = __ENV.DURATION || '1m';
+
+const decremented = new Counter('units_decremented');
+
+function scenario(item, startTime) {
+    return {
+        executor: 'constant-arrival-rate',
+        rate: Number(__ENV.RATE || 2000),
+        timeUnit: '1s',
+        duration: DURATION,
+        startTime,
+        preAllocatedVUs: 200,
+        maxVUs: Number(__ENV.MAX_VUS || 2000),
+        env: { TARGET: item },
+        tags: { item },
+    };
+}
+
+export const options = {
+    scenarios: {
+        plain: scenario('plain', '0s'),
+        striped: scenario('striped', DURATION),
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+export function setup() {
+    if (!PLAIN || !STRIPED) {
+        throw new Error('Pass two existing item ids with PLAIN_ID and STRIPED_ID');
+    }
+    http.put(`${BASE}/items/${PLAIN}/inventory/stripes?count=0`);
+    http.put(`${BASE}/items/${PLAIN}/inventory?quantity=${STOCK}`);
+    http.put(`${BASE}/items/${STRIPED}/inventory/stripes?count=0`);
+    http.put(`${BASE}/items/${STRIPED}/inventory?quantity=${STOCK}`);
+    const res = http.put(`${BASE}/items/${STRIPED}/inventory/stripes?count=${Number(__ENV.STRIPES || 16)}`);
+    if (res.status !== 200) {
+        throw new Error(`Striping ${STRIPED} failed with ${res.status}`);
+    }
+}
+
+export default function () {
+    const id = __ENV.TARGET === 'striped' ? STRIPED : PLAIN;
+    const res = http.post(`${BASE}/items/${id}/inventory/decrement?quantity=1`, null, {
+        tags: { item: __ENV.TARGET },
+    });
+    if (check(res, { ok: (r) => r.status === 200 })) {
+        decremented.add(1, { item: __ENV.TARGET });
+    }
+}
+
+export function teardown() {
+    const quantity = (id) => http.get(`${BASE}/items/${id}/inventory`).body;
+    console.log(`start=${STOCK} plain=${quantity(PLAIN)} striped=${quantity(STRIPED)}`);
+}
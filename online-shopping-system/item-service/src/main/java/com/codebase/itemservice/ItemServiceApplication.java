@@ -3,6 +3,7 @@ package com.codebase.itemservice;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Entry point for the Item Service. This service manages product metadata
@@ -13,6 +14,7 @@ import org.springframework.cloud.openfeign.EnableFeignClients;
  */
 @SpringBootApplication
 @EnableFeignClients
+@EnableScheduling
 public class ItemServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(ItemServiceApplication.class, args);
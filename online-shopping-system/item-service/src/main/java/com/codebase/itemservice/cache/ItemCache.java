@@ -0,0 +1,136 @@
+package com.codebase.itemservice.cache;
+
+import com.codebase.itemservice.model.Item;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Size-bounded, in-process cache of {@link Item} documents keyed by id.
+ * Caffeine's W-TinyLFU policy keeps the hot part of a read-skewed
+ * catalogue resident, and each entry expires after the configured TTL
+ * as a safety net should an invalidation ever be missed. Only hits are
+ * cached; a missing item always goes to MongoDB.
+ *
+ * <p>A fill may race with a write: the loader reads the old item, the
+ * writer saves and invalidates, and only then is the old item put. So
+ * every fill is tagged with the {@link #generation()} read before its
+ * load, and is dropped if an invalidation has happened since. The count
+ * is shared by all ids, so an unrelated write can cost a fill, never
+ * correctness. Only local writes invalidate; writes made by another
+ * replica reach this cache through {@link ItemChangeStreamListener},
+ * or not before the TTL without it.</p>
+ *
+ * <p>Items are copied on the way in and out, so a caller that edits the
+ * item it got never changes what other readers see.</p>
+ *
+ * <p>The cache can be switched off with {@code item.cache.enabled=false},
+ * in which case every call goes straight to the loader.</p>
+ */
+@Component
+public class ItemCache {
+
+    private final Cache<String, Item> cache;
+
+    /** Number of invalidations so far; see the class comment. */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ItemCache(@Value("${item.cache.enabled:true}") boolean enabled,
+                     @Value("${item.cache.max-size:10000}") long maxSize,
+                     @Value("${item.cache.ttl:PT5M}") Duration ttl) {
+        this.cache = enabled
+                ? Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build()
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Underlying Caffeine cache, used to bind metrics. Null when disabled.
+     */
+    public Cache<String, Item> nativeCache() {
+        return cache;
+    }
+
+    /**
+     * Return a copy of the cached item or ask the loader for it. The
+     * loader is expected to fill the cache through {@link #load}. It may
+     * hand the same instance to several callers, so a loaded item is
+     * copied as well.
+     */
+    public Optional<Item> get(String id, Function<String, Optional<Item>> loader) {
+        if (cache != null) {
+            Item cached = cache.getIfPresent(id);
+            if (cached != null) {
+                return Optional.of(new Item(cached));
+            }
+        }
+        return loader.apply(id).map(Item::new);
+    }
+
+    /**
+     * Read an item with {@code reader} and cache it unless it was
+     * invalidated meanwhile; an empty result is not cached. Callers that
+     * share one read between several requests must do so around this
+     * call, so that the generation is taken before the read itself.
+     */
+    public Optional<Item> load(String id, Function<String, Optional<Item>> reader) {
+        long generation = generation();
+        Optional<Item> loaded = reader.apply(id);
+        loaded.ifPresent(item -> put(item, generation));
+        return loaded;
+    }
+
+    /** Invalidations so far; take it before reading an item to {@link #put} later. */
+    public long generation() {
+        return invalidations.get();
+    }
+
+    /**
+     * Copies of the cached entries for the given ids; absent ids are
+     * simply missing.
+     */
+    public Map<String, Item> getAllPresent(Collection<String> ids) {
+        if (cache == null) {
+            return Map.of();
+        }
+        Map<String, Item> copies = new LinkedHashMap<>();
+        cache.getAllPresent(ids).forEach((id, item) -> copies.put(id, new Item(item)));
+        return copies;
+    }
+
+    /**
+     * Cache {@code item}, read after {@code generation} was taken, unless
+     * an invalidation has happened since. The check and the put run
+     * under the entry's lock, as does {@link #invalidate}, so an
+     * invalidation cannot slip in between.
+     */
+    public void put(Item item, long generation) {
+        if (cache != null && item.getId() != null) {
+            Item copy = new Item(item);
+            cache.asMap().compute(item.getId(), (id, current) -> invalidations.get() == generation ? copy : current);
+        }
+    }
+
+    public void invalidate(String id) {
+        if (cache != null) {
+            cache.asMap().compute(id, (key, current) -> {
+                invalidations.incrementAndGet();
+                return null;
+            });
+        } else {
+            invalidations.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.codebase.itemservice.cache;
+
+import com.codebase.itemservice.model.Item;
+import com.codebase.itemservice.search.ItemSearchService;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListener;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tails the MongoDB change stream of the {@code items} collection so
+ * that writes made by any item-service replica evict the entry from
+ * this replica's {@link ItemCache} and refresh its search index.
+ *
+ * <p>Change streams need a replica set, so the listener is only created
+ * when {@code item.cache.change-stream.enabled=true}. It is off by
+ * default; without it each replica only invalidates its own writes, and
+ * may serve an item another replica changed until the entry's TTL runs
+ * out. Deployments with several replicas need it for coherence.</p>
+ */
+@Component
+@ConditionalOnProperty(name = "item.cache.change-stream.enabled", havingValue = "true")
+public class ItemChangeStreamListener implements MessageListener<ChangeStreamDocument<Document>, Item>, SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemChangeStreamListener.class);
+
+    private final MessageListenerContainer container;
+    private final ItemCache itemCache;
+    private final ItemSearchService searchService;
+
+    public ItemChangeStreamListener(MongoTemplate mongoTemplate, ItemCache itemCache, ItemSearchService searchService) {
+        this.container = new DefaultMessageListenerContainer(mongoTemplate);
+        this.itemCache = itemCache;
+        this.searchService = searchService;
+    }
+
+    @Override
+    public void onMessage(Message<ChangeStreamDocument<Document>, Item> message) {
+        ChangeStreamDocument<Document> raw = message.getRaw();
+        if (raw == null || raw.getDocumentKey() == null) {
+            return;
+        }
+        BsonValue key = raw.getDocumentKey().get("_id");
+        String id = key.isObjectId() ? key.asObjectId().getValue().toHexString() : key.asString().getValue();
+
+        itemCache.invalidate(id);
+        if (raw.getOperationType() == OperationType.DELETE) {
+            searchService.remove(id);
+        } else if (message.getBody() != null) {
+            searchService.index(message.getBody());
+        }
+    }
+
+    @Override
+    public void start() {
+        ChangeStreamRequest<Item> request = ChangeStreamRequest.builder(this)
+                .collection("items")
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                .build();
+        container.start();
+        container.register(request, Item.class);
+        log.info("Listening to the items change stream for cache invalidation");
+    }
+
+    @Override
+    public void stop() {
+        container.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return container.isRunning();
+    }
+}
@@ -0,0 +1,128 @@
+package com.codebase.itemservice.cache;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical lookups: the first caller for a key
+ * (the leader) runs the loader while every caller that arrives before it
+ * finishes waits for and shares the same result, so a burst of reads for
+ * one id costs a single MongoDB query.
+ *
+ * <p>In-flight calls are kept in lock-striped maps so unrelated keys do
+ * not contend. The leader always removes its entry when it finishes,
+ * successfully or not. A waiter gives up after {@code maxWait}, drops
+ * the stale entry so later callers start afresh, and runs the loader
+ * itself; a stuck leader therefore never strands other callers.</p>
+ *
+ * @param <K> key type
+ * @param <V> result type
+ */
+public class SingleFlight<K, V> {
+
+    private final Stripe<K, V>[] stripes;
+    private final long maxWaitNanos;
+
+    private static final class Stripe<K, V> {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<K, CompletableFuture<V>> calls = new HashMap<>();
+    }
+
+    @SuppressWarnings("unchecked")
+    public SingleFlight(int stripeCount, Duration maxWait) {
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    /**
+     * Run {@code loader} for {@code key}, or join a call already in flight.
+     */
+    public V execute(K key, Supplier<V> loader) {
+        Stripe<K, V> stripe = stripes[Math.floorMod(key.hashCode(), stripes.length)];
+        CompletableFuture<V> call;
+        boolean leader = false;
+        stripe.lock.lock();
+        try {
+            call = stripe.calls.get(key);
+            if (call == null) {
+                call = new CompletableFuture<>();
+                stripe.calls.put(key, call);
+                leader = true;
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        if (leader) {
+            return lead(stripe, key, call, loader);
+        }
+        return await(stripe, key, call, loader);
+    }
+
+    /** Number of keys with a call in flight; exposed for tests. */
+    int inFlight() {
+        int n = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                n += stripe.calls.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return n;
+    }
+
+    private V lead(Stripe<K, V> stripe, K key, CompletableFuture<V> call, Supplier<V> loader) {
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            remove(stripe, key, call);
+        }
+    }
+
+    private V await(Stripe<K, V> stripe, K key, CompletableFuture<V> call, Supplier<V> loader) {
+        try {
+            return call.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            remove(stripe, key, call);
+            return loader.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            if (cause instanceof Error err) {
+                throw err;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for lookup of " + key, e);
+        }
+    }
+
+    private void remove(Stripe<K, V> stripe, K key, CompletableFuture<V> call) {
+        stripe.lock.lock();
+        try {
+            stripe.calls.remove(key, call);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.codebase.itemservice.config;
+
+import com.codebase.itemservice.cache.ItemCache;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Publishes hit, miss, eviction and size metrics of the item cache under
+ * the {@code cache.*} meters with {@code cache=items}, visible through
+ * {@code /actuator/metrics}.
+ */
+@Configuration
+public class CacheMetricsConfig {
+
+    @Bean
+    public MeterBinder itemCacheMetrics(ItemCache itemCache) {
+        return registry -> {
+            if (itemCache.isEnabled()) {
+                CaffeineCacheMetrics.monitor(registry, itemCache.nativeCache(), "items");
+            }
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package com.codebase.itemservice.config;
+
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gives documents written before the {@code version} field existed an
+ * initial version of 0. Without it Spring Data would treat such a
+ * document as new on its next save and try to insert it again.
+ */
+@Component
+public class DocumentVersionInitializer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentVersionInitializer.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    public DocumentVersionInitializer(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (Class<?> type : new Class<?>[]{Item.class, Inventory.class}) {
+            long n = mongoTemplate.updateMulti(new Query(Criteria.where("version").exists(false)),
+                    new Update().set("version", 0L), type).getModifiedCount();
+            if (n > 0) {
+                log.info("Initialised version on {} {} documents", n, type.getSimpleName());
+            }
+        }
+    }
+}
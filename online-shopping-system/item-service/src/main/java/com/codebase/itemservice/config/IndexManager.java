@@ -0,0 +1,81 @@
+package com.codebase.itemservice.config;
+
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.service.ChangeOutbox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Creates the indexes that the inventory query paths rely on. Inventory
+ * carries no index annotations, so without this every stock check by
+ * {@code itemId} would scan the whole collection. Index creation is
+ * idempotent, so this is safe to run on every start.
+ *
+ * <p>A failure, e.g. the unique index meeting duplicate inventory records
+ * left by an older version, is logged and does not stop startup.</p>
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class IndexManager implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexManager.class);
+
+    /** An index and the query paths that need it. */
+    public record IndexSpec(Class<?> entity, Index index, String usedBy) {
+    }
+
+    public static final List<IndexSpec> INDEXES = List.of(
+            new IndexSpec(Inventory.class,
+                    new Index().on("itemId", Sort.Direction.ASC).unique().named("itemId_unique"),
+                    "findByItemId, deleteByItemId, increment, incrementAll, adjustAll"),
+            new IndexSpec(Inventory.class,
+                    new Index().on("itemId", Sort.Direction.ASC).on("quantity", Sort.Direction.ASC)
+                            .named("itemId_quantity"),
+                    "decrementIfEnough (itemId with quantity >= n)"),
+            new IndexSpec(Inventory.class,
+                    new Index().on(ChangeOutbox.UNPUBLISHED, Sort.Direction.ASC).sparse().named("unpublishedAt"),
+                    "ChangeEventRelay (records with an unpublished change)"));
+
+    private final MongoTemplate mongoTemplate;
+
+    public IndexManager(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        ensureIndexes(mongoTemplate);
+    }
+
+    /**
+     * Create every declared index that does not exist yet.
+     *
+     * @return number of indexes ensured without error
+     */
+    public static int ensureIndexes(MongoTemplate mongoTemplate) {
+        int ok = 0;
+        for (IndexSpec spec : INDEXES) {
+            try {
+                String name = mongoTemplate.indexOps(spec.entity()).ensureIndex(spec.index());
+                log.debug("Ensured index {} on {} for {}", name, spec.entity().getSimpleName(), spec.usedBy());
+                ok++;
+            } catch (DataAccessException e) {
+                log.error("Could not create index {} on {} (used by {}): {}", spec.index().getIndexKeys(),
+                        spec.entity().getSimpleName(), spec.usedBy(), e.getMessage());
+            }
+        }
+        log.info("Ensured {} of {} inventory indexes", ok, INDEXES.size());
+        return ok;
+    }
+}
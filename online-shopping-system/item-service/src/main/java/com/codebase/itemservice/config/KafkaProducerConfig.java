@@ -0,0 +1,82 @@
+package com.codebase.itemservice.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Kafka producer for events published by item-service. Records are
+ * batched by the producer (linger/batch size) on top of the batching
+ * done by the publishers themselves. {@code max.block.ms} is kept short
+ * so an unreachable broker cannot stall the scheduler thread.
+ */
+@Configuration
+public class KafkaProducerConfig {
+
+    @Value("${spring.kafka.bootstrap-servers}")
+    private String bootstrap;
+
+    @Value("${kafka.topic.stock-alerts:stock-alerts}")
+    private String stockAlertsTopic;
+
+    @Value("${kafka.topic.item-changes:item-changes}")
+    private String itemChangesTopic;
+
+    @Value("${kafka.topic.stock-changes:stock-changes}")
+    private String stockChangesTopic;
+
+    @Value("${kafka.producer.linger-ms:20}")
+    private int lingerMs;
+
+    @Value("${kafka.producer.batch-size:65536}")
+    private int batchSize;
+
+    @Value("${kafka.producer.max-block-ms:5000}")
+    private long maxBlockMs;
+
+    @Bean
+    public ProducerFactory<String, Object> producerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlockMs);
+        // consumers in other services map the JSON themselves
+        props.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+        return new DefaultKafkaProducerFactory<>(props);
+    }
+
+    @Bean
+    public KafkaTemplate<String, Object> kafkaTemplate() {
+        return new KafkaTemplate<>(producerFactory());
+    }
+
+    @Bean
+    public NewTopic stockAlertsTopic() {
+        return TopicBuilder.name(stockAlertsTopic).partitions(3).replicas(1).build();
+    }
+
+    // state topics: compaction keeps the latest event per item id
+    @Bean
+    public NewTopic itemChangesTopic() {
+        return TopicBuilder.name(itemChangesTopic).partitions(3).replicas(1).compact().build();
+    }
+
+    @Bean
+    public NewTopic stockChangesTopic() {
+        return TopicBuilder.name(stockChangesTopic).partitions(3).replicas(1).compact().build();
+    }
+}
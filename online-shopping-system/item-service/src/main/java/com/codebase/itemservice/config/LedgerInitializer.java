@@ -0,0 +1,32 @@
+package com.codebase.itemservice.config;
+
+import com.codebase.itemservice.service.StockLedgerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opens the stock ledger of inventory records that predate it, so that
+ * every record's quantity can be rebuilt from its movements.
+ */
+@Component
+public class LedgerInitializer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerInitializer.class);
+
+    private final StockLedgerService ledgerService;
+
+    public LedgerInitializer(StockLedgerService ledgerService) {
+        this.ledgerService = ledgerService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long n = ledgerService.openMissingLedgers();
+        if (n > 0) {
+            log.info("Opened stock ledger for {} inventory records", n);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.codebase.itemservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * WebFlux setup for the "reactive" profile, which also switches the
+ * application to a reactive web server (see application-reactive.yml)
+ * running on Netty.
+ *
+ * <p>Controller methods that return a plain value instead of a Mono or
+ * Flux - the bulk uploads, striping, holds and the ledger rebuild - are
+ * run on a bounded pool rather than on the event loop. When the pool and
+ * its queue are full the request is rejected instead of stalling the
+ * event loop.</p>
+ *
+ * <p>{@link com.codebase.itemservice.controller.InventoryHoldController}
+ * and {@link com.codebase.itemservice.controller.StockLedgerController}
+ * have no reactive counterpart and are served under both profiles. They
+ * call blocking services, so under this profile they depend on
+ * {@link #configureBlockingExecution}. Removing it would put their
+ * MongoDB calls on the event loop.</p>
+ *
+ * <p>Security mirrors {@link SecurityConfig}: every endpoint is open.</p>
+ */
+@Configuration
+@Profile("reactive")
+@EnableWebFluxSecurity
+public class ReactiveWebConfig implements WebFluxConfigurer {
+
+    @Value("${item.reactive.blocking-threads:32}")
+    private int blockingThreads = 32;
+
+    @Value("${item.reactive.blocking-queue:256}")
+    private int blockingQueue = 256;
+
+    // Tomcat is on the classpath for the servlet stack and would otherwise be picked first
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor blockingControllerExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(blockingThreads);
+        executor.setMaxPoolSize(blockingThreads);
+        executor.setQueueCapacity(blockingQueue);
+        executor.setThreadNamePrefix("blocking-ctl-");
+        return executor;
+    }
+
+    @Override
+    public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+        configurer.setExecutor(blockingControllerExecutor());
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .authorizeExchange(auth -> auth.anyExchange().permitAll())
+                .httpBasic(basic -> { })
+                .build();
+    }
+}
@@ -2,6 +2,7 @@ package com.codebase.itemservice.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -13,9 +14,11 @@ import org.springframework.security.web.SecurityFilterChain;
  * all endpoints are open to simplify development. Once the account
  * service provides a JWT authentication server this class can be
  * extended to validate bearer tokens on incoming requests. Swagger
- * endpoints are also explicitly whitelisted.
+ * endpoints are also explicitly whitelisted. The "reactive" profile
+ * uses the equivalent chain in {@link ReactiveWebConfig}.
  */
 @Configuration
+@Profile("!reactive")
 @EnableWebSecurity
 public class SecurityConfig {
 
@@ -0,0 +1,48 @@
+package com.codebase.itemservice.controller;
+
+import com.codebase.itemservice.dto.HoldRequest;
+import com.codebase.itemservice.model.InventoryHold;
+import com.codebase.itemservice.service.InventoryHoldService;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Time-limited inventory holds: take stock optimistically at checkout,
+ * then commit it once payment succeeds or release it when it does not.
+ * Holds that are left alone expire and their stock is returned.
+ *
+ * <p>Served under both profiles. Its methods block, so under "reactive"
+ * they run on the blocking executor of
+ * {@link com.codebase.itemservice.config.ReactiveWebConfig}.</p>
+ */
+@RestController
+@RequestMapping("/items/inventory/holds")
+public class InventoryHoldController {
+
+    private final InventoryHoldService holdService;
+
+    public InventoryHoldController(InventoryHoldService holdService) {
+        this.holdService = holdService;
+    }
+
+    // Place a hold on a whole basket (409 with per-line result when short)
+    @PostMapping
+    public ResponseEntity<InventoryHold> placeHold(@Valid @RequestBody HoldRequest request) {
+        InventoryHold hold = holdService.place(request.getLines(), request.getTtlSeconds());
+        return ResponseEntity.status(HttpStatus.CREATED).body(hold);
+    }
+
+    // Keep the held stock (409 once the hold is expired or closed)
+    @PostMapping("/{holdId}/commit")
+    public ResponseEntity<InventoryHold> commitHold(@PathVariable String holdId) {
+        return ResponseEntity.ok(holdService.commit(holdId));
+    }
+
+    // Give the held stock back
+    @PostMapping("/{holdId}/release")
+    public ResponseEntity<InventoryHold> releaseHold(@PathVariable String holdId) {
+        return ResponseEntity.ok(holdService.release(holdId));
+    }
+}
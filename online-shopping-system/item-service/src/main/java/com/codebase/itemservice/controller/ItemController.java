@@ -1,47 +1,134 @@
 package com.codebase.itemservice.controller;
 
+import com.codebase.itemservice.dto.AdjustmentReport;
+import com.codebase.itemservice.dto.ImportReport;
+import com.codebase.itemservice.dto.ItemPage;
+import com.codebase.itemservice.dto.ItemSummary;
+import com.codebase.itemservice.dto.PriceQuote;
+import com.codebase.itemservice.dto.ReservationResult;
+import com.codebase.itemservice.dto.StockLine;
 import com.codebase.itemservice.exception.ConflictException;
 import com.codebase.itemservice.exception.NotFoundException;
 import com.codebase.itemservice.model.Inventory;
 import com.codebase.itemservice.model.Item;
+import com.codebase.itemservice.search.ItemSearchService;
+import com.codebase.itemservice.search.SearchHit;
 import com.codebase.itemservice.service.InventoryService;
+import com.codebase.itemservice.service.ItemImportService;
 import com.codebase.itemservice.service.ItemService;
+import com.codebase.itemservice.service.PriceQuoteService;
+import com.codebase.itemservice.service.StripedInventoryService;
 import feign.FeignException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/items")
+@Profile("!reactive")
 public class ItemController {
 
     private final ItemService itemService;
     private final InventoryService inventoryService;
+    private final StripedInventoryService stripedInventoryService;
+    private final ItemSearchService searchService;
+    private final ItemImportService importService;
+    private final PriceQuoteService quoteService;
 
-    public ItemController(ItemService itemService, InventoryService inventoryService) {
+    @Value("${item.http.item-max-age:PT60S}")
+    private Duration itemMaxAge = Duration.ofSeconds(60);
+
+    @Value("${item.http.inventory-max-age:PT0S}")
+    private Duration inventoryMaxAge = Duration.ZERO;
+
+    public ItemController(ItemService itemService, InventoryService inventoryService,
+                          StripedInventoryService stripedInventoryService, ItemSearchService searchService,
+                          ItemImportService importService, PriceQuoteService quoteService) {
         this.itemService = itemService;
         this.inventoryService = inventoryService;
+        this.stripedInventoryService = stripedInventoryService;
+        this.searchService = searchService;
+        this.importService = importService;
+        this.quoteService = quoteService;
     }
 
-    // Check all times only for local test!
+    /**
+     * List the catalogue one bounded page at a time. Pass the returned
+     * {@code nextToken} as {@code after} to continue; the token is tied
+     * to the sort and order it was issued for.
+     */
     @GetMapping
-    public ResponseEntity<List<Item>> getAllItems() {
-        return  ResponseEntity.ok(itemService.findAll());
+    public ResponseEntity<ItemPage> getAllItems(
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "minPrice", required = false) Double minPrice,
+            @RequestParam(value = "maxPrice", required = false) Double maxPrice,
+            @RequestParam(value = "sort", defaultValue = "id") String sort,
+            @RequestParam(value = "order", defaultValue = "asc") String order) {
+        ItemService.SortKey sortKey = ItemService.SortKey.valueOf(sort.toUpperCase());
+        boolean descending = "desc".equalsIgnoreCase(order);
+        return ResponseEntity.ok(itemService.findPage(minPrice, maxPrice, sortKey, descending, limit, after));
+    }
+
+    // Full-text search over name and description; prefix=true expands the last term for autocomplete
+    @GetMapping("/search")
+    public ResponseEntity<List<SearchHit>> search(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @RequestParam(value = "prefix", defaultValue = "false") boolean prefix) {
+        return ResponseEntity.ok(searchService.search(query, limit, prefix));
     }
 
     // Get an item by id
     @GetMapping("/{id}")
+    // Revalidate with If-None-Match: Spring answers 304 without a body when the ETag matches
     public ResponseEntity<Item> getItem(@PathVariable String id) {
-        return itemService.findById(id).map(ResponseEntity::ok)
+        Item item = itemService.findById(id)
+                .orElseThrow(() -> new NotFoundException("Item not found with id: " + id));
+        return ResponseEntity.ok()
+                .eTag(versionTag(item.getVersion()))
+                .cacheControl(cacheControl(itemMaxAge))
+                .body(item);
+    }
+
+    // Batch lookup: resolve many items in one round-trip (missing ids are omitted)
+    @PostMapping("/batch")
+    public ResponseEntity<List<Item>> getItems(@RequestBody List<String> ids) {
+        return ResponseEntity.ok(itemService.findAllByIds(ids));
+    }
+
+    // Compact id/name/upc/price view for internal callers (no description or pictures)
+    @GetMapping("/{id}/summary")
+    public ResponseEntity<ItemSummary> getItemSummary(@PathVariable String id) {
+        return itemService.findSummary(id).map(ResponseEntity::ok)
                 .orElseThrow(() -> new NotFoundException("Item not found with id: " + id));
     }
 
+    // Batch summary lookup in one projected query (missing ids are omitted)
+    @PostMapping("/batch/summary")
+    public ResponseEntity<List<ItemSummary>> getItemSummaries(@RequestBody List<String> ids) {
+        return ResponseEntity.ok(itemService.findSummaries(ids));
+    }
+
+    // Signed, short-lived price quote for a basket; checkout verifies it instead of re-pricing each item
+    @PostMapping("/quotes")
+    public ResponseEntity<PriceQuote> quotePrices(@RequestBody List<String> ids) {
+        return ResponseEntity.ok(quoteService.quote(ids));
+    }
+
     // Create a new item
     @PostMapping
     public ResponseEntity<Item> createItem(@Valid @RequestBody Item item) {
@@ -50,6 +137,17 @@ public class ItemController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
+    // Bulk import streamed from the body: one JSON object per line, or CSV with a header line
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ImportReport> importNdjson(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(importService.importNdjson(request.getInputStream()));
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<ImportReport> importCsv(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(importService.importCsv(request.getInputStream()));
+    }
+
     // Update an existing item
     @PostMapping("/{id}")
     public ResponseEntity<Item> updateItem(@PathVariable String id, @Valid @RequestBody Item item) {
@@ -92,7 +190,11 @@ public class ItemController {
         }
         Inventory inventory = inventoryService.getInventoryForItem(id)
                 .orElseThrow(() -> new NotFoundException("Inventory not found for item ID: " + id));
-        return ResponseEntity.ok(inventory.getQuantity());
+        // striped buckets do not bump the record version, so the quantity is part of the tag
+        return ResponseEntity.ok()
+                .eTag(versionTag(inventory.getVersion()) + "-" + inventory.getQuantity())
+                .cacheControl(cacheControl(inventoryMaxAge))
+                .body(inventory.getQuantity());
     }
 
     /**
@@ -109,27 +211,70 @@ public class ItemController {
     }
 
 
-    // 原子扣减库存（库存不足返回 409 Conflict）
+    // 原子扣减库存（库存不足返回 409 Conflict）；带 Idempotency-Key 时重试只生效一次并返回首次结果
     @PostMapping("/{id}/inventory/decrement")
     public ResponseEntity<Integer> decrementInventory(
             @PathVariable String id,
-            @RequestParam("quantity") @Min(1) int quantity) {
-        boolean ok = inventoryService.decrementIfEnough(id, quantity);
-        if (!ok) {
-            throw new ConflictException("Item not enough");
-        }
-        int newQty = inventoryService.getInventoryForItem(id).map(Inventory::getQuantity).orElse(0);
+            @RequestParam("quantity") @Min(1) int quantity,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        int newQty = inventoryService.decrement(id, quantity, idempotencyKey)
+                .orElseThrow(() -> new ConflictException("Item not enough"));
         return ResponseEntity.ok(newQty);
     }
 
-    // 原子增加库存（用于取消订单时补回）
+    // 原子增加库存（用于取消订单时补回）；同样支持 Idempotency-Key
     @PostMapping("/{id}/inventory/increment")
     public ResponseEntity<Integer> incrementInventory(
             @PathVariable String id,
-            @RequestParam("quantity") @Min(1) int quantity) {
-        int newQty = inventoryService.increment(id, quantity);
+            @RequestParam("quantity") @Min(1) int quantity,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        int newQty = inventoryService.increment(id, quantity, idempotencyKey);
         return ResponseEntity.ok(newQty);
     }
 
+    // 设置补货阈值：扣减使库存降到阈值及以下时发送 LOW_STOCK 告警；不传 value 则关闭
+    @PutMapping("/{id}/inventory/threshold")
+    public ResponseEntity<Void> setReorderThreshold(
+            @PathVariable String id,
+            @RequestParam(value = "value", required = false) @Min(0) Integer value) {
+        inventoryService.setReorderThreshold(id, value);
+        return ResponseEntity.noContent().build();
+    }
 
+    /**
+     * Spread an item's stock over {@code count} bucket documents so that
+     * flash-sale decrements do not all contend on one record. A count of
+     * zero moves the stock back into the single inventory record.
+     */
+    @PutMapping("/{id}/inventory/stripes")
+    public ResponseEntity<Integer> stripeInventory(
+            @PathVariable String id,
+            @RequestParam("count") @Min(0) int count) {
+        return ResponseEntity.ok(stripedInventoryService.restripe(id, count));
+    }
+
+    // 整单原子预留库存：全部成功返回 200，否则全部回滚并返回 409 及逐行结果；带 Idempotency-Key 时重试只生效一次
+    @PostMapping("/inventory/reserve")
+    public ResponseEntity<ReservationResult> reserveInventory(
+            @Valid @RequestBody List<StockLine> lines,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        ReservationResult result = inventoryService.reserveAll(lines, idempotencyKey);
+        HttpStatus status = result.isReserved() ? HttpStatus.OK : HttpStatus.CONFLICT;
+        return ResponseEntity.status(status).body(result);
+    }
+
+    // Warehouse stock feed: one {"itemId", "delta"|"quantity"} JSON record per line, coalesced per item
+    @PostMapping(value = "/inventory/adjustments", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<AdjustmentReport> adjustInventory(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(inventoryService.adjustAll(request.getInputStream()));
+    }
+
+    private static String versionTag(Long version) {
+        return "v" + (version == null ? 0 : version);
+    }
+
+    // zero means clients and CDNs may store the body but must revalidate before reuse
+    private static CacheControl cacheControl(Duration maxAge) {
+        return maxAge.isZero() ? CacheControl.noCache() : CacheControl.maxAge(maxAge).cachePublic();
+    }
 }
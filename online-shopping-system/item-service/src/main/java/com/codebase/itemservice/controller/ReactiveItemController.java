@@ -0,0 +1,293 @@
+package com.codebase.itemservice.controller;
+
+import com.codebase.itemservice.dto.AdjustmentReport;
+import com.codebase.itemservice.dto.ImportReport;
+import com.codebase.itemservice.dto.ItemPage;
+import com.codebase.itemservice.dto.ItemSummary;
+import com.codebase.itemservice.dto.PriceQuote;
+import com.codebase.itemservice.dto.ReservationResult;
+import com.codebase.itemservice.dto.StockLine;
+import com.codebase.itemservice.exception.ConflictException;
+import com.codebase.itemservice.exception.NotFoundException;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.Item;
+import com.codebase.itemservice.search.ItemSearchService;
+import com.codebase.itemservice.search.SearchHit;
+import com.codebase.itemservice.service.InventoryService;
+import com.codebase.itemservice.service.ItemImportService;
+import com.codebase.itemservice.service.ItemService;
+import com.codebase.itemservice.service.PriceQuoteService;
+import com.codebase.itemservice.service.ReactiveInventoryService;
+import com.codebase.itemservice.service.ReactiveItemService;
+import com.codebase.itemservice.service.StripedInventoryService;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.time.Duration;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * {@link ItemController} on WebFlux, active with the "reactive" profile.
+ * Same paths, parameters, status codes and bodies. Catalogue reads and
+ * writes and the single-item stock paths are non-blocking end to end.
+ * Bulk endpoints (import, adjustment feed) and striping return plain
+ * values and therefore run on the bounded blocking executor configured
+ * in {@code ReactiveWebConfig}, reading the body as a stream.
+ */
+@RestController
+@RequestMapping("/items")
+@Profile("reactive")
+public class ReactiveItemController {
+
+    /** Body buffers requested ahead while a bulk upload is parsed. */
+    private static final int UPLOAD_DEMAND = 16;
+
+    private final ReactiveItemService itemService;
+    private final ReactiveInventoryService inventoryService;
+    private final InventoryService blockingInventoryService;
+    private final StripedInventoryService stripedInventoryService;
+    private final ItemSearchService searchService;
+    private final ItemImportService importService;
+    private final PriceQuoteService quoteService;
+
+    @Value("${item.http.item-max-age:PT60S}")
+    private Duration itemMaxAge = Duration.ofSeconds(60);
+
+    @Value("${item.http.inventory-max-age:PT0S}")
+    private Duration inventoryMaxAge = Duration.ZERO;
+
+    public ReactiveItemController(ReactiveItemService itemService, ReactiveInventoryService inventoryService,
+                                  InventoryService blockingInventoryService,
+                                  StripedInventoryService stripedInventoryService, ItemSearchService searchService,
+                                  ItemImportService importService, PriceQuoteService quoteService) {
+        this.itemService = itemService;
+        this.inventoryService = inventoryService;
+        this.blockingInventoryService = blockingInventoryService;
+        this.stripedInventoryService = stripedInventoryService;
+        this.searchService = searchService;
+        this.importService = importService;
+        this.quoteService = quoteService;
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<ItemPage>> getAllItems(
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "minPrice", required = false) Double minPrice,
+            @RequestParam(value = "maxPrice", required = false) Double maxPrice,
+            @RequestParam(value = "sort", defaultValue = "id") String sort,
+            @RequestParam(value = "order", defaultValue = "asc") String order) {
+        ItemService.SortKey sortKey = ItemService.SortKey.valueOf(sort.toUpperCase());
+        boolean descending = "desc".equalsIgnoreCase(order);
+        return itemService.findPage(minPrice, maxPrice, sortKey, descending, limit, after).map(ResponseEntity::ok);
+    }
+
+    // in-memory index, answered on the event loop
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<SearchHit>>> search(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @RequestParam(value = "prefix", defaultValue = "false") boolean prefix) {
+        return Mono.fromSupplier(() -> ResponseEntity.ok(searchService.search(query, limit, prefix)));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Item>> getItem(@PathVariable String id) {
+        return itemService.findById(id)
+                .switchIfEmpty(notFound(id))
+                .map(item -> ResponseEntity.ok()
+                        .eTag(versionTag(item.getVersion()))
+                        .cacheControl(cacheControl(itemMaxAge))
+                        .body(item));
+    }
+
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<List<Item>>> getItems(@RequestBody List<String> ids) {
+        return itemService.findAllByIds(ids).collectList().map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{id}/summary")
+    public Mono<ResponseEntity<ItemSummary>> getItemSummary(@PathVariable String id) {
+        return itemService.findSummary(id).switchIfEmpty(notFound(id)).map(ResponseEntity::ok);
+    }
+
+    @PostMapping("/batch/summary")
+    public Mono<ResponseEntity<List<ItemSummary>>> getItemSummaries(@RequestBody List<String> ids) {
+        return itemService.findSummaries(ids).collectList().map(ResponseEntity::ok);
+    }
+
+    @PostMapping("/quotes")
+    public Mono<ResponseEntity<PriceQuote>> quotePrices(@RequestBody List<String> ids) {
+        return Mono.fromRunnable(() -> quoteService.checkSize(ids))
+                .then(itemService.findSummaries(ids).collectList())
+                .map(summaries -> ResponseEntity.ok(quoteService.issue(summaries)));
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Item>> createItem(@Valid @RequestBody Item item) {
+        return itemService.create(item)
+                .flatMap(created -> inventoryService.createInventory(created.getId(), 0).thenReturn(created))
+                .map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created));
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ImportReport> importNdjson(@RequestBody Flux<DataBuffer> body) throws IOException {
+        try (InputStream in = stream(body)) {
+            return ResponseEntity.ok(importService.importNdjson(in));
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<ImportReport> importCsv(@RequestBody Flux<DataBuffer> body) throws IOException {
+        try (InputStream in = stream(body)) {
+            return ResponseEntity.ok(importService.importCsv(in));
+        }
+    }
+
+    @PostMapping("/{id}")
+    public Mono<ResponseEntity<Item>> updateItem(@PathVariable String id, @Valid @RequestBody Item item) {
+        return itemService.findById(id)
+                .switchIfEmpty(notFound(id))
+                .flatMap(updated -> {
+                    if (item.getDescription() != null) {
+                        updated.setDescription(item.getDescription());
+                    }
+                    if (item.getPictureUrls() != null) {
+                        updated.setPictureUrls(item.getPictureUrls());
+                    }
+                    if (item.getUpc() != null) {
+                        updated.setUpc(item.getUpc());
+                    }
+                    updated.setName(item.getName());
+                    updated.setPrice(item.getPrice());
+                    return itemService.update(updated);
+                })
+                .map(ResponseEntity::ok);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Item>> deleteItem(@PathVariable String id) {
+        return itemService.findById(id)
+                .switchIfEmpty(notFound(id))
+                .flatMap(item -> inventoryService.deleteByItemId(id).then(itemService.delete(id)))
+                .then(Mono.just(ResponseEntity.noContent().<Item>build()));
+    }
+
+    @GetMapping("/{id}/inventory")
+    public Mono<ResponseEntity<Integer>> getInventory(@PathVariable String id) {
+        return itemService.findById(id)
+                .switchIfEmpty(notFound(id))
+                .flatMap(item -> inventoryService.getInventoryForItem(id))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Inventory not found for item ID: " + id)))
+                // striped buckets do not bump the record version, so the quantity is part of the tag
+                .map(inventory -> ResponseEntity.ok()
+                        .eTag(versionTag(inventory.getVersion()) + "-" + inventory.getQuantity())
+                        .cacheControl(cacheControl(inventoryMaxAge))
+                        .body(inventory.getQuantity()));
+    }
+
+    @PutMapping("/{id}/inventory")
+    public Mono<ResponseEntity<Inventory>> updateInventory(
+            @PathVariable String id,
+            @RequestParam("quantity") @Min(0) int quantity) {
+        return inventoryService.updateInventory(id, quantity).map(ResponseEntity::ok);
+    }
+
+    // 原子扣减库存（库存不足返回 409 Conflict）；带 Idempotency-Key 时重试只生效一次并返回首次结果
+    @PostMapping("/{id}/inventory/decrement")
+    public Mono<ResponseEntity<Integer>> decrementInventory(
+            @PathVariable String id,
+            @RequestParam("quantity") @Min(1) int quantity,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return inventoryService.decrement(id, quantity, idempotencyKey)
+                .switchIfEmpty(Mono.error(() -> new ConflictException("Item not enough")))
+                .map(ResponseEntity::ok);
+    }
+
+    // 原子增加库存（用于取消订单时补回）；同样支持 Idempotency-Key
+    @PostMapping("/{id}/inventory/increment")
+    public Mono<ResponseEntity<Integer>> incrementInventory(
+            @PathVariable String id,
+            @RequestParam("quantity") @Min(1) int quantity,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return inventoryService.increment(id, quantity, idempotencyKey).map(ResponseEntity::ok);
+    }
+
+    @PutMapping("/{id}/inventory/threshold")
+    public Mono<ResponseEntity<Void>> setReorderThreshold(
+            @PathVariable String id,
+            @RequestParam(value = "value", required = false) @Min(0) Integer value) {
+        return inventoryService.setReorderThreshold(id, value).then(Mono.just(ResponseEntity.noContent().<Void>build()));
+    }
+
+    @PutMapping("/{id}/inventory/stripes")
+    public ResponseEntity<Integer> stripeInventory(
+            @PathVariable String id,
+            @RequestParam("count") @Min(0) int count) {
+        return ResponseEntity.ok(stripedInventoryService.restripe(id, count));
+    }
+
+    // 整单原子预留库存：全部成功返回 200，否则全部回滚并返回 409 及逐行结果；带 Idempotency-Key 时重试只生效一次
+    @PostMapping("/inventory/reserve")
+    public Mono<ResponseEntity<ReservationResult>> reserveInventory(
+            @Valid @RequestBody List<StockLine> lines,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return inventoryService.reserveAll(lines, idempotencyKey)
+                .map(result -> ResponseEntity.status(result.isReserved() ? HttpStatus.OK : HttpStatus.CONFLICT)
+                        .body(result));
+    }
+
+    @PostMapping(value = "/inventory/adjustments", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<AdjustmentReport> adjustInventory(@RequestBody Flux<DataBuffer> body) throws IOException {
+        try (InputStream in = stream(body)) {
+            return ResponseEntity.ok(blockingInventoryService.adjustAll(in));
+        }
+    }
+
+    /**
+     * Body as a blocking stream with bounded demand, so a large upload is
+     * parsed as it arrives. Only called on the blocking executor; each
+     * buffer is released once it has been read.
+     */
+    private static InputStream stream(Flux<DataBuffer> body) {
+        Iterator<DataBuffer> buffers = body.toIterable(UPLOAD_DEMAND).iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return buffers.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return buffers.next().asInputStream(true);
+            }
+        });
+    }
+
+    private static <T> Mono<T> notFound(String id) {
+        return Mono.error(() -> new NotFoundException("Item not found with id: " + id));
+    }
+
+    private static String versionTag(Long version) {
+        return "v" + (version == null ? 0 : version);
+    }
+
+    private static CacheControl cacheControl(Duration maxAge) {
+        return maxAge.isZero() ? CacheControl.noCache() : CacheControl.maxAge(maxAge).cachePublic();
+    }
+}
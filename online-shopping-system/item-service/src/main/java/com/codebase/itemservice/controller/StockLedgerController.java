@@ -0,0 +1,30 @@
+package com.codebase.itemservice.controller;
+
+import com.codebase.itemservice.dto.LedgerRebuildResult;
+import com.codebase.itemservice.service.StockLedgerService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Maintenance operations on the stock-movement ledger.
+ *
+ * <p>Served under both profiles. Its methods block, so under "reactive"
+ * they run on the blocking executor of
+ * {@link com.codebase.itemservice.config.ReactiveWebConfig}.</p>
+ */
+@RestController
+@RequestMapping("/items")
+public class StockLedgerController {
+
+    private final StockLedgerService ledgerService;
+
+    public StockLedgerController(StockLedgerService ledgerService) {
+        this.ledgerService = ledgerService;
+    }
+
+    // Recompute the item's quantity from its ledger and overwrite the snapshot (409 if it keeps changing)
+    @PostMapping("/{id}/inventory/ledger/rebuild")
+    public ResponseEntity<LedgerRebuildResult> rebuild(@PathVariable String id) {
+        return ResponseEntity.ok(ledgerService.rebuild(id));
+    }
+}
@@ -0,0 +1,69 @@
+package com.codebase.itemservice.dto;
+
+import com.codebase.itemservice.dto.ImportReport.RowError;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk stock adjustment feed. {@code received} counts the
+ * valid records and {@code adjusted} the distinct items written after
+ * coalescing. {@code missing} lists ids that have no inventory record.
+ */
+public class AdjustmentReport {
+
+    private long received;
+    private long adjusted;
+    private long failed;
+    private long elapsedMillis;
+    private List<String> missing = new ArrayList<>();
+    private List<RowError> errors = new ArrayList<>();
+
+    public long getReceived() {
+        return received;
+    }
+
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+    public long getAdjusted() {
+        return adjusted;
+    }
+
+    public void setAdjusted(long adjusted) {
+        this.adjusted = adjusted;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public List<String> getMissing() {
+        return missing;
+    }
+
+    public void setMissing(List<String> missing) {
+        this.missing = missing;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<RowError> errors) {
+        this.errors = errors;
+    }
+}
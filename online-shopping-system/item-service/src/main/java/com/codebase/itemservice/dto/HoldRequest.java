@@ -0,0 +1,38 @@
+package com.codebase.itemservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+/**
+ * Request body for placing an inventory hold. When no TTL is given the
+ * configured default applies; larger values are capped at the
+ * configured maximum.
+ */
+public class HoldRequest {
+
+    @NotEmpty
+    @Valid
+    private List<StockLine> lines;
+
+    @Min(1)
+    private Long ttlSeconds;
+
+    public List<StockLine> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<StockLine> lines) {
+        this.lines = lines;
+    }
+
+    public Long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(Long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+}
@@ -0,0 +1,40 @@
+package com.codebase.itemservice.dto;
+
+import com.codebase.itemservice.model.Item;
+
+import java.util.List;
+
+/**
+ * One page of the catalogue listing. {@code nextToken} is an opaque
+ * continuation token to pass back as {@code after}; it is null on the
+ * last page.
+ */
+public class ItemPage {
+
+    private List<Item> items;
+    private String nextToken;
+
+    public ItemPage() {
+    }
+
+    public ItemPage(List<Item> items, String nextToken) {
+        this.items = items;
+        this.nextToken = nextToken;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Item> items) {
+        this.items = items;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public void setNextToken(String nextToken) {
+        this.nextToken = nextToken;
+    }
+}
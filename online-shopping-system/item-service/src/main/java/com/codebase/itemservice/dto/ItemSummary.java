@@ -0,0 +1,56 @@
+package com.codebase.itemservice.dto;
+
+/**
+ * Compact view of an item for internal callers such as order pricing.
+ * Read with a field-projected query, so descriptions and picture URLs
+ * are neither loaded nor serialized.
+ */
+public class ItemSummary {
+
+    private String id;
+    private String name;
+    private String upc;
+    private Double price;
+
+    public ItemSummary() {
+    }
+
+    public ItemSummary(String id, String name, String upc, Double price) {
+        this.id = id;
+        this.name = name;
+        this.upc = upc;
+        this.price = price;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getUpc() {
+        return upc;
+    }
+
+    public void setUpc(String upc) {
+        this.upc = upc;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+}
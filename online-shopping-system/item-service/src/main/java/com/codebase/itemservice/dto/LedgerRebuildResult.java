@@ -0,0 +1,78 @@
+package com.codebase.itemservice.dto;
+
+/**
+ * Outcome of rebuilding an inventory snapshot from its ledger: the
+ * quantity the record held before, the quantity folded from the
+ * movements, and how many compaction checkpoints the fold passed and
+ * disagreed with.
+ */
+public class LedgerRebuildResult {
+
+    private String itemId;
+    private int previousQuantity;
+    private int rebuiltQuantity;
+    private long movements;
+    private int checkpoints;
+    private int checkpointMismatches;
+
+    public LedgerRebuildResult() {
+    }
+
+    public LedgerRebuildResult(String itemId, int previousQuantity, int rebuiltQuantity, long movements,
+                               int checkpoints, int checkpointMismatches) {
+        this.itemId = itemId;
+        this.previousQuantity = previousQuantity;
+        this.rebuiltQuantity = rebuiltQuantity;
+        this.movements = movements;
+        this.checkpoints = checkpoints;
+        this.checkpointMismatches = checkpointMismatches;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(String itemId) {
+        this.itemId = itemId;
+    }
+
+    public int getPreviousQuantity() {
+        return previousQuantity;
+    }
+
+    public void setPreviousQuantity(int previousQuantity) {
+        this.previousQuantity = previousQuantity;
+    }
+
+    public int getRebuiltQuantity() {
+        return rebuiltQuantity;
+    }
+
+    public void setRebuiltQuantity(int rebuiltQuantity) {
+        this.rebuiltQuantity = rebuiltQuantity;
+    }
+
+    public long getMovements() {
+        return movements;
+    }
+
+    public void setMovements(long movements) {
+        this.movements = movements;
+    }
+
+    public int getCheckpoints() {
+        return checkpoints;
+    }
+
+    public void setCheckpoints(int checkpoints) {
+        this.checkpoints = checkpoints;
+    }
+
+    public int getCheckpointMismatches() {
+        return checkpointMismatches;
+    }
+
+    public void setCheckpointMismatches(int checkpointMismatches) {
+        this.checkpointMismatches = checkpointMismatches;
+    }
+}
@@ -0,0 +1,67 @@
+package com.codebase.itemservice.dto;
+
+import java.util.Map;
+
+/**
+ * Short-lived, signed statement of item prices. A client passes it on to
+ * checkout, where order-service checks the signature with the shared
+ * secret and prices the covered lines without calling back. The
+ * signature covers every price and the expiry, so none of them can be
+ * changed without the quote being rejected.
+ */
+public class PriceQuote {
+
+    /** Unit price per item id; unknown and unpriced items are left out. */
+    private Map<String, Double> prices;
+
+    /** Epoch milliseconds. */
+    private long issuedAt;
+
+    /** Epoch milliseconds after which the quote is no longer honoured. */
+    private long expiresAt;
+
+    /** Base64url HMAC-SHA256 of the canonical form of the fields above. */
+    private String signature;
+
+    public PriceQuote() {
+    }
+
+    public PriceQuote(Map<String, Double> prices, long issuedAt, long expiresAt, String signature) {
+        this.prices = prices;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+        this.signature = signature;
+    }
+
+    public Map<String, Double> getPrices() {
+        return prices;
+    }
+
+    public void setPrices(Map<String, Double> prices) {
+        this.prices = prices;
+    }
+
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    public void setIssuedAt(long issuedAt) {
+        this.issuedAt = issuedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public void setSignature(String signature) {
+        this.signature = signature;
+    }
+}
@@ -0,0 +1,87 @@
+package com.codebase.itemservice.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of an all-or-nothing basket reservation. {@code reserved} is
+ * true only when every line was taken; otherwise no stock has been kept
+ * and each line reports why.
+ */
+public class ReservationResult {
+
+    public enum LineStatus {
+        RESERVED,
+        INSUFFICIENT,
+        ROLLED_BACK,
+        SKIPPED
+    }
+
+    private boolean reserved;
+    private List<LineResult> lines;
+
+    public ReservationResult() {
+    }
+
+    public ReservationResult(boolean reserved, List<LineResult> lines) {
+        this.reserved = reserved;
+        this.lines = lines;
+    }
+
+    public boolean isReserved() {
+        return reserved;
+    }
+
+    public void setReserved(boolean reserved) {
+        this.reserved = reserved;
+    }
+
+    public List<LineResult> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<LineResult> lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Per-item result of a reservation.
+     */
+    public static class LineResult {
+        private String itemId;
+        private int quantity;
+        private LineStatus status;
+
+        public LineResult() {
+        }
+
+        public LineResult(String itemId, int quantity, LineStatus status) {
+            this.itemId = itemId;
+            this.quantity = quantity;
+            this.status = status;
+        }
+
+        public String getItemId() {
+            return itemId;
+        }
+
+        public void setItemId(String itemId) {
+            this.itemId = itemId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        public LineStatus getStatus() {
+            return status;
+        }
+
+        public void setStatus(LineStatus status) {
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.codebase.itemservice.dto;
+
+/**
+ * One record of a warehouse stock feed. Exactly one of {@code delta}
+ * (units to add, negative to remove) or {@code quantity} (absolute
+ * level) is set.
+ */
+public class StockAdjustment {
+
+    private String itemId;
+    private Integer delta;
+    private Integer quantity;
+
+    public StockAdjustment() {
+    }
+
+    public StockAdjustment(String itemId, Integer delta, Integer quantity) {
+        this.itemId = itemId;
+        this.delta = delta;
+        this.quantity = quantity;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(String itemId) {
+        this.itemId = itemId;
+    }
+
+    public Integer getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Integer delta) {
+        this.delta = delta;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
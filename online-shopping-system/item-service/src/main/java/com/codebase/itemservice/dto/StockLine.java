@@ -0,0 +1,41 @@
+package com.codebase.itemservice.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * A single basket line used by the batch inventory endpoints: the item
+ * to touch and how many units.
+ */
+public class StockLine {
+
+    @NotBlank(message = "Item ID cannot be blank")
+    private String itemId;
+
+    @Min(value = 1, message = "Quantity must be at least 1")
+    private int quantity;
+
+    public StockLine() {
+    }
+
+    public StockLine(String itemId, int quantity) {
+        this.itemId = itemId;
+        this.quantity = quantity;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(String itemId) {
+        this.itemId = itemId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
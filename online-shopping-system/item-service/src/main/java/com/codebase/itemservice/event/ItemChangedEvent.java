@@ -0,0 +1,102 @@
+package com.codebase.itemservice.event;
+
+import com.codebase.itemservice.model.Item;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Current catalogue entry of an item, published to the compacted
+ * item-changes topic keyed by item id. A deleted item is published as a
+ * tombstone (null value) instead.
+ */
+public class ItemChangedEvent {
+
+    private String itemId;
+    private String name;
+    private String description;
+    private List<String> pictureUrls;
+    private String upc;
+    private Double price;
+    private Long version;
+    private Instant at;
+
+    public ItemChangedEvent() {}
+
+    public static ItemChangedEvent of(Item item, Instant at) {
+        ItemChangedEvent event = new ItemChangedEvent();
+        event.itemId = item.getId();
+        event.name = item.getName();
+        event.description = item.getDescription();
+        event.pictureUrls = item.getPictureUrls();
+        event.upc = item.getUpc();
+        event.price = item.getPrice();
+        event.version = item.getVersion();
+        event.at = at;
+        return event;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(String itemId) {
+        this.itemId = itemId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public List<String> getPictureUrls() {
+        return pictureUrls;
+    }
+
+    public void setPictureUrls(List<String> pictureUrls) {
+        this.pictureUrls = pictureUrls;
+    }
+
+    public String getUpc() {
+        return upc;
+    }
+
+    public void setUpc(String upc) {
+        this.upc = upc;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getAt() {
+        return at;
+    }
+
+    public void setAt(Instant at) {
+        this.at = at;
+    }
+}
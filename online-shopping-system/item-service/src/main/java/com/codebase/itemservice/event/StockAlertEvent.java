@@ -0,0 +1,87 @@
+package com.codebase.itemservice.event;
+
+import java.time.Instant;
+
+/**
+ * Sent via Kafka when a decrement takes an item's stock across its
+ * reorder threshold (LOW_STOCK) or to zero (OUT_OF_STOCK). Keyed by
+ * item id so the alerts of one item stay in order.
+ */
+public class StockAlertEvent {
+
+    public enum Type {
+        LOW_STOCK,
+        OUT_OF_STOCK
+    }
+
+    private String itemId;
+    private Type type;
+    private int quantity;
+    private Integer threshold;
+    private Instant at;
+
+    public StockAlertEvent() {}
+
+    public StockAlertEvent(String itemId, Type type, int quantity, Integer threshold, Instant at) {
+        this.itemId = itemId;
+        this.type = type;
+        this.quantity = quantity;
+        this.threshold = threshold;
+        this.at = at;
+    }
+
+    /**
+     * The alert for a decrement that moved the stock from {@code before}
+     * to {@code after}, or null if it crossed nothing. Each decrement is a
+     * single atomic update, so exactly one of them sees a given crossing.
+     */
+    public static StockAlertEvent crossing(String itemId, int before, int after, Integer threshold) {
+        if (before > 0 && after <= 0) {
+            return new StockAlertEvent(itemId, Type.OUT_OF_STOCK, after, threshold, Instant.now());
+        }
+        if (threshold != null && before > threshold && after <= threshold) {
+            return new StockAlertEvent(itemId, Type.LOW_STOCK, after, threshold, Instant.now());
+        }
+        return null;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(String itemId) {
+        this.itemId = itemId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public Integer getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(Integer threshold) {
+        this.threshold = threshold;
+    }
+
+    public Instant getAt() {
+        return at;
+    }
+
+    public void setAt(Instant at) {
+        this.at = at;
+    }
+}
@@ -0,0 +1,61 @@
+package com.codebase.itemservice.event;
+
+import java.time.Instant;
+
+/**
+ * Current stock level of an item, published to the compacted
+ * stock-changes topic keyed by item id. For a striped item the quantity
+ * is the sum over its buckets. An item whose inventory record was
+ * deleted is published as a tombstone (null value) instead. The version
+ * is that of the inventory record the quantity was read with, plus the
+ * bucket changes handed to it; it only grows, so a consumer can drop an
+ * event older than one it already has.
+ */
+public class StockChangedEvent {
+
+    private String itemId;
+    private int quantity;
+    private Long version;
+    private Instant at;
+
+    public StockChangedEvent() {}
+
+    public StockChangedEvent(String itemId, int quantity, Long version, Instant at) {
+        this.itemId = itemId;
+        this.quantity = quantity;
+        this.version = version;
+        this.at = at;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(String itemId) {
+        this.itemId = itemId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getAt() {
+        return at;
+    }
+
+    public void setAt(Instant at) {
+        this.at = at;
+    }
+}
@@ -1,5 +1,6 @@
 package com.codebase.itemservice.exception;
 
+import com.codebase.itemservice.dto.ReservationResult;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -16,6 +17,18 @@ public class GlobalExceptionHandler {
 //        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
 //    }
 
+    // handle basket reservation / hold that could not be filled
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<ReservationResult> handleInsufficientStock(InsufficientStockException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getResult());
+    }
+
+    // handle bad arguments thrown from services
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
     // handle not found
     @ExceptionHandler(NotFoundException.class)
     public ResponseEntity<String> handleNotFound(NotFoundException e) {
@@ -34,6 +47,12 @@ public class GlobalExceptionHandler {
 //        return ResponseEntity.status(HttpStatus.CONFLICT).body("Item with same UPC already exists.");
 //    }
 
+    // handle concurrent modification detected through the @Version field
+    @ExceptionHandler(org.springframework.dao.OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleOptimisticLock(org.springframework.dao.OptimisticLockingFailureException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("Resource was modified concurrently, please retry.");
+    }
+
     // handle other error
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleGeneric(Exception ex) {
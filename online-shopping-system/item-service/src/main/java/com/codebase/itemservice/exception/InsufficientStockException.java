@@ -0,0 +1,16 @@
+package com.codebase.itemservice.exception;
+
+import com.codebase.itemservice.dto.ReservationResult;
+
+public class InsufficientStockException extends RuntimeException {
+    private final ReservationResult result;
+
+    public InsufficientStockException(ReservationResult result) {
+        super("Item not enough");
+        this.result = result;
+    }
+
+    public ReservationResult getResult() {
+        return result;
+    }
+}
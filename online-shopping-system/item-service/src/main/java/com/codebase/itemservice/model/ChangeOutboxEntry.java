@@ -0,0 +1,95 @@
+package com.codebase.itemservice.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Marks that an item's catalogue entry or inventory record was deleted
+ * and the tombstone has not been published yet. Changes to documents
+ * that still exist are marked on the document itself, see
+ * {@code ChangeOutbox.UNPUBLISHED}. There is one entry per item and kind
+ * ({@code _id} is {@code KIND:itemId}). The relay clears {@code pending}
+ * only if {@code seq} has not moved since it read the entry.
+ */
+@Document(collection = "change_outbox")
+@CompoundIndex(name = "pending_changedAt", def = "{'pending': 1, 'changedAt': 1}")
+public class ChangeOutboxEntry {
+
+    public enum Kind {
+        ITEM,
+        STOCK
+    }
+
+    @Id
+    private String id;
+
+    private String itemId;
+
+    private Kind kind;
+
+    /** Bumped on every deletion, so one made during a publish is not lost. */
+    private long seq;
+
+    private boolean pending;
+
+    /** Time of the latest deletion; the relay publishes oldest first. */
+    private Instant changedAt;
+
+    public ChangeOutboxEntry() {
+    }
+
+    public static String idOf(Kind kind, String itemId) {
+        return kind + ":" + itemId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(String itemId) {
+        this.itemId = itemId;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public boolean isPending() {
+        return pending;
+    }
+
+    public void setPending(boolean pending) {
+        this.pending = pending;
+    }
+
+    public Instant getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(Instant changedAt) {
+        this.changedAt = changedAt;
+    }
+}
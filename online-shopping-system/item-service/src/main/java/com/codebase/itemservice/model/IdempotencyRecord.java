@@ -0,0 +1,103 @@
+package com.codebase.itemservice.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * The outcome of an inventory mutation sent with an
+ * {@code Idempotency-Key}. A retry with the same key is answered from
+ * here without touching stock. Records are purged by a TTL index a day
+ * after they were written.
+ */
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+
+    @Id
+    private String key;
+
+    /** Item id, or the canonical basket text for a {@code reserve}. */
+    private String itemId;
+
+    /** {@code decrement}, {@code increment} or {@code reserve}. */
+    private String operation;
+
+    /** Units requested, or the number of merged lines for a {@code reserve}. */
+    private int amount;
+
+    /**
+     * Quantity left after the mutation. For a {@code reserve}, -1 when the
+     * whole basket was taken, else the index of the first short line.
+     */
+    private int result;
+
+    @Indexed(name = "createdAt_ttl", expireAfter = "1d")
+    private Instant createdAt;
+
+    public IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String key, String itemId, String operation, int amount, int result, Instant createdAt) {
+        this.key = key;
+        this.itemId = itemId;
+        this.operation = operation;
+        this.amount = amount;
+        this.result = result;
+        this.createdAt = createdAt;
+    }
+
+    /** Whether this record was written for the same item, operation and amount. */
+    public boolean matches(String itemId, String operation, int amount) {
+        return this.itemId.equals(itemId) && this.operation.equals(operation) && this.amount == amount;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(String itemId) {
+        this.itemId = itemId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    public void setAmount(int amount) {
+        this.amount = amount;
+    }
+
+    public int getResult() {
+        return result;
+    }
+
+    public void setResult(int result) {
+        this.result = result;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
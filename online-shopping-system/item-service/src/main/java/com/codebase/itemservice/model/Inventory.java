@@ -1,16 +1,23 @@
 package com.codebase.itemservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Represents the inventory record for a specific item. Inventory
  * information lives alongside items in MongoDB, decoupling stock
  * levels from order records. Each inventory record references an
  * existing item via its itemId and tracks the number of units
- * remaining.
+ * remaining. Its indexes are declared in
+ * {@link com.codebase.itemservice.config.IndexManager}.
  */
 @Document(collection = "inventory")
 public class Inventory {
@@ -24,12 +31,118 @@ public class Inventory {
     @NotNull
     private Integer quantity;
 
+    /**
+     * Number of {@link InventoryBucket} stripes holding this item's stock,
+     * or null/0 when the quantity lives in this document. While striped,
+     * {@code quantity} here only holds units parked by a restripe or by an
+     * increment whose bucket had gone away.
+     */
+    private Integer stripes;
+
+    /**
+     * Stripe count a restripe in progress is moving the stock to, or null.
+     * Set together with {@code restripeGeneration} when the restripe starts
+     * and cleared once every bucket has been moved.
+     */
+    @JsonIgnore
+    private Integer restripeTo;
+
+    /**
+     * Id of the restripe in progress; the buckets it creates carry the same
+     * id. An ObjectId, so its timestamp tells when the restripe started.
+     */
+    @JsonIgnore
+    private String restripeGeneration;
+
+    /**
+     * Moves between this record and its buckets already applied to
+     * {@code quantity}, so a rerun after a crash does not apply them twice.
+     */
+    @JsonIgnore
+    private List<Transfer> transfers;
+
+    /**
+     * Stock level at or below which a decrement raises a LOW_STOCK alert,
+     * or null for none.
+     */
+    private Integer reorderThreshold;
+
+    /**
+     * Incremented on every write to this record, including the atomic
+     * {@code $inc} paths in InventoryService. Bucket writes of a striped
+     * item do not touch it, so the ETag also carries the quantity.
+     */
+    @Version
+    private Long version;
+
+    /**
+     * Bucket changes the change relay has handed to this record. Counted
+     * apart from {@code version}, which only writes of the stock itself
+     * bump; the relay clears the record's mark only if both are unchanged.
+     */
+    @JsonIgnore
+    private Long relayHandOvers;
+
+    /**
+     * Idempotency keys of the latest keyed mutations, each with the
+     * quantity it left behind. Written in the same update as the stock
+     * change, so a retried request can never apply twice. Only the newest
+     * entries are kept; older keys are still answered from
+     * {@link IdempotencyRecord}.
+     */
+    @JsonIgnore
+    private List<AppliedKey> appliedKeys = new ArrayList<>();
+
+    /**
+     * Newest stock movements of this record, oldest first. Every write
+     * to {@code quantity} appends here in the same update, so the tail
+     * always agrees with the quantity. Older movements are moved out to
+     * {@link StockLedgerSegment}s by the ledger compaction. The tail never
+     * grows past {@code StockLedgerService.MAX_TAIL} entries.
+     */
+    @JsonIgnore
+    private List<Movement> movements = new ArrayList<>();
+
+    /** Number of ledger segments already compacted out of {@code movements}. */
+    @JsonIgnore
+    private Integer compactedSegments;
+
+    /**
+     * Time of the latest stock change not yet published, set in the same
+     * update as the change; see {@code ChangeOutbox.UNPUBLISHED}.
+     */
+    @JsonIgnore
+    private Instant unpublishedAt;
+
     public Inventory() {
     }
 
+    /**
+     * Copy of {@code other} with its own key and movement lists.
+     */
+    public Inventory(Inventory other) {
+        this.id = other.id;
+        this.itemId = other.itemId;
+        this.quantity = other.quantity;
+        this.stripes = other.stripes;
+        this.restripeTo = other.restripeTo;
+        this.restripeGeneration = other.restripeGeneration;
+        this.transfers = other.transfers == null ? null : new ArrayList<>(other.transfers);
+        this.reorderThreshold = other.reorderThreshold;
+        this.version = other.version;
+        this.relayHandOvers = other.relayHandOvers;
+        this.appliedKeys = other.appliedKeys == null ? null : new ArrayList<>(other.appliedKeys);
+        this.movements = other.movements == null ? null : new ArrayList<>(other.movements);
+        this.compactedSegments = other.compactedSegments;
+        this.unpublishedAt = other.unpublishedAt;
+    }
+
     public Inventory(String itemId, Integer quantity) {
         this.itemId = itemId;
         this.quantity = quantity;
+        this.movements.add(Movement.set(MovementType.OPENING, quantity, null));
+        this.compactedSegments = 0;
+        this.unpublishedAt = Instant.now();
     }
 
     public String getId() {
@@ -55,4 +168,260 @@ public class Inventory {
     public void setQuantity(Integer quantity) {
         this.quantity = quantity;
     }
+
+    public Integer getStripes() {
+        return stripes;
+    }
+
+    public void setStripes(Integer stripes) {
+        this.stripes = stripes;
+    }
+
+    public Integer getRestripeTo() {
+        return restripeTo;
+    }
+
+    public void setRestripeTo(Integer restripeTo) {
+        this.restripeTo = restripeTo;
+    }
+
+    public String getRestripeGeneration() {
+        return restripeGeneration;
+    }
+
+    public void setRestripeGeneration(String restripeGeneration) {
+        this.restripeGeneration = restripeGeneration;
+    }
+
+    public List<Transfer> getTransfers() {
+        return transfers;
+    }
+
+    public void setTransfers(List<Transfer> transfers) {
+        this.transfers = transfers;
+    }
+
+    public Integer getReorderThreshold() {
+        return reorderThreshold;
+    }
+
+    public void setReorderThreshold(Integer reorderThreshold) {
+        this.reorderThreshold = reorderThreshold;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getRelayHandOvers() {
+        return relayHandOvers;
+    }
+
+    public void setRelayHandOvers(Long relayHandOvers) {
+        this.relayHandOvers = relayHandOvers;
+    }
+
+    public List<AppliedKey> getAppliedKeys() {
+        return appliedKeys;
+    }
+
+    public void setAppliedKeys(List<AppliedKey> appliedKeys) {
+        this.appliedKeys = appliedKeys;
+    }
+
+    public List<Movement> getMovements() {
+        return movements;
+    }
+
+    public void setMovements(List<Movement> movements) {
+        this.movements = movements;
+    }
+
+    public Integer getCompactedSegments() {
+        return compactedSegments;
+    }
+
+    public void setCompactedSegments(Integer compactedSegments) {
+        this.compactedSegments = compactedSegments;
+    }
+
+    public Instant getUnpublishedAt() {
+        return unpublishedAt;
+    }
+
+    public void setUnpublishedAt(Instant unpublishedAt) {
+        this.unpublishedAt = unpublishedAt;
+    }
+
+    /**
+     * Units moved between the record and one bucket. A positive amount
+     * was taken from the record, a negative one came back from a bucket.
+     */
+    public static class Transfer {
+
+        private String id;
+        private int amount;
+
+        public Transfer() {
+        }
+
+        public Transfer(String id, int amount) {
+            this.id = id;
+            this.amount = amount;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public int getAmount() {
+            return amount;
+        }
+
+        public void setAmount(int amount) {
+            this.amount = amount;
+        }
+    }
+
+    /** Why the quantity of a record changed. */
+    public enum MovementType {
+        OPENING,
+        ORDER_DECREMENT,
+        CANCEL_INCREMENT,
+        MANUAL_SET,
+        BULK_ADJUST,
+        RESTRIPE,
+        /** The quantity as it stood when the ledger compaction cut the tail. */
+        CHECKPOINT,
+        /**
+         * A CHECKPOINT taken when the tail was full and may have dropped
+         * movements; the fold starts over from it.
+         */
+        RESYNC
+    }
+
+    /**
+     * One ledger entry. Either {@code delta} is added to the quantity, or
+     * {@code quantity} replaces it (openings and absolute sets).
+     */
+    public static class Movement {
+
+        private MovementType type;
+        private Integer delta;
+        private Integer quantity;
+        private String ref;
+        private Instant at;
+
+        public Movement() {
+        }
+
+        public Movement(MovementType type, Integer delta, Integer quantity, String ref, Instant at) {
+            this.type = type;
+            this.delta = delta;
+            this.quantity = quantity;
+            this.ref = ref;
+            this.at = at;
+        }
+
+        public static Movement delta(MovementType type, int delta, String ref) {
+            return new Movement(type, delta, null, ref, Instant.now());
+        }
+
+        public static Movement set(MovementType type, int quantity, String ref) {
+            return new Movement(type, null, quantity, ref, Instant.now());
+        }
+
+        /** Quantity after applying this movement to {@code before}. */
+        public int applyTo(int before) {
+            return quantity != null ? quantity : before + (delta == null ? 0 : delta);
+        }
+
+        public MovementType getType() {
+            return type;
+        }
+
+        public void setType(MovementType type) {
+            this.type = type;
+        }
+
+        public Integer getDelta() {
+            return delta;
+        }
+
+        public void setDelta(Integer delta) {
+            this.delta = delta;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+
+        public String getRef() {
+            return ref;
+        }
+
+        public void setRef(String ref) {
+            this.ref = ref;
+        }
+
+        public Instant getAt() {
+            return at;
+        }
+
+        public void setAt(Instant at) {
+            this.at = at;
+        }
+    }
+
+    public static class AppliedKey {
+
+        private String key;
+        private Integer quantity;
+        private Instant at;
+
+        public AppliedKey() {
+        }
+
+        public AppliedKey(String key, Integer quantity, Instant at) {
+            this.key = key;
+            this.quantity = quantity;
+            this.at = at;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+
+        public Instant getAt() {
+            return at;
+        }
+
+        public void setAt(Instant at) {
+            this.at = at;
+        }
+    }
 }
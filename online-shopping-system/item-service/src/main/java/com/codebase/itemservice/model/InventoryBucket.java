@@ -0,0 +1,133 @@
+package com.codebase.itemservice.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One stripe of a hot item's stock. When striping is enabled for an
+ * item its quantity is spread over several bucket documents so that
+ * concurrent decrements land on different documents instead of all
+ * contending for the single {@link Inventory} record.
+ */
+@Document(collection = "inventory_buckets")
+@CompoundIndex(name = "itemId_bucket", def = "{'itemId': 1, 'bucket': 1}", unique = true)
+public class InventoryBucket {
+
+    @Id
+    private String id;
+
+    private String itemId;
+
+    private int bucket;
+
+    private int quantity;
+
+    /** Restripe that created this bucket; see {@link Inventory#getRestripeGeneration()}. */
+    private String generation;
+
+    /**
+     * Units being moved back into the record by a restripe. Set in the
+     * same update that zeroes {@code quantity}; while present the bucket
+     * takes no increments.
+     */
+    private Integer draining;
+
+    /** Id of a move from the record into this bucket that may not have landed yet. */
+    private String pendingTransfer;
+
+    /** Moves out of this bucket onto the record that the record may not have taken yet. */
+    private List<Inventory.Transfer> transfers;
+
+    /**
+     * Time of the latest write not yet handed to the record's
+     * {@code unpublishedAt}; see {@code ChangeOutbox.UNPUBLISHED}.
+     */
+    @Indexed(sparse = true)
+    private Instant unpublishedAt;
+
+    public InventoryBucket() {
+    }
+
+    public InventoryBucket(String itemId, int bucket, int quantity) {
+        this.itemId = itemId;
+        this.bucket = bucket;
+        this.quantity = quantity;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(String itemId) {
+        this.itemId = itemId;
+    }
+
+    public int getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(int bucket) {
+        this.bucket = bucket;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public String getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(String generation) {
+        this.generation = generation;
+    }
+
+    public Integer getDraining() {
+        return draining;
+    }
+
+    public void setDraining(Integer draining) {
+        this.draining = draining;
+    }
+
+    public String getPendingTransfer() {
+        return pendingTransfer;
+    }
+
+    public void setPendingTransfer(String pendingTransfer) {
+        this.pendingTransfer = pendingTransfer;
+    }
+
+    public List<Inventory.Transfer> getTransfers() {
+        return transfers;
+    }
+
+    public void setTransfers(List<Inventory.Transfer> transfers) {
+        this.transfers = transfers;
+    }
+
+    public Instant getUnpublishedAt() {
+        return unpublishedAt;
+    }
+
+    public void setUnpublishedAt(Instant unpublishedAt) {
+        this.unpublishedAt = unpublishedAt;
+    }
+}
@@ -0,0 +1,142 @@
+package com.codebase.itemservice.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A time-limited claim on stock for a basket. The hold is written as
+ * PENDING before any stock is taken and becomes ACTIVE once the units
+ * have been taken from {@link Inventory#getQuantity()}, so the available
+ * quantity already excludes every active hold. A hold ends in one of
+ * three ways: it is committed (the units are sold), released (the units
+ * go back) or it expires and the sweeper gives the units back. Settled
+ * holds are purged by a TTL index on {@code closedAt}.
+ */
+@Document(collection = "inventory_holds")
+@CompoundIndex(name = "status_expiresAt", def = "{'status': 1, 'expiresAt': 1}")
+public class InventoryHold {
+
+    public enum Status {
+        PENDING,
+        ACTIVE,
+        COMMITTED,
+        RELEASED,
+        EXPIRED
+    }
+
+    @Id
+    private String id;
+
+    private List<Line> lines = new ArrayList<>();
+
+    private Status status;
+
+    private Instant createdAt;
+
+    private Instant expiresAt;
+
+    /**
+     * Set once the hold no longer owns or owes stock: when it is
+     * committed, or when a released or expired hold has handed its units
+     * back. Only settled holds carry the field, so the TTL index never
+     * removes a hold that still owns stock or has yet to return it.
+     */
+    @Indexed(name = "closedAt_ttl", expireAfter = "7d")
+    private Instant closedAt;
+
+    public InventoryHold() {
+    }
+
+    public InventoryHold(List<Line> lines, Instant createdAt, Instant expiresAt) {
+        this.lines = lines;
+        this.status = Status.PENDING;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<Line> lines) {
+        this.lines = lines;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public Instant getClosedAt() {
+        return closedAt;
+    }
+
+    public void setClosedAt(Instant closedAt) {
+        this.closedAt = closedAt;
+    }
+
+    /**
+     * Units of one item held by this hold.
+     */
+    public static class Line {
+        private String itemId;
+        private int quantity;
+
+        public Line() {
+        }
+
+        public Line(String itemId, int quantity) {
+            this.itemId = itemId;
+            this.quantity = quantity;
+        }
+
+        public String getItemId() {
+            return itemId;
+        }
+
+        public void setItemId(String itemId) {
+            this.itemId = itemId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.codebase.itemservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,9 +18,11 @@ import java.util.List;
  * their flexible schema; new attributes can be added without schema
  * migrations. An item stores descriptive metadata as well as the
  * universal product code (UPC) and a base price. The item id is
- * generated by MongoDB.
+ * generated by MongoDB. The {@code price_id} index backs the keyset
+ * paginated catalogue listing.
  */
 @Document(collection = "items")
+@CompoundIndex(name = "price_id", def = "{'price': 1, '_id': 1}")
 public class Item {
 
     @Id
@@ -42,6 +48,21 @@ public class Item {
     @NotNull
     private Double price;
 
+    /**
+     * Incremented on every write. Saves are checked against it
+     * (optimistic locking) and it backs the ETag of item reads.
+     */
+    @Version
+    private Long version;
+
+    /**
+     * Time of the latest change not yet published, written by the save
+     * that changes the item; see {@code ChangeOutbox.UNPUBLISHED}.
+     */
+    @JsonIgnore
+    @Indexed(sparse = true)
+    private Instant unpublishedAt;
+
     public Item() {
     }
 
@@ -55,6 +76,18 @@ public class Item {
         this.price = price;
     }
 
+    /**
+     * Copy of {@code other}, including id and version, with its own
+     * picture list.
+     */
+    public Item(Item other) {
+        this(other.name, other.description,
+                other.pictureUrls == null ? null : new ArrayList<>(other.pictureUrls), other.upc, other.price);
+        this.id = other.id;
+        this.version = other.version;
+        this.unpublishedAt = other.unpublishedAt;
+    }
+
     public String getId() {
         return id;
     }
@@ -102,4 +135,20 @@ public class Item {
     public void setPrice(Double price) {
         this.price = price;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getUnpublishedAt() {
+        return unpublishedAt;
+    }
+
+    public void setUnpublishedAt(Instant unpublishedAt) {
+        this.unpublishedAt = unpublishedAt;
+    }
 }
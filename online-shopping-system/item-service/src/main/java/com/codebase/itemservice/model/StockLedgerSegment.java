@@ -0,0 +1,82 @@
+package com.codebase.itemservice.model;
+
+import com.codebase.itemservice.model.Inventory.Movement;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A run of stock movements compacted out of an {@link Inventory}
+ * record. Segments of an item are numbered from 0 in append order. The
+ * unique index lets a compaction that died half-way be repeated without
+ * duplicating a segment.
+ */
+@Document(collection = "stock_ledger")
+@CompoundIndex(name = "itemId_segment", def = "{'itemId': 1, 'segment': 1}", unique = true)
+public class StockLedgerSegment {
+
+    @Id
+    private String id;
+
+    private String itemId;
+
+    private int segment;
+
+    private List<Movement> movements = new ArrayList<>();
+
+    private Instant createdAt;
+
+    public StockLedgerSegment() {
+    }
+
+    public StockLedgerSegment(String itemId, int segment, List<Movement> movements, Instant createdAt) {
+        this.itemId = itemId;
+        this.segment = segment;
+        this.movements = movements;
+        this.createdAt = createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(String itemId) {
+        this.itemId = itemId;
+    }
+
+    public int getSegment() {
+        return segment;
+    }
+
+    public void setSegment(int segment) {
+        this.segment = segment;
+    }
+
+    public List<Movement> getMovements() {
+        return movements;
+    }
+
+    public void setMovements(List<Movement> movements) {
+        this.movements = movements;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
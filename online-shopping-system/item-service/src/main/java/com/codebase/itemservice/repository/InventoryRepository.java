@@ -2,6 +2,7 @@ package com.codebase.itemservice.repository;
 
 import com.codebase.itemservice.model.Inventory;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import java.util.Optional;
 
@@ -11,6 +12,13 @@ import java.util.Optional;
  * MongoRepository exposes standard CRUD operations.
  */
 public interface InventoryRepository extends MongoRepository<Inventory, String> {
+
+    /**
+     * The record without its ledger tail and idempotency keys; write
+     * it back with a targeted update, never with {@code save}.
+     */
+    @Query(value = "{ 'itemId': ?0 }", fields = "{ 'movements': 0, 'appliedKeys': 0 }")
     Optional<Inventory> findByItemId(String itemId);
+
     void deleteByItemId(String itemId);
 }
\ No newline at end of file
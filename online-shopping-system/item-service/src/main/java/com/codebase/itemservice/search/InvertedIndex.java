@@ -0,0 +1,175 @@
+package com.codebase.itemservice.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over item names and descriptions with BM25
+ * ranking. Name terms count {@link #NAME_BOOST} times so that a match in
+ * the name outranks the same match buried in a description. The last
+ * query term may be expanded as a prefix for autocomplete, using a
+ * sorted term dictionary so expansion is a range lookup rather than a
+ * scan. Top-K selection keeps a bounded min-heap of size K.
+ *
+ * <p>Reads share a lock and writes take it exclusively; updates are
+ * rare compared with keystroke searches.</p>
+ */
+public class InvertedIndex {
+
+    static final int NAME_BOOST = 2;
+    static final int MAX_PREFIX_EXPANSIONS = 50;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /** term -> (itemId -> term frequency) */
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    /** sorted term dictionary for prefix lookups */
+    private final NavigableSet<String> dictionary = new TreeSet<>();
+    private final Map<String, Doc> docs = new HashMap<>();
+    private long totalLength;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private record Doc(String name, Map<String, Integer> terms, int length) {
+    }
+
+    /**
+     * Add or replace the entry for an item.
+     */
+    public void put(String itemId, String name, String description) {
+        Map<String, Integer> terms = new HashMap<>();
+        for (String t : Tokenizer.tokenize(name)) {
+            terms.merge(t, NAME_BOOST, Integer::sum);
+        }
+        for (String t : Tokenizer.tokenize(description)) {
+            terms.merge(t, 1, Integer::sum);
+        }
+        int length = terms.values().stream().mapToInt(Integer::intValue).sum();
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(itemId);
+            docs.put(itemId, new Doc(name, terms, length));
+            totalLength += length;
+            terms.forEach((term, tf) -> {
+                postings.computeIfAbsent(term, k -> new HashMap<>()).put(itemId, tf);
+                dictionary.add(term);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop an item from the index. Unknown ids are ignored.
+     */
+    public void remove(String itemId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(itemId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rank items against a free-text query.
+     *
+     * @param query  free text
+     * @param limit  maximum number of hits
+     * @param prefix expand the last query term as a prefix (autocomplete)
+     * @return hits ordered by descending score
+     */
+    public List<SearchHit> search(String query, int limit, boolean prefix) {
+        List<String> tokens = Tokenizer.tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (docs.isEmpty()) {
+                return List.of();
+            }
+            Set<String> terms = new LinkedHashSet<>(tokens);
+            if (prefix) {
+                String last = tokens.get(tokens.size() - 1);
+                dictionary.subSet(last, true, last + Character.MAX_VALUE, false).stream()
+                        .limit(MAX_PREFIX_EXPANSIONS)
+                        .forEach(terms::add);
+            }
+
+            int n = docs.size();
+            double avgLength = (double) totalLength / n;
+            Map<String, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<String, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (n - posting.size() + 0.5) / (posting.size() + 0.5));
+                posting.forEach((itemId, tf) -> {
+                    int len = docs.get(itemId).length();
+                    double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * len / avgLength));
+                    scores.merge(itemId, idf * norm, Double::sum);
+                });
+            }
+
+            Comparator<Map.Entry<String, Double>> byScore = Map.Entry.comparingByValue();
+            PriorityQueue<Map.Entry<String, Double>> top = new PriorityQueue<>(limit + 1, byScore);
+            for (Map.Entry<String, Double> e : scores.entrySet()) {
+                top.offer(e);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            List<SearchHit> hits = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                Map.Entry<String, Double> e = top.poll();
+                hits.add(new SearchHit(e.getKey(), docs.get(e.getKey()).name(), e.getValue()));
+            }
+            Collections.reverse(hits);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(String itemId) {
+        Doc old = docs.remove(itemId);
+        if (old == null) {
+            return;
+        }
+        totalLength -= old.length();
+        for (String term : old.terms().keySet()) {
+            Map<String, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(itemId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                    dictionary.remove(term);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.codebase.itemservice.search;
+
+import com.codebase.itemservice.model.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Keeps an {@link InvertedIndex} of the catalogue in memory so that
+ * search and autocomplete never go to MongoDB. The index is loaded once
+ * the application is ready by streaming only the indexed fields, and
+ * {@code ItemService} keeps it current on create, update and delete.
+ */
+@Service
+public class ItemSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemSearchService.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final InvertedIndex index = new InvertedIndex();
+
+    @Value("${item.search.max-results:50}")
+    private int maxResults = 50;
+
+    public ItemSearchService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Query q = new Query();
+        q.fields().include("name").include("description");
+        try (Stream<Item> items = mongoTemplate.stream(q, Item.class)) {
+            items.forEach(this::index);
+        }
+        log.info("Search index built with {} items in {} ms", index.size(), System.currentTimeMillis() - start);
+    }
+
+    public void index(Item item) {
+        index.put(item.getId(), item.getName(), item.getDescription());
+    }
+
+    public void remove(String itemId) {
+        index.remove(itemId);
+    }
+
+    /**
+     * Search the catalogue.
+     *
+     * @param query  free text
+     * @param limit  requested number of hits, capped at the configured maximum
+     * @param prefix treat the last term as a prefix (autocomplete)
+     * @return hits ordered by descending relevance
+     */
+    public List<SearchHit> search(String query, int limit, boolean prefix) {
+        return index.search(query, Math.min(limit, maxResults), prefix);
+    }
+}
@@ -0,0 +1,9 @@
+package com.codebase.itemservice.search;
+
+/**
+ * A ranked search result. Only the id and name are kept in the index;
+ * callers that need the full item can resolve ids through the batch
+ * lookup endpoint.
+ */
+public record SearchHit(String itemId, String name, double score) {
+}
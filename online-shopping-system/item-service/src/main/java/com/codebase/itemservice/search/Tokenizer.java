@@ -0,0 +1,41 @@
+package com.codebase.itemservice.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits free text into index terms: accents are folded, everything is
+ * lower-cased and any run of characters that are not letters or digits
+ * separates two terms.
+ */
+final class Tokenizer {
+
+    private Tokenizer() {
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                current.append(c);
+            } else if (current.length() > 0) {
+                terms.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) {
+            terms.add(current.toString());
+        }
+        return terms;
+    }
+}
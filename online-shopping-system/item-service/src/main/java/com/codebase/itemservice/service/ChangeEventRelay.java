@@ -0,0 +1,356 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.event.ItemChangedEvent;
+import com.codebase.itemservice.event.StockChangedEvent;
+import com.codebase.itemservice.model.ChangeOutboxEntry;
+import com.codebase.itemservice.model.ChangeOutboxEntry.Kind;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.InventoryBucket;
+import com.codebase.itemservice.model.Item;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import static com.codebase.itemservice.service.ChangeOutbox.UNPUBLISHED;
+
+/**
+ * Publishes the changes recorded by {@link ChangeOutbox} to Kafka. Each
+ * run first hands the marks of written stock buckets to their inventory
+ * record, then claims up to {@code item.events.batch-size} marked
+ * records and items, oldest change first, and reads the pending deletion
+ * entries. Only then is the state of the claimed documents loaded. Every
+ * record is sent without waiting and the producer is flushed once.
+ *
+ * <p>A claim is a lease of {@code item.events.claim-lease} written on the
+ * document, so two replicas relaying at once never load and publish the
+ * same document: an older state cannot overtake a newer one. The mark is
+ * cleared only if the document still has the version that was loaded; a
+ * change made during the publish bumps the version and keeps it marked
+ * for the next run. For a record, a bucket change handed over meanwhile
+ * does the same through its hand-over count. The events carry that version as well, so a consumer
+ * can drop one that a slow producer delivered late.</p>
+ *
+ * <p>Sending stops at the first record the producer refuses outright
+ * (no broker metadata within {@code max.block.ms}); the rest of the batch
+ * stays marked for the next run instead of each waiting out the same
+ * timeout. Both topics are compacted and keyed by item id, so an event
+ * always carries the full current state and re-sending one is
+ * harmless.</p>
+ *
+ * <p>Meters: {@code item.events.published} and {@code item.events.failed}
+ * per topic, and {@code item.events.delivery.lag} from the change to
+ * its acknowledgement.</p>
+ */
+@Service
+public class ChangeEventRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeEventRelay.class);
+
+    /** Relay run holding a document; see {@link #claim}. */
+    static final String CLAIM = "relayClaim";
+
+    /** End of the lease of {@link #CLAIM}. */
+    static final String CLAIM_UNTIL = "relayClaimUntil";
+
+    /** Bucket changes handed to a record; see {@link #handOverBuckets}. */
+    static final String HAND_OVERS = "relayHandOvers";
+
+    private static final Update CLEAR = new Update().unset(UNPUBLISHED).unset(CLAIM).unset(CLAIM_UNTIL);
+
+    private final MongoTemplate mongoTemplate;
+    private final StripedInventoryService stripedInventory;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Timer deliveryLag;
+
+    @Value("${kafka.topic.item-changes:item-changes}")
+    private String itemTopic = "item-changes";
+
+    @Value("${kafka.topic.stock-changes:stock-changes}")
+    private String stockTopic = "stock-changes";
+
+    @Value("${item.events.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${item.events.send-timeout:PT10S}")
+    private Duration sendTimeout = Duration.ofSeconds(10);
+
+    @Value("${item.events.claim-lease:PT1M}")
+    private Duration claimLease = Duration.ofMinutes(1);
+
+    public ChangeEventRelay(MongoTemplate mongoTemplate, StripedInventoryService stripedInventory,
+                            KafkaTemplate<String, Object> kafkaTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.stripedInventory = stripedInventory;
+        this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+        this.deliveryLag = Timer.builder("item.events.delivery.lag")
+                .description("Time from a change to the acknowledgement of its event")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publish pending changes in batches until nothing is left or a batch
+     * gets no acknowledgement at all (broker unavailable).
+     *
+     * @return number of events acknowledged
+     */
+    @Scheduled(fixedDelayString = "${item.events.flush-interval-ms:1000}")
+    public int relay() {
+        int total = 0;
+        while (true) {
+            handOverBuckets();
+            String claim = new ObjectId().toHexString();
+            List<Inventory> records = claim(Inventory.class, Inventory::getId, claim,
+                    "itemId", "quantity", "stripes", "version", HAND_OVERS, UNPUBLISHED);
+            List<Item> items = claim(Item.class, Item::getId, claim);
+            List<ChangeOutboxEntry> deletions = mongoTemplate.find(new Query(Criteria.where("pending").is(true))
+                    .with(Sort.by("changedAt")).limit(batchSize), ChangeOutboxEntry.class);
+            if (records.isEmpty() && items.isEmpty() && deletions.isEmpty()) {
+                break;
+            }
+            int acked = publish(claim, records, items, deletions);
+            total += acked;
+            boolean full = records.size() == batchSize || items.size() == batchSize || deletions.size() == batchSize;
+            if (acked == 0 || !full) {
+                break;
+            }
+        }
+        if (total > 0) {
+            log.debug("Published {} change events", total);
+        }
+        return total;
+    }
+
+    /**
+     * Hand the marks of written buckets to their record, which carries the
+     * event of a striped item. The record is marked and its hand-over count
+     * bumped first, so a relay that already loaded it cannot clear the mark.
+     * Its version is left alone: that belongs to writes of the record. A
+     * bucket mark is then cleared only if the bucket is unchanged since it
+     * was read; the record's event is loaded after that and so includes it.
+     */
+    void handOverBuckets() {
+        Query written = new Query(Criteria.where(UNPUBLISHED).exists(true)).limit(batchSize);
+        written.fields().include("itemId").include("quantity").include(UNPUBLISHED);
+        List<InventoryBucket> buckets = mongoTemplate.find(written, InventoryBucket.class);
+        if (buckets.isEmpty()) {
+            return;
+        }
+        Map<String, Instant> latest = new LinkedHashMap<>();
+        buckets.forEach(b -> latest.merge(b.getItemId(), b.getUnpublishedAt(), (x, y) -> x.isAfter(y) ? x : y));
+        BulkOperations records = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Inventory.class);
+        latest.forEach((itemId, at) -> records.updateOne(new Query(Criteria.where("itemId").is(itemId)),
+                new Update().max(UNPUBLISHED, at).inc(HAND_OVERS, 1)));
+        records.execute();
+
+        BulkOperations clear = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, InventoryBucket.class);
+        buckets.forEach(b -> clear.updateOne(new Query(Criteria.where("_id").is(b.getId())
+                        .and("quantity").is(b.getQuantity()).and(UNPUBLISHED).is(b.getUnpublishedAt())),
+                new Update().unset(UNPUBLISHED)));
+        clear.execute();
+    }
+
+    /**
+     * Claim up to a batch of marked documents of {@code type} that no
+     * other run holds, then load them.
+     *
+     * @param fields fields to load, or none for the whole document
+     */
+    private <T> List<T> claim(Class<T> type, Function<T, String> idOf, String claim, String... fields) {
+        Instant now = Instant.now();
+        Query due = dueQuery(now, batchSize);
+        due.fields().include("_id");
+        List<String> ids = mongoTemplate.find(due, type).stream().map(idOf).toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Query free = new Query(Criteria.where("_id").in(ids).and(UNPUBLISHED).exists(true)
+                .orOperator(Criteria.where(CLAIM_UNTIL).exists(false), Criteria.where(CLAIM_UNTIL).lt(now)));
+        mongoTemplate.updateMulti(free, new Update().set(CLAIM, claim).set(CLAIM_UNTIL, now.plus(claimLease)), type);
+        Query held = new Query(Criteria.where("_id").in(ids).and(CLAIM).is(claim)).with(Sort.by(UNPUBLISHED));
+        if (fields.length > 0) {
+            held.fields().include(fields);
+        }
+        return mongoTemplate.find(held, type);
+    }
+
+    /** Documents with an unpublished change that no relay run holds, oldest change first. */
+    static Query dueQuery(Instant now, int limit) {
+        return new Query(Criteria.where(UNPUBLISHED).exists(true)
+                .orOperator(Criteria.where(CLAIM_UNTIL).exists(false), Criteria.where(CLAIM_UNTIL).lt(now)))
+                .with(Sort.by(UNPUBLISHED))
+                .limit(limit);
+    }
+
+    private int publish(String claim, List<Inventory> records, List<Item> items, List<ChangeOutboxEntry> deletions) {
+        Instant now = Instant.now();
+        List<Outgoing> batch = new ArrayList<>(records.size() + items.size() + deletions.size());
+        for (Inventory inv : records) {
+            int quantity = inv.getQuantity() == null ? 0 : inv.getQuantity();
+            if (StripedInventoryService.isStriped(inv)) {
+                quantity += stripedInventory.total(inv.getItemId());
+            }
+            long handOvers = inv.getRelayHandOvers() == null ? 0 : inv.getRelayHandOvers();
+            // both counters only grow and every change bumps one of them, so their sum orders the events
+            long version = (inv.getVersion() == null ? 0 : inv.getVersion()) + handOvers;
+            Query done = published(inv.getId(), claim, inv.getVersion())
+                    .addCriteria(Criteria.where(HAND_OVERS).is(inv.getRelayHandOvers()));
+            batch.add(new Outgoing(stockTopic, inv.getItemId(),
+                    new StockChangedEvent(inv.getItemId(), quantity, version, now), inv.getUnpublishedAt(),
+                    Inventory.class, done, CLEAR));
+        }
+        for (Item item : items) {
+            batch.add(new Outgoing(itemTopic, item.getId(), ItemChangedEvent.of(item, now), item.getUnpublishedAt(),
+                    Item.class, published(item.getId(), claim, item.getVersion()), CLEAR));
+        }
+        batch.addAll(tombstones(deletions));
+
+        List<CompletableFuture<SendResult<String, Object>>> sends = new ArrayList<>(batch.size());
+        for (Outgoing o : batch) {
+            CompletableFuture<SendResult<String, Object>> send = send(o.topic(), o.itemId(), o.value());
+            sends.add(send);
+            if (send.isCompletedExceptionally()) {
+                log.warn("Producer refused a change event, leaving {} for the next run", batch.size() - sends.size());
+                break;
+            }
+        }
+        kafkaTemplate.flush();
+
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        Map<Class<?>, BulkOperations> clears = new LinkedHashMap<>();
+        int acked = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Outgoing o = batch.get(i);
+            if (i >= sends.size() || !delivered(sends.get(i), o, deadline)) {
+                meterRegistry.counter("item.events.failed", "topic", o.topic()).increment();
+                continue;
+            }
+            meterRegistry.counter("item.events.published", "topic", o.topic()).increment();
+            if (o.changedAt() != null) {
+                deliveryLag.record(Duration.between(o.changedAt(), Instant.now()));
+            }
+            clears.computeIfAbsent(o.source(), type -> mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type))
+                    .updateOne(o.done(), o.clear());
+            acked++;
+        }
+        clears.values().forEach(BulkOperations::execute);
+        // whatever was not cleared (failed, or changed while publishing) is free for the next run again
+        release(Inventory.class, records.stream().map(Inventory::getId).toList(), claim);
+        release(Item.class, items.stream().map(Item::getId).toList(), claim);
+        return acked;
+    }
+
+    /** The claimed document, unless it changed since it was loaded. */
+    private static Query published(String id, String claim, Long version) {
+        return new Query(Criteria.where("_id").is(id).and(CLAIM).is(claim).and("version").is(version));
+    }
+
+    private void release(Class<?> type, List<String> ids, String claim) {
+        if (!ids.isEmpty()) {
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids).and(CLAIM).is(claim)),
+                    new Update().unset(CLAIM).unset(CLAIM_UNTIL), type);
+        }
+    }
+
+    /**
+     * Tombstones for deleted documents. A deletion entry whose document
+     * exists again is not published: the document is marked instead, so
+     * its current state goes out through a claim.
+     */
+    private List<Outgoing> tombstones(List<ChangeOutboxEntry> deletions) {
+        if (deletions.isEmpty()) {
+            return List.of();
+        }
+        Set<String> liveItems = existing(Item.class, "_id", deletions, Kind.ITEM, Item::getId);
+        Set<String> liveStock = existing(Inventory.class, "itemId", deletions, Kind.STOCK, Inventory::getItemId);
+        List<Outgoing> tombstones = new ArrayList<>(deletions.size());
+        for (ChangeOutboxEntry e : deletions) {
+            boolean item = e.getKind() == Kind.ITEM;
+            Query entry = new Query(Criteria.where("_id").is(e.getId()).and("seq").is(e.getSeq()));
+            Update done = new Update().set("pending", false);
+            if ((item ? liveItems : liveStock).contains(e.getItemId())) {
+                mongoTemplate.updateFirst(new Query(Criteria.where(item ? "_id" : "itemId").is(e.getItemId())),
+                        new Update().currentDate(UNPUBLISHED), item ? Item.class : Inventory.class);
+                mongoTemplate.updateFirst(entry, done, ChangeOutboxEntry.class);
+                continue;
+            }
+            tombstones.add(new Outgoing(item ? itemTopic : stockTopic, e.getItemId(), null, e.getChangedAt(),
+                    ChangeOutboxEntry.class, entry, done));
+        }
+        return tombstones;
+    }
+
+    private <T> Set<String> existing(Class<T> type, String key, List<ChangeOutboxEntry> deletions, Kind kind,
+                                     Function<T, String> idOf) {
+        List<String> ids = deletions.stream().filter(e -> e.getKind() == kind).map(ChangeOutboxEntry::getItemId).toList();
+        Set<String> live = new HashSet<>();
+        if (!ids.isEmpty()) {
+            Query q = new Query(Criteria.where(key).in(ids));
+            q.fields().include(key);
+            mongoTemplate.find(q, type).forEach(doc -> live.add(idOf.apply(doc)));
+        }
+        return live;
+    }
+
+    /** A null value is sent as a tombstone, which compaction uses to drop the key. */
+    private CompletableFuture<SendResult<String, Object>> send(String topic, String itemId, Object value) {
+        try {
+            return kafkaTemplate.send(topic, itemId, value);
+        } catch (RuntimeException e) {
+            // e.g. no metadata within max.block.ms
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /** Wait for one acknowledgement; the whole batch shares {@code deadline}. */
+    private boolean delivered(CompletableFuture<SendResult<String, Object>> send, Outgoing o, long deadline) {
+        try {
+            send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (ExecutionException | TimeoutException ex) {
+            log.warn("Could not publish change of item {} to {}: {}", o.itemId(), o.topic(), ex.getMessage());
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * One event of a batch and how to clear its mark once acknowledged.
+     *
+     * @param source collection holding the mark
+     * @param done   the marked document, as long as the mark may be cleared
+     */
+    private record Outgoing(String topic, String itemId, Object value, Instant changedAt, Class<?> source,
+                            Query done, Update clear) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.model.ChangeOutboxEntry;
+import com.codebase.itemservice.model.ChangeOutboxEntry.Kind;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+/**
+ * Records catalogue and stock changes for {@link ChangeEventRelay}.
+ *
+ * <p>A change to an item, an inventory record or a stock bucket sets
+ * {@link #UNPUBLISHED} on that document in the same update that changes
+ * it, so a change can never be applied without being marked and no extra
+ * document is written. The event payload is read by the relay when it
+ * publishes, so a burst of decrements on one item produces one event.</p>
+ *
+ * <p>A deleted document cannot carry the mark. Deletes upsert the item's
+ * {@link ChangeOutboxEntry} instead, right after the delete; the
+ * standalone MongoDB has no transactions to tie the two together. A
+ * failed mark is logged and counted but never fails the delete.</p>
+ */
+@Service
+public class ChangeOutbox {
+
+    /**
+     * Time of the latest change not yet published. Set by every write to
+     * an {@code Item}, {@code Inventory} record or {@code InventoryBucket},
+     * and unset by the relay once the event for it was acknowledged.
+     */
+    public static final String UNPUBLISHED = "unpublishedAt";
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeOutbox.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final Counter markFailures;
+
+    public ChangeOutbox(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.markFailures = Counter.builder("item.events.outbox.failures")
+                .description("Changes that could not be recorded in the outbox")
+                .register(meterRegistry);
+    }
+
+    public void itemDeleted(String itemId) {
+        mark(Kind.ITEM, itemId);
+    }
+
+    public void stockDeleted(String itemId) {
+        mark(Kind.STOCK, itemId);
+    }
+
+    private void mark(Kind kind, String itemId) {
+        try {
+            mongoTemplate.upsert(byId(kind, itemId), pendingUpdate(kind, itemId), ChangeOutboxEntry.class);
+        } catch (DataAccessException e) {
+            markFailures.increment();
+            log.warn("Could not record deletion of {} {} in the outbox: {}", kind, itemId, e.getMessage());
+        }
+    }
+
+    static Query byId(Kind kind, String itemId) {
+        return new Query(Criteria.where("_id").is(ChangeOutboxEntry.idOf(kind, itemId)));
+    }
+
+    static Update pendingUpdate(Kind kind, String itemId) {
+        return new Update()
+                .set("itemId", itemId)
+                .set("kind", kind)
+                .set("pending", true)
+                .set("changedAt", Instant.now())
+                .inc("seq", 1);
+    }
+}
@@ -0,0 +1,262 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.dto.ReservationResult;
+import com.codebase.itemservice.dto.StockLine;
+import com.codebase.itemservice.exception.ConflictException;
+import com.codebase.itemservice.exception.InsufficientStockException;
+import com.codebase.itemservice.exception.NotFoundException;
+import com.codebase.itemservice.model.InventoryHold;
+import com.codebase.itemservice.model.InventoryHold.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Places, commits and releases time-limited inventory holds. Placing a
+ * hold takes the units with the keyed all-or-nothing path of
+ * {@link InventoryService#reserveAll(List, String)}; committing keeps them
+ * and releasing gives them back. Holds that are neither committed nor
+ * released before {@code expiresAt} are returned to stock by
+ * {@link #sweepExpired()}.
+ *
+ * <p>Every state change is a conditional update on {@code status}, so a
+ * hold is closed exactly once even when a commit, a release and the
+ * sweeper race for it. No step leaves stock that nothing records: the
+ * hold is written as PENDING before the units are taken, and a released
+ * or expired hold is only marked settled after its units are back. Units
+ * are taken and returned under keys derived from the hold id, so the
+ * sweeper can finish either step after a crash without taking or
+ * returning anything twice.</p>
+ */
+@Service
+public class InventoryHoldService {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryHoldService.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final InventoryService inventoryService;
+    private final Clock clock;
+
+    @Value("${inventory.holds.default-ttl:PT10M}")
+    private Duration defaultTtl = Duration.ofMinutes(10);
+
+    @Value("${inventory.holds.max-ttl:PT1H}")
+    private Duration maxTtl = Duration.ofHours(1);
+
+    @Value("${inventory.holds.sweep-batch-size:200}")
+    private int sweepBatchSize = 200;
+
+    @Autowired
+    public InventoryHoldService(MongoTemplate mongoTemplate, InventoryService inventoryService) {
+        this(mongoTemplate, inventoryService, Clock.systemUTC());
+    }
+
+    InventoryHoldService(MongoTemplate mongoTemplate, InventoryService inventoryService, Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.inventoryService = inventoryService;
+        this.clock = clock;
+    }
+
+    /**
+     * Record a PENDING hold that expires after the given TTL, take the
+     * units for its basket and activate it. A placement that fails after
+     * the hold was written hands it to the sweeper as EXPIRED; one cut
+     * short by a crash leaves it PENDING, and the sweeper settles it once
+     * it expires.
+     *
+     * @param lines      basket lines
+     * @param ttlSeconds requested lifetime, or null for the default
+     * @return the active hold
+     * @throws InsufficientStockException when any line is short; no stock is kept
+     */
+    public InventoryHold place(List<StockLine> lines, Long ttlSeconds) {
+        Duration ttl = ttlSeconds == null ? defaultTtl : Duration.ofSeconds(ttlSeconds);
+        if (ttl.compareTo(maxTtl) > 0) {
+            ttl = maxTtl;
+        }
+        Instant now = clock.instant();
+        List<InventoryHold.Line> held = InventoryService.merge(lines).entrySet().stream()
+                .map(e -> new InventoryHold.Line(e.getKey(), e.getValue()))
+                .toList();
+        InventoryHold hold = mongoTemplate.insert(new InventoryHold(held, now, now.plus(ttl)));
+
+        ReservationResult result;
+        try {
+            result = inventoryService.reserveAll(stockLines(hold), reservationKey(hold.getId()));
+        } catch (RuntimeException e) {
+            // hand it to the sweeper now rather than at expiry; if this fails too, expiry still gets it there
+            try {
+                close(pending(hold.getId()), new Update().set("status", Status.EXPIRED));
+            } catch (RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        if (!result.isReserved()) {
+            // the reservation handed back what it took, so the hold owes nothing
+            close(pending(hold.getId()), new Update().set("status", Status.RELEASED).set("closedAt", now));
+            throw new InsufficientStockException(result);
+        }
+        InventoryHold active = close(pending(hold.getId()), new Update().set("status", Status.ACTIVE));
+        if (active == null) {
+            // the sweeper expired it first and gives the units back
+            throw notActive(hold.getId());
+        }
+        return active;
+    }
+
+    /**
+     * Keep the units of an active hold. Fails with 409 once the hold has
+     * expired, even if the sweeper has not reached it yet.
+     */
+    public InventoryHold commit(String holdId) {
+        Instant now = clock.instant();
+        Query q = new Query(Criteria.where("_id").is(holdId)
+                .and("status").is(Status.ACTIVE)
+                .and("expiresAt").gt(now));
+        InventoryHold hold = close(q, new Update().set("status", Status.COMMITTED).set("closedAt", now));
+        if (hold == null) {
+            throw notActive(holdId);
+        }
+        return hold;
+    }
+
+    /**
+     * Give the units of an active hold back to stock.
+     */
+    public InventoryHold release(String holdId) {
+        Query q = new Query(Criteria.where("_id").is(holdId).and("status").is(Status.ACTIVE));
+        InventoryHold hold = close(q, new Update().set("status", Status.RELEASED));
+        if (hold == null) {
+            throw notActive(holdId);
+        }
+        return returnStock(hold);
+    }
+
+    /**
+     * Expire holds past {@code expiresAt} and return the stock of every
+     * released or expired hold that has not been settled yet, in batches.
+     * Each hold is claimed individually (PENDING or ACTIVE -> EXPIRED), so
+     * a concurrent commit or release cannot also close it. Returning
+     * stock is keyed per hold and item, so sweepers on several replicas,
+     * or a sweeper finishing a release that crashed, return the units
+     * once.
+     *
+     * @return number of holds whose stock was returned
+     */
+    @Scheduled(fixedDelayString = "${inventory.holds.sweep-interval-ms:30000}")
+    public int sweepExpired() {
+        int expired = 0;
+        while (true) {
+            Instant now = clock.instant();
+            Query due = new Query(Criteria.where("status").in(Status.PENDING, Status.ACTIVE).and("expiresAt").lte(now))
+                    .limit(sweepBatchSize);
+            due.fields().include("_id");
+            List<InventoryHold> candidates = mongoTemplate.find(due, InventoryHold.class);
+            for (InventoryHold c : candidates) {
+                Query claim = new Query(Criteria.where("_id").is(c.getId()).and("status").in(Status.PENDING, Status.ACTIVE));
+                if (close(claim, new Update().set("status", Status.EXPIRED)) != null) {
+                    expired++;
+                }
+            }
+            if (candidates.size() < sweepBatchSize) {
+                break;
+            }
+        }
+
+        // paged by id, so a hold that cannot be settled now does not hold up the ones after it
+        int returned = 0;
+        String after = null;
+        while (true) {
+            Criteria owedCriteria = Criteria.where("status").in(Status.RELEASED, Status.EXPIRED).and("closedAt").exists(false);
+            if (after != null) {
+                owedCriteria = owedCriteria.and("_id").gt(after);
+            }
+            Query owed = new Query(owedCriteria).with(Sort.by("_id")).limit(sweepBatchSize);
+            List<InventoryHold> unsettled = mongoTemplate.find(owed, InventoryHold.class);
+            for (InventoryHold hold : unsettled) {
+                try {
+                    returnStock(hold);
+                    returned++;
+                } catch (RuntimeException e) {
+                    log.error("Could not return the stock of hold {}, retrying on the next sweep", hold.getId(), e);
+                }
+            }
+            if (unsettled.size() < sweepBatchSize) {
+                break;
+            }
+            after = unsettled.get(unsettled.size() - 1).getId();
+        }
+        if (returned > 0) {
+            log.info("Returned stock for {} inventory holds ({} newly expired)", returned, expired);
+        }
+        return returned;
+    }
+
+    /**
+     * Hand the units of a released or expired hold back, then mark it
+     * settled. The hold's keyed reservation is replayed first: it is
+     * answered from its key when the units were taken and settles an
+     * interrupted placement otherwise, so the keyed increments that follow
+     * return exactly what the hold took.
+     */
+    private InventoryHold returnStock(InventoryHold hold) {
+        if (inventoryService.reserveAll(stockLines(hold), reservationKey(hold.getId())).isReserved()) {
+            for (InventoryHold.Line line : hold.getLines()) {
+                try {
+                    inventoryService.increment(line.getItemId(), line.getQuantity(), releaseKey(hold.getId(), line.getItemId()));
+                } catch (NotFoundException e) {
+                    log.warn("Item {} of hold {} no longer has inventory, its units are dropped", line.getItemId(), hold.getId());
+                }
+            }
+        }
+        Instant now = clock.instant();
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(hold.getId()).and("closedAt").exists(false)),
+                new Update().set("closedAt", now), InventoryHold.class);
+        hold.setClosedAt(now);
+        return hold;
+    }
+
+    private InventoryHold close(Query q, Update u) {
+        return mongoTemplate.findAndModify(q, u, FindAndModifyOptions.options().returnNew(true), InventoryHold.class);
+    }
+
+    private static Query pending(String holdId) {
+        return new Query(Criteria.where("_id").is(holdId).and("status").is(Status.PENDING));
+    }
+
+    /** Idempotency key under which a hold takes its units. */
+    static String reservationKey(String holdId) {
+        return "hold-" + holdId;
+    }
+
+    /** Idempotency key under which a hold gives back its units of one item. */
+    static String releaseKey(String holdId, String itemId) {
+        return "hold-" + holdId + "-release-" + itemId;
+    }
+
+    private RuntimeException notActive(String holdId) {
+        if (!mongoTemplate.exists(new Query(Criteria.where("_id").is(holdId)), InventoryHold.class)) {
+            return new NotFoundException("Hold not found with id: " + holdId);
+        }
+        return new ConflictException("Hold is no longer active: " + holdId);
+    }
+
+    private static List<StockLine> stockLines(InventoryHold hold) {
+        return hold.getLines().stream().map(l -> new StockLine(l.getItemId(), l.getQuantity())).toList();
+    }
+}
@@ -1,9 +1,33 @@
 package com.codebase.itemservice.service;
 
+import com.codebase.itemservice.cache.SingleFlight;
+import com.codebase.itemservice.dto.AdjustmentReport;
+import com.codebase.itemservice.dto.ImportReport.RowError;
+import com.codebase.itemservice.dto.ReservationResult;
+import com.codebase.itemservice.dto.ReservationResult.LineResult;
+import com.codebase.itemservice.dto.ReservationResult.LineStatus;
+import com.codebase.itemservice.dto.StockAdjustment;
+import com.codebase.itemservice.dto.StockLine;
+import com.codebase.itemservice.event.StockAlertEvent;
 import com.codebase.itemservice.exception.NotFoundException;
+import com.codebase.itemservice.model.IdempotencyRecord;
 import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.Inventory.Movement;
+import com.codebase.itemservice.model.Inventory.MovementType;
 import com.codebase.itemservice.repository.InventoryRepository;
-import com.mongodb.client.result.UpdateResult;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -13,7 +37,21 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.function.Supplier;
 
 
@@ -25,49 +63,102 @@ import java.util.function.Supplier;
 @Service
 public class InventoryService {
 
+    private static final Logger logger = LoggerFactory.getLogger(InventoryService.class);
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    private static final ObjectReader ADJUSTMENT_READER = new ObjectMapper()
+            .readerFor(StockAdjustment.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
     private final InventoryRepository inventoryRepository;
     private final MongoTemplate mongoTemplate;
+    private final StripedInventoryService stripedInventory;
+    private final StockAlertPublisher alertPublisher;
+    private final ChangeOutbox changeOutbox;
+
+    @Value("${inventory.adjustments.batch-size:1000}")
+    private int adjustmentBatchSize = 1000;
+
+    @Value("${inventory.adjustments.max-errors:1000}")
+    private int adjustmentMaxErrors = 1000;
 
-    public InventoryService(InventoryRepository inventoryRepository, MongoTemplate mongoTemplate) {
+    @Value("${inventory.idempotency.keys-per-item:50}")
+    private int keysPerItem = 50;
+
+    /** Concurrent reads of the same item's stock share one lookup. */
+    private SingleFlight<String, Optional<Inventory>> lookups = new SingleFlight<>(64, Duration.ofSeconds(5));
+
+    public InventoryService(InventoryRepository inventoryRepository, MongoTemplate mongoTemplate,
+                            StripedInventoryService stripedInventory, StockAlertPublisher alertPublisher,
+                            ChangeOutbox changeOutbox) {
         this.inventoryRepository = inventoryRepository;
         this.mongoTemplate = mongoTemplate;
+        this.stripedInventory = stripedInventory;
+        this.alertPublisher = alertPublisher;
+        this.changeOutbox = changeOutbox;
+    }
+
+    @Autowired
+    void configureLookups(@Value("${inventory.lookups.stripes:64}") int stripes,
+                          @Value("${inventory.lookups.max-wait:PT5S}") Duration maxWait) {
+        this.lookups = new SingleFlight<>(stripes, maxWait);
     }
 
     public Inventory createInventory(String itemId, int quantity) {
-        Inventory inventory = new Inventory(itemId, quantity);
-        return inventoryRepository.save(inventory);
+        return inventoryRepository.save(new Inventory(itemId, quantity));
     }
 
     /**
      * Look up the inventory for a given item. If no record exists,
-     * returns an empty optional.
+     * returns an empty optional. For a striped item the returned
+     * quantity is the sum over its buckets. Concurrent reads for the same
+     * item are coalesced into a single lookup; each caller gets its own
+     * copy of the result.
      *
      * @param itemId the id of the item
      * @return optional inventory
      */
     public Optional<Inventory> getInventoryForItem(String itemId) {
-        return inventoryRepository.findByItemId(itemId);
+        return lookups.execute(itemId, () -> inventoryRepository.findByItemId(itemId).map(inv -> {
+            if (StripedInventoryService.isStriped(inv)) {
+                inv.setQuantity(inv.getQuantity() + stripedInventory.total(itemId));
+            }
+            return inv;
+        })).map(Inventory::new);
     }
 
     /**
-     * Update the inventory quantity for a given item. If the
-     * inventory record does not exist, it will be created.
+     * Update the inventory quantity for a given item. The quantity and
+     * its MANUAL_SET movement are written in one targeted update, so the
+     * ledger tail is neither read nor rewritten. For a striped item the
+     * buckets are set instead.
      *
      * @param itemId   the id of the item
      * @param quantity the new quantity
      * @return updated inventory
+     * @throws NotFoundException if the item has no inventory record
      */
     @Transactional
     public Inventory updateInventory(String itemId, int quantity) {
+        Inventory updated = mongoTemplate.findAndModify(setQuery(itemId), setUpdate(quantity), RETURN_NEW, Inventory.class);
+        if (updated != null) {
+            return updated;
+        }
         Inventory inventory = inventoryRepository.findByItemId(itemId)
                 .orElseThrow(() -> new NotFoundException("Inventory not found for itemId: " + itemId));
+        if (!StripedInventoryService.isStriped(inventory)) {
+            throw new OptimisticLockingFailureException("Inventory of item " + itemId + " was unstriped meanwhile");
+        }
+        stripedInventory.set(itemId, inventory.getStripes(), quantity);
         inventory.setQuantity(quantity);
-        return inventoryRepository.save(inventory);
+        return inventory;
     }
 
     @Transactional
     public void deleteByItemId(String itemId) {
         inventoryRepository.deleteByItemId(itemId);
+        changeOutbox.stockDeleted(itemId);
     }
 
     /**
@@ -76,20 +167,698 @@ public class InventoryService {
      */
     @Transactional
     public boolean decrementIfEnough(String itemId, int req) {
-        Query q = new Query(Criteria.where("itemId").is(itemId).and("quantity").gte(req));
-        Update u = new Update().inc("quantity", -req);
-        UpdateResult r = mongoTemplate.updateFirst(q, u, Inventory.class);
-        return r.getModifiedCount() == 1;
+        return decrement(itemId, req).isPresent();
+    }
+
+    /**
+     * Take {@code req} units in one conditional {@code findAndModify}
+     * that returns the document as written. The reported quantity is
+     * exactly what this call left behind, even under concurrency. For a
+     * striped item the buckets are decremented and the quantity is read
+     * straight after, counted the same way as {@link #getInventoryForItem}.
+     *
+     * @return the quantity after the decrement, or empty if there was not enough stock
+     */
+    public OptionalInt decrement(String itemId, int req) {
+        int stripes = stripedInventory.knownStripes(itemId);
+        if (stripes > 0) {
+            return decrementStriped(itemId, stripes, req);
+        }
+        Query q = decrementQuery(itemId, req);
+        Update u = new Update().inc("quantity", -req).inc("version", 1).currentDate(ChangeOutbox.UNPUBLISHED)
+                .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.delta(MovementType.ORDER_DECREMENT, -req, null));
+        Inventory updated = mongoTemplate.findAndModify(q, u, RETURN_NEW, Inventory.class);
+        if (updated != null) {
+            alertOnCrossing(itemId, updated, req);
+            return OptionalInt.of(updated.getQuantity());
+        }
+        // the item may have been striped by another replica since our last refresh
+        return inventoryRepository.findByItemId(itemId)
+                .filter(StripedInventoryService::isStriped)
+                .map(inv -> decrementStriped(itemId, inv.getStripes(), req))
+                .orElse(OptionalInt.empty());
+    }
+
+    /**
+     * Mutations only need the new quantity back (and the threshold to
+     * check it against), not the ledger tail and key list.
+     */
+    static Query quantityOnly(Query query) {
+        query.fields().include("quantity").include("reorderThreshold");
+        return query;
+    }
+
+    /**
+     * Reads of the stock leave out the ledger tail and the key list,
+     * which can hold thousands of entries. A record read this way must
+     * not be saved back whole.
+     */
+    static Query withoutLedger(Query query) {
+        query.fields().exclude("movements").exclude("appliedKeys");
+        return query;
+    }
+
+    /** Absolute set by {@link #updateInventory}: the record, unless its stock lives in buckets. */
+    static Query setQuery(String itemId) {
+        return withoutLedger(new Query(Criteria.where("itemId").is(itemId).and("stripes").not().gt(0)));
+    }
+
+    static Update setUpdate(int quantity) {
+        return new Update().set("quantity", quantity).inc("version", 1).currentDate(ChangeOutbox.UNPUBLISHED)
+                .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.set(MovementType.MANUAL_SET, quantity, null));
+    }
+
+    /** The stripe count and, if {@code key} was applied, its entry alone out of the key list. */
+    static Query appliedKeyQuery(String itemId, String key) {
+        Query q = new Query(Criteria.where("itemId").is(itemId));
+        q.fields().include("stripes").elemMatch("appliedKeys", Criteria.where("key").is(key));
+        return q;
+    }
+
+    // Filters of the inventory write paths, shared with ReactiveInventoryService
+    // and checked against the indexes by InventoryQueryPlanTest.
+
+    /** Unkeyed decrement: the record with at least {@code req} units. */
+    static Query decrementQuery(String itemId, int req) {
+        return quantityOnly(new Query(Criteria.where("itemId").is(itemId).and("quantity").gte(req)));
+    }
+
+    /** Unkeyed increment: the record, unless its stock lives in buckets. */
+    static Query incrementQuery(String itemId) {
+        return quantityOnly(new Query(Criteria.where("itemId").is(itemId).and("stripes").not().gt(0)));
+    }
+
+    /**
+     * Keyed change: the unstriped record that has not seen {@code key}
+     * yet, holding at least {@code atLeast} units when that is not null.
+     */
+    static Query keyedQuery(String itemId, String key, Integer atLeast) {
+        Criteria filter = Criteria.where("itemId").is(itemId).and("stripes").not().gt(0)
+                .and("appliedKeys.key").ne(key);
+        if (atLeast != null) {
+            filter = filter.and("quantity").gte(atLeast);
+        }
+        return quantityOnly(new Query(filter));
+    }
+
+    /** Which of {@code itemIds} are striped, for the bulk increment. */
+    static Query stripedAmong(Collection<String> itemIds) {
+        Query q = new Query(Criteria.where("itemId").in(itemIds).and("stripes").gt(0));
+        q.fields().include("itemId").include("stripes");
+        return q;
     }
 
-    // increment：if not exist, return exception
+    /** Which of {@code itemIds} have a record, for the adjustment feed. */
+    static Query existingAmong(Collection<String> itemIds) {
+        Query q = new Query(Criteria.where("itemId").in(itemIds));
+        q.fields().include("itemId").include("stripes");
+        return q;
+    }
+
+    /** Feed decrement of {@code take} units: {@code atLeast} true takes them, false clamps to zero. */
+    static Query feedTakeQuery(String itemId, int take, boolean atLeast) {
+        Criteria quantity = Criteria.where("itemId").is(itemId).and("quantity");
+        return new Query(atLeast ? quantity.gte(take) : quantity.lt(take));
+    }
+
+    /**
+     * Raise a stock alert if the decrement that wrote {@code updated}
+     * took the stock across the item's reorder threshold or to zero.
+     * The quantity before is derived from the document the same atomic
+     * update returned, so each crossing is seen by exactly one decrement
+     * and no scan is needed.
+     */
+    void alertOnCrossing(String itemId, Inventory updated, int taken) {
+        int after = updated.getQuantity();
+        StockAlertEvent alert = StockAlertEvent.crossing(itemId, after + taken, after, updated.getReorderThreshold());
+        if (alert != null) {
+            alertPublisher.publish(alert);
+        }
+    }
+
+    /**
+     * Bucket decrement of a striped item. The stock is read after the
+     * decrement rather than returned by it, so the crossing check runs on
+     * that read and a decrement racing another may miss or share an alert.
+     */
+    private OptionalInt decrementStriped(String itemId, int stripes, int req) {
+        if (!stripedInventory.tryDecrement(itemId, stripes, req)) {
+            return OptionalInt.empty();
+        }
+        Inventory after = stripedStock(itemId);
+        alertOnCrossing(itemId, after, req);
+        return OptionalInt.of(after.getQuantity());
+    }
+
+    /**
+     * Stock of a striped item as {@link #getInventoryForItem} reports it:
+     * the units parked on its record plus the sum of its buckets, with the
+     * record's reorder threshold.
+     */
+    private Inventory stripedStock(String itemId) {
+        Inventory stock = mongoTemplate.findOne(quantityOnly(new Query(Criteria.where("itemId").is(itemId))), Inventory.class);
+        if (stock == null) {
+            stock = new Inventory(itemId, 0);
+        }
+        stock.setQuantity(parked(stock) + stripedInventory.total(itemId));
+        return stock;
+    }
+
+    /** Units on the record of a striped item, waiting to move into its buckets. */
+    static int parked(Inventory record) {
+        return record.getQuantity() == null ? 0 : record.getQuantity();
+    }
+
+    /**
+     * Set the level at or below which a decrement raises a LOW_STOCK
+     * alert. A null threshold turns low-stock alerts off; stock-out
+     * alerts are always raised.
+     *
+     * @throws NotFoundException if the item has no inventory record
+     */
+    public void setReorderThreshold(String itemId, Integer threshold) {
+        if (threshold != null && threshold < 0) {
+            throw new IllegalArgumentException("Reorder threshold must not be negative");
+        }
+        Update u = threshold == null ? new Update().unset("reorderThreshold") : new Update().set("reorderThreshold", threshold);
+        if (mongoTemplate.updateFirst(new Query(Criteria.where("itemId").is(itemId)), u, Inventory.class).getMatchedCount() == 0) {
+            throw new NotFoundException("Inventory not found for itemId: " + itemId);
+        }
+    }
+
+    /**
+     * Add {@code qty} units in one {@code findAndModify} and return the
+     * quantity as written. The filter skips striped records, whose
+     * quantity lives in buckets; those fall back to a bucket increment.
+     *
+     * @return the quantity after the increment
+     * @throws NotFoundException if the item has no inventory record
+     */
     @Transactional
     public int increment(String itemId, int qty) {
+        int stripes = stripedInventory.knownStripes(itemId);
+        if (stripes > 0) {
+            return incrementStriped(itemId, stripes, qty);
+        }
+        Query q = incrementQuery(itemId);
+        Update u = new Update().inc("quantity", qty).inc("version", 1).currentDate(ChangeOutbox.UNPUBLISHED)
+                .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.delta(MovementType.CANCEL_INCREMENT, qty, null));
+        Inventory updated = mongoTemplate.findAndModify(q, u, RETURN_NEW, Inventory.class);
+        if (updated != null) {
+            return updated.getQuantity();
+        }
         Inventory inv = inventoryRepository.findByItemId(itemId)
                 .orElseThrow(() -> new NotFoundException("Inventory not found for itemId: " + itemId));
-        Query q = new Query(Criteria.where("itemId").is(itemId));
-        Update u = new Update().inc("quantity", qty);
-        mongoTemplate.updateFirst(q, u, Inventory.class);
-        return inv.getQuantity() + qty;
+        return incrementStriped(itemId, inv.getStripes(), qty);
+    }
+
+    private int incrementStriped(String itemId, int stripes, int qty) {
+        stripedInventory.increment(itemId, stripes, qty);
+        return stripedStock(itemId).getQuantity();
+    }
+
+    /**
+     * {@link #decrement(String, int)} that applies at most once per
+     * idempotency key. A repeated key gets the quantity the first call
+     * left behind. A null key means no deduplication.
+     *
+     * @throws IllegalArgumentException if the key was used for a different request
+     */
+    public OptionalInt decrement(String itemId, int req, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return decrement(itemId, req);
+        }
+        return applyOnce(idempotencyKey, itemId, "decrement", req);
+    }
+
+    /**
+     * {@link #increment(String, int)} that applies at most once per
+     * idempotency key, see {@link #decrement(String, int, String)}.
+     */
+    public int increment(String itemId, int qty, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return increment(itemId, qty);
+        }
+        return applyOnce(idempotencyKey, itemId, "increment", qty)
+                .orElseThrow(() -> new NotFoundException("Inventory not found for itemId: " + itemId));
+    }
+
+    /**
+     * Keyed stock mutation. The key is checked and pushed onto the
+     * record's {@code appliedKeys} in the same pipeline update that
+     * changes the quantity, so a duplicate that races past the
+     * {@link IdempotencyRecord} lookup still cannot apply twice. The
+     * record is written afterwards to answer retries that arrive after
+     * the key has aged out of the capped list.
+     *
+     * <p>Striped items keep their stock in buckets and are only
+     * deduplicated through the record.</p>
+     */
+    private OptionalInt applyOnce(String key, String itemId, String operation, int amount) {
+        IdempotencyRecord previous = mongoTemplate.findById(key, IdempotencyRecord.class);
+        if (previous != null) {
+            return replay(previous, itemId, operation, amount);
+        }
+        boolean decrement = "decrement".equals(operation);
+        int stripes = stripedInventory.knownStripes(itemId);
+        if (stripes > 0) {
+            return remember(key, itemId, operation, amount, applyStriped(itemId, stripes, amount, decrement));
+        }
+
+        Inventory updated = mongoTemplate.findAndModify(keyedQuery(itemId, key, decrement ? amount : null),
+                keyedUpdate(decrement ? -amount : amount, key,
+                        decrement ? MovementType.ORDER_DECREMENT : MovementType.CANCEL_INCREMENT),
+                RETURN_NEW, Inventory.class);
+        if (updated != null) {
+            if (decrement) {
+                alertOnCrossing(itemId, updated, amount);
+            }
+            return remember(key, itemId, operation, amount, OptionalInt.of(updated.getQuantity()));
+        }
+
+        // not applied: a duplicate, a striped record, not enough stock or no record at all
+        Inventory inv = mongoTemplate.findOne(appliedKeyQuery(itemId, key), Inventory.class);
+        if (inv == null) {
+            return OptionalInt.empty();
+        }
+        Optional<Inventory.AppliedKey> applied = inv.getAppliedKeys() == null ? Optional.empty()
+                : inv.getAppliedKeys().stream().filter(k -> key.equals(k.getKey())).findFirst();
+        if (applied.isPresent()) {
+            return OptionalInt.of(applied.get().getQuantity());
+        }
+        if (StripedInventoryService.isStriped(inv)) {
+            return remember(key, itemId, operation, amount, applyStriped(itemId, inv.getStripes(), amount, decrement));
+        }
+        return OptionalInt.empty();
+    }
+
+    private OptionalInt applyStriped(String itemId, int stripes, int amount, boolean decrement) {
+        if (decrement) {
+            return decrementStriped(itemId, stripes, amount);
+        }
+        return OptionalInt.of(incrementStriped(itemId, stripes, amount));
+    }
+
+    static OptionalInt replay(IdempotencyRecord previous, String itemId, String operation, int amount) {
+        if (!previous.matches(itemId, operation, amount)) {
+            throw new IllegalArgumentException("Idempotency-Key was already used for a different request");
+        }
+        return OptionalInt.of(previous.getResult());
+    }
+
+    /** Record a successful keyed mutation; a concurrent duplicate may have written it first. */
+    private OptionalInt remember(String key, String itemId, String operation, int amount, OptionalInt result) {
+        if (result.isPresent()) {
+            try {
+                mongoTemplate.insert(new IdempotencyRecord(key, itemId, operation, amount, result.getAsInt(), Instant.now()));
+            } catch (DuplicateKeyException ignored) {
+                // same outcome already recorded
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pipeline update adding {@code delta} to the quantity, appending
+     * the key with the resulting quantity to the capped
+     * {@code appliedKeys} list and the ledger movement to
+     * {@code movements}. Every field reference reads the document as it
+     * was before the update.
+     */
+    AggregationUpdate keyedUpdate(int delta, String key, MovementType type) {
+        Document newQuantity = new Document("$add", List.of("$quantity", delta));
+        Document entry = new Document("key", key).append("quantity", newQuantity).append("at", "$$NOW");
+        Document keys = new Document("$slice", List.of(
+                new Document("$concatArrays", List.of(
+                        new Document("$ifNull", List.of("$appliedKeys", List.of())), List.of(entry))),
+                -keysPerItem));
+        Document movement = new Document("type", type.name()).append("delta", delta)
+                .append("ref", key).append("at", "$$NOW");
+        Document movements = new Document("$slice", List.of(
+                new Document("$concatArrays", List.of(
+                        new Document("$ifNull", List.of("$movements", List.of())), List.of(movement))),
+                -StockLedgerService.MAX_TAIL));
+        Document set = new Document("quantity", newQuantity)
+                .append("version", new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0L)), 1L)))
+                .append("appliedKeys", keys)
+                .append("movements", movements)
+                .append(ChangeOutbox.UNPUBLISHED, "$$NOW");
+        return AggregationUpdate.from(List.of(context -> new Document("$set", set)));
+    }
+
+    /**
+     * Reserve a whole basket in one call. Lines for the same item are
+     * merged, then each item is taken with the same conditional
+     * {@code $inc} as {@link #decrementIfEnough}. As soon as one line
+     * cannot be satisfied the lines already taken are handed back with a
+     * single unordered bulk write, so the caller either gets every line
+     * or none of them.
+     *
+     * <p>A multi-document transaction would need a replica set, which the
+     * standalone MongoDB used by this service does not provide; the
+     * compensation runs server-side and is not swallowed.</p>
+     *
+     * @param lines basket lines
+     * @return overall outcome plus a result for every (merged) line
+     */
+    public ReservationResult reserveAll(List<StockLine> lines) {
+        Map<String, Integer> wanted = merge(lines);
+
+        List<LineResult> results = new ArrayList<>(wanted.size());
+        boolean failed = false;
+        try {
+            for (Map.Entry<String, Integer> e : wanted.entrySet()) {
+                if (failed) {
+                    results.add(new LineResult(e.getKey(), e.getValue(), LineStatus.SKIPPED));
+                } else if (decrementIfEnough(e.getKey(), e.getValue())) {
+                    results.add(new LineResult(e.getKey(), e.getValue(), LineStatus.RESERVED));
+                } else {
+                    results.add(new LineResult(e.getKey(), e.getValue(), LineStatus.INSUFFICIENT));
+                    failed = true;
+                }
+            }
+        } catch (RuntimeException e) {
+            // hand back what was taken before the failure; the failing line's own outcome is unknown
+            rollback(results);
+            throw e;
+        }
+
+        if (failed) {
+            rollback(results);
+        }
+        return new ReservationResult(!failed, results);
+    }
+
+    /**
+     * {@link #reserveAll(List)} that applies at most once per idempotency
+     * key. Every line is taken with a keyed decrement under
+     * {@link #lineKey}, so a retry never takes a line twice. A short
+     * basket is recorded under the key before anything is handed back;
+     * the give-back then replays each line's keyed decrement and returns
+     * the units under {@link #rollbackKey}. A retry of a short basket
+     * therefore answers the same shortage and finishes an interrupted
+     * give-back instead of reserving again. A call that fails midway
+     * keeps what it took; retry it with the same key to settle it. A null
+     * key means no deduplication.
+     *
+     * @throws IllegalArgumentException if the key was used for a different basket
+     */
+    public ReservationResult reserveAll(List<StockLine> lines, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return reserveAll(lines);
+        }
+        Map<String, Integer> wanted = merge(lines);
+        IdempotencyRecord previous = mongoTemplate.findById(idempotencyKey, IdempotencyRecord.class);
+        if (previous != null) {
+            return replayReservation(previous, idempotencyKey, wanted);
+        }
+
+        int index = 0;
+        for (Map.Entry<String, Integer> e : wanted.entrySet()) {
+            if (decrement(e.getKey(), e.getValue(), lineKey(idempotencyKey, e.getKey())).isEmpty()) {
+                break;
+            }
+            index++;
+        }
+        int shortAt = index == wanted.size() ? -1 : index;
+        try {
+            mongoTemplate.insert(new IdempotencyRecord(idempotencyKey, basketOf(wanted), "reserve", wanted.size(),
+                    shortAt, Instant.now()));
+        } catch (DuplicateKeyException e) {
+            // a concurrent duplicate settled the key first; follow its outcome
+            return replayReservation(mongoTemplate.findById(idempotencyKey, IdempotencyRecord.class), idempotencyKey, wanted);
+        }
+        if (shortAt < 0) {
+            return reservationOutcome(wanted, -1);
+        }
+        giveBack(idempotencyKey, wanted);
+        return reservationOutcome(wanted, shortAt);
+    }
+
+    private ReservationResult replayReservation(IdempotencyRecord previous, String key, Map<String, Integer> wanted) {
+        if (!previous.matches(basketOf(wanted), "reserve", wanted.size())) {
+            throw new IllegalArgumentException("Idempotency-Key was already used for a different request");
+        }
+        if (previous.getResult() >= 0) {
+            giveBack(key, wanted);
+        }
+        return reservationOutcome(wanted, previous.getResult());
+    }
+
+    /**
+     * Hand back every line a keyed reservation may hold. Each line's keyed
+     * decrement is replayed first: it is answered from the key when the
+     * line was taken and takes the units now when it was not, so the keyed
+     * increment that follows returns exactly what the key holds.
+     */
+    private void giveBack(String key, Map<String, Integer> wanted) {
+        wanted.forEach((itemId, qty) -> {
+            if (decrement(itemId, qty, lineKey(key, itemId)).isPresent()) {
+                increment(itemId, qty, rollbackKey(key, itemId));
+            }
+        });
+    }
+
+    static Map<String, Integer> merge(List<StockLine> lines) {
+        Map<String, Integer> wanted = new LinkedHashMap<>();
+        for (StockLine line : lines) {
+            wanted.merge(line.getItemId(), line.getQuantity(), Integer::sum);
+        }
+        return wanted;
+    }
+
+    /** Key of one line of a keyed basket reservation. */
+    static String lineKey(String key, String itemId) {
+        return key + ":" + itemId;
+    }
+
+    /** Key under which a line of a short keyed basket is handed back. */
+    static String rollbackKey(String key, String itemId) {
+        return key + ":" + itemId + ":rollback";
+    }
+
+    /** Canonical text of a merged basket, recorded to tell a reused key apart. */
+    static String basketOf(Map<String, Integer> wanted) {
+        StringBuilder sb = new StringBuilder();
+        wanted.forEach((itemId, qty) -> sb.append(sb.isEmpty() ? "" : ",").append(itemId).append('x').append(qty));
+        return sb.toString();
+    }
+
+    /**
+     * Result of a keyed reservation: every line RESERVED when
+     * {@code shortAt} is negative, otherwise the lines before it rolled
+     * back, the line at it short and the rest skipped.
+     */
+    static ReservationResult reservationOutcome(Map<String, Integer> wanted, int shortAt) {
+        List<LineResult> results = new ArrayList<>(wanted.size());
+        int index = 0;
+        for (Map.Entry<String, Integer> e : wanted.entrySet()) {
+            LineStatus status = shortAt < 0 ? LineStatus.RESERVED
+                    : index < shortAt ? LineStatus.ROLLED_BACK
+                    : index == shortAt ? LineStatus.INSUFFICIENT : LineStatus.SKIPPED;
+            results.add(new LineResult(e.getKey(), e.getValue(), status));
+            index++;
+        }
+        return new ReservationResult(shortAt < 0, results);
+    }
+
+    /** Give back every RESERVED line in one bulk write and mark it ROLLED_BACK. */
+    private void rollback(List<LineResult> results) {
+        List<LineResult> taken = results.stream()
+                .filter(r -> r.getStatus() == LineStatus.RESERVED)
+                .toList();
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        taken.forEach(r -> quantities.merge(r.getItemId(), r.getQuantity(), Integer::sum));
+        incrementAll(quantities);
+        taken.forEach(r -> r.setStatus(LineStatus.ROLLED_BACK));
+    }
+
+    /**
+     * Add stock to several items with one unordered bulk write. Used to
+     * hand units back after a failed reservation or a released hold.
+     *
+     * @param quantities units to add, keyed by item id
+     */
+    public void incrementAll(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        // striped items keep their stock in buckets, so route them separately
+        Map<String, Integer> remaining = new LinkedHashMap<>(quantities);
+        for (Inventory inv : mongoTemplate.find(stripedAmong(quantities.keySet()), Inventory.class)) {
+            stripedInventory.increment(inv.getItemId(), inv.getStripes(), remaining.remove(inv.getItemId()));
+        }
+        if (!remaining.isEmpty()) {
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Inventory.class);
+            remaining.forEach((itemId, qty) -> ops.updateOne(
+                    new Query(Criteria.where("itemId").is(itemId)),
+                    new Update().inc("quantity", qty).inc("version", 1).currentDate(ChangeOutbox.UNPUBLISHED)
+                            .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.delta(MovementType.CANCEL_INCREMENT, qty, null))));
+            ops.execute();
+        }
+    }
+
+    /**
+     * Apply a warehouse stock feed of one JSON {@link StockAdjustment}
+     * per line. Records are coalesced per item while the body is read:
+     * an absolute quantity replaces everything before it and later deltas
+     * are added on top. Each item then costs one write, and the writes go
+     * out as bulk operations of {@code inventory.adjustments.batch-size}
+     * items. Before each chunk is written, one {@code $in} query finds the
+     * ids that have no inventory record and the items that are striped.
+     *
+     * <p>Levels never drop below zero. A negative delta larger than the
+     * stock on hand leaves the item at zero. An item whose deltas add up
+     * to more than an int can hold is rejected at its last line.</p>
+     *
+     * @param in request body
+     * @return counts, missing ids and rejected lines
+     */
+    public AdjustmentReport adjustAll(InputStream in) throws IOException {
+        long start = System.nanoTime();
+        AdjustmentReport report = new AdjustmentReport();
+        Map<String, PendingAdjustment> pending = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                StockAdjustment adjustment;
+                try {
+                    adjustment = ADJUSTMENT_READER.readValue(line);
+                } catch (IOException e) {
+                    rejectAdjustment(report, lineNo, "Malformed record: " + e.getMessage());
+                    continue;
+                }
+                String problem = validate(adjustment);
+                if (problem != null) {
+                    rejectAdjustment(report, lineNo, problem);
+                    continue;
+                }
+                report.setReceived(report.getReceived() + 1);
+                pending.computeIfAbsent(adjustment.getItemId(), id -> new PendingAdjustment()).merge(adjustment, lineNo);
+            }
+        }
+
+        List<String> ids = new ArrayList<>(pending.keySet());
+        for (int from = 0; from < ids.size(); from += adjustmentBatchSize) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + adjustmentBatchSize));
+            applyAdjustments(chunk, pending, report);
+        }
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        logger.info("Applied {} stock records to {} items ({} missing, {} rejected) in {} ms", report.getReceived(),
+                report.getAdjusted(), report.getMissing().size(), report.getFailed(), report.getElapsedMillis());
+        return report;
+    }
+
+    private static String validate(StockAdjustment adjustment) {
+        if (adjustment.getItemId() == null || adjustment.getItemId().isBlank()) {
+            return "itemId is required";
+        }
+        if ((adjustment.getDelta() == null) == (adjustment.getQuantity() == null)) {
+            return "exactly one of delta or quantity is required";
+        }
+        if (adjustment.getQuantity() != null && adjustment.getQuantity() < 0) {
+            return "quantity must not be negative";
+        }
+        return null;
+    }
+
+    private void rejectAdjustment(AdjustmentReport report, long lineNo, String message) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < adjustmentMaxErrors) {
+            report.getErrors().add(new RowError(lineNo, message));
+        }
+    }
+
+    private void applyAdjustments(List<String> chunk, Map<String, PendingAdjustment> pending,
+                                  AdjustmentReport report) {
+        Map<String, Inventory> found = new HashMap<>();
+        mongoTemplate.find(existingAmong(chunk), Inventory.class).forEach(inv -> found.put(inv.getItemId(), inv));
+
+        // ordered so that the clamp-to-zero write of an item runs before its conditional $inc
+        BulkOperations ops = null;
+        for (String itemId : chunk) {
+            Inventory inv = found.get(itemId);
+            if (inv == null) {
+                report.getMissing().add(itemId);
+                continue;
+            }
+            PendingAdjustment adj = pending.get(itemId);
+            if (!adj.fits()) {
+                rejectAdjustment(report, adj.lastLine, "net delta of item " + itemId + " is out of range");
+                continue;
+            }
+            if (StripedInventoryService.isStriped(inv)) {
+                adjustStriped(itemId, inv.getStripes(), adj);
+                report.setAdjusted(report.getAdjusted() + 1);
+                continue;
+            }
+            if (ops == null) {
+                ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Inventory.class);
+            }
+            Query byItem = new Query(Criteria.where("itemId").is(itemId));
+            if (adj.absolute != null) {
+                int level = adj.clampedTotal(adj.absolute);
+                ops.updateOne(byItem, new Update().set("quantity", level).inc("version", 1).currentDate(ChangeOutbox.UNPUBLISHED)
+                        .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.set(MovementType.BULK_ADJUST, level, null)));
+            } else if (adj.delta >= 0) {
+                int add = Math.toIntExact(adj.delta);
+                ops.updateOne(byItem, new Update().inc("quantity", add).inc("version", 1).currentDate(ChangeOutbox.UNPUBLISHED)
+                        .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.delta(MovementType.BULK_ADJUST, add, null)));
+            } else {
+                int take = Math.toIntExact(-adj.delta);
+                ops.updateOne(feedTakeQuery(itemId, take, false),
+                        new Update().set("quantity", 0).inc("version", 1).currentDate(ChangeOutbox.UNPUBLISHED)
+                                .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.set(MovementType.BULK_ADJUST, 0, null)));
+                ops.updateOne(feedTakeQuery(itemId, take, true),
+                        new Update().inc("quantity", -take).inc("version", 1).currentDate(ChangeOutbox.UNPUBLISHED)
+                                .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.delta(MovementType.BULK_ADJUST, -take, null)));
+            }
+            report.setAdjusted(report.getAdjusted() + 1);
+        }
+        if (ops != null) {
+            ops.execute();
+        }
+    }
+
+    private void adjustStriped(String itemId, int stripes, PendingAdjustment adj) {
+        if (adj.absolute != null) {
+            stripedInventory.set(itemId, stripes, adj.clampedTotal(adj.absolute));
+        } else if (adj.delta > 0) {
+            stripedInventory.increment(itemId, stripes, Math.toIntExact(adj.delta));
+        } else if (adj.delta < 0 && !stripedInventory.tryDecrement(itemId, stripes, Math.toIntExact(-adj.delta), MovementType.BULK_ADJUST)) {
+            stripedInventory.set(itemId, stripes, 0);
+        }
+    }
+
+    /** Net effect of all feed records for one item. */
+    private static final class PendingAdjustment {
+
+        private Integer absolute;
+        private long delta;
+        private long lastLine;
+
+        void merge(StockAdjustment adjustment, long lineNo) {
+            lastLine = lineNo;
+            if (adjustment.getQuantity() != null) {
+                absolute = adjustment.getQuantity();
+                delta = 0;
+            } else {
+                delta += adjustment.getDelta();
+            }
+        }
+
+        /** Whether the net delta can be applied as an int, added or taken. */
+        boolean fits() {
+            return absolute != null || Math.abs(delta) <= Integer.MAX_VALUE;
+        }
+
+        int clampedTotal(int base) {
+            return (int) Math.max(0, Math.min(Integer.MAX_VALUE, base + delta));
+        }
     }
-}
\ No newline at end of file
+}
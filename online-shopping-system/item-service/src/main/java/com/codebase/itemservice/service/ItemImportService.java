@@ -0,0 +1,366 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.dto.ImportReport;
+import com.codebase.itemservice.dto.ImportReport.RowError;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.Item;
+import com.codebase.itemservice.search.ItemSearchService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Loads catalogue items in bulk. The input is read line by line, so
+ * only one batch of rows is held in memory at a time. Each batch is
+ * written with one unordered bulk insert for the items and one for
+ * their initial inventory. This replaces the two round-trips per item
+ * that {@code POST /items} costs.
+ *
+ * <p>Ids are generated here, so the inventory batch can be built without
+ * reading the items back. An item rejected by the database (typically
+ * a duplicate UPC) is reported against its row and gets no inventory
+ * record.</p>
+ */
+@Service
+public class ItemImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ItemImportService.class);
+
+    private static final List<String> CSV_COLUMNS =
+            List.of("name", "description", "upc", "price", "quantity", "pictureUrls");
+
+    private final MongoTemplate mongoTemplate;
+    private final ItemSearchService searchService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+
+    @Value("${item.import.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${item.import.max-errors:1000}")
+    private int maxErrors = 1000;
+
+    public ItemImportService(MongoTemplate mongoTemplate, ItemSearchService searchService,
+                             Validator validator, ObjectMapper objectMapper) {
+        this.mongoTemplate = mongoTemplate;
+        this.searchService = searchService;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Import one JSON object per line. Fields: name, description,
+     * pictureUrls (array), upc, price and an optional initial quantity.
+     * Blank lines are skipped.
+     *
+     * @param in request body
+     * @return import report
+     */
+    public ImportReport importNdjson(InputStream in) throws IOException {
+        Run run = new Run();
+        try (BufferedReader reader = reader(in)) {
+            String line;
+            long lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                run.report.setRowsRead(run.report.getRowsRead() + 1);
+                try {
+                    run.add(lineNo, fromJson(objectMapper.readTree(line)));
+                } catch (IOException | IllegalArgumentException e) {
+                    run.reject(lineNo, "Malformed row: " + e.getMessage());
+                }
+            }
+        }
+        return run.finish();
+    }
+
+    /**
+     * Import CSV with a header line naming the columns. Recognised
+     * columns are name, description, upc, price, quantity and
+     * pictureUrls (separated by {@code |}). Quoted fields may contain
+     * commas and doubled quotes but not line breaks.
+     *
+     * @param in request body
+     * @return import report
+     */
+    public ImportReport importCsv(InputStream in) throws IOException {
+        Run run = new Run();
+        try (BufferedReader reader = reader(in)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return run.finish();
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            List<String> names = parseCsvLine(header.replace("\uFEFF", ""));
+            for (int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim(), i);
+            }
+            if (!columns.keySet().containsAll(List.of("name", "upc", "price"))) {
+                throw new IllegalArgumentException("CSV header must contain name, upc and price; known columns: "
+                        + CSV_COLUMNS);
+            }
+
+            String line;
+            long lineNo = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                run.report.setRowsRead(run.report.getRowsRead() + 1);
+                try {
+                    run.add(lineNo, fromCsv(parseCsvLine(line), columns));
+                } catch (IllegalArgumentException e) {
+                    run.reject(lineNo, "Malformed row: " + e.getMessage());
+                }
+            }
+        }
+        return run.finish();
+    }
+
+    private static BufferedReader reader(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private Row fromJson(JsonNode node) {
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("expected a JSON object");
+        }
+        Item item = new Item();
+        item.setName(text(node, "name"));
+        item.setDescription(text(node, "description"));
+        item.setUpc(text(node, "upc"));
+        JsonNode price = node.get("price");
+        if (price != null && !price.isNull()) {
+            if (!price.isNumber()) {
+                throw new IllegalArgumentException("price must be a number");
+            }
+            item.setPrice(price.asDouble());
+        }
+        JsonNode pictures = node.get("pictureUrls");
+        if (pictures != null && pictures.isArray()) {
+            List<String> urls = new ArrayList<>();
+            pictures.forEach(p -> urls.add(p.asText()));
+            item.setPictureUrls(urls);
+        }
+        JsonNode quantity = node.get("quantity");
+        if (quantity != null && !quantity.isNull() && !quantity.canConvertToInt()) {
+            throw new IllegalArgumentException("quantity must be an integer");
+        }
+        return new Row(item, quantity == null || quantity.isNull() ? 0 : quantity.asInt());
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static Row fromCsv(List<String> fields, Map<String, Integer> columns) {
+        Item item = new Item();
+        item.setName(column(fields, columns, "name"));
+        item.setDescription(column(fields, columns, "description"));
+        item.setUpc(column(fields, columns, "upc"));
+        item.setPrice(parse(column(fields, columns, "price"), "price", Double::valueOf));
+        String pictures = column(fields, columns, "pictureUrls");
+        if (pictures != null) {
+            item.setPictureUrls(Arrays.stream(pictures.split("\\|"))
+                    .map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList()));
+        }
+        Integer quantity = parse(column(fields, columns, "quantity"), "quantity", Integer::valueOf);
+        return new Row(item, quantity == null ? 0 : quantity);
+    }
+
+    private static String column(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer i = columns.get(name);
+        if (i == null || i >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(i).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static <T> T parse(String value, String field, Function<String, T> parser) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " is not a number: " + value);
+        }
+    }
+
+    /** Split one CSV line, honouring double-quoted fields with {@code ""} escapes. */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private record Row(Item item, int quantity) {
+    }
+
+    /** State of one import: the pending batch and the report being built. */
+    private class Run {
+
+        private final ImportReport report = new ImportReport();
+        private final long startNanos = System.nanoTime();
+        private final List<Row> batch = new ArrayList<>(batchSize);
+        private final List<Long> lineNumbers = new ArrayList<>(batchSize);
+
+        void add(long lineNo, Row row) {
+            Set<ConstraintViolation<Item>> violations = validator.validate(row.item());
+            if (!violations.isEmpty()) {
+                reject(lineNo, violations.stream()
+                        .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+                return;
+            }
+            if (row.quantity() < 0) {
+                reject(lineNo, "quantity must not be negative");
+                return;
+            }
+            batch.add(row);
+            lineNumbers.add(lineNo);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void reject(long lineNo, String message) {
+            report.setFailed(report.getFailed() + 1);
+            if (report.getErrors().size() < maxErrors) {
+                report.getErrors().add(new RowError(lineNo, message));
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Item> items = new ArrayList<>(batch.size());
+            for (Row row : batch) {
+                row.item().setId(new ObjectId().toHexString());
+                row.item().setVersion(0L);
+                row.item().setUnpublishedAt(Instant.now());
+                items.add(row.item());
+            }
+
+            Set<Integer> rejected = new HashSet<>();
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Item.class).insert(items).execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError error : e.getErrors()) {
+                    rejected.add(error.getIndex());
+                    reject(lineNumbers.get(error.getIndex()), error.getMessage());
+                }
+            }
+
+            List<Inventory> inventory = new ArrayList<>(batch.size());
+            List<Integer> rowOf = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                if (rejected.contains(i)) {
+                    continue;
+                }
+                Row row = batch.get(i);
+                Inventory inv = new Inventory(row.item().getId(), row.quantity());
+                inv.setVersion(0L);
+                inventory.add(inv);
+                rowOf.add(i);
+            }
+            Set<Integer> withoutStock = new HashSet<>();
+            if (!inventory.isEmpty()) {
+                try {
+                    mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Inventory.class).insert(inventory).execute();
+                } catch (BulkOperationException e) {
+                    for (BulkWriteError error : e.getErrors()) {
+                        int i = rowOf.get(error.getIndex());
+                        withoutStock.add(i);
+                        reject(lineNumbers.get(i), error.getMessage());
+                    }
+                }
+            }
+            if (!withoutStock.isEmpty()) {
+                // an item without its inventory record must not stay in the catalogue
+                List<String> orphans = withoutStock.stream().map(i -> batch.get(i).item().getId()).toList();
+                mongoTemplate.remove(new Query(Criteria.where("_id").in(orphans)), Item.class);
+            }
+            for (int i : rowOf) {
+                if (!withoutStock.contains(i)) {
+                    searchService.index(batch.get(i).item());
+                }
+            }
+            report.setImported(report.getImported() + inventory.size() - withoutStock.size());
+            batch.clear();
+            lineNumbers.clear();
+        }
+
+        ImportReport finish() {
+            flush();
+            long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+            report.setElapsedMillis(elapsedNanos / 1_000_000);
+            report.setRowsPerSecond(report.getRowsRead() * 1_000_000_000d / elapsedNanos);
+            logger.info("Imported {} of {} rows ({} rejected) in {} ms, {} rows/s", report.getImported(),
+                    report.getRowsRead(), report.getFailed(), report.getElapsedMillis(),
+                    Math.round(report.getRowsPerSecond()));
+            return report;
+        }
+    }
+}
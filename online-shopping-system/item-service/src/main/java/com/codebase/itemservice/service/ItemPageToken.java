@@ -0,0 +1,36 @@
+package com.codebase.itemservice.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position of the last item on a page, encoded as an opaque
+ * URL-safe string. The sort key travels with the position so that a
+ * token cannot be replayed against a listing with a different order.
+ *
+ * @param sort      sort key the token was issued for
+ * @param descending whether the listing runs in descending order
+ * @param lastPrice price of the last item (only for price ordering)
+ * @param lastId    id of the last item, the tie-breaker for every order
+ */
+record ItemPageToken(ItemService.SortKey sort, boolean descending, Double lastPrice, String lastId) {
+
+    private static final String SEP = "|";
+
+    String encode() {
+        String raw = sort.name() + SEP + (descending ? "D" : "A") + SEP
+                + (lastPrice == null ? "" : Double.toString(lastPrice)) + SEP + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ItemPageToken decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            Double price = parts[2].isEmpty() ? null : Double.valueOf(parts[2]);
+            return new ItemPageToken(ItemService.SortKey.valueOf(parts[0]), "D".equals(parts[1]), price, parts[3]);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+    }
+}
@@ -1,13 +1,31 @@
 package com.codebase.itemservice.service;
 
+import com.codebase.itemservice.cache.ItemCache;
+import com.codebase.itemservice.cache.SingleFlight;
+import com.codebase.itemservice.dto.ItemPage;
+import com.codebase.itemservice.dto.ItemSummary;
 import com.codebase.itemservice.model.Item;
 import com.codebase.itemservice.repository.ItemRepository;
+import com.codebase.itemservice.search.ItemSearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Service layer for item operations. All business logic related to
@@ -16,10 +34,39 @@ import java.util.Optional;
 @Service
 public class ItemService {
 
+    /** Orders supported by the catalogue listing; the id always breaks ties. */
+    public enum SortKey {
+        ID,
+        PRICE
+    }
+
+    static final String ITEMS = "items";
+
     private final ItemRepository itemRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ItemSearchService searchService;
+    private final ItemCache itemCache;
+    private final ChangeOutbox changeOutbox;
 
-    public ItemService(ItemRepository itemRepository) {
+    /** Concurrent misses for the same id share one MongoDB query. */
+    private SingleFlight<String, Optional<Item>> lookups = new SingleFlight<>(64, Duration.ofSeconds(5));
+
+    @Value("${item.listing.max-page-size:100}")
+    private int maxPageSize = 100;
+
+    public ItemService(ItemRepository itemRepository, MongoTemplate mongoTemplate,
+                       ItemSearchService searchService, ItemCache itemCache, ChangeOutbox changeOutbox) {
         this.itemRepository = itemRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.searchService = searchService;
+        this.itemCache = itemCache;
+        this.changeOutbox = changeOutbox;
+    }
+
+    @Autowired
+    void configureLookups(@Value("${item.cache.lookups.stripes:64}") int stripes,
+                          @Value("${item.cache.lookups.max-wait:PT5S}") Duration maxWait) {
+        this.lookups = new SingleFlight<>(stripes, maxWait);
     }
 
     /**
@@ -32,24 +79,180 @@ public class ItemService {
     }
 
     /**
-     * Find an item by its identifier.
+     * Read one page of the catalogue using keyset pagination. Instead of
+     * skipping over earlier pages, the query resumes strictly after the
+     * last (price, id) or id seen, so every page costs the same index
+     * range scan no matter how deep the client has paged. The compound
+     * {@code price_id} index on {@link Item} serves both orders and the
+     * optional price range.
+     *
+     * @param minPrice   inclusive lower price bound, or null
+     * @param maxPrice   inclusive upper price bound, or null
+     * @param sort       sort key
+     * @param descending sort direction
+     * @param limit      requested page size, capped at the configured maximum
+     * @param after      continuation token from the previous page, or null
+     * @return page of items and the token for the next one
+     */
+    public ItemPage findPage(Double minPrice, Double maxPrice, SortKey sort, boolean descending,
+                             int limit, String after) {
+        int size = pageSize(limit);
+        List<Item> items = mongoTemplate.find(pageQuery(minPrice, maxPrice, sort, descending, size, after), Item.class);
+        return toPage(items, size, sort, descending);
+    }
+
+    int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, maxPageSize));
+    }
+
+    /** One more row than the page size is read to tell whether a next page exists. */
+    static Query pageQuery(Double minPrice, Double maxPrice, SortKey sort, boolean descending, int size, String after) {
+        List<Criteria> filters = new ArrayList<>();
+        if (minPrice != null) {
+            filters.add(Criteria.where("price").gte(minPrice));
+        }
+        if (maxPrice != null) {
+            filters.add(Criteria.where("price").lte(maxPrice));
+        }
+        if (after != null && !after.isBlank()) {
+            ItemPageToken token = ItemPageToken.decode(after);
+            if (token.sort() != sort || token.descending() != descending) {
+                throw new IllegalArgumentException("Page token does not match the requested sort");
+            }
+            filters.add(seekAfter(token));
+        }
+
+        Sort.Direction dir = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort order = sort == SortKey.PRICE ? Sort.by(dir, "price").and(Sort.by(dir, "_id")) : Sort.by(dir, "_id");
+        Query q = new Query().with(order).limit(size + 1);
+        if (!filters.isEmpty()) {
+            q.addCriteria(new Criteria().andOperator(filters));
+        }
+        return q;
+    }
+
+    static ItemPage toPage(List<Item> items, int size, SortKey sort, boolean descending) {
+        if (items.size() <= size) {
+            return new ItemPage(items, null);
+        }
+        items = items.subList(0, size);
+        Item last = items.get(size - 1);
+        Double lastPrice = sort == SortKey.PRICE ? last.getPrice() : null;
+        return new ItemPage(items, new ItemPageToken(sort, descending, lastPrice, last.getId()).encode());
+    }
+
+    private static Criteria seekAfter(ItemPageToken token) {
+        boolean desc = token.descending();
+        Criteria idAfter = desc ? Criteria.where("_id").lt(token.lastId()) : Criteria.where("_id").gt(token.lastId());
+        if (token.sort() == SortKey.ID) {
+            return idAfter;
+        }
+        Criteria priceAfter = desc ? Criteria.where("price").lt(token.lastPrice()) : Criteria.where("price").gt(token.lastPrice());
+        Criteria samePrice = new Criteria().andOperator(Criteria.where("price").is(token.lastPrice()), idAfter);
+        return new Criteria().orOperator(priceAfter, samePrice);
+    }
+
+    /**
+     * Find an item by its identifier, served from the item cache when
+     * the entry is present. Concurrent misses for the same id are
+     * coalesced into a single query, which fills the cache unless the
+     * item was invalidated while it ran.
      *
      * @param id item id
      * @return optional of item
      */
     public Optional<Item> findById(String id) {
-        return itemRepository.findById(id);
+        return itemCache.get(id, key -> lookups.execute(key, () -> itemCache.load(key, itemRepository::findById)));
+    }
+
+    /**
+     * Find all items whose id is in the given collection. Cached items
+     * are served from memory and the rest are fetched with a single
+     * {@code $in} query. Duplicate ids are collapsed and ids that do not
+     * exist are simply absent from the result, so callers should match
+     * results by id rather than by position.
+     *
+     * @param ids item ids
+     * @return items that were found
+     */
+    public List<Item> findAllByIds(Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        Set<String> wanted = new LinkedHashSet<>(ids);
+        Map<String, Item> cached = itemCache.getAllPresent(wanted);
+        if (cached.size() == wanted.size()) {
+            return new ArrayList<>(cached.values());
+        }
+        wanted.removeAll(cached.keySet());
+        List<Item> items = new ArrayList<>(cached.values());
+        long generation = itemCache.generation();
+        for (Item loaded : itemRepository.findAllById(wanted)) {
+            itemCache.put(loaded, generation);
+            items.add(loaded);
+        }
+        return items;
+    }
+
+    /**
+     * Read the summary of one item. A cached full item is reused;
+     * otherwise only the summary fields are fetched.
+     *
+     * @param id item id
+     * @return optional summary
+     */
+    public Optional<ItemSummary> findSummary(String id) {
+        List<ItemSummary> found = findSummaries(List.of(id));
+        return found.isEmpty() ? Optional.empty() : Optional.of(found.get(0));
+    }
+
+    /**
+     * Read the summaries of several items with one field-projected
+     * {@code $in} query for the ids that are not cached. Missing ids are
+     * omitted from the result.
+     *
+     * @param ids item ids
+     * @return summaries of the items that exist
+     */
+    public List<ItemSummary> findSummaries(Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        Set<String> wanted = new LinkedHashSet<>(ids);
+        List<ItemSummary> summaries = new ArrayList<>(wanted.size());
+        itemCache.getAllPresent(wanted).values().forEach(item -> {
+            summaries.add(summaryOf(item));
+            wanted.remove(item.getId());
+        });
+        if (!wanted.isEmpty()) {
+            summaries.addAll(mongoTemplate.find(summaryQuery(wanted), ItemSummary.class, ITEMS));
+        }
+        return summaries;
+    }
+
+    static ItemSummary summaryOf(Item item) {
+        return new ItemSummary(item.getId(), item.getName(), item.getUpc(), item.getPrice());
+    }
+
+    static Query summaryQuery(Collection<String> ids) {
+        Query q = new Query(Criteria.where("_id").in(ids));
+        q.fields().include("name", "upc", "price");
+        return q;
     }
 
     /**
-     * Persist a new item in the catalogue.
+     * Persist a new item in the catalogue and add it to the search index.
+     * Create, update and delete each queue an ItemChanged event.
      *
      * @param item item to create
      * @return created item
      */
     @Transactional
     public Item create(Item item) {
-        return itemRepository.save(item);
+        item.setUnpublishedAt(Instant.now());
+        Item saved = itemRepository.save(item);
+        searchService.index(saved);
+        return saved;
     }
 
     /**
@@ -61,7 +264,11 @@ public class ItemService {
      */
     @Transactional
     public Item update(Item item) {
-        return itemRepository.save(item);
+        item.setUnpublishedAt(Instant.now());
+        Item saved = itemRepository.save(item);
+        itemCache.invalidate(saved.getId());
+        searchService.index(saved);
+        return saved;
     }
 
     /**
@@ -72,6 +279,9 @@ public class ItemService {
     @Transactional
     public void delete(String id) {
         itemRepository.deleteById(id);
+        itemCache.invalidate(id);
+        searchService.remove(id);
+        changeOutbox.itemDeleted(id);
     }
 
 }
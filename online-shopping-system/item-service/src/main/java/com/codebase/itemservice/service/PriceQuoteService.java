@@ -0,0 +1,106 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.dto.ItemSummary;
+import com.codebase.itemservice.dto.PriceQuote;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Issues {@link PriceQuote}s. The signature is an HMAC-SHA256 under
+ * {@code item.quote.secret}, which order-service shares to verify quotes
+ * locally; the canonical form signed here must stay in step with its
+ * verifier. Quotes live for {@code item.quote.ttl}, which bounds how long
+ * checkout may keep charging a price that has since changed.
+ */
+@Service
+public class PriceQuoteService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final ItemService itemService;
+    private final SecretKeySpec key;
+    private final Duration ttl;
+
+    @Value("${item.quote.max-items:100}")
+    private int maxItems = 100;
+
+    public PriceQuoteService(ItemService itemService,
+                             @Value("${item.quote.secret}") String secret,
+                             @Value("${item.quote.ttl:PT2M}") Duration ttl) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("item.quote.secret is empty; set ITEM_QUOTE_SECRET");
+        }
+        this.itemService = itemService;
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.ttl = ttl;
+    }
+
+    /**
+     * Quote the current prices of the given items with one summary
+     * lookup. Unknown ids are left out of the quote.
+     *
+     * @throws IllegalArgumentException if more than {@code max-items} ids are asked for
+     */
+    public PriceQuote quote(Collection<String> ids) {
+        checkSize(ids);
+        return issue(itemService.findSummaries(ids));
+    }
+
+    /**
+     * Sign a quote over already loaded summaries. Items without a price
+     * are left out.
+     */
+    public PriceQuote issue(List<ItemSummary> summaries) {
+        Map<String, Double> prices = new TreeMap<>();
+        for (ItemSummary s : summaries) {
+            if (s.getPrice() != null) {
+                prices.put(s.getId(), s.getPrice());
+            }
+        }
+        Instant now = Instant.now();
+        long issuedAt = now.toEpochMilli();
+        long expiresAt = now.plus(ttl).toEpochMilli();
+        return new PriceQuote(prices, issuedAt, expiresAt, sign(canonical(prices, issuedAt, expiresAt)));
+    }
+
+    public void checkSize(Collection<String> ids) {
+        if (ids != null && ids.size() > maxItems) {
+            throw new IllegalArgumentException("A price quote covers at most " + maxItems + " items");
+        }
+    }
+
+    /**
+     * Text that is signed: version, both timestamps, then every
+     * {@code id=price} pair sorted by id, one per line. Prices are written
+     * with {@link Double#toString}, which gives the same text for the same
+     * double on both sides of the JSON round trip.
+     */
+    static String canonical(Map<String, Double> prices, long issuedAt, long expiresAt) {
+        StringBuilder sb = new StringBuilder("v1\n").append(issuedAt).append('\n').append(expiresAt);
+        new TreeMap<>(prices).forEach((id, price) -> sb.append('\n').append(id).append('=').append(price));
+        return sb.toString();
+    }
+
+    String sign(String canonical) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] digest = mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign price quote", e);
+        }
+    }
+}
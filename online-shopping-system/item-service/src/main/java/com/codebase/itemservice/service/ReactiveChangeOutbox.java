@@ -0,0 +1,53 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.model.ChangeOutboxEntry;
+import com.codebase.itemservice.model.ChangeOutboxEntry.Kind;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Deletion marks of {@link ChangeOutbox} for the reactive stack: the same
+ * upsert, written through {@link ReactiveMongoTemplate}. A failed mark
+ * completes empty after being logged and counted.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveChangeOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveChangeOutbox.class);
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final Counter markFailures;
+
+    public ReactiveChangeOutbox(ReactiveMongoTemplate reactiveMongoTemplate, MeterRegistry meterRegistry) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.markFailures = Counter.builder("item.events.outbox.failures")
+                .description("Changes that could not be recorded in the outbox")
+                .register(meterRegistry);
+    }
+
+    public Mono<Void> itemDeleted(String itemId) {
+        return mark(Kind.ITEM, itemId);
+    }
+
+    public Mono<Void> stockDeleted(String itemId) {
+        return mark(Kind.STOCK, itemId);
+    }
+
+    private Mono<Void> mark(Kind kind, String itemId) {
+        return reactiveMongoTemplate.upsert(ChangeOutbox.byId(kind, itemId), ChangeOutbox.pendingUpdate(kind, itemId),
+                        ChangeOutboxEntry.class)
+                .then()
+                .onErrorResume(e -> {
+                    markFailures.increment();
+                    log.warn("Could not record deletion of {} {} in the outbox: {}", kind, itemId, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+}
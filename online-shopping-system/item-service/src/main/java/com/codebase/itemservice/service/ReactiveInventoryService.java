@@ -0,0 +1,401 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.dto.ReservationResult;
+import com.codebase.itemservice.dto.ReservationResult.LineResult;
+import com.codebase.itemservice.dto.ReservationResult.LineStatus;
+import com.codebase.itemservice.dto.StockLine;
+import com.codebase.itemservice.exception.NotFoundException;
+import com.codebase.itemservice.model.IdempotencyRecord;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.InventoryBucket;
+import com.codebase.itemservice.model.Inventory.Movement;
+import com.codebase.itemservice.model.Inventory.MovementType;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Non-blocking counterpart of {@link InventoryService} for the "reactive"
+ * profile. Reads, the conditional {@code findAndModify} decrement and
+ * increment, the keyed pipeline update, the threshold check and the bucket
+ * decrement and increment of striped items run on
+ * {@link ReactiveMongoTemplate} with the same filters and updates as the
+ * blocking services.
+ *
+ * <p>Setting the total of a striped item, the gather of a striped
+ * decrement that no single bucket can serve and the compensation of a
+ * failed basket reservation are rare enough that they are handed to
+ * {@link InventoryService} on the bounded elastic scheduler instead of
+ * being duplicated here.</p>
+ */
+@Service
+@Profile("reactive")
+public class ReactiveInventoryService {
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final InventoryService inventoryService;
+    private final StripedInventoryService stripedInventory;
+    private final ReactiveChangeOutbox changeOutbox;
+
+    public ReactiveInventoryService(ReactiveMongoTemplate reactiveMongoTemplate, InventoryService inventoryService,
+                                    StripedInventoryService stripedInventory, ReactiveChangeOutbox changeOutbox) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.inventoryService = inventoryService;
+        this.stripedInventory = stripedInventory;
+        this.changeOutbox = changeOutbox;
+    }
+
+    public Mono<Inventory> createInventory(String itemId, int quantity) {
+        return reactiveMongoTemplate.insert(new Inventory(itemId, quantity));
+    }
+
+    /**
+     * Inventory record of an item; for a striped item the quantity is the
+     * sum over its buckets.
+     */
+    public Mono<Inventory> getInventoryForItem(String itemId) {
+        return reactiveMongoTemplate.findOne(InventoryService.withoutLedger(byItem(itemId)), Inventory.class)
+                .flatMap(inv -> !StripedInventoryService.isStriped(inv) ? Mono.just(inv)
+                        : total(itemId).map(total -> {
+                            inv.setQuantity(inv.getQuantity() + total);
+                            return inv;
+                        }));
+    }
+
+    /**
+     * Set the quantity of an item, see {@link InventoryService#updateInventory}.
+     */
+    public Mono<Inventory> updateInventory(String itemId, int quantity) {
+        return reactiveMongoTemplate.findAndModify(InventoryService.setQuery(itemId), InventoryService.setUpdate(quantity),
+                        RETURN_NEW, Inventory.class)
+                // striped or missing: the blocking service sets the buckets or reports the missing record
+                .switchIfEmpty(Mono.defer(() -> blocking(() -> inventoryService.updateInventory(itemId, quantity))));
+    }
+
+    public Mono<Void> deleteByItemId(String itemId) {
+        return reactiveMongoTemplate.remove(byItem(itemId), Inventory.class)
+                .then(changeOutbox.stockDeleted(itemId));
+    }
+
+    /**
+     * Take {@code req} units, at most once per idempotency key when one
+     * is given.
+     *
+     * @return the quantity after the decrement, or empty if there was not enough stock
+     */
+    public Mono<Integer> decrement(String itemId, int req, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            return applyOnce(idempotencyKey, itemId, "decrement", req);
+        }
+        int stripes = stripedInventory.knownStripes(itemId);
+        if (stripes > 0) {
+            return decrementStriped(itemId, stripes, req);
+        }
+        Query q = InventoryService.decrementQuery(itemId, req);
+        Update u = new Update().inc("quantity", -req).inc("version", 1).currentDate(ChangeOutbox.UNPUBLISHED)
+                .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.delta(MovementType.ORDER_DECREMENT, -req, null));
+        return reactiveMongoTemplate.findAndModify(q, u, RETURN_NEW, Inventory.class)
+                .flatMap(updated -> {
+                    inventoryService.alertOnCrossing(itemId, updated, req);
+                    return Mono.just(updated.getQuantity());
+                })
+                // not enough stock, or striped by another replica since our last refresh
+                .switchIfEmpty(Mono.defer(() -> stripes(itemId)
+                        .filter(StripedInventoryService::isStriped)
+                        .flatMap(inv -> decrementStriped(itemId, inv.getStripes(), req))));
+    }
+
+    /**
+     * Add {@code qty} units, at most once per idempotency key when one is
+     * given.
+     *
+     * @return the quantity after the increment
+     */
+    public Mono<Integer> increment(String itemId, int qty, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            return applyOnce(idempotencyKey, itemId, "increment", qty)
+                    .switchIfEmpty(Mono.error(() -> new NotFoundException("Inventory not found for itemId: " + itemId)));
+        }
+        int stripes = stripedInventory.knownStripes(itemId);
+        if (stripes > 0) {
+            return incrementStriped(itemId, stripes, qty);
+        }
+        Query q = InventoryService.incrementQuery(itemId);
+        Update u = new Update().inc("quantity", qty).inc("version", 1).currentDate(ChangeOutbox.UNPUBLISHED)
+                .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.delta(MovementType.CANCEL_INCREMENT, qty, null));
+        return reactiveMongoTemplate.findAndModify(q, u, RETURN_NEW, Inventory.class)
+                .map(Inventory::getQuantity)
+                .switchIfEmpty(Mono.defer(() -> stripes(itemId)
+                        .switchIfEmpty(Mono.error(() -> new NotFoundException("Inventory not found for itemId: " + itemId)))
+                        .flatMap(inv -> StripedInventoryService.isStriped(inv)
+                                ? incrementStriped(itemId, inv.getStripes(), qty)
+                                // unstriped by another replica since the update missed it
+                                : increment(itemId, qty, null))));
+    }
+
+    /**
+     * Bucket decrement of {@link StripedInventoryService#tryDecrement}: a
+     * random bucket and then its neighbours. The gather over several
+     * buckets when none is large enough on its own moves units through
+     * the record and is handed to the blocking service.
+     *
+     * @return the stock after the decrement, or empty if there was not enough
+     */
+    private Mono<Integer> decrementStriped(String itemId, int stripes, int req) {
+        int start = ThreadLocalRandom.current().nextInt(stripes);
+        return Flux.range(0, stripes)
+                .concatMap(k -> takeFromBucket(itemId, (start + k) % stripes, req))
+                .any(Boolean::booleanValue)
+                .flatMap(taken -> taken ? Mono.just(true)
+                        : blocking(() -> stripedInventory.gather(itemId, req, MovementType.ORDER_DECREMENT)))
+                .filter(Boolean::booleanValue)
+                .flatMap(taken -> stripedStock(itemId))
+                .doOnNext(after -> inventoryService.alertOnCrossing(itemId, after, req))
+                .map(Inventory::getQuantity);
+    }
+
+    private Mono<Integer> incrementStriped(String itemId, int stripes, int qty) {
+        return addToBucket(itemId, ThreadLocalRandom.current().nextInt(stripes), qty)
+                .then(Mono.defer(() -> stripedStock(itemId)))
+                .map(Inventory::getQuantity);
+    }
+
+    private Mono<Boolean> takeFromBucket(String itemId, int bucket, int req) {
+        return reactiveMongoTemplate.updateFirst(StripedInventoryService.takeQuery(itemId, bucket, req),
+                        StripedInventoryService.takeUpdate(req), InventoryBucket.class)
+                .map(result -> result.getModifiedCount() == 1);
+    }
+
+    /** Add units to one bucket, or park them on the record when the bucket is gone or draining. */
+    private Mono<Void> addToBucket(String itemId, int bucket, int qty) {
+        return reactiveMongoTemplate.updateFirst(StripedInventoryService.bucketQuery(itemId, bucket),
+                        StripedInventoryService.addUpdate(qty), InventoryBucket.class)
+                .flatMap(added -> added.getMatchedCount() == 1 ? Mono.<Void>empty()
+                        : reactiveMongoTemplate.updateFirst(byItem(itemId), StripedInventoryService.parkUpdate(qty), Inventory.class)
+                                .flatMap(parked -> parked.getMatchedCount() == 0
+                                        ? Mono.<Void>error(new NotFoundException("Inventory not found for itemId: " + itemId))
+                                        : Mono.<Void>empty()));
+    }
+
+    /** Units parked on the record plus the buckets, as InventoryService#stripedStock counts them. */
+    private Mono<Inventory> stripedStock(String itemId) {
+        return reactiveMongoTemplate.findOne(InventoryService.quantityOnly(byItem(itemId)), Inventory.class)
+                .defaultIfEmpty(new Inventory(itemId, 0))
+                .zipWith(total(itemId), (stock, buckets) -> {
+                    stock.setQuantity(InventoryService.parked(stock) + buckets);
+                    return stock;
+                });
+    }
+
+    /** Sum of all buckets of a striped item. */
+    private Mono<Integer> total(String itemId) {
+        return reactiveMongoTemplate.find(StripedInventoryService.bucketsQuery(itemId), InventoryBucket.class)
+                .map(InventoryBucket::getQuantity)
+                .reduce(0, Integer::sum);
+    }
+
+    /**
+     * Keyed mutation with the same record lookup and pipeline update as
+     * the blocking service. When the update does not apply, the record
+     * tells a duplicate (answered from {@code appliedKeys}) from a
+     * striped item (handed to the blocking service) and from missing
+     * stock.
+     */
+    private Mono<Integer> applyOnce(String key, String itemId, String operation, int amount) {
+        boolean decrement = "decrement".equals(operation);
+        return reactiveMongoTemplate.findById(key, IdempotencyRecord.class)
+                .flatMap(previous -> toMono(InventoryService.replay(previous, itemId, operation, amount)))
+                .switchIfEmpty(Mono.defer(() -> {
+                    int stripes = stripedInventory.knownStripes(itemId);
+                    if (stripes > 0) {
+                        return keyedStriped(key, itemId, stripes, amount, decrement);
+                    }
+                    return reactiveMongoTemplate.findAndModify(
+                                    InventoryService.keyedQuery(itemId, key, decrement ? amount : null),
+                                    inventoryService.keyedUpdate(decrement ? -amount : amount, key,
+                                            decrement ? MovementType.ORDER_DECREMENT : MovementType.CANCEL_INCREMENT),
+                                    RETURN_NEW, Inventory.class)
+                            .flatMap(updated -> {
+                                if (decrement) {
+                                    inventoryService.alertOnCrossing(itemId, updated, amount);
+                                }
+                                return remember(key, itemId, operation, amount, updated.getQuantity());
+                            })
+                            .switchIfEmpty(Mono.defer(() -> notApplied(key, itemId, amount, decrement)));
+                }));
+    }
+
+    private Mono<Integer> notApplied(String key, String itemId, int amount, boolean decrement) {
+        return reactiveMongoTemplate.findOne(InventoryService.appliedKeyQuery(itemId, key), Inventory.class).flatMap(inv -> {
+            if (inv.getAppliedKeys() != null) {
+                for (Inventory.AppliedKey applied : inv.getAppliedKeys()) {
+                    if (key.equals(applied.getKey())) {
+                        return Mono.just(applied.getQuantity());
+                    }
+                }
+            }
+            if (StripedInventoryService.isStriped(inv)) {
+                return keyedStriped(key, itemId, inv.getStripes(), amount, decrement);
+            }
+            return Mono.empty();
+        });
+    }
+
+    /** Striped items are only deduplicated through the {@link IdempotencyRecord}, as in the blocking service. */
+    private Mono<Integer> keyedStriped(String key, String itemId, int stripes, int amount, boolean decrement) {
+        Mono<Integer> applied = decrement ? decrementStriped(itemId, stripes, amount) : incrementStriped(itemId, stripes, amount);
+        return applied.flatMap(result -> remember(key, itemId, decrement ? "decrement" : "increment", amount, result));
+    }
+
+    private Mono<Integer> remember(String key, String itemId, String operation, int amount, int result) {
+        return reactiveMongoTemplate.insert(new IdempotencyRecord(key, itemId, operation, amount, result, Instant.now()))
+                // same outcome already recorded by a concurrent duplicate
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())
+                .thenReturn(result);
+    }
+
+    /**
+     * Reserve a whole basket, see {@link InventoryService#reserveAll}.
+     * Lines are taken one after the other and the first short line stops
+     * the rest.
+     */
+    public Mono<ReservationResult> reserveAll(List<StockLine> lines) {
+        Map<String, Integer> wanted = new LinkedHashMap<>();
+        for (StockLine line : lines) {
+            wanted.merge(line.getItemId(), line.getQuantity(), Integer::sum);
+        }
+        return Flux.fromIterable(wanted.entrySet())
+                .concatMap(e -> decrement(e.getKey(), e.getValue(), null)
+                        .map(q -> new LineResult(e.getKey(), e.getValue(), LineStatus.RESERVED))
+                        .defaultIfEmpty(new LineResult(e.getKey(), e.getValue(), LineStatus.INSUFFICIENT)))
+                .takeUntil(r -> r.getStatus() == LineStatus.INSUFFICIENT)
+                .collectList()
+                .flatMap(taken -> {
+                    List<LineResult> results = new ArrayList<>(taken);
+                    boolean failed = !taken.isEmpty() && taken.get(taken.size() - 1).getStatus() == LineStatus.INSUFFICIENT;
+                    if (!failed) {
+                        return Mono.just(new ReservationResult(true, results));
+                    }
+                    wanted.forEach((itemId, qty) -> {
+                        if (results.stream().noneMatch(r -> r.getItemId().equals(itemId))) {
+                            results.add(new LineResult(itemId, qty, LineStatus.SKIPPED));
+                        }
+                    });
+                    return rollback(results).thenReturn(new ReservationResult(false, results));
+                });
+    }
+
+    /**
+     * Reserve a whole basket at most once per idempotency key, see
+     * {@link InventoryService#reserveAll(List, String)}. The keyed line
+     * decrements, the outcome record and the give-back of a short basket
+     * all run on {@link ReactiveMongoTemplate}.
+     */
+    public Mono<ReservationResult> reserveAll(List<StockLine> lines, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return reserveAll(lines);
+        }
+        Map<String, Integer> wanted = InventoryService.merge(lines);
+        return reactiveMongoTemplate.findById(idempotencyKey, IdempotencyRecord.class)
+                .flatMap(previous -> replayReservation(previous, idempotencyKey, wanted))
+                .switchIfEmpty(Mono.defer(() -> Flux.fromIterable(wanted.entrySet())
+                        .concatMap(e -> decrement(e.getKey(), e.getValue(), InventoryService.lineKey(idempotencyKey, e.getKey()))
+                                .map(q -> true)
+                                .defaultIfEmpty(false))
+                        .takeWhile(Boolean::booleanValue)
+                        .count()
+                        .flatMap(taken -> {
+                            int shortAt = taken == wanted.size() ? -1 : taken.intValue();
+                            IdempotencyRecord outcome = new IdempotencyRecord(idempotencyKey, InventoryService.basketOf(wanted),
+                                    "reserve", wanted.size(), shortAt, Instant.now());
+                            Mono<ReservationResult> settle = shortAt < 0
+                                    ? Mono.just(InventoryService.reservationOutcome(wanted, -1))
+                                    : giveBack(idempotencyKey, wanted).thenReturn(InventoryService.reservationOutcome(wanted, shortAt));
+                            return reactiveMongoTemplate.insert(outcome)
+                                    .then(settle)
+                                    // a concurrent duplicate settled the key first; follow its outcome
+                                    .onErrorResume(DuplicateKeyException.class, e -> reactiveMongoTemplate
+                                            .findById(idempotencyKey, IdempotencyRecord.class)
+                                            .flatMap(previous -> replayReservation(previous, idempotencyKey, wanted)));
+                        })));
+    }
+
+    private Mono<ReservationResult> replayReservation(IdempotencyRecord previous, String key, Map<String, Integer> wanted) {
+        if (!previous.matches(InventoryService.basketOf(wanted), "reserve", wanted.size())) {
+            return Mono.error(new IllegalArgumentException("Idempotency-Key was already used for a different request"));
+        }
+        Mono<Void> settled = previous.getResult() >= 0 ? giveBack(key, wanted) : Mono.empty();
+        return settled.thenReturn(InventoryService.reservationOutcome(wanted, previous.getResult()));
+    }
+
+    /** See {@code InventoryService.giveBack}: replay each keyed line, then return it under its rollback key. */
+    private Mono<Void> giveBack(String key, Map<String, Integer> wanted) {
+        return Flux.fromIterable(wanted.entrySet())
+                .concatMap(e -> decrement(e.getKey(), e.getValue(), InventoryService.lineKey(key, e.getKey()))
+                        .flatMap(q -> increment(e.getKey(), e.getValue(), InventoryService.rollbackKey(key, e.getKey()))))
+                .then();
+    }
+
+    private Mono<Void> rollback(List<LineResult> results) {
+        List<LineResult> reserved = results.stream().filter(r -> r.getStatus() == LineStatus.RESERVED).toList();
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        reserved.forEach(r -> quantities.merge(r.getItemId(), r.getQuantity(), Integer::sum));
+        return blocking(() -> {
+            inventoryService.incrementAll(quantities);
+            reserved.forEach(r -> r.setStatus(LineStatus.ROLLED_BACK));
+            return quantities;
+        }).then();
+    }
+
+    /**
+     * See {@link InventoryService#setReorderThreshold}.
+     */
+    public Mono<Void> setReorderThreshold(String itemId, Integer threshold) {
+        if (threshold != null && threshold < 0) {
+            return Mono.error(new IllegalArgumentException("Reorder threshold must not be negative"));
+        }
+        Update u = threshold == null ? new Update().unset("reorderThreshold") : new Update().set("reorderThreshold", threshold);
+        return reactiveMongoTemplate.updateFirst(byItem(itemId), u, Inventory.class)
+                .flatMap(result -> result.getMatchedCount() == 0
+                        ? Mono.<Void>error(new NotFoundException("Inventory not found for itemId: " + itemId))
+                        : Mono.<Void>empty());
+    }
+
+    private Mono<Inventory> stripes(String itemId) {
+        Query q = new Query(Criteria.where("itemId").is(itemId));
+        q.fields().include("stripes");
+        return reactiveMongoTemplate.findOne(q, Inventory.class);
+    }
+
+    private static Query byItem(String itemId) {
+        return new Query(Criteria.where("itemId").is(itemId));
+    }
+
+    private static Mono<Integer> toMono(OptionalInt value) {
+        return value.isPresent() ? Mono.just(value.getAsInt()) : Mono.empty();
+    }
+
+    /** Run a call into the blocking services off the event loop. */
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,136 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.cache.ItemCache;
+import com.codebase.itemservice.dto.ItemPage;
+import com.codebase.itemservice.dto.ItemSummary;
+import com.codebase.itemservice.model.Item;
+import com.codebase.itemservice.search.ItemSearchService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Non-blocking counterpart of {@link ItemService} for the "reactive"
+ * profile. Queries are built by {@link ItemService} and run through
+ * {@link ReactiveMongoTemplate}; the item cache, the search index and the
+ * change outbox are shared with the blocking service, so both stacks
+ * behave the same.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveItemService {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final ItemService itemService;
+    private final ItemSearchService searchService;
+    private final ItemCache itemCache;
+    private final ReactiveChangeOutbox changeOutbox;
+
+    public ReactiveItemService(ReactiveMongoTemplate reactiveMongoTemplate, ItemService itemService,
+                               ItemSearchService searchService, ItemCache itemCache,
+                               ReactiveChangeOutbox changeOutbox) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.itemService = itemService;
+        this.searchService = searchService;
+        this.itemCache = itemCache;
+        this.changeOutbox = changeOutbox;
+    }
+
+    /**
+     * Keyset page of the catalogue, see {@link ItemService#findPage}.
+     */
+    public Mono<ItemPage> findPage(Double minPrice, Double maxPrice, ItemService.SortKey sort, boolean descending,
+                                   int limit, String after) {
+        int size = itemService.pageSize(limit);
+        return Mono.fromCallable(() -> ItemService.pageQuery(minPrice, maxPrice, sort, descending, size, after))
+                .flatMap(q -> reactiveMongoTemplate.find(q, Item.class).collectList())
+                .map(items -> ItemService.toPage(items, size, sort, descending));
+    }
+
+    /**
+     * Find an item by id, served from the item cache when present. A
+     * loaded item is cached.
+     */
+    public Mono<Item> findById(String id) {
+        Item cached = itemCache.getAllPresent(Set.of(id)).get(id);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        long generation = itemCache.generation();
+        return reactiveMongoTemplate.findById(id, Item.class).doOnNext(item -> itemCache.put(item, generation));
+    }
+
+    /**
+     * Cached items plus one {@code $in} query for the rest; missing ids
+     * are omitted.
+     */
+    public Flux<Item> findAllByIds(Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Flux.empty();
+        }
+        Set<String> wanted = new LinkedHashSet<>(ids);
+        Map<String, Item> cached = itemCache.getAllPresent(wanted);
+        wanted.removeAll(cached.keySet());
+        long generation = itemCache.generation();
+        Flux<Item> loaded = wanted.isEmpty() ? Flux.empty()
+                : reactiveMongoTemplate.find(new Query(Criteria.where("_id").in(wanted)), Item.class)
+                        .doOnNext(item -> itemCache.put(item, generation));
+        return Flux.fromIterable(cached.values()).concatWith(loaded);
+    }
+
+    public Mono<ItemSummary> findSummary(String id) {
+        return findSummaries(Set.of(id)).next();
+    }
+
+    /**
+     * Summaries with one field-projected {@code $in} query for the ids
+     * that are not cached.
+     */
+    public Flux<ItemSummary> findSummaries(Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Flux.empty();
+        }
+        Set<String> wanted = new LinkedHashSet<>(ids);
+        Map<String, Item> cached = itemCache.getAllPresent(wanted);
+        wanted.removeAll(cached.keySet());
+        Flux<ItemSummary> loaded = wanted.isEmpty() ? Flux.empty()
+                : reactiveMongoTemplate.find(ItemService.summaryQuery(wanted), ItemSummary.class, ItemService.ITEMS);
+        return Flux.fromIterable(cached.values()).map(ItemService::summaryOf).concatWith(loaded);
+    }
+
+    public Mono<Item> create(Item item) {
+        item.setUnpublishedAt(Instant.now());
+        return reactiveMongoTemplate.insert(item)
+                .doOnNext(searchService::index);
+    }
+
+    /**
+     * Save an item that was read before; the version check rejects the
+     * save if another write got in between.
+     */
+    public Mono<Item> update(Item item) {
+        item.setUnpublishedAt(Instant.now());
+        return reactiveMongoTemplate.save(item)
+                .doOnNext(saved -> itemCache.invalidate(saved.getId()))
+                .doOnNext(searchService::index);
+    }
+
+    public Mono<Void> delete(String id) {
+        return reactiveMongoTemplate.remove(new Query(Criteria.where("_id").is(id)), Item.class)
+                .doOnSuccess(result -> {
+                    itemCache.invalidate(id);
+                    searchService.remove(id);
+                })
+                .then(changeOutbox.itemDeleted(id));
+    }
+}
@@ -0,0 +1,101 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.event.StockAlertEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes stock alerts to Kafka in batches. The stock mutation path
+ * only offers the alert to a bounded queue and never waits on the
+ * broker. A scheduled flush drains the queue, sends the batch and
+ * flushes the producer once. When the queue is full, alerts are
+ * dropped and counted rather than slowing down sales.
+ *
+ * <p>A send that fails synchronously (no broker metadata within
+ * {@code max.block.ms}) ends the flush: the rest of the batch is kept
+ * for the next run, so an outage costs one blocked send per run instead
+ * of one per alert.</p>
+ */
+@Service
+public class StockAlertPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(StockAlertPublisher.class);
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final BlockingQueue<StockAlertEvent> queue;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Alerts a failed flush could not hand over; only touched by {@link #flush()}. */
+    private final List<StockAlertEvent> unsent = new ArrayList<>();
+
+    @Value("${kafka.topic.stock-alerts:stock-alerts}")
+    private String topic = "stock-alerts";
+
+    @Value("${inventory.alerts.batch-size:500}")
+    private int batchSize = 500;
+
+    public StockAlertPublisher(KafkaTemplate<String, Object> kafkaTemplate,
+                               @Value("${inventory.alerts.queue-capacity:10000}") int queueCapacity) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Queue an alert for the next flush. Never blocks.
+     */
+    public void publish(StockAlertEvent event) {
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Send everything queued so far, in batches of {@code batch-size}.
+     *
+     * @return number of alerts handed to the producer
+     */
+    @Scheduled(fixedDelayString = "${inventory.alerts.flush-interval-ms:500}")
+    public int flush() {
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            log.warn("Dropped {} stock alerts because the publish queue was full", lost);
+        }
+        int sent = 0;
+        List<StockAlertEvent> batch = new ArrayList<>(unsent);
+        unsent.clear();
+        while (!batch.isEmpty() || queue.drainTo(batch, batchSize) > 0) {
+            int handed = 0;
+            try {
+                for (StockAlertEvent event : batch) {
+                    kafkaTemplate.send(topic, event.getItemId(), event);
+                    handed++;
+                }
+            } catch (RuntimeException e) {
+                unsent.addAll(batch.subList(handed, batch.size()));
+                log.warn("Could not publish stock alerts, keeping {} for the next flush: {}", unsent.size(), e.getMessage());
+            }
+            if (handed > 0) {
+                kafkaTemplate.flush();
+            }
+            sent += handed;
+            batch.clear();
+            if (!unsent.isEmpty()) {
+                break;
+            }
+        }
+        if (sent > 0) {
+            log.debug("Published {} stock alerts", sent);
+        }
+        return sent;
+    }
+}
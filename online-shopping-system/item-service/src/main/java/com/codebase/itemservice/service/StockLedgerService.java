@@ -0,0 +1,267 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.dto.LedgerRebuildResult;
+import com.codebase.itemservice.exception.ConflictException;
+import com.codebase.itemservice.exception.NotFoundException;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.Inventory.Movement;
+import com.codebase.itemservice.model.Inventory.MovementType;
+import com.codebase.itemservice.model.StockLedgerSegment;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Maintains the stock ledger. Every quantity write in
+ * {@link InventoryService} and {@link StripedInventoryService} appends
+ * a {@link Movement} to the inventory record in the same update, so the
+ * record is the snapshot and its {@code movements} the newest part of
+ * the ledger. An append is one more {@code $push} on a write that
+ * happens anyway.
+ *
+ * <p>{@link #compact()} periodically moves the oldest movements out
+ * into numbered {@link StockLedgerSegment}s, keeping the records small.
+ * {@link #rebuild} folds segments and tail back into a quantity.</p>
+ *
+ * <p>Writers append with {@code $slice} at {@link #MAX_TAIL}, so a hot
+ * record whose compaction falls behind drops its oldest movements rather
+ * than growing towards the document size limit. Every compaction cut
+ * ends the tail with a CHECKPOINT of the quantity. The rebuild checks
+ * its running quantity against each checkpoint rather than taking it
+ * over, so drift between snapshot and movements shows up in the
+ * result. Only a cut of a full tail, which may have dropped movements,
+ * writes a RESYNC instead, and the fold restarts from that.</p>
+ *
+ * <p>The bucket writes of striped items are not journaled. For them the
+ * ledger covers only the quantity held in the record itself.</p>
+ */
+@Service
+public class StockLedgerService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockLedgerService.class);
+
+    private static final int REBUILD_ATTEMPTS = 3;
+
+    /** Most movements a record keeps; see the class comment. */
+    static final int MAX_TAIL = 5000;
+
+    /** Passes over one record per compaction run, so a record that keeps growing cannot hold up the rest. */
+    private static final int MAX_CUTS_PER_RECORD = MAX_TAIL / 100;
+
+    private final MongoTemplate mongoTemplate;
+
+    /** Movements kept on the record after compaction. */
+    @Value("${inventory.ledger.tail-size:100}")
+    private int tailSize = 100;
+
+    /** Movements per compacted segment. */
+    @Value("${inventory.ledger.segment-size:500}")
+    private int segmentSize = 500;
+
+    @Value("${inventory.ledger.compaction-batch-size:100}")
+    private int compactionBatchSize = 100;
+
+    public StockLedgerService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Give every inventory record written before the ledger existed an
+     * OPENING movement with its current quantity, so that its history
+     * can be folded.
+     *
+     * @return number of records opened
+     */
+    public long openMissingLedgers() {
+        Document opening = new Document("type", MovementType.OPENING.name())
+                .append("quantity", "$quantity").append("at", "$$NOW");
+        AggregationUpdate update = AggregationUpdate.from(List.of(context -> new Document("$set",
+                new Document("movements", List.of(opening)).append("compactedSegments", 0))));
+        return mongoTemplate.updateMulti(new Query(Criteria.where("movements").exists(false)), update, Inventory.class)
+                .getModifiedCount();
+    }
+
+    /**
+     * Move the oldest movements out of every record whose tail has grown
+     * past {@code tail-size + segment-size}, one segment at a time until
+     * the record is back under that size.
+     *
+     * @return number of segments written
+     */
+    @Scheduled(fixedDelayString = "${inventory.ledger.compaction-interval-ms:60000}")
+    public int compact() {
+        Query due = dueQuery(null).limit(compactionBatchSize);
+        int written = 0;
+        for (Inventory inv : mongoTemplate.find(due, Inventory.class)) {
+            written += compactRecord(inv);
+        }
+        if (written > 0) {
+            log.info("Compacted {} stock ledger segments", written);
+        }
+        return written;
+    }
+
+    /** Cut segments off one record until it is no longer due. */
+    private int compactRecord(Inventory inv) {
+        int written = 0;
+        Inventory next = inv;
+        while (next != null && written < MAX_CUTS_PER_RECORD && compactOne(next)) {
+            written++;
+            next = mongoTemplate.findOne(dueQuery(inv.getItemId()), Inventory.class);
+        }
+        return written;
+    }
+
+    /** Records with a segment to compact (only {@code itemId}'s if not null), and the head of their tail. */
+    private Query dueQuery(String itemId) {
+        String full = "movements." + (tailSize + segmentSize - 1);
+        Query q = new Query(itemId == null ? Criteria.where(full).exists(true)
+                : Criteria.where("itemId").is(itemId).and(full).exists(true));
+        q.fields().include("itemId").include("compactedSegments").slice("movements", segmentSize);
+        return q;
+    }
+
+    /**
+     * Write the head of the record's movements as the next segment, then
+     * cut it from the record and append a CHECKPOINT of the quantity in
+     * the same update, or a RESYNC if the tail was full. If a previous run died between the two steps, the
+     * segment already exists and only the cut is repeated.
+     */
+    private boolean compactOne(Inventory inv) {
+        int segment = inv.getCompactedSegments() == null ? 0 : inv.getCompactedSegments();
+        int count = inv.getMovements().size();
+        try {
+            mongoTemplate.insert(new StockLedgerSegment(inv.getItemId(), segment, inv.getMovements(), Instant.now()));
+        } catch (DuplicateKeyException e) {
+            StockLedgerSegment existing = mongoTemplate.findOne(new Query(Criteria.where("itemId").is(inv.getItemId())
+                    .and("segment").is(segment)), StockLedgerSegment.class);
+            if (existing == null) {
+                return false;
+            }
+            count = existing.getMovements().size();
+        }
+
+        Criteria sameSegment = segment == 0
+                ? Criteria.where("compactedSegments").in(0, null)
+                : Criteria.where("compactedSegments").is(segment);
+        Query q = new Query(Criteria.where("itemId").is(inv.getItemId()).andOperator(sameSegment));
+        // the tail only reaches MAX_TAIL if writers have dropped movements since the last cut
+        Object type = new Document("$cond", List.of(
+                new Document("$gte", List.of(new Document("$size", "$movements"), MAX_TAIL)),
+                MovementType.RESYNC.name(), MovementType.CHECKPOINT.name()));
+        Document checkpoint = new Document("type", type)
+                .append("quantity", "$quantity").append("at", "$$NOW");
+        Document rest = new Document("$slice", Arrays.asList("$movements", count, Integer.MAX_VALUE));
+        Document set = new Document("movements", new Document("$concatArrays", List.of(rest, List.of(checkpoint))))
+                .append("compactedSegments", segment + 1);
+        AggregationUpdate cut = AggregationUpdate.from(List.of(context -> new Document("$set", set)));
+        return mongoTemplate.updateFirst(q, cut, Inventory.class).getModifiedCount() == 1;
+    }
+
+    /**
+     * Recompute an item's quantity from its ledger and write it to the
+     * record. The record is only overwritten if no stock write happened
+     * meanwhile, and the segment count is checked against the record so
+     * that a concurrent compaction is not folded twice or missed.
+     * Checkpoints the fold disagrees with are counted in the result.
+     *
+     * @throws NotFoundException if the item has no inventory record
+     * @throws ConflictException if the ledger has no opening, its tail is at
+     *                           {@link #MAX_TAIL} and may have dropped movements since the
+     *                           last checkpoint, or the item kept changing
+     */
+    public LedgerRebuildResult rebuild(String itemId) {
+        for (int attempt = 0; attempt < REBUILD_ATTEMPTS; attempt++) {
+            Inventory inv = mongoTemplate.findOne(new Query(Criteria.where("itemId").is(itemId)), Inventory.class);
+            if (inv == null) {
+                throw new NotFoundException("Inventory not found for itemId: " + itemId);
+            }
+            int expectedSegments = inv.getCompactedSegments() == null ? 0 : inv.getCompactedSegments();
+
+            Fold fold = new Fold();
+            Query segments = new Query(Criteria.where("itemId").is(itemId)).with(Sort.by("segment"));
+            int seen = 0;
+            try (Stream<StockLedgerSegment> stream = mongoTemplate.stream(segments, StockLedgerSegment.class)) {
+                for (StockLedgerSegment s : (Iterable<StockLedgerSegment>) stream::iterator) {
+                    if (s.getSegment() >= expectedSegments) {
+                        break;
+                    }
+                    s.getMovements().forEach(fold::apply);
+                    seen++;
+                }
+            }
+            if (seen != expectedSegments) {
+                continue;
+            }
+            if (inv.getMovements() != null) {
+                if (inv.getMovements().size() >= MAX_TAIL) {
+                    throw new ConflictException("Stock ledger of item " + itemId
+                            + " is at its tail limit, rebuild after the next compaction");
+                }
+                inv.getMovements().forEach(fold::apply);
+            }
+            if (!fold.opened) {
+                throw new ConflictException("Stock ledger of item " + itemId + " has no opening entry");
+            }
+
+            int previous = inv.getQuantity() == null ? 0 : inv.getQuantity();
+            Query unchanged = new Query(Criteria.where("itemId").is(itemId).and("version").is(inv.getVersion()));
+            if (mongoTemplate.updateFirst(unchanged, new Update().set("quantity", fold.quantity).inc("version", 1)
+                    .currentDate(ChangeOutbox.UNPUBLISHED), Inventory.class).getModifiedCount() == 1) {
+                if (previous != fold.quantity || fold.mismatches > 0) {
+                    log.warn("Rebuilt inventory of item {} from {} movements: {} -> {}, {} of {} checkpoints disagreed",
+                            itemId, fold.count, previous, fold.quantity, fold.mismatches, fold.checkpoints);
+                }
+                return new LedgerRebuildResult(itemId, previous, fold.quantity, fold.count,
+                        fold.checkpoints, fold.mismatches);
+            }
+        }
+        throw new ConflictException("Inventory of item " + itemId + " kept changing during the rebuild, try again");
+    }
+
+    /**
+     * Running quantity while replaying movements in append order. A
+     * CHECKPOINT is what the snapshot held at a compaction, so it is
+     * compared with the running quantity instead of replacing it.
+     */
+    private static final class Fold {
+
+        private int quantity;
+        private long count;
+        private boolean opened;
+        private int checkpoints;
+        private int mismatches;
+
+        void apply(Movement m) {
+            count++;
+            if (m.getType() == MovementType.CHECKPOINT) {
+                if (opened && m.getQuantity() != null) {
+                    checkpoints++;
+                    if (m.getQuantity() != quantity) {
+                        mismatches++;
+                    }
+                }
+                return;
+            }
+            if (m.getQuantity() != null) {
+                opened = true;
+            }
+            quantity = m.applyTo(quantity);
+        }
+    }
+}
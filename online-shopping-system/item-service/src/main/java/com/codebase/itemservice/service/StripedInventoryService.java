@@ -0,0 +1,632 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.exception.ConflictException;
+import com.codebase.itemservice.exception.NotFoundException;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.Inventory.Movement;
+import com.codebase.itemservice.model.Inventory.MovementType;
+import com.codebase.itemservice.model.Inventory.Transfer;
+import com.codebase.itemservice.model.InventoryBucket;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Optional sharded-stock mode for flash-sale items. A striped item keeps
+ * its quantity in {@code stripes} {@link InventoryBucket} documents
+ * instead of its {@link Inventory} record. Decrements start at a random
+ * bucket and walk to the neighbouring ones, so concurrent buyers rarely
+ * hit the same document; the total is the sum over all buckets.
+ *
+ * <p>Striping is switched per item through {@link #restripe}, which
+ * moves the stock one bucket at a time through the record and can be
+ * resumed after a crash. Units that cannot land in a bucket are parked on
+ * the record rather than dropped. Units never leave one bucket for
+ * another directly: rebalancing and gathers move them onto the record
+ * and on from there, each leg remembered on both documents so that a
+ * crash in between loses nothing. The set
+ * of striped items is cached locally so the hot path does not need an
+ * extra read, and is refreshed by the periodic {@link #rebalance()} so
+ * that replicas pick up changes made elsewhere.</p>
+ */
+@Service
+public class StripedInventoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(StripedInventoryService.class);
+
+    private static final AggregationUpdate DRAIN = AggregationUpdate.from(List.of(
+            context -> new Document("$set", new Document("draining", "$quantity").append("quantity", 0))));
+
+    static final int MAX_STRIPES = 64;
+
+    private final MongoTemplate mongoTemplate;
+
+    /** itemId -> stripe count for items known to be striped. */
+    private final Map<String, Integer> stripedItems = new ConcurrentHashMap<>();
+
+    @Value("${inventory.striping.rebalance-min-skew:10}")
+    private int rebalanceMinSkew = 10;
+
+    @Value("${inventory.striping.restripe-stale-after-ms:60000}")
+    private long restripeStaleAfterMs = 60000;
+
+    public StripedInventoryService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    static boolean isStriped(Inventory inventory) {
+        return inventory.getStripes() != null && inventory.getStripes() > 0;
+    }
+
+    /**
+     * Stripe count for an item if this replica knows it is striped, or 0.
+     */
+    public int knownStripes(String itemId) {
+        return stripedItems.getOrDefault(itemId, 0);
+    }
+
+    /**
+     * Change the number of stripes of an item. Zero moves all stock back
+     * into the {@link Inventory} record. Any other value first drains the
+     * existing buckets into the record and then fills the new buckets from
+     * it evenly, one bucket at a time.
+     *
+     * <p>The restripe is recorded on the record before anything moves, so
+     * only one can run per item, and a replica that dies half way leaves
+     * enough behind for {@link #rebalance()} to finish the job.</p>
+     *
+     * @param itemId  item id
+     * @param stripes new stripe count, 0 to disable
+     * @return total quantity after the change
+     * @throws ConflictException if the item is already being restriped
+     */
+    public int restripe(String itemId, int stripes) {
+        if (stripes < 0 || stripes > MAX_STRIPES) {
+            throw new IllegalArgumentException("Stripe count must be between 0 and " + MAX_STRIPES);
+        }
+        Query idle = new Query(Criteria.where("itemId").is(itemId).and("restripeGeneration").exists(false));
+        idle.fields().include("itemId").include("restripeTo").include("restripeGeneration");
+        Inventory started = mongoTemplate.findAndModify(idle,
+                new Update().set("stripes", stripes).set("restripeTo", stripes)
+                        .set("restripeGeneration", new ObjectId().toHexString()).inc("version", 1)
+                        .currentDate(ChangeOutbox.UNPUBLISHED),
+                FindAndModifyOptions.options().returnNew(true), Inventory.class);
+        if (started == null) {
+            if (!mongoTemplate.exists(new Query(Criteria.where("itemId").is(itemId)), Inventory.class)) {
+                throw new NotFoundException("Inventory not found for itemId: " + itemId);
+            }
+            throw new ConflictException("Inventory of item " + itemId + " is already being restriped");
+        }
+        if (stripes == 0) {
+            stripedItems.remove(itemId);
+        } else {
+            stripedItems.put(itemId, stripes);
+        }
+        int total = resume(started);
+        log.info("Restriped inventory of item {} into {} buckets (total {})", itemId, stripes, total);
+        return total;
+    }
+
+    /**
+     * Finish the restripe recorded on {@code started}. Buckets of an older
+     * layout are drained into the record, the new ones are filled from it,
+     * and whatever increments parked on the record meanwhile goes to the
+     * first bucket. Every step is a {@link Transfer} remembered on the
+     * record, so running this again after a crash picks up where it stopped.
+     *
+     * @return total quantity after the restripe
+     */
+    int resume(Inventory started) {
+        String itemId = started.getItemId();
+        String generation = started.getRestripeGeneration();
+        int stripes = started.getRestripeTo();
+        Criteria owner = Criteria.where("itemId").is(itemId).and("restripeGeneration").is(generation);
+
+        for (InventoryBucket b : buckets(itemId)) {
+            if (!generation.equals(b.getGeneration())) {
+                drain(owner, b);
+            }
+        }
+        for (int b = 0; b < stripes; b++) {
+            int left = stripes - b;
+            transfer(owner, bucketOf(itemId, b, generation), generation + ":" + b,
+                    available -> available / left + (available % left > 0 ? 1 : 0));
+        }
+        if (stripes > 0) {
+            transfer(owner, bucketOf(itemId, 0, generation), generation + ":rest", available -> available);
+        }
+        mongoTemplate.updateFirst(new Query(owner), new Update().unset("restripeTo").unset("restripeGeneration")
+                .unset("transfers").inc("version", 1).currentDate(ChangeOutbox.UNPUBLISHED), Inventory.class);
+        return recordQuantity(itemId) + total(itemId);
+    }
+
+    /**
+     * Take {@code req} units from a striped item. One bucket is chosen at
+     * random and its neighbours are tried in turn; when no single bucket
+     * is large enough the units are gathered from several buckets through
+     * the record, see {@link #gather}.
+     *
+     * @return true if the units were taken
+     */
+    public boolean tryDecrement(String itemId, int stripes, int req) {
+        return tryDecrement(itemId, stripes, req, MovementType.ORDER_DECREMENT);
+    }
+
+    /**
+     * {@link #tryDecrement(String, int, int)} recording a gathered take on
+     * the record's ledger as {@code type}.
+     */
+    public boolean tryDecrement(String itemId, int stripes, int req, MovementType type) {
+        int start = ThreadLocalRandom.current().nextInt(stripes);
+        for (int k = 0; k < stripes; k++) {
+            if (takeFromBucket(itemId, (start + k) % stripes, req)) {
+                return true;
+            }
+        }
+        return gather(itemId, req, type);
+    }
+
+    /**
+     * Add units to a random bucket of a striped item. If that bucket is
+     * gone or being drained by a restripe, the units go to the record
+     * instead; the restripe or the next {@link #rebalance()} moves them on.
+     */
+    public void increment(String itemId, int stripes, int qty) {
+        addToBucket(itemId, ThreadLocalRandom.current().nextInt(stripes), qty);
+    }
+
+    /**
+     * Overwrite the total of a striped item, spreading it evenly.
+     *
+     * @throws ConflictException if the item is being restriped
+     */
+    public void set(String itemId, int stripes, int quantity) {
+        if (mongoTemplate.exists(new Query(Criteria.where("itemId").is(itemId)
+                .and("restripeGeneration").exists(true)), Inventory.class)) {
+            throw new ConflictException("Inventory of item " + itemId + " is being restriped");
+        }
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, InventoryBucket.class);
+        for (int b = 0; b < stripes; b++) {
+            ops.updateOne(bucketQuery(itemId, b), new Update().set("quantity", share(quantity, stripes, b))
+                    .currentDate(ChangeOutbox.UNPUBLISHED));
+        }
+        ops.execute();
+    }
+
+    /**
+     * Sum of all buckets of an item.
+     */
+    public int total(String itemId) {
+        return buckets(itemId).stream().mapToInt(InventoryBucket::getQuantity).sum();
+    }
+
+    /**
+     * Even out the buckets of every striped item. Random picks drain
+     * buckets unevenly; once the gap between the fullest and the emptiest
+     * bucket exceeds the configured skew, surplus units are moved towards
+     * the average. Surplus goes onto the record with {@link #park} and
+     * from there into the short buckets with the restripe's transfer, so
+     * concurrent decrements never see a negative bucket and a crash
+     * between the two legs leaves the units on the record.
+     *
+     * <p>The same pass finishes restripes abandoned for longer than
+     * {@code restripe-stale-after-ms} and moves units parked on the record
+     * of a striped item back into its buckets.</p>
+     */
+    @Scheduled(fixedDelayString = "${inventory.striping.rebalance-interval-ms:5000}")
+    public void rebalance() {
+        Query restriping = new Query(Criteria.where("restripeGeneration").exists(true));
+        restriping.fields().include("itemId").include("restripeTo").include("restripeGeneration");
+        for (Inventory inv : mongoTemplate.find(restriping, Inventory.class)) {
+            if (isStale(inv.getRestripeGeneration())) {
+                try {
+                    log.warn("Resuming abandoned restripe of item {} into {} buckets", inv.getItemId(), inv.getRestripeTo());
+                    resume(inv);
+                } catch (RuntimeException e) {
+                    log.error("Could not resume restripe of item {}", inv.getItemId(), e);
+                }
+            }
+        }
+
+        Query striped = new Query(Criteria.where("stripes").gt(0));
+        striped.fields().include("itemId").include("stripes").include("quantity").include("restripeGeneration");
+        Map<String, Integer> current = new ConcurrentHashMap<>();
+        for (Inventory inv : mongoTemplate.find(striped, Inventory.class)) {
+            current.put(inv.getItemId(), inv.getStripes());
+            if (inv.getRestripeGeneration() == null) {
+                sweepRecord(inv);
+                rebalance(inv.getItemId());
+            }
+        }
+        stripedItems.keySet().retainAll(current.keySet());
+        stripedItems.putAll(current);
+    }
+
+    /**
+     * Move units parked on the record of a striped item into its first
+     * bucket, and settle moves between the record and its buckets that
+     * were left half done.
+     */
+    void sweepRecord(Inventory inv) {
+        String itemId = inv.getItemId();
+        List<InventoryBucket> buckets = buckets(itemId);
+        for (InventoryBucket b : buckets) {
+            if (b.getPendingTransfer() != null && isStale(b.getPendingTransfer())) {
+                settle(b);
+            }
+            if (b.getTransfers() != null) {
+                b.getTransfers().stream().filter(t -> isStale(t.getId())).forEach(t -> finishPark(b, t));
+            }
+        }
+        forgetSettled(itemId, buckets);
+        if (inv.getQuantity() == null || inv.getQuantity() <= 0) {
+            return;
+        }
+        moveIn(itemId, 0, available -> available);
+    }
+
+    void rebalance(String itemId) {
+        List<InventoryBucket> buckets = buckets(itemId);
+        if (buckets.size() < 2) {
+            return;
+        }
+        int min = buckets.stream().mapToInt(InventoryBucket::getQuantity).min().orElse(0);
+        int max = buckets.stream().mapToInt(InventoryBucket::getQuantity).max().orElse(0);
+        if (max - min < rebalanceMinSkew) {
+            return;
+        }
+        int avg = buckets.stream().mapToInt(InventoryBucket::getQuantity).sum() / buckets.size();
+
+        for (InventoryBucket b : buckets) {
+            int surplus = b.getQuantity() - avg;
+            if (surplus > 0) {
+                park(itemId, b.getBucket(), surplus);
+            }
+        }
+        for (InventoryBucket b : buckets) {
+            int deficit = avg - b.getQuantity();
+            if (deficit > 0) {
+                moveIn(itemId, b.getBucket(), available -> Math.min(deficit, available));
+            }
+        }
+        // rounding remainder goes back to the first bucket
+        moveIn(itemId, 0, available -> available);
+    }
+
+    /**
+     * Take {@code req} units that no single bucket holds. The fullest
+     * buckets are parked on the record until it holds enough, and the
+     * units are then taken from the record in one conditional update.
+     * When the total still falls short the parked units stay on the
+     * record, where they count towards the stock, until the next
+     * {@link #rebalance()} hands them back to the buckets.
+     */
+    boolean gather(String itemId, int req, MovementType type) {
+        List<InventoryBucket> buckets = buckets(itemId);
+        int onRecord = recordQuantity(itemId);
+        if (onRecord + buckets.stream().mapToInt(InventoryBucket::getQuantity).sum() < req) {
+            return false;
+        }
+        buckets.sort((a, b) -> Integer.compare(b.getQuantity(), a.getQuantity()));
+
+        for (InventoryBucket b : buckets) {
+            if (onRecord >= req) {
+                break;
+            }
+            int move = Math.min(b.getQuantity(), req - onRecord);
+            if (move > 0 && park(itemId, b.getBucket(), move)) {
+                onRecord += move;
+            }
+        }
+        Query enough = new Query(Criteria.where("itemId").is(itemId).and("quantity").gte(req));
+        return mongoTemplate.updateFirst(enough, new Update().inc("quantity", -req).inc("version", 1)
+                .currentDate(ChangeOutbox.UNPUBLISHED)
+                .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.delta(type, -req, null)),
+                Inventory.class).getModifiedCount() == 1;
+    }
+
+    /**
+     * Move {@code amount} units from one bucket onto the record. The
+     * bucket gives them up and remembers the move in the same update, the
+     * record adds them once under the move's id, and both then forget it.
+     * A move cut short after the first step is finished by
+     * {@link #sweepRecord}, or by the drain of a restripe, from what the
+     * bucket remembers.
+     *
+     * @return whether the bucket held the units
+     */
+    boolean park(String itemId, int bucket, int amount) {
+        Transfer t = new Transfer(new ObjectId().toHexString(), -amount);
+        if (mongoTemplate.updateFirst(takeQuery(itemId, bucket, amount), takeUpdate(amount).push("transfers", t),
+                InventoryBucket.class).getModifiedCount() == 0) {
+            return false;
+        }
+        receive(itemId, t);
+        mongoTemplate.updateFirst(new Query(Criteria.where("itemId").is(itemId).and("bucket").is(bucket)),
+                new Update().pull("transfers", new Document("id", t.getId())), InventoryBucket.class);
+        forget(itemId, t.getId());
+        return true;
+    }
+
+    /** Second half of a {@link #park} that stopped after the bucket gave up the units. */
+    private void finishPark(InventoryBucket bucket, Transfer t) {
+        receive(bucket.getItemId(), t);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(bucket.getId())),
+                new Update().pull("transfers", new Document("id", t.getId())), InventoryBucket.class);
+        forget(bucket.getItemId(), t.getId());
+    }
+
+    /** Add the units of a move out of a bucket to the record, unless it already has them. */
+    private void receive(String itemId, Transfer t) {
+        Query q = new Query(Criteria.where("itemId").is(itemId).and("transfers.id").ne(t.getId()));
+        mongoTemplate.updateFirst(q, new Update().inc("quantity", -t.getAmount()).inc("version", 1)
+                .currentDate(ChangeOutbox.UNPUBLISHED).push("transfers", t)
+                .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.delta(MovementType.RESTRIPE, -t.getAmount(), t.getId())),
+                Inventory.class);
+    }
+
+    /**
+     * Move units from the record of a striped item into one of its
+     * buckets with {@link #transfer}. The bucket is claimed for the move
+     * first, so moves of two replicas into the same bucket never mix.
+     */
+    private void moveIn(String itemId, int bucket, IntUnaryOperator amountOf) {
+        if (recordQuantity(itemId) <= 0) {
+            return;
+        }
+        String id = new ObjectId().toHexString();
+        Query unclaimed = bucketQuery(itemId, bucket).addCriteria(Criteria.where("pendingTransfer").exists(false));
+        InventoryBucket claimed = mongoTemplate.findAndModify(unclaimed, new Update().set("pendingTransfer", id),
+                FindAndModifyOptions.options().returnNew(true), InventoryBucket.class);
+        if (claimed == null) {
+            return;
+        }
+        transfer(Criteria.where("itemId").is(itemId).and("restripeGeneration").exists(false), claimed, id, amountOf);
+        forget(itemId, id);
+    }
+
+    private void forget(String itemId, String transferId) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("itemId").is(itemId)),
+                new Update().pull("transfers", new Document("id", transferId)), Inventory.class);
+    }
+
+    /**
+     * Drop transfers from the record once neither side of the move can
+     * replay them: no bucket remembers the move and none waits for it to
+     * land. {@code buckets} must be read before the record.
+     */
+    private void forgetSettled(String itemId, List<InventoryBucket> buckets) {
+        Query q = new Query(Criteria.where("itemId").is(itemId));
+        q.fields().include("transfers");
+        Inventory record = mongoTemplate.findOne(q, Inventory.class);
+        if (record == null || record.getTransfers() == null) {
+            return;
+        }
+        for (Transfer t : record.getTransfers()) {
+            boolean open = buckets.stream().anyMatch(b -> t.getId().equals(b.getPendingTransfer())
+                    || b.getTransfers() != null && b.getTransfers().stream().anyMatch(o -> t.getId().equals(o.getId())));
+            if (!open && isStale(t.getId())) {
+                forget(itemId, t.getId());
+            }
+        }
+    }
+
+    private boolean takeFromBucket(String itemId, int bucket, int req) {
+        return mongoTemplate.updateFirst(takeQuery(itemId, bucket, req), takeUpdate(req), InventoryBucket.class)
+                .getModifiedCount() == 1;
+    }
+
+    /**
+     * Add units to one bucket, or to the record when the bucket is gone or
+     * draining, so an increment racing a restripe is never dropped.
+     */
+    private void addToBucket(String itemId, int bucket, int qty) {
+        if (mongoTemplate.updateFirst(bucketQuery(itemId, bucket), addUpdate(qty),
+                InventoryBucket.class).getMatchedCount() == 1) {
+            return;
+        }
+        if (mongoTemplate.updateFirst(new Query(Criteria.where("itemId").is(itemId)), parkUpdate(qty),
+                Inventory.class).getMatchedCount() == 0) {
+            throw new NotFoundException("Inventory not found for itemId: " + itemId);
+        }
+        log.debug("Bucket {} of item {} is gone, parked {} units on the record", bucket, itemId, qty);
+    }
+
+    /**
+     * Move one old bucket back into the record: the bucket swaps its
+     * quantity into {@code draining}, the record adds that amount once,
+     * then the bucket is removed.
+     */
+    private void drain(Criteria owner, InventoryBucket bucket) {
+        if (bucket.getPendingTransfer() != null) {
+            settle(bucket);
+        }
+        Query byId = new Query(Criteria.where("_id").is(bucket.getId()));
+        Integer moving = bucket.getDraining();
+        List<Transfer> cutShort = bucket.getTransfers();
+        if (moving == null) {
+            Query undrained = new Query(Criteria.where("_id").is(bucket.getId()).and("draining").exists(false));
+            InventoryBucket drained = mongoTemplate.findAndModify(undrained, DRAIN,
+                    FindAndModifyOptions.options().returnNew(true), InventoryBucket.class);
+            if (drained == null) {
+                drained = mongoTemplate.findOne(byId, InventoryBucket.class);
+            }
+            if (drained == null) {
+                return;
+            }
+            moving = drained.getDraining();
+            cutShort = drained.getTransfers();
+        }
+        if (cutShort != null) {
+            // moves onto the record left half done; the bucket is draining, so no new ones start
+            cutShort.forEach(t -> receive(bucket.getItemId(), t));
+        }
+        String id = "drain:" + bucket.getId();
+        Query take = new Query(owner).addCriteria(Criteria.where("transfers.id").ne(id));
+        mongoTemplate.updateFirst(take, new Update().inc("quantity", moving).inc("version", 1)
+                .currentDate(ChangeOutbox.UNPUBLISHED).push("transfers", new Transfer(id, -moving))
+                .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.delta(MovementType.RESTRIPE, moving, id)), Inventory.class);
+        mongoTemplate.remove(byId, InventoryBucket.class);
+    }
+
+    /**
+     * Move units from the record into one bucket. The bucket is tagged
+     * with the transfer id first, the record then gives up the units and
+     * remembers the transfer in the same update, and the bucket finally
+     * adds the remembered amount and drops the tag. Rerunning with the
+     * same id after a crash at any point moves the units exactly once.
+     *
+     * @param owner    filter on the record; stops the move once it no longer matches
+     * @param amountOf units to move given what the record holds
+     */
+    private void transfer(Criteria owner, InventoryBucket bucket, String id, IntUnaryOperator amountOf) {
+        Query byId = new Query(Criteria.where("_id").is(bucket.getId()));
+        Transfer done = null;
+        while (done == null) {
+            Query q = new Query(owner);
+            q.fields().include("quantity").include("transfers");
+            Inventory record = mongoTemplate.findOne(q, Inventory.class);
+            if (record == null) {
+                return;
+            }
+            done = applied(record, id);
+            if (done != null) {
+                break;
+            }
+            int amount = amountOf.applyAsInt(Math.max(record.getQuantity(), 0));
+            mongoTemplate.updateFirst(byId, new Update().set("pendingTransfer", id), InventoryBucket.class);
+            Query take = new Query(owner).addCriteria(Criteria.where("quantity").gte(amount))
+                    .addCriteria(Criteria.where("transfers.id").ne(id));
+            Transfer t = new Transfer(id, amount);
+            if (mongoTemplate.updateFirst(take, new Update().inc("quantity", -amount).inc("version", 1)
+                    .currentDate(ChangeOutbox.UNPUBLISHED).push("transfers", t).push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.delta(MovementType.RESTRIPE, -amount, id)),
+                    Inventory.class).getModifiedCount() == 1) {
+                done = t;
+            }
+        }
+        land(bucket.getId(), done);
+    }
+
+    /**
+     * Finish or drop a move into {@code bucket} that was left half done:
+     * land it if the record gave up the units, otherwise clear the tag.
+     */
+    private void settle(InventoryBucket bucket) {
+        Query q = new Query(Criteria.where("itemId").is(bucket.getItemId()));
+        q.fields().include("transfers");
+        Inventory record = mongoTemplate.findOne(q, Inventory.class);
+        Transfer t = record == null ? null : applied(record, bucket.getPendingTransfer());
+        if (t != null) {
+            land(bucket.getId(), t);
+        } else {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(bucket.getId())
+                    .and("pendingTransfer").is(bucket.getPendingTransfer())),
+                    new Update().unset("pendingTransfer"), InventoryBucket.class);
+        }
+    }
+
+    private void land(String bucketId, Transfer t) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(bucketId).and("pendingTransfer").is(t.getId())),
+                new Update().inc("quantity", t.getAmount()).unset("pendingTransfer").currentDate(ChangeOutbox.UNPUBLISHED),
+                InventoryBucket.class);
+    }
+
+    private static Transfer applied(Inventory record, String id) {
+        if (record.getTransfers() == null) {
+            return null;
+        }
+        return record.getTransfers().stream().filter(t -> id.equals(t.getId())).findFirst().orElse(null);
+    }
+
+    /** Bucket {@code b} of the new layout, created empty if missing. */
+    private InventoryBucket bucketOf(String itemId, int b, String generation) {
+        Query slot = new Query(Criteria.where("itemId").is(itemId).and("bucket").is(b));
+        InventoryBucket bucket = mongoTemplate.findOne(slot, InventoryBucket.class);
+        if (bucket == null) {
+            InventoryBucket fresh = new InventoryBucket(itemId, b, 0);
+            fresh.setGeneration(generation);
+            try {
+                bucket = mongoTemplate.insert(fresh);
+            } catch (DuplicateKeyException e) {
+                bucket = mongoTemplate.findOne(slot, InventoryBucket.class);
+            }
+        }
+        if (bucket == null || !generation.equals(bucket.getGeneration())) {
+            throw new IllegalStateException("Bucket " + b + " of item " + itemId + " belongs to another restripe");
+        }
+        return bucket;
+    }
+
+    private int recordQuantity(String itemId) {
+        Query q = new Query(Criteria.where("itemId").is(itemId));
+        q.fields().include("quantity");
+        Inventory record = mongoTemplate.findOne(q, Inventory.class);
+        return record == null || record.getQuantity() == null ? 0 : record.getQuantity();
+    }
+
+    /** Whether the ObjectId {@code id} was minted longer ago than the stale limit. */
+    private boolean isStale(String id) {
+        return ObjectId.isValid(id)
+                && new ObjectId(id).getDate().toInstant().plusMillis(restripeStaleAfterMs).isBefore(Instant.now());
+    }
+
+    private List<InventoryBucket> buckets(String itemId) {
+        return mongoTemplate.find(bucketsQuery(itemId), InventoryBucket.class);
+    }
+
+    // Bucket filters and updates, shared with ReactiveInventoryService.
+
+    /** Every bucket of an item, in bucket order. */
+    static Query bucketsQuery(String itemId) {
+        return new Query(Criteria.where("itemId").is(itemId)).with(Sort.by("bucket"));
+    }
+
+    /** A bucket that takes writes; draining buckets are left alone. */
+    static Query bucketQuery(String itemId, int bucket) {
+        return new Query(Criteria.where("itemId").is(itemId).and("bucket").is(bucket).and("draining").exists(false));
+    }
+
+    /** A bucket that takes writes and holds at least {@code req} units. */
+    static Query takeQuery(String itemId, int bucket, int req) {
+        return bucketQuery(itemId, bucket).addCriteria(Criteria.where("quantity").gte(req));
+    }
+
+    static Update takeUpdate(int req) {
+        return new Update().inc("quantity", -req).currentDate(ChangeOutbox.UNPUBLISHED);
+    }
+
+    static Update addUpdate(int qty) {
+        return new Update().inc("quantity", qty).currentDate(ChangeOutbox.UNPUBLISHED);
+    }
+
+    /** Units parked on the record because their bucket is gone or draining. */
+    static Update parkUpdate(int qty) {
+        return new Update().inc("quantity", qty).inc("version", 1).currentDate(ChangeOutbox.UNPUBLISHED)
+                .push("movements").slice(-StockLedgerService.MAX_TAIL).each(Movement.delta(MovementType.RESTRIPE, qty, null));
+    }
+
+    /** Even share of {@code total} for bucket {@code b}; the first buckets absorb the remainder. */
+    private static int share(int total, int stripes, int b) {
+        return total / stripes + (b < total % stripes ? 1 : 0);
+    }
+}
@@ -2,6 +2,6 @@ package com.codebase.itemservice;
 
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "item.quote.secret=test-secret")
 class ItemServiceApplicationTests {
 }
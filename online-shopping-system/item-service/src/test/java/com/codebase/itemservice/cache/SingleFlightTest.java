@@ -0,0 +1,109 @@
+package com.codebase.itemservice.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SingleFlightTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlightTest.class);
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @Test
+    public void testConcurrentCallsShareOneLoad() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(8, Duration.ofSeconds(5));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 16;
+        CountDownLatch started = new CountDownLatch(callers);
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    started.countDown();
+                    return flight.execute("L1", () -> {
+                        loads.incrementAndGet();
+                        await(release);
+                        return "value";
+                    });
+                }));
+            }
+            started.await(5, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> f : results) {
+                Assertions.assertEquals("value", f.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(0, flight.inFlight());
+        logger.info("End testConcurrentCallsShareOneLoad Testing");
+    }
+
+    @Test
+    public void testFailureIsSharedAndCleanedUp() {
+        SingleFlight<String, String> flight = new SingleFlight<>(8, Duration.ofSeconds(5));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> flight.execute("L1", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        Assertions.assertEquals(0, flight.inFlight());
+        Assertions.assertEquals("ok", flight.execute("L1", () -> "ok"));
+        logger.info("End testFailureIsSharedAndCleanedUp Testing");
+    }
+
+    @Test
+    public void testWaiterGivesUpOnStuckLeader() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(8, Duration.ofMillis(50));
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread leader = new Thread(() -> flight.execute("L1", () -> {
+            leaderStarted.countDown();
+            await(release);
+            return "slow";
+        }));
+        leader.start();
+        try {
+            leaderStarted.await(5, TimeUnit.SECONDS);
+
+            Assertions.assertEquals("fresh", flight.execute("L1", () -> "fresh"));
+            // the stale entry was dropped, so the next caller does not wait either
+            Assertions.assertEquals("again", flight.execute("L1", () -> "again"));
+        } finally {
+            release.countDown();
+            leader.join(5000);
+        }
+        Assertions.assertEquals(0, flight.inFlight());
+        logger.info("End testWaiterGivesUpOnStuckLeader Testing");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.codebase.itemservice.controller;
+
+import com.codebase.itemservice.dto.ReservationResult;
+import com.codebase.itemservice.dto.ReservationResult.LineResult;
+import com.codebase.itemservice.dto.ReservationResult.LineStatus;
+import com.codebase.itemservice.dto.StockLine;
+import com.codebase.itemservice.exception.GlobalExceptionHandler;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.Item;
+import com.codebase.itemservice.search.ItemSearchService;
+import com.codebase.itemservice.service.InventoryService;
+import com.codebase.itemservice.service.ItemImportService;
+import com.codebase.itemservice.service.PriceQuoteService;
+import com.codebase.itemservice.service.ReactiveInventoryService;
+import com.codebase.itemservice.service.ReactiveItemService;
+import com.codebase.itemservice.service.StripedInventoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.config.DelegatingWebFluxConfiguration;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * HTTP contract of the "reactive" profile: status codes, conditional
+ * reads and the error mapping of {@link GlobalExceptionHandler}, with
+ * the services mocked.
+ */
+@ExtendWith(MockitoExtension.class)
+class ReactiveItemControllerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveItemControllerTest.class);
+
+    @Mock
+    private ReactiveItemService itemService;
+
+    @Mock
+    private ReactiveInventoryService inventoryService;
+
+    @Mock
+    private InventoryService blockingInventoryService;
+
+    @Mock
+    private StripedInventoryService stripedInventoryService;
+
+    @Mock
+    private ItemSearchService searchService;
+
+    @Mock
+    private ItemImportService importService;
+
+    @Mock
+    private PriceQuoteService quoteService;
+
+    private AnnotationConfigApplicationContext context;
+
+    private WebTestClient client;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @BeforeEach
+    void init() {
+        ReactiveItemController controller = new ReactiveItemController(itemService, inventoryService,
+                blockingInventoryService, stripedInventoryService, searchService, importService, quoteService);
+        // a context of our own, so the Duration settings are converted as in the application
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().setActiveProfiles("reactive");
+        context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+        context.registerBean(DelegatingWebFluxConfiguration.class);
+        context.registerBean(GlobalExceptionHandler.class);
+        context.registerBean(ReactiveItemController.class, () -> controller);
+        context.refresh();
+        client = WebTestClient.bindToApplicationContext(context).build();
+    }
+
+    @AfterEach
+    void close() {
+        context.close();
+    }
+
+    @Test
+    public void testGetItemIsTaggedAndRevalidated() {
+        Mockito.when(itemService.findById("L1")).thenReturn(Mono.just(item("L1", 3L)));
+
+        client.get().uri("/items/L1").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"v3\"")
+                .expectHeader().valueEquals("Cache-Control", "max-age=60, public")
+                .expectBody().jsonPath("$.id").isEqualTo("L1");
+
+        client.get().uri("/items/L1").header("If-None-Match", "\"v3\"").exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        logger.info("End testGetItemIsTaggedAndRevalidated Testing");
+    }
+
+    @Test
+    public void testMissingItemIsNotFound() {
+        Mockito.when(itemService.findById("L9")).thenReturn(Mono.empty());
+
+        client.get().uri("/items/L9").exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo("Item not found with id: L9");
+
+        logger.info("End testMissingItemIsNotFound Testing");
+    }
+
+    @Test
+    public void testInventoryTagCarriesTheQuantity() {
+        Inventory inv = new Inventory("L1", 5);
+        inv.setVersion(2L);
+        Mockito.when(itemService.findById("L1")).thenReturn(Mono.just(item("L1", 1L)));
+        Mockito.when(inventoryService.getInventoryForItem("L1")).thenReturn(Mono.just(inv));
+
+        client.get().uri("/items/L1/inventory").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"v2-5\"")
+                .expectHeader().valueEquals("Cache-Control", "no-cache")
+                .expectBody(Integer.class).isEqualTo(5);
+
+        client.get().uri("/items/L1/inventory").header("If-None-Match", "\"v2-5\"").exchange()
+                .expectStatus().isNotModified();
+
+        logger.info("End testInventoryTagCarriesTheQuantity Testing");
+    }
+
+    @Test
+    public void testDecrementReturnsTheNewQuantity() {
+        Mockito.when(inventoryService.decrement("L1", 2, "order-1")).thenReturn(Mono.just(4));
+
+        client.post().uri("/items/L1/inventory/decrement?quantity=2").header("Idempotency-Key", "order-1").exchange()
+                .expectStatus().isOk()
+                .expectBody(Integer.class).isEqualTo(4);
+
+        logger.info("End testDecrementReturnsTheNewQuantity Testing");
+    }
+
+    @Test
+    public void testShortDecrementIsConflict() {
+        Mockito.when(inventoryService.decrement("L1", 9, null)).thenReturn(Mono.empty());
+
+        client.post().uri("/items/L1/inventory/decrement?quantity=9").exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody(String.class).isEqualTo("Item not enough");
+
+        logger.info("End testShortDecrementIsConflict Testing");
+    }
+
+    @Test
+    public void testReusedKeyIsBadRequest() {
+        Mockito.when(inventoryService.increment("L1", 2, "order-1"))
+                .thenReturn(Mono.error(new IllegalArgumentException("Idempotency-Key reused for a different request")));
+
+        client.post().uri("/items/L1/inventory/increment?quantity=2").header("Idempotency-Key", "order-1").exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Idempotency-Key reused for a different request");
+
+        logger.info("End testReusedKeyIsBadRequest Testing");
+    }
+
+    @Test
+    public void testShortReservationIsConflictWithLines() {
+        List<StockLine> lines = List.of(new StockLine("L1", 1), new StockLine("L2", 5));
+        ReservationResult result = new ReservationResult(false, List.of(
+                new LineResult("L1", 1, LineStatus.ROLLED_BACK), new LineResult("L2", 5, LineStatus.INSUFFICIENT)));
+        Mockito.when(inventoryService.reserveAll(Mockito.anyList(), Mockito.eq("order-7-reserve")))
+                .thenReturn(Mono.just(result));
+
+        client.post().uri("/items/inventory/reserve").header("Idempotency-Key", "order-7-reserve")
+                .contentType(MediaType.APPLICATION_JSON).bodyValue(lines).exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody()
+                .jsonPath("$.reserved").isEqualTo(false)
+                .jsonPath("$.lines[1].status").isEqualTo("INSUFFICIENT");
+
+        logger.info("End testShortReservationIsConflictWithLines Testing");
+    }
+
+    @Test
+    public void testCreateItemIsCreatedWithEmptyStock() {
+        Item created = item("L3", 0L);
+        Mockito.when(itemService.create(Mockito.any(Item.class))).thenReturn(Mono.just(created));
+        Mockito.when(inventoryService.createInventory("L3", 0)).thenReturn(Mono.just(new Inventory("L3", 0)));
+
+        client.post().uri("/items").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new Item("Lamp", "desk lamp", List.of(), "0001", 12.5)).exchange()
+                .expectStatus().isCreated()
+                .expectBody().jsonPath("$.id").isEqualTo("L3");
+
+        Mockito.verify(inventoryService).createInventory("L3", 0);
+
+        logger.info("End testCreateItemIsCreatedWithEmptyStock Testing");
+    }
+
+    private static Item item(String id, Long version) {
+        Item item = new Item("Lamp", "desk lamp", List.of(), "0001", 12.5);
+        item.setId(id);
+        item.setVersion(version);
+        return item;
+    }
+}
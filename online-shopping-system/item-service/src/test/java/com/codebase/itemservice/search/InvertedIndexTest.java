@@ -0,0 +1,76 @@
+package com.codebase.itemservice.search;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+class InvertedIndexTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvertedIndexTest.class);
+
+    private InvertedIndex index;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @BeforeEach
+    void init() {
+        index = new InvertedIndex();
+        index.put("L1", "Apple iPhone 15", "The latest Apple smartphone with A17 chip");
+        index.put("L2", "Samsung Galaxy S24", "Flagship Android smartphone by Samsung");
+        index.put("L3", "Phone case", "Protective case that fits the Apple iPhone");
+    }
+
+    @Test
+    public void testNameMatchOutranksDescriptionMatch() {
+        List<SearchHit> hits = index.search("iphone", 10, false);
+
+        Assertions.assertEquals(List.of("L1", "L3"), hits.stream().map(SearchHit::itemId).toList());
+        Assertions.assertTrue(hits.get(0).score() > hits.get(1).score());
+        Assertions.assertEquals("Apple iPhone 15", hits.get(0).name());
+        logger.info("End testNameMatchOutranksDescriptionMatch Testing");
+    }
+
+    @Test
+    public void testPrefixMatchForAutocomplete() {
+        Assertions.assertTrue(index.search("sams", 10, false).isEmpty());
+
+        List<SearchHit> hits = index.search("sams", 10, true);
+        Assertions.assertEquals(1, hits.size());
+        Assertions.assertEquals("L2", hits.get(0).itemId());
+        logger.info("End testPrefixMatchForAutocomplete Testing");
+    }
+
+    @Test
+    public void testTopKIsBounded() {
+        List<SearchHit> hits = index.search("smartphone apple", 1, false);
+
+        Assertions.assertEquals(1, hits.size());
+        Assertions.assertEquals("L1", hits.get(0).itemId());
+        logger.info("End testTopKIsBounded Testing");
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        index.put("L3", "Screen protector", "Tempered glass");
+        Assertions.assertEquals(List.of("L1"), index.search("iphone", 10, false).stream().map(SearchHit::itemId).toList());
+
+        index.remove("L1");
+        Assertions.assertTrue(index.search("iphone", 10, true).isEmpty());
+        Assertions.assertEquals(2, index.size());
+        logger.info("End testUpdateAndRemove Testing");
+    }
+
+    @Test
+    public void testTokenizerFoldsCaseAndAccents() {
+        Assertions.assertEquals(List.of("creme", "brulee", "250g"), Tokenizer.tokenize("Crème-BRÛLÉE, 250g"));
+        logger.info("End testTokenizerFoldsCaseAndAccents Testing");
+    }
+}
@@ -0,0 +1,207 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.event.StockChangedEvent;
+import com.codebase.itemservice.model.ChangeOutboxEntry;
+import com.codebase.itemservice.model.ChangeOutboxEntry.Kind;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.InventoryBucket;
+import com.codebase.itemservice.model.Item;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeEventRelayTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeEventRelayTest.class);
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private StripedInventoryService stripedInventory;
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Mock
+    private BulkOperations clearOps;
+
+    @Mock
+    private BulkOperations bucketOps;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ChangeEventRelay relay;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new ChangeEventRelay(mongoTemplate, stripedInventory, kafkaTemplate, meterRegistry);
+    }
+
+    private void stubNothingElse() {
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class))).thenReturn(List.of());
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Item.class))).thenReturn(List.of());
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(ChangeOutboxEntry.class))).thenReturn(List.of());
+    }
+
+    @Test
+    public void testRelayClaimsBeforeLoadingAndClearsOnlyTheLoadedVersion() {
+        stubNothingElse();
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Inventory.class)))
+                .thenReturn(List.of(record("r1", "L1", 0, 1L)), List.of(record("r1", "L1", 7, 4L)));
+        Mockito.when(kafkaTemplate.send(Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(Mockito.mock(SendResult.class)));
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Inventory.class)).thenReturn(clearOps);
+
+        Assertions.assertEquals(1, relay.relay());
+
+        // the state is read only once this run holds the record
+        InOrder inOrder = Mockito.inOrder(mongoTemplate);
+        inOrder.verify(mongoTemplate).find(Mockito.any(Query.class), Mockito.eq(Inventory.class));
+        ArgumentCaptor<Update> claim = ArgumentCaptor.forClass(Update.class);
+        inOrder.verify(mongoTemplate).updateMulti(Mockito.any(Query.class), claim.capture(), Mockito.eq(Inventory.class));
+        inOrder.verify(mongoTemplate).find(Mockito.any(Query.class), Mockito.eq(Inventory.class));
+        Assertions.assertTrue(claim.getValue().modifies(ChangeEventRelay.CLAIM));
+
+        ArgumentCaptor<Object> value = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(kafkaTemplate).send(Mockito.eq("stock-changes"), Mockito.eq("L1"), value.capture());
+        StockChangedEvent event = (StockChangedEvent) value.getValue();
+        Assertions.assertEquals(7, event.getQuantity());
+        Assertions.assertEquals(4L, event.getVersion());
+        Mockito.verify(kafkaTemplate, Mockito.times(1)).flush();
+
+        // cleared only if the record did not change while publishing
+        ArgumentCaptor<Query> cleared = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(clearOps).updateOne(cleared.capture(), Mockito.any(Update.class));
+        Document filter = cleared.getValue().getQueryObject();
+        Assertions.assertEquals(4L, filter.get("version"));
+        Assertions.assertTrue(filter.containsKey(ChangeEventRelay.HAND_OVERS));
+        Assertions.assertEquals(claim.getValue().getUpdateObject().get("$set", Document.class).get(ChangeEventRelay.CLAIM),
+                filter.get(ChangeEventRelay.CLAIM));
+        Mockito.verify(clearOps).execute();
+        Assertions.assertEquals(1, meterRegistry.counter("item.events.published", "topic", "stock-changes").count());
+
+        logger.info("End testRelayClaimsBeforeLoadingAndClearsOnlyTheLoadedVersion Testing");
+    }
+
+    @Test
+    public void testRefusedSendStopsTheBatchAndReleasesClaims() {
+        stubNothingElse();
+        List<Inventory> claimed = List.of(record("r1", "L1", 2, 1L), record("r2", "L2", 3, 1L));
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(claimed);
+        Mockito.when(kafkaTemplate.send(Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenThrow(new KafkaException("no metadata"));
+
+        Assertions.assertEquals(0, relay.relay());
+
+        // the second record is not offered to a producer that just refused one
+        Mockito.verify(kafkaTemplate, Mockito.times(1)).send(Mockito.anyString(), Mockito.anyString(), Mockito.any());
+        Mockito.verify(mongoTemplate, Mockito.never()).bulkOps(Mockito.any(BulkOperations.BulkMode.class),
+                Mockito.eq(Inventory.class));
+        // claim, then release so the next run can take them straight away
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate, Mockito.times(2)).updateMulti(Mockito.any(Query.class), updates.capture(),
+                Mockito.eq(Inventory.class));
+        Assertions.assertTrue(updates.getAllValues().get(1).getUpdateObject().containsKey("$unset"));
+        Assertions.assertEquals(2, meterRegistry.counter("item.events.failed", "topic", "stock-changes").count());
+
+        logger.info("End testRefusedSendStopsTheBatchAndReleasesClaims Testing");
+    }
+
+    @Test
+    public void testBucketMarksAreHandedToTheRecordFirst() {
+        InventoryBucket bucket = new InventoryBucket("L1", 0, 5);
+        bucket.setId("b1");
+        bucket.setUnpublishedAt(Instant.parse("2024-01-01T00:00:00Z"));
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(List.of(bucket));
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Inventory.class)).thenReturn(clearOps);
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, InventoryBucket.class)).thenReturn(bucketOps);
+
+        relay.handOverBuckets();
+
+        ArgumentCaptor<Update> marked = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(clearOps).updateOne(Mockito.any(Query.class), marked.capture());
+        Assertions.assertTrue(marked.getValue().modifies(ChangeOutbox.UNPUBLISHED));
+        // the record's version is not the relay's to bump
+        Assertions.assertTrue(marked.getValue().modifies(ChangeEventRelay.HAND_OVERS));
+        Assertions.assertFalse(marked.getValue().modifies("version"));
+        // a bucket written again since it was read keeps its mark
+        ArgumentCaptor<Query> cleared = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(bucketOps).updateOne(cleared.capture(), Mockito.any(Update.class));
+        Assertions.assertEquals(5, cleared.getValue().getQueryObject().get("quantity"));
+        InOrder inOrder = Mockito.inOrder(clearOps, bucketOps);
+        inOrder.verify(clearOps).execute();
+        inOrder.verify(bucketOps).execute();
+
+        logger.info("End testBucketMarksAreHandedToTheRecordFirst Testing");
+    }
+
+    @Test
+    public void testDeletionIsPublishedAsTombstone() {
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class))).thenReturn(List.of());
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(List.of());
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Item.class))).thenReturn(List.of());
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(ChangeOutboxEntry.class)))
+                .thenReturn(List.of(entry(Kind.ITEM, "L2", 1)));
+        Mockito.when(kafkaTemplate.send(Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(Mockito.mock(SendResult.class)));
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChangeOutboxEntry.class)).thenReturn(clearOps);
+
+        Assertions.assertEquals(1, relay.relay());
+
+        // the item is gone: a tombstone lets compaction drop the key
+        Mockito.verify(kafkaTemplate).send("item-changes", "L2", null);
+        Mockito.verify(clearOps).updateOne(Mockito.any(Query.class), Mockito.any(Update.class));
+        Mockito.verify(clearOps).execute();
+
+        logger.info("End testDeletionIsPublishedAsTombstone Testing");
+    }
+
+    private static Inventory record(String id, String itemId, int quantity, Long version) {
+        Inventory inv = new Inventory(itemId, quantity);
+        inv.setId(id);
+        inv.setVersion(version);
+        return inv;
+    }
+
+    private static ChangeOutboxEntry entry(Kind kind, String itemId, long seq) {
+        ChangeOutboxEntry e = new ChangeOutboxEntry();
+        e.setId(ChangeOutboxEntry.idOf(kind, itemId));
+        e.setItemId(itemId);
+        e.setKind(kind);
+        e.setSeq(seq);
+        e.setPending(true);
+        e.setChangedAt(Instant.now());
+        return e;
+    }
+}
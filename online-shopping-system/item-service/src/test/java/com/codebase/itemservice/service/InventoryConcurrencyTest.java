@@ -0,0 +1,138 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.model.IdempotencyRecord;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.repository.InventoryRepository;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Hammers one inventory record from many threads against a real MongoDB.
+ * Every successful mutation must report a distinct post-update quantity,
+ * and the reported values must account for every unit; keyed retries
+ * must apply once. Skipped when
+ * Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class InventoryConcurrencyTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryConcurrencyTest.class);
+
+    private static final int THREADS = 16;
+
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private static InventoryService inventoryService;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+        client = MongoClients.create(mongo.getConnectionString());
+        mongoTemplate = new MongoTemplate(client, "itemdb");
+        InventoryRepository repository = new MongoRepositoryFactory(mongoTemplate).getRepository(InventoryRepository.class);
+        inventoryService = new InventoryService(repository, mongoTemplate, new StripedInventoryService(mongoTemplate),
+                new StockAlertPublisher(Mockito.mock(KafkaTemplate.class), 10_000),
+                new ChangeOutbox(mongoTemplate, new SimpleMeterRegistry()));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    @BeforeEach
+    void reset() {
+        mongoTemplate.dropCollection(Inventory.class);
+        mongoTemplate.dropCollection(IdempotencyRecord.class);
+    }
+
+    private static <T> List<T> runConcurrently(int calls, Callable<T> call) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return call.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> f : futures) {
+                results.add(f.get());
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentDecrementsReportEveryQuantityOnce() throws Exception {
+        inventoryService.createInventory("L1", 100);
+
+        List<OptionalInt> results = runConcurrently(150, () -> inventoryService.decrement("L1", 1));
+
+        List<Integer> reported = results.stream().filter(OptionalInt::isPresent).map(OptionalInt::getAsInt).toList();
+        // exactly the stock on hand is sold, and each sale saw its own post-update level 99..0
+        Assertions.assertEquals(100, reported.size());
+        Assertions.assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toSet()), new HashSet<>(reported));
+        Assertions.assertEquals(0, inventoryService.getInventoryForItem("L1").orElseThrow().getQuantity());
+        logger.info("End testConcurrentDecrementsReportEveryQuantityOnce Testing");
+    }
+
+    @Test
+    public void testConcurrentIncrementsReportEveryQuantityOnce() throws Exception {
+        inventoryService.createInventory("L1", 0);
+
+        Set<Integer> reported = new HashSet<>(runConcurrently(100, () -> inventoryService.increment("L1", 2)));
+
+        Assertions.assertEquals(IntStream.rangeClosed(1, 100).map(i -> i * 2).boxed().collect(Collectors.toSet()), reported);
+        Assertions.assertEquals(200, inventoryService.getInventoryForItem("L1").orElseThrow().getQuantity());
+        logger.info("End testConcurrentIncrementsReportEveryQuantityOnce Testing");
+    }
+
+    @Test
+    public void testRetriesWithOneKeyApplyOnce() throws Exception {
+        inventoryService.createInventory("L1", 10);
+
+        Set<OptionalInt> reported = new HashSet<>(runConcurrently(50, () -> inventoryService.decrement("L1", 3, "order-1")));
+
+        // every duplicate sees the first call's outcome and stock moves only once
+        Assertions.assertEquals(Set.of(OptionalInt.of(7)), reported);
+        Assertions.assertEquals(7, inventoryService.getInventoryForItem("L1").orElseThrow().getQuantity());
+        logger.info("End testRetriesWithOneKeyApplyOnce Testing");
+    }
+}
@@ -0,0 +1,185 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.dto.ReservationResult;
+import com.codebase.itemservice.dto.StockLine;
+import com.codebase.itemservice.exception.ConflictException;
+import com.codebase.itemservice.exception.InsufficientStockException;
+import com.codebase.itemservice.model.InventoryHold;
+import org.bson.Document;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryHoldServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryHoldServiceTest.class);
+
+    private static final Instant NOW = Instant.parse("2024-05-01T10:00:00Z");
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    private InventoryHoldService holdService;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @BeforeEach
+    void init() {
+        holdService = new InventoryHoldService(mongoTemplate, inventoryService, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    public void testPlaceHold() {
+        List<StockLine> lines = List.of(new StockLine("L1", 2));
+        Mockito.when(mongoTemplate.insert(Mockito.any(InventoryHold.class))).thenAnswer(i -> {
+            InventoryHold pending = i.getArgument(0);
+            Assertions.assertEquals(InventoryHold.Status.PENDING, pending.getStatus());
+            pending.setId("H1");
+            return pending;
+        });
+        Mockito.when(inventoryService.reserveAll(Mockito.anyList(), Mockito.eq("hold-H1"))).thenReturn(new ReservationResult(true, List.of(
+                new ReservationResult.LineResult("L1", 2, ReservationResult.LineStatus.RESERVED))));
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(InventoryHold.class))).thenAnswer(i -> {
+            InventoryHold active = new InventoryHold(List.of(new InventoryHold.Line("L1", 2)), NOW, NOW.plusSeconds(60));
+            active.setId("H1");
+            active.setStatus(InventoryHold.Status.ACTIVE);
+            return active;
+        });
+
+        InventoryHold hold = holdService.place(lines, 60L);
+
+        Assertions.assertEquals(InventoryHold.Status.ACTIVE, hold.getStatus());
+        Assertions.assertEquals(NOW.plusSeconds(60), hold.getExpiresAt());
+        Assertions.assertEquals("L1", hold.getLines().get(0).getItemId());
+        Assertions.assertEquals(2, hold.getLines().get(0).getQuantity());
+        // the hold is on record before any stock is taken
+        InOrder order = Mockito.inOrder(mongoTemplate, inventoryService);
+        order.verify(mongoTemplate).insert(Mockito.any(InventoryHold.class));
+        order.verify(inventoryService).reserveAll(Mockito.anyList(), Mockito.eq("hold-H1"));
+
+        logger.info("End testPlaceHold Testing");
+    }
+
+    @Test
+    public void testPlaceHoldWithNotEnoughStock() {
+        List<StockLine> lines = List.of(new StockLine("L1", 2));
+        Mockito.when(mongoTemplate.insert(Mockito.any(InventoryHold.class))).thenAnswer(i -> {
+            InventoryHold pending = i.getArgument(0);
+            pending.setId("H1");
+            return pending;
+        });
+        Mockito.when(inventoryService.reserveAll(Mockito.anyList(), Mockito.eq("hold-H1"))).thenReturn(new ReservationResult(false, List.of(
+                new ReservationResult.LineResult("L1", 2, ReservationResult.LineStatus.INSUFFICIENT))));
+
+        Assertions.assertThrows(InsufficientStockException.class, () -> holdService.place(lines, null));
+        // nothing is owed, so the hold is settled right away
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate).findAndModify(Mockito.any(Query.class), update.capture(),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(InventoryHold.class));
+        Assertions.assertEquals(InventoryHold.Status.RELEASED, update.getValue().getUpdateObject().get("$set", Document.class).get("status"));
+        Assertions.assertTrue(update.getValue().getUpdateObject().get("$set", Document.class).containsKey("closedAt"));
+
+        logger.info("End testPlaceHoldWithNotEnoughStock Testing");
+    }
+
+    @Test
+    public void testReleaseReturnsStockBeforeSettling() {
+        InventoryHold released = hold("H1", InventoryHold.Status.RELEASED);
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(InventoryHold.class))).thenReturn(released);
+        Mockito.when(inventoryService.reserveAll(Mockito.anyList(), Mockito.eq("hold-H1"))).thenReturn(new ReservationResult(true, List.of()));
+
+        InventoryHold hold = holdService.release("H1");
+
+        Assertions.assertEquals(NOW, hold.getClosedAt());
+        InOrder order = Mockito.inOrder(inventoryService, mongoTemplate);
+        order.verify(inventoryService).increment("L1", 2, "hold-H1-release-L1");
+        order.verify(inventoryService).increment("L2", 1, "hold-H1-release-L2");
+        order.verify(mongoTemplate).updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(InventoryHold.class));
+        logger.info("End testReleaseReturnsStockBeforeSettling Testing");
+    }
+
+    @Test
+    public void testCommitWhenNotActive() {
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(InventoryHold.class))).thenReturn(null);
+        Mockito.when(mongoTemplate.exists(Mockito.any(Query.class), Mockito.eq(InventoryHold.class))).thenReturn(true);
+
+        Assertions.assertThrows(ConflictException.class, () -> holdService.commit("H1"));
+        Mockito.verifyNoInteractions(inventoryService);
+        logger.info("End testCommitWhenNotActive Testing");
+    }
+
+    @Test
+    public void testSweepExpiredClaimsThenReturnsStock() {
+        InventoryHold expired = hold("H1", InventoryHold.Status.EXPIRED);
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(InventoryHold.class)))
+                .thenReturn(List.of(hold("H1", InventoryHold.Status.ACTIVE), hold("H2", InventoryHold.Status.ACTIVE)))
+                .thenReturn(List.of(expired));
+        // H2 is claimed by another replica between the find and the claim
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(InventoryHold.class)))
+                .thenReturn(expired)
+                .thenReturn(null);
+        Mockito.when(inventoryService.reserveAll(Mockito.anyList(), Mockito.eq("hold-H1"))).thenReturn(new ReservationResult(true, List.of()));
+
+        int returned = holdService.sweepExpired();
+
+        Assertions.assertEquals(1, returned);
+        Mockito.verify(inventoryService).increment("L1", 2, "hold-H1-release-L1");
+        Mockito.verify(inventoryService).increment("L2", 1, "hold-H1-release-L2");
+        logger.info("End testSweepExpiredClaimsThenReturnsStock Testing");
+    }
+
+    @Test
+    public void testSweepSettlesPendingHoldWhoseUnitsWereNeverTaken() {
+        // a placement crashed after writing the hold; replaying its reservation finds nothing held
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(InventoryHold.class)))
+                .thenReturn(List.of(hold("H3", InventoryHold.Status.PENDING)))
+                .thenReturn(List.of(hold("H3", InventoryHold.Status.EXPIRED)));
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(InventoryHold.class)))
+                .thenReturn(hold("H3", InventoryHold.Status.EXPIRED));
+        Mockito.when(inventoryService.reserveAll(Mockito.anyList(), Mockito.eq("hold-H3"))).thenReturn(new ReservationResult(false, List.of()));
+
+        Assertions.assertEquals(1, holdService.sweepExpired());
+        Mockito.verify(inventoryService, Mockito.never()).increment(Mockito.anyString(), Mockito.anyInt(), Mockito.anyString());
+        Mockito.verify(mongoTemplate).updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(InventoryHold.class));
+        logger.info("End testSweepSettlesPendingHoldWhoseUnitsWereNeverTaken Testing");
+    }
+
+    private static InventoryHold hold(String id, InventoryHold.Status status) {
+        InventoryHold hold = new InventoryHold(
+                List.of(new InventoryHold.Line("L1", 2), new InventoryHold.Line("L2", 1)),
+                NOW.minusSeconds(600), NOW.minusSeconds(1));
+        hold.setId(id);
+        hold.setStatus(status);
+        return hold;
+    }
+}
@@ -0,0 +1,112 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.config.IndexManager;
+import com.codebase.itemservice.model.Inventory;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs {@code explain()} for every inventory query path against a real
+ * MongoDB with the indexes from {@link IndexManager}, and fails if any
+ * plan scans the collection. Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class InventoryQueryPlanTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryQueryPlanTest.class);
+
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+        client = MongoClients.create(mongo.getConnectionString());
+        mongoTemplate = new MongoTemplate(client, "itemdb");
+        List<Inventory> rows = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Inventory inv = new Inventory("item-" + i, i % 50);
+            inv.setVersion(0L);
+            rows.add(inv);
+        }
+        mongoTemplate.insertAll(rows);
+        Assertions.assertEquals(IndexManager.INDEXES.size(), IndexManager.ensureIndexes(mongoTemplate));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    /**
+     * The filters of every inventory query path, keyed by path. The
+     * derived repository queries are spelled out; everything else comes
+     * from the builders InventoryService and ChangeEventRelay use.
+     */
+    private static Map<String, Query> queryPaths() {
+        return Map.of(
+                "findByItemId / deleteByItemId / incrementAll",
+                new Query(Criteria.where("itemId").is("item-7")),
+                "decrement",
+                InventoryService.decrementQuery("item-7", 3),
+                "increment",
+                InventoryService.incrementQuery("item-7"),
+                "keyed decrement",
+                InventoryService.keyedQuery("item-7", "k-1", 3),
+                "keyed increment",
+                InventoryService.keyedQuery("item-7", "k-1", null),
+                "incrementAll striped lookup",
+                InventoryService.stripedAmong(List.of("item-1", "item-2")),
+                "adjustAll existing lookup",
+                InventoryService.existingAmong(List.of("item-1", "item-2", "missing")),
+                "adjustAll take",
+                InventoryService.feedTakeQuery("item-7", 3, true),
+                "adjustAll clamp",
+                InventoryService.feedTakeQuery("item-7", 3, false),
+                "relay due records",
+                ChangeEventRelay.dueQuery(Instant.now(), 500));
+    }
+
+    @Test
+    public void testNoInventoryQueryScansTheCollection() {
+        queryPaths().forEach((path, query) -> {
+            Document plan = mongoTemplate.getCollection("inventory")
+                    .find(query.getQueryObject())
+                    .explain()
+                    .get("queryPlanner", Document.class)
+                    .get("winningPlan", Document.class);
+            logger.info("{}: {}", path, plan.toJson());
+            Assertions.assertFalse(plan.toJson().contains("COLLSCAN"), path + " scans the collection: " + plan.toJson());
+        });
+        logger.info("End testNoInventoryQueryScansTheCollection Testing");
+    }
+
+    @Test
+    public void testItemIdIsUnique() {
+        Inventory duplicate = new Inventory("item-7", 1);
+        Assertions.assertThrows(DuplicateKeyException.class, () -> mongoTemplate.insert(duplicate));
+        logger.info("End testItemIdIsUnique Testing");
+    }
+}
@@ -1,8 +1,14 @@
 package com.codebase.itemservice.service;
 
+import com.codebase.itemservice.dto.AdjustmentReport;
+import com.codebase.itemservice.dto.ReservationResult;
+import com.codebase.itemservice.dto.StockLine;
+import com.codebase.itemservice.event.StockAlertEvent;
 import com.codebase.itemservice.exception.NotFoundException;
+import com.codebase.itemservice.model.IdempotencyRecord;
 import com.codebase.itemservice.model.Inventory;
 import com.codebase.itemservice.repository.InventoryRepository;
+import org.bson.Document;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -11,9 +17,27 @@ import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
-
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.ArgumentMatchers.argThat;
 
@@ -28,6 +52,15 @@ class InventoryServiceTest {
     @Mock
     private MongoTemplate mongoTemplate;
 
+    @Mock
+    private StripedInventoryService stripedInventory;
+
+    @Mock
+    private StockAlertPublisher alertPublisher;
+
+    @Mock
+    private ChangeOutbox changeOutbox;
+
     @InjectMocks
     private InventoryService inventoryService;
 
@@ -65,41 +98,36 @@ class InventoryServiceTest {
         Optional<Inventory> toFind = inventoryService.getInventoryForItem("L1");
 
         Assertions.assertTrue(toFind.isPresent());
-        Assertions.assertEquals(inventory, toFind.get());
+        Assertions.assertEquals(inventory.getItemId(), toFind.get().getItemId());
         Assertions.assertEquals(inventory.getQuantity(), toFind.get().getQuantity());
         logger.info("End testGetInventoryForItem Testing");
     }
 
     @Test
     public void testUpdateInventoryWithFound() {
-        Inventory existing = new Inventory("L1", 5);
-
-        Mockito.when(inventoryRepository.findByItemId("L1")).thenReturn(Optional.of(existing));
-        Mockito.when(inventoryRepository.save(Mockito.any(Inventory.class))).thenAnswer(i -> i.getArgument(0));
+        Inventory written = new Inventory("L1", 10);
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class))).thenReturn(written);
 
         Inventory result = inventoryService.updateInventory("L1", 10);
 
-        Assertions.assertNotNull(result);
-        Assertions.assertSame(existing, result);
-        Assertions.assertEquals("L1", result.getItemId());
-        Assertions.assertEquals(10, result.getQuantity());
-
-        ArgumentCaptor<Inventory> captor = ArgumentCaptor.forClass(Inventory.class);
-        Mockito.verify(inventoryRepository, Mockito.times(1)).findByItemId("L1");
-        Mockito.verify(inventoryRepository, Mockito.times(1)).save(captor.capture());
-        Inventory capture = captor.getValue();
-        Assertions.assertEquals("L1", capture.getItemId());
-        Assertions.assertEquals(10, capture.getQuantity());
-
-        Mockito.verifyNoMoreInteractions(inventoryRepository);
+        Assertions.assertSame(written, result);
+        // a targeted update that neither reads nor rewrites the ledger tail
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate).findAndModify(query.capture(), update.capture(),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class));
+        Assertions.assertEquals(0, query.getValue().getFieldsObject().get("movements"));
+        Assertions.assertEquals(10, update.getValue().getUpdateObject().get("$set", Document.class).get("quantity"));
+        Assertions.assertTrue(update.getValue().getUpdateObject().containsKey("$push"));
+        Mockito.verifyNoInteractions(inventoryRepository);
 
         logger.info("End testUpdateInventoryWithFound Testing");
     }
 
     @Test
     public void testUpdateInventoryWithNotFound() {
-        Mockito.when(inventoryRepository.findByItemId(ArgumentMatchers.anyString()))
-                .thenThrow(new NotFoundException("Inventory not found for itemId: " + "L1"));
+        Mockito.when(inventoryRepository.findByItemId(ArgumentMatchers.anyString())).thenReturn(Optional.empty());
 
         Assertions.assertThrows(NotFoundException.class, () -> inventoryService.updateInventory("L1", 10));
         Mockito.verify(inventoryRepository, Mockito.times(1)).findByItemId("L1");
@@ -118,4 +146,438 @@ class InventoryServiceTest {
         logger.info("End testDeleteByItemId Testing");
     }
 
+    @Test
+    public void testReserveAllWithEnoughStock() {
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class)))
+                .thenReturn(new Inventory("L1", 0));
+
+        ReservationResult result = inventoryService.reserveAll(List.of(
+                new StockLine("L1", 1), new StockLine("L2", 2), new StockLine("L1", 3)));
+
+        Assertions.assertTrue(result.isReserved());
+        // duplicate lines for L1 are merged into a single conditional update
+        Assertions.assertEquals(2, result.getLines().size());
+        Assertions.assertEquals(4, result.getLines().get(0).getQuantity());
+        Assertions.assertTrue(result.getLines().stream()
+                .allMatch(l -> l.getStatus() == ReservationResult.LineStatus.RESERVED));
+        Mockito.verify(mongoTemplate, Mockito.times(2)).findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class));
+        Mockito.verify(mongoTemplate, Mockito.never()).bulkOps(Mockito.any(BulkOperations.BulkMode.class), Mockito.eq(Inventory.class));
+
+        logger.info("End testReserveAllWithEnoughStock Testing");
+    }
+
+    @Test
+    public void testReserveAllRollsBackOnShortage() {
+        BulkOperations bulk = Mockito.mock(BulkOperations.class);
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class)))
+                .thenReturn(new Inventory("L1", 0))
+                .thenReturn(null);
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Inventory.class)).thenReturn(bulk);
+
+        ReservationResult result = inventoryService.reserveAll(List.of(
+                new StockLine("L1", 1), new StockLine("L2", 5), new StockLine("L3", 1)));
+
+        Assertions.assertFalse(result.isReserved());
+        Assertions.assertEquals(ReservationResult.LineStatus.ROLLED_BACK, result.getLines().get(0).getStatus());
+        Assertions.assertEquals(ReservationResult.LineStatus.INSUFFICIENT, result.getLines().get(1).getStatus());
+        Assertions.assertEquals(ReservationResult.LineStatus.SKIPPED, result.getLines().get(2).getStatus());
+
+        // only the line that was actually taken is handed back
+        Mockito.verify(bulk, Mockito.times(1)).updateOne(Mockito.any(Query.class), Mockito.any(Update.class));
+        Mockito.verify(bulk, Mockito.times(1)).execute();
+
+        logger.info("End testReserveAllRollsBackOnShortage Testing");
+    }
+
+    @Test
+    public void testReserveAllRollsBackWhenDecrementThrows() {
+        BulkOperations bulk = Mockito.mock(BulkOperations.class);
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class)))
+                .thenReturn(new Inventory("L1", 0))
+                .thenThrow(new QueryTimeoutException("timed out"));
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Inventory.class)).thenReturn(bulk);
+
+        Assertions.assertThrows(QueryTimeoutException.class, () -> inventoryService.reserveAll(List.of(
+                new StockLine("L1", 1), new StockLine("L2", 5), new StockLine("L3", 1))));
+
+        // L1 was taken before the failure and is handed back
+        Mockito.verify(bulk, Mockito.times(1)).updateOne(Mockito.any(Query.class), Mockito.any(Update.class));
+        Mockito.verify(bulk, Mockito.times(1)).execute();
+
+        logger.info("End testReserveAllRollsBackWhenDecrementThrows Testing");
+    }
+
+    @Test
+    public void testDecrementIfEnoughOnStripedItem() {
+        Mockito.when(stripedInventory.knownStripes("L1")).thenReturn(4);
+        Mockito.when(stripedInventory.tryDecrement("L1", 4, 2)).thenReturn(true);
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(new Inventory("L1", 0));
+
+        Assertions.assertTrue(inventoryService.decrementIfEnough("L1", 2));
+        // the hot path goes straight to the buckets; the record is only read for the reply
+        Mockito.verify(mongoTemplate, Mockito.never()).findAndModify(Mockito.any(Query.class), Mockito.any(UpdateDefinition.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class));
+        Mockito.verifyNoInteractions(inventoryRepository);
+
+        logger.info("End testDecrementIfEnoughOnStripedItem Testing");
+    }
+
+    @Test
+    public void testStripedDecrementCountsParkedUnitsAndRaisesLowStock() {
+        Mockito.when(stripedInventory.knownStripes("L1")).thenReturn(4);
+        Mockito.when(stripedInventory.tryDecrement("L1", 4, 3)).thenReturn(true);
+        Inventory record = new Inventory("L1", 2);
+        record.setReorderThreshold(10);
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(record);
+        Mockito.when(stripedInventory.total("L1")).thenReturn(7);
+
+        // 2 parked on the record + 7 in the buckets, as GET /inventory reports it
+        Assertions.assertEquals(9, inventoryService.decrement("L1", 3).getAsInt());
+
+        ArgumentCaptor<StockAlertEvent> alert = ArgumentCaptor.forClass(StockAlertEvent.class);
+        Mockito.verify(alertPublisher).publish(alert.capture());
+        Assertions.assertEquals(StockAlertEvent.Type.LOW_STOCK, alert.getValue().getType());
+        Assertions.assertEquals(9, alert.getValue().getQuantity());
+
+        logger.info("End testStripedDecrementCountsParkedUnitsAndRaisesLowStock Testing");
+    }
+
+    @Test
+    public void testGetInventoryForStripedItemSumsBuckets() {
+        Inventory inventory = new Inventory("L1", 0);
+        inventory.setStripes(4);
+        Mockito.when(inventoryRepository.findByItemId("L1")).thenReturn(Optional.of(inventory));
+        Mockito.when(stripedInventory.total("L1")).thenReturn(37);
+
+        Assertions.assertEquals(37, inventoryService.getInventoryForItem("L1").orElseThrow().getQuantity());
+
+        logger.info("End testGetInventoryForStripedItemSumsBuckets Testing");
+    }
+
+    @Test
+    public void testCoalescedInventoryReadsGetTheirOwnCopy() throws Exception {
+        inventoryService.configureLookups(4, Duration.ofSeconds(5));
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(inventoryRepository.findByItemId("L1")).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return Optional.of(new Inventory("L1", 5));
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Inventory> leader = pool.submit(() -> inventoryService.getInventoryForItem("L1").orElseThrow());
+            entered.await();
+            Future<Inventory> waiter = pool.submit(() -> inventoryService.getInventoryForItem("L1").orElseThrow());
+            // give the second read time to join the lookup in flight
+            Thread.sleep(100);
+            release.countDown();
+
+            Inventory first = leader.get(5, TimeUnit.SECONDS);
+            Inventory second = waiter.get(5, TimeUnit.SECONDS);
+            Assertions.assertNotSame(first, second);
+            first.setQuantity(0);
+            Assertions.assertEquals(5, second.getQuantity());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        logger.info("End testCoalescedInventoryReadsGetTheirOwnCopy Testing");
+    }
+
+    @Test
+    public void testDecrementBumpsVersion() {
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class)))
+                .thenReturn(new Inventory("L1", 4));
+
+        Assertions.assertTrue(inventoryService.decrementIfEnough("L1", 1));
+
+        // every atomic stock write moves the version so ETags change with it
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate).findAndModify(Mockito.any(Query.class), captor.capture(),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class));
+        Assertions.assertTrue(captor.getValue().modifies("version"));
+
+        logger.info("End testDecrementBumpsVersion Testing");
+    }
+
+    @Test
+    public void testDecrementReturnsQuantityAsWritten() {
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class)))
+                .thenReturn(new Inventory("L1", 7));
+
+        Assertions.assertEquals(7, inventoryService.decrement("L1", 3).getAsInt());
+
+        // one round-trip: the new quantity comes back with the write, no follow-up read
+        ArgumentCaptor<FindAndModifyOptions> captor = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        Mockito.verify(mongoTemplate).findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                captor.capture(), Mockito.eq(Inventory.class));
+        Assertions.assertTrue(captor.getValue().isReturnNew());
+        Mockito.verifyNoInteractions(inventoryRepository);
+
+        logger.info("End testDecrementReturnsQuantityAsWritten Testing");
+    }
+
+    @Test
+    public void testIncrementReturnsQuantityAsWritten() {
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class)))
+                .thenReturn(new Inventory("L1", 12));
+
+        Assertions.assertEquals(12, inventoryService.increment("L1", 2));
+        Mockito.verifyNoInteractions(inventoryRepository);
+        // the change is marked for the relay in the same update
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate).findAndModify(Mockito.any(Query.class), update.capture(),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class));
+        Assertions.assertTrue(update.getValue().modifies(ChangeOutbox.UNPUBLISHED));
+        Mockito.verifyNoInteractions(changeOutbox);
+
+        logger.info("End testIncrementReturnsQuantityAsWritten Testing");
+    }
+
+    @Test
+    public void testIncrementWithNotFound() {
+        Mockito.when(inventoryRepository.findByItemId("L1")).thenReturn(Optional.empty());
+
+        Assertions.assertThrows(NotFoundException.class, () -> inventoryService.increment("L1", 2));
+
+        logger.info("End testIncrementWithNotFound Testing");
+    }
+
+    @Test
+    public void testDecrementAcrossThresholdRaisesLowStock() {
+        Inventory written = new Inventory("L1", 4);
+        written.setReorderThreshold(5);
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class)))
+                .thenReturn(written);
+
+        Assertions.assertEquals(4, inventoryService.decrement("L1", 3).getAsInt());
+
+        // 7 -> 4 crosses the threshold of 5, detected from the document the update returned
+        ArgumentCaptor<StockAlertEvent> captor = ArgumentCaptor.forClass(StockAlertEvent.class);
+        Mockito.verify(alertPublisher).publish(captor.capture());
+        Assertions.assertEquals(StockAlertEvent.Type.LOW_STOCK, captor.getValue().getType());
+        Assertions.assertEquals(4, captor.getValue().getQuantity());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate).findAndModify(query.capture(), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class));
+        Assertions.assertTrue(query.getValue().getFieldsObject().containsKey("reorderThreshold"));
+
+        logger.info("End testDecrementAcrossThresholdRaisesLowStock Testing");
+    }
+
+    @Test
+    public void testDecrementBelowThresholdDoesNotRepeatAlert() {
+        Inventory written = new Inventory("L1", 2);
+        written.setReorderThreshold(5);
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class)))
+                .thenReturn(written);
+
+        // 4 -> 2 was already below the threshold
+        inventoryService.decrement("L1", 2);
+        Mockito.verifyNoInteractions(alertPublisher);
+
+        logger.info("End testDecrementBelowThresholdDoesNotRepeatAlert Testing");
+    }
+
+    @Test
+    public void testDecrementToZeroRaisesOutOfStock() {
+        Inventory written = new Inventory("L1", 0);
+        written.setReorderThreshold(5);
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class)))
+                .thenReturn(written);
+
+        inventoryService.decrement("L1", 2);
+
+        ArgumentCaptor<StockAlertEvent> captor = ArgumentCaptor.forClass(StockAlertEvent.class);
+        Mockito.verify(alertPublisher).publish(captor.capture());
+        Assertions.assertEquals(StockAlertEvent.Type.OUT_OF_STOCK, captor.getValue().getType());
+
+        logger.info("End testDecrementToZeroRaisesOutOfStock Testing");
+    }
+
+    @Test
+    public void testAdjustAllCoalescesAndReportsMissing() throws IOException {
+        Inventory l1 = new Inventory("L1", 0);
+        Inventory l3 = new Inventory("L3", 0);
+        l3.setStripes(4);
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Inventory.class)))
+                .thenReturn(List.of(l1, l3));
+        BulkOperations ops = Mockito.mock(BulkOperations.class);
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Inventory.class)).thenReturn(ops);
+        String feed = """
+                {"itemId":"L1","delta":5}
+                {"itemId":"L1","quantity":10}
+                {"itemId":"L1","delta":-3}
+                {"itemId":"L2","delta":1}
+                {"itemId":"L3","delta":4}
+                {"itemId":"L4","delta":1,"quantity":2}
+                not json
+                """;
+
+        AdjustmentReport report = inventoryService.adjustAll(
+                new ByteArrayInputStream(feed.getBytes(StandardCharsets.UTF_8)));
+
+        Assertions.assertEquals(5, report.getReceived());
+        Assertions.assertEquals(2, report.getAdjusted());
+        Assertions.assertEquals(List.of("L2"), report.getMissing());
+        Assertions.assertEquals(2, report.getFailed());
+        Assertions.assertEquals(6, report.getErrors().get(0).getRow());
+
+        // the absolute level wins over earlier deltas and later ones are added on top: one $set to 7
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(ops, Mockito.times(1)).updateOne(Mockito.any(Query.class), captor.capture());
+        Assertions.assertEquals(7, captor.getValue().getUpdateObject().get("$set", Document.class).get("quantity"));
+        Assertions.assertTrue(captor.getValue().modifies("version"));
+        Mockito.verify(ops).execute();
+        Mockito.verify(stripedInventory).increment("L3", 4, 4);
+        // one $in lookup for the whole chunk
+        Mockito.verify(mongoTemplate, Mockito.times(1)).find(Mockito.any(Query.class), Mockito.eq(Inventory.class));
+
+        logger.info("End testAdjustAllCoalescesAndReportsMissing Testing");
+    }
+
+    @Test
+    public void testAdjustAllClampsNegativeDeltaAtZero() throws IOException {
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Inventory.class)))
+                .thenReturn(List.of(new Inventory("L1", 0)));
+        BulkOperations ops = Mockito.mock(BulkOperations.class);
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Inventory.class)).thenReturn(ops);
+
+        inventoryService.adjustAll(new ByteArrayInputStream(
+                "{\"itemId\":\"L1\",\"delta\":-4}\n".getBytes(StandardCharsets.UTF_8)));
+
+        // set-to-zero when short, otherwise the conditional $inc; the first write makes the second a no-op
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(ops, Mockito.times(2)).updateOne(queries.capture(), updates.capture());
+        Assertions.assertTrue(queries.getAllValues().get(0).getQueryObject().toJson().contains("$lt"));
+        Assertions.assertEquals(0, updates.getAllValues().get(0).getUpdateObject().get("$set", Document.class).get("quantity"));
+        Assertions.assertTrue(queries.getAllValues().get(1).getQueryObject().toJson().contains("$gte"));
+        Assertions.assertEquals(-4, updates.getAllValues().get(1).getUpdateObject().get("$inc", Document.class).get("quantity"));
+
+        logger.info("End testAdjustAllClampsNegativeDeltaAtZero Testing");
+    }
+
+    @Test
+    public void testAdjustAllRejectsDeltaOutOfIntRange() throws IOException {
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Inventory.class)))
+                .thenReturn(List.of(new Inventory("L1", 0)));
+
+        AdjustmentReport report = inventoryService.adjustAll(new ByteArrayInputStream((
+                "{\"itemId\":\"L1\",\"delta\":-2147483648}\n"
+                        + "{\"itemId\":\"L1\",\"delta\":-1}\n").getBytes(StandardCharsets.UTF_8)));
+
+        // the two records add up to one below Integer.MIN_VALUE, which no int write can carry
+        Assertions.assertEquals(0, report.getAdjusted());
+        Assertions.assertEquals(1, report.getFailed());
+        Assertions.assertEquals(2, report.getErrors().get(0).getRow());
+        Mockito.verify(mongoTemplate, Mockito.never()).bulkOps(Mockito.any(BulkOperations.BulkMode.class), Mockito.eq(Inventory.class));
+
+        logger.info("End testAdjustAllRejectsDeltaOutOfIntRange Testing");
+    }
+
+    @Test
+    public void testKeyedDecrementReplaysRecordedResult() {
+        Mockito.when(mongoTemplate.findById("k1", IdempotencyRecord.class))
+                .thenReturn(new IdempotencyRecord("k1", "L1", "decrement", 2, 8, Instant.now()));
+
+        Assertions.assertEquals(8, inventoryService.decrement("L1", 2, "k1").getAsInt());
+        // a retry never touches stock again
+        Mockito.verify(mongoTemplate, Mockito.never()).findAndModify(Mockito.any(Query.class),
+                Mockito.any(UpdateDefinition.class), Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> inventoryService.decrement("L1", 3, "k1"));
+
+        logger.info("End testKeyedDecrementReplaysRecordedResult Testing");
+    }
+
+    @Test
+    public void testKeyedIncrementAppliesOnceAndRecords() {
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(AggregationUpdate.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class)))
+                .thenReturn(new Inventory("L1", 9));
+
+        Assertions.assertEquals(9, inventoryService.increment("L1", 4, "k2"));
+
+        // the key guard is part of the same update as the stock change
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate).findAndModify(query.capture(), Mockito.any(AggregationUpdate.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class));
+        Assertions.assertTrue(query.getValue().getQueryObject().toJson().contains("appliedKeys.key"));
+        ArgumentCaptor<IdempotencyRecord> record = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        Mockito.verify(mongoTemplate).insert(record.capture());
+        Assertions.assertEquals(9, record.getValue().getResult());
+
+        logger.info("End testKeyedIncrementAppliesOnceAndRecords Testing");
+    }
+
+    @Test
+    public void testKeyedDecrementAnswersDuplicateFromAppliedKeys() {
+        Inventory inventory = new Inventory("L1", 3);
+        inventory.setAppliedKeys(List.of(new Inventory.AppliedKey("k3", 5, Instant.now())));
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(inventory);
+
+        // the guarded update matched nothing because k3 was already applied
+        Assertions.assertEquals(5, inventoryService.decrement("L1", 2, "k3").getAsInt());
+        Mockito.verify(mongoTemplate, Mockito.never()).insert(Mockito.any(IdempotencyRecord.class));
+
+        logger.info("End testKeyedDecrementAnswersDuplicateFromAppliedKeys Testing");
+    }
+
+    @Test
+    public void testKeyedReserveAllRecordsShortageBeforeGivingBack() {
+        // replaying L1 during the give-back finds the record its first decrement wrote
+        Mockito.lenient().when(mongoTemplate.findById("b1:L1", IdempotencyRecord.class))
+                .thenReturn(null)
+                .thenReturn(new IdempotencyRecord("b1:L1", "L1", "decrement", 2, 0, Instant.now()));
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(AggregationUpdate.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class)))
+                .thenReturn(new Inventory("L1", 0))
+                .thenReturn(null)
+                .thenReturn(new Inventory("L1", 2))
+                .thenReturn(null);
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(new Inventory("L2", 0));
+
+        ReservationResult result = inventoryService.reserveAll(List.of(new StockLine("L1", 2), new StockLine("L2", 1)), "b1");
+
+        Assertions.assertFalse(result.isReserved());
+        Assertions.assertEquals(ReservationResult.LineStatus.ROLLED_BACK, result.getLines().get(0).getStatus());
+        Assertions.assertEquals(ReservationResult.LineStatus.INSUFFICIENT, result.getLines().get(1).getStatus());
+        // the shortage is recorded under the key before L1 is handed back under its rollback key
+        ArgumentCaptor<IdempotencyRecord> records = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        Mockito.verify(mongoTemplate, Mockito.times(3)).insert(records.capture());
+        Assertions.assertEquals(List.of("b1:L1", "b1", "b1:L1:rollback"),
+                records.getAllValues().stream().map(IdempotencyRecord::getKey).toList());
+        Assertions.assertEquals(1, records.getAllValues().get(1).getResult());
+
+        logger.info("End testKeyedReserveAllRecordsShortageBeforeGivingBack Testing");
+    }
+
+    @Test
+    public void testKeyedReserveAllReplaysRecordedSuccess() {
+        Mockito.when(mongoTemplate.findById("b2", IdempotencyRecord.class))
+                .thenReturn(new IdempotencyRecord("b2", "L1x3,L2x1", "reserve", 2, -1, Instant.now()));
+
+        ReservationResult result = inventoryService.reserveAll(List.of(
+                new StockLine("L1", 1), new StockLine("L2", 1), new StockLine("L1", 2)), "b2");
+
+        Assertions.assertTrue(result.isReserved());
+        Mockito.verify(mongoTemplate, Mockito.never()).findAndModify(Mockito.any(Query.class),
+                Mockito.any(UpdateDefinition.class), Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> inventoryService.reserveAll(List.of(new StockLine("L1", 3)), "b2"));
+
+        logger.info("End testKeyedReserveAllReplaysRecordedSuccess Testing");
+    }
 }
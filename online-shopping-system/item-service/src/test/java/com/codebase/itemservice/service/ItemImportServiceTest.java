@@ -0,0 +1,193 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.dto.ImportReport;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.Item;
+import com.codebase.itemservice.search.ItemSearchService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.validation.Validation;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+class ItemImportServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ItemImportServiceTest.class);
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ItemSearchService searchService;
+
+    @Mock
+    private BulkOperations itemOps;
+
+    @Mock
+    private BulkOperations inventoryOps;
+
+    private ItemImportService importService;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @BeforeEach
+    void init() {
+        importService = new ItemImportService(mongoTemplate, searchService,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper());
+        ReflectionTestUtils.setField(importService, "batchSize", 2);
+    }
+
+    private void stubBulkOps() {
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Item.class)).thenReturn(itemOps);
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Inventory.class)).thenReturn(inventoryOps);
+        Mockito.when(itemOps.insert(Mockito.anyList())).thenReturn(itemOps);
+        Mockito.when(inventoryOps.insert(Mockito.anyList())).thenReturn(inventoryOps);
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testImportNdjsonWritesItemsAndInventoryInBatches() throws IOException {
+        stubBulkOps();
+        String ndjson = """
+                {"name":"A","upc":"111111111111","price":10.0,"quantity":5}
+                {"name":"B","upc":"222222222222","price":20.0}
+
+                {"name":"C","upc":"333333333333","price":30.0,"pictureUrls":["https://example.com/c.jpg"]}
+                """;
+
+        ImportReport report = importService.importNdjson(body(ndjson));
+
+        Assertions.assertEquals(3, report.getRowsRead());
+        Assertions.assertEquals(3, report.getImported());
+        Assertions.assertEquals(0, report.getFailed());
+        Assertions.assertTrue(report.getRowsPerSecond() > 0);
+
+        // batch size 2: one full batch and a final partial one
+        ArgumentCaptor<List<Inventory>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(inventoryOps, Mockito.times(2)).insert(captor.capture());
+        Inventory first = captor.getAllValues().get(0).get(0);
+        Assertions.assertNotNull(first.getItemId());
+        Assertions.assertEquals(5, first.getQuantity());
+        Assertions.assertEquals(0L, first.getVersion());
+        Mockito.verify(itemOps, Mockito.times(2)).execute();
+        Mockito.verify(searchService, Mockito.times(3)).index(Mockito.any(Item.class));
+        logger.info("End testImportNdjsonWritesItemsAndInventoryInBatches Testing");
+    }
+
+    @Test
+    public void testImportCsvReportsInvalidRows() throws IOException {
+        stubBulkOps();
+        String csv = """
+                name,upc,price,quantity,description
+                "Phone, 15\"\"",111111111111,999.99,3,"says ""hi\"\""
+                ,222222222222,10,1,missing name
+                Case,333333333333,abc,1,bad price
+                """;
+
+        ImportReport report = importService.importCsv(body(csv));
+
+        Assertions.assertEquals(3, report.getRowsRead());
+        Assertions.assertEquals(1, report.getImported());
+        Assertions.assertEquals(2, report.getFailed());
+        Assertions.assertEquals(3, report.getErrors().get(0).getRow());
+        Assertions.assertTrue(report.getErrors().get(0).getMessage().startsWith("name"));
+        Assertions.assertEquals(4, report.getErrors().get(1).getRow());
+
+        ArgumentCaptor<Item> captor = ArgumentCaptor.forClass(Item.class);
+        Mockito.verify(searchService).index(captor.capture());
+        Assertions.assertEquals("Phone, 15\"", captor.getValue().getName());
+        Assertions.assertEquals("says \"hi\"", captor.getValue().getDescription());
+        logger.info("End testImportCsvReportsInvalidRows Testing");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDuplicateUpcGetsNoInventory() throws IOException {
+        stubBulkOps();
+        BulkOperationException duplicate = Mockito.mock(BulkOperationException.class);
+        Mockito.when(duplicate.getErrors()).thenReturn(List.of(
+                new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 1)));
+        Mockito.when(itemOps.execute()).thenThrow(duplicate);
+        String ndjson = """
+                {"name":"A","upc":"111111111111","price":10.0}
+                {"name":"B","upc":"111111111111","price":20.0}
+                """;
+
+        ImportReport report = importService.importNdjson(body(ndjson));
+
+        Assertions.assertEquals(1, report.getImported());
+        Assertions.assertEquals(1, report.getFailed());
+        Assertions.assertEquals(2, report.getErrors().get(0).getRow());
+        ArgumentCaptor<List<Inventory>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(inventoryOps).insert(captor.capture());
+        Assertions.assertEquals(1, captor.getValue().size());
+        logger.info("End testDuplicateUpcGetsNoInventory Testing");
+    }
+
+    @Test
+    public void testFailedInventoryInsertRemovesTheItem() throws IOException {
+        stubBulkOps();
+        BulkOperationException failed = Mockito.mock(BulkOperationException.class);
+        Mockito.when(failed.getErrors()).thenReturn(List.of(
+                new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 0)));
+        Mockito.when(inventoryOps.execute()).thenThrow(failed);
+        String ndjson = """
+                {"name":"A","upc":"111111111111","price":10.0,"quantity":1}
+                {"name":"B","upc":"222222222222","price":20.0,"quantity":2}
+                """;
+
+        ImportReport report = importService.importNdjson(body(ndjson));
+
+        Assertions.assertEquals(1, report.getImported());
+        Assertions.assertEquals(1, report.getFailed());
+        Assertions.assertEquals(1, report.getErrors().get(0).getRow());
+        // the item of the first line is taken out again and never indexed
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate).remove(removed.capture(), Mockito.eq(Item.class));
+        Assertions.assertTrue(removed.getValue().getQueryObject().toJson().contains("_id"));
+        ArgumentCaptor<Item> indexed = ArgumentCaptor.forClass(Item.class);
+        Mockito.verify(searchService).index(indexed.capture());
+        Assertions.assertEquals("B", indexed.getValue().getName());
+        logger.info("End testFailedInventoryInsertRemovesTheItem Testing");
+    }
+
+    @Test
+    public void testMalformedJsonLineIsReported() throws IOException {
+        ImportReport report = importService.importNdjson(body("{\"name\":\n[1,2]\n"));
+
+        Assertions.assertEquals(2, report.getRowsRead());
+        Assertions.assertEquals(0, report.getImported());
+        Assertions.assertEquals(2, report.getFailed());
+        Mockito.verifyNoInteractions(mongoTemplate);
+        logger.info("End testMalformedJsonLineIsReported Testing");
+    }
+}
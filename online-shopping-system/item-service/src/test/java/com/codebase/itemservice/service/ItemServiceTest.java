@@ -1,18 +1,28 @@
 package com.codebase.itemservice.service;
 
+import com.codebase.itemservice.cache.ItemCache;
+import com.codebase.itemservice.dto.ItemPage;
+import com.codebase.itemservice.dto.ItemSummary;
 import com.codebase.itemservice.model.Item;
 import com.codebase.itemservice.repository.ItemRepository;
+import com.codebase.itemservice.search.ItemSearchService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,6 +34,18 @@ class ItemServiceTest {
     @Mock
     private ItemRepository itemRepository;
 
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ItemSearchService searchService;
+
+    @Spy
+    private ItemCache itemCache = new ItemCache(true, 100, Duration.ofMinutes(5));
+
+    @Mock
+    private ChangeOutbox changeOutbox;
+
     @InjectMocks
     private ItemService itemService;
 
@@ -83,6 +105,31 @@ class ItemServiceTest {
         logger.info("End testFindById Testing");
     }
 
+    @Test
+    public void testFindAllByIds() {
+        Item i1 = new Item(
+                "Apple iphone 15",
+                "The latest Apple smartphone with A17 chip",
+                List.of("https://example.com/images/iphone15-front.jpg"),
+                "111111111111",
+                999.99
+        );
+        i1.setId("L1");
+
+        Mockito.when(itemRepository.findAllById(Mockito.<Iterable<String>>any())).thenReturn(List.of(i1));
+
+        List<Item> items = itemService.findAllByIds(List.of("L1", "L1", "L2"));
+        Assertions.assertEquals(1, items.size());
+        Assertions.assertEquals("L1", items.get(0).getId());
+
+        // duplicates are collapsed before the single $in query is issued
+        Mockito.verify(itemRepository, Mockito.times(1))
+                .findAllById(Mockito.<Iterable<String>>argThat(ids -> ids.spliterator().getExactSizeIfKnown() == 2));
+        Assertions.assertTrue(itemService.findAllByIds(List.of()).isEmpty());
+        Mockito.verifyNoMoreInteractions(itemRepository);
+        logger.info("End testFindAllByIds Testing");
+    }
+
     @Test
     public void testCreate() {
         Item i1 = new Item(
@@ -104,6 +151,7 @@ class ItemServiceTest {
         Assertions.assertEquals(i1.getPrice(), toSave.getPrice());
 
         Mockito.verify(itemRepository, Mockito.times(1)).save(i1);
+        Mockito.verify(searchService, Mockito.times(1)).index(i1);
         logger.info("End testCreate Testing");
     }
 
@@ -145,7 +193,145 @@ class ItemServiceTest {
         itemService.delete("L1");
 
         Mockito.verify(itemRepository, Mockito.times(1)).deleteById("L1");
+        Mockito.verify(searchService, Mockito.times(1)).remove("L1");
         logger.info("End testDelete Testing");
     }
 
+    @Test
+    public void testFindPageIssuesTokenAndSeeksPastIt() {
+        Item i1 = new Item("A", null, null, "111111111111", 10.0);
+        i1.setId("65f000000000000000000001");
+        Item i2 = new Item("B", null, null, "222222222222", 10.0);
+        i2.setId("65f000000000000000000002");
+        Item i3 = new Item("C", null, null, "333333333333", 20.0);
+        i3.setId("65f000000000000000000003");
+
+        // the service asks for one extra row to know whether another page exists
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Item.class)))
+                .thenReturn(new ArrayList<>(List.of(i1, i2, i3)))
+                .thenReturn(new ArrayList<>(List.of(i3)));
+
+        ItemPage first = itemService.findPage(5.0, null, ItemService.SortKey.PRICE, false, 2, null);
+        Assertions.assertEquals(List.of(i1, i2), first.getItems());
+        Assertions.assertNotNull(first.getNextToken());
+
+        ItemPage second = itemService.findPage(5.0, null, ItemService.SortKey.PRICE, false, 2, first.getNextToken());
+        Assertions.assertEquals(List.of(i3), second.getItems());
+        Assertions.assertNull(second.getNextToken());
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate, Mockito.times(2)).find(captor.capture(), Mockito.eq(Item.class));
+        Query seek = captor.getAllValues().get(1);
+        Assertions.assertEquals(3, seek.getLimit());
+        Assertions.assertTrue(seek.getQueryObject().toJson().contains("65f000000000000000000002"));
+        logger.info("End testFindPageIssuesTokenAndSeeksPastIt Testing");
+    }
+
+    @Test
+    public void testFindPageRejectsTokenForOtherSort() {
+        Item i1 = new Item("A", null, null, "111111111111", 10.0);
+        i1.setId("65f000000000000000000001");
+        Item i2 = new Item("B", null, null, "222222222222", 10.0);
+        i2.setId("65f000000000000000000002");
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Item.class)))
+                .thenReturn(new ArrayList<>(List.of(i1, i2)));
+
+        String token = itemService.findPage(null, null, ItemService.SortKey.ID, false, 1, null).getNextToken();
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> itemService.findPage(null, null, ItemService.SortKey.PRICE, false, 1, token));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> itemService.findPage(null, null, ItemService.SortKey.ID, false, 1, "not-a-token"));
+        logger.info("End testFindPageRejectsTokenForOtherSort Testing");
+    }
+
+    @Test
+    public void testFindByIdIsCachedUntilUpdate() {
+        Item i1 = new Item("Apple iphone 15", null, null, "111111111111", 999.99);
+        i1.setId("L1");
+        Mockito.when(itemRepository.findById("L1")).thenReturn(Optional.of(i1));
+        Mockito.when(itemRepository.save(i1)).thenReturn(i1);
+
+        itemService.findById("L1");
+        itemService.findById("L1");
+        Mockito.verify(itemRepository, Mockito.times(1)).findById("L1");
+
+        // batch lookups are served from the cache as well
+        Assertions.assertEquals(List.of("L1"), itemService.findAllByIds(List.of("L1")).stream().map(Item::getId).toList());
+        Mockito.verify(itemRepository, Mockito.never()).findAllById(Mockito.<Iterable<String>>any());
+
+        itemService.update(i1);
+        itemService.findById("L1");
+        Mockito.verify(itemRepository, Mockito.times(2)).findById("L1");
+        logger.info("End testFindByIdIsCachedUntilUpdate Testing");
+    }
+
+    @Test
+    public void testFillRacingAnUpdateIsNotCached() {
+        Item stale = new Item("Apple iphone 15", null, null, "111111111111", 999.99);
+        stale.setId("L1");
+        Mockito.when(itemRepository.save(stale)).thenReturn(stale);
+        // the update saves and invalidates while the read of the old item is still in flight
+        Mockito.when(itemRepository.findById("L1")).thenAnswer(invocation -> {
+            itemService.update(stale);
+            return Optional.of(stale);
+        }).thenReturn(Optional.of(stale));
+
+        itemService.findById("L1");
+        itemService.findById("L1");
+        itemService.findById("L1");
+        Mockito.verify(itemRepository, Mockito.times(2)).findById("L1");
+        logger.info("End testFillRacingAnUpdateIsNotCached Testing");
+    }
+
+    @Test
+    public void testCachedItemIsNotSharedWithCallers() {
+        Item i1 = new Item("Apple iphone 15", null, new ArrayList<>(List.of("https://example.com/1.jpg")), "111111111111", 999.99);
+        i1.setId("L1");
+        Mockito.when(itemRepository.findById("L1")).thenReturn(Optional.of(i1));
+
+        Item first = itemService.findById("L1").orElseThrow();
+        first.setPrice(1.0);
+        first.getPictureUrls().clear();
+
+        Item second = itemService.findById("L1").orElseThrow();
+        Assertions.assertNotSame(first, second);
+        Assertions.assertEquals(999.99, second.getPrice());
+        Assertions.assertEquals(1, second.getPictureUrls().size());
+        Mockito.verify(itemRepository, Mockito.times(1)).findById("L1");
+        logger.info("End testCachedItemIsNotSharedWithCallers Testing");
+    }
+
+    @Test
+    public void testMissingItemIsNotCached() {
+        Mockito.when(itemRepository.findById("L9")).thenReturn(Optional.empty());
+
+        Assertions.assertTrue(itemService.findById("L9").isEmpty());
+        Assertions.assertTrue(itemService.findById("L9").isEmpty());
+        Mockito.verify(itemRepository, Mockito.times(2)).findById("L9");
+        logger.info("End testMissingItemIsNotCached Testing");
+    }
+
+    @Test
+    public void testFindSummariesProjectsOnlyUncachedIds() {
+        Item cached = new Item("A", "long description", List.of("https://example.com/a.jpg"), "111111111111", 10.0);
+        cached.setId("A1");
+        itemCache.put(cached, itemCache.generation());
+
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(ItemSummary.class), Mockito.eq("items")))
+                .thenReturn(List.of(new ItemSummary("B1", "B", "222222222222", 20.0)));
+
+        List<ItemSummary> summaries = itemService.findSummaries(List.of("A1", "B1", "A1"));
+        Assertions.assertEquals(2, summaries.size());
+        Assertions.assertEquals("A1", summaries.get(0).getId());
+        Assertions.assertEquals(10.0, summaries.get(0).getPrice());
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate).find(captor.capture(), Mockito.eq(ItemSummary.class), Mockito.eq("items"));
+        Query q = captor.getValue();
+        Assertions.assertFalse(q.getQueryObject().toJson().contains("A1"));
+        Assertions.assertEquals(1, q.getFieldsObject().getInteger("price"));
+        Assertions.assertNull(q.getFieldsObject().get("description"));
+        logger.info("End testFindSummariesProjectsOnlyUncachedIds Testing");
+    }
 }
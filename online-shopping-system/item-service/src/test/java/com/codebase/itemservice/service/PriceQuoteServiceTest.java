@@ -0,0 +1,101 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.dto.ItemSummary;
+import com.codebase.itemservice.dto.PriceQuote;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@ExtendWith(MockitoExtension.class)
+class PriceQuoteServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriceQuoteServiceTest.class);
+
+    @Mock
+    private ItemService itemService;
+
+    private PriceQuoteService quoteService;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @BeforeEach
+    void init() {
+        quoteService = new PriceQuoteService(itemService, "test-secret", Duration.ofMinutes(2));
+    }
+
+    @Test
+    public void testQuoteSignsPricesOfKnownItems() {
+        Mockito.when(itemService.findSummaries(List.of("i1", "i2", "i3"))).thenReturn(List.of(
+                new ItemSummary("i2", "Galaxy", "222", 899.99),
+                new ItemSummary("i1", "iPhone", "111", 999.99),
+                new ItemSummary("i3", "Unpriced", "333", null)));
+
+        PriceQuote quote = quoteService.quote(List.of("i1", "i2", "i3"));
+
+        Assertions.assertEquals(Map.of("i1", 999.99, "i2", 899.99), quote.getPrices());
+        Assertions.assertEquals(Duration.ofMinutes(2).toMillis(), quote.getExpiresAt() - quote.getIssuedAt());
+        String expected = quoteService.sign(
+                PriceQuoteService.canonical(quote.getPrices(), quote.getIssuedAt(), quote.getExpiresAt()));
+        Assertions.assertEquals(expected, quote.getSignature());
+        logger.info("End Quote Testing");
+    }
+
+    @Test
+    public void testSignatureCoversPricesAndExpiry() {
+        PriceQuote quote = quoteService.issue(List.of(new ItemSummary("i1", "iPhone", "111", 999.99)));
+
+        String cheaper = quoteService.sign(
+                PriceQuoteService.canonical(Map.of("i1", 1.0), quote.getIssuedAt(), quote.getExpiresAt()));
+        String longer = quoteService.sign(
+                PriceQuoteService.canonical(quote.getPrices(), quote.getIssuedAt(), quote.getExpiresAt() + 60_000));
+        PriceQuoteService otherKey = new PriceQuoteService(itemService, "other-secret", Duration.ofMinutes(2));
+        String forged = otherKey.sign(
+                PriceQuoteService.canonical(quote.getPrices(), quote.getIssuedAt(), quote.getExpiresAt()));
+
+        Assertions.assertNotEquals(quote.getSignature(), cheaper);
+        Assertions.assertNotEquals(quote.getSignature(), longer);
+        Assertions.assertNotEquals(quote.getSignature(), forged);
+        logger.info("End Signature Testing");
+    }
+
+    @Test
+    public void testSignatureMatchesVerifierVector() {
+        // the same vector is checked by PriceQuoteVerifierTest in order-service
+        String canonical = PriceQuoteService.canonical(Map.of("i2", 899.99, "i1", 999.99), 1700000000000L, 4102444800000L);
+
+        Assertions.assertEquals("v1\n1700000000000\n4102444800000\ni1=999.99\ni2=899.99", canonical);
+        Assertions.assertEquals("OEhraII63BuDBTdlz5AhudSUfDUEn73voI7-TInxGU8", quoteService.sign(canonical));
+        logger.info("End Signature Vector Testing");
+    }
+
+    @Test
+    public void testBlankSecretFailsStartup() {
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> new PriceQuoteService(itemService, " ", Duration.ofMinutes(2)));
+        logger.info("End Blank Secret Testing");
+    }
+
+    @Test
+    public void testQuoteRejectsOversizedBasket() {
+        List<String> ids = Collections.nCopies(101, "i1");
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> quoteService.quote(ids));
+        Mockito.verifyNoInteractions(itemService);
+        logger.info("End Oversized Quote Testing");
+    }
+}
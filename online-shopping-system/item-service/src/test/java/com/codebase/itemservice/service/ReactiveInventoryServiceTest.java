@@ -0,0 +1,197 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.dto.ReservationResult;
+import com.codebase.itemservice.dto.ReservationResult.LineStatus;
+import com.codebase.itemservice.dto.StockLine;
+import com.codebase.itemservice.exception.NotFoundException;
+import com.codebase.itemservice.model.IdempotencyRecord;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.Inventory.MovementType;
+import com.codebase.itemservice.model.InventoryBucket;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import com.mongodb.client.result.UpdateResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveInventoryServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveInventoryServiceTest.class);
+
+    @Mock
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private StripedInventoryService stripedInventory;
+
+    @Mock
+    private ReactiveChangeOutbox changeOutbox;
+
+    @InjectMocks
+    private ReactiveInventoryService reactiveInventoryService;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    private void stubDecrement(String itemId, Inventory result) {
+        Mockito.when(reactiveMongoTemplate.findAndModify(Mockito.argThat((Query q) -> q != null
+                                && itemId.equals(q.getQueryObject().get("itemId"))), Mockito.any(UpdateDefinition.class),
+                        Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class)))
+                .thenReturn(result == null ? Mono.empty() : Mono.just(result));
+    }
+
+    @Test
+    public void testDecrementReturnsQuantityAsWritten() {
+        Inventory written = new Inventory("L1", 7);
+        stubDecrement("L1", written);
+
+        StepVerifier.create(reactiveInventoryService.decrement("L1", 3, null))
+                .expectNext(7)
+                .verifyComplete();
+
+        Mockito.verify(inventoryService).alertOnCrossing("L1", written, 3);
+        // marked for the relay in the same update
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        Mockito.verify(reactiveMongoTemplate).findAndModify(Mockito.any(Query.class), update.capture(),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class));
+        Assertions.assertTrue(update.getValue().modifies(ChangeOutbox.UNPUBLISHED));
+
+        logger.info("End testDecrementReturnsQuantityAsWritten Testing");
+    }
+
+    @Test
+    public void testDecrementWithNotEnoughCompletesEmpty() {
+        stubDecrement("L1", null);
+        Mockito.when(reactiveMongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class)))
+                .thenReturn(Mono.just(new Inventory("L1", 1)));
+
+        StepVerifier.create(reactiveInventoryService.decrement("L1", 3, null)).verifyComplete();
+
+        Mockito.verifyNoInteractions(changeOutbox);
+        Mockito.verifyNoInteractions(inventoryService);
+
+        logger.info("End testDecrementWithNotEnoughCompletesEmpty Testing");
+    }
+
+    @Test
+    public void testStripedDecrementRunsOnTheReactiveTemplate() {
+        Mockito.when(stripedInventory.knownStripes("L1")).thenReturn(2);
+        Mockito.when(reactiveMongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(UpdateDefinition.class),
+                        Mockito.eq(InventoryBucket.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        Mockito.when(reactiveMongoTemplate.find(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(Flux.just(new InventoryBucket("L1", 0, 3), new InventoryBucket("L1", 1, 4)));
+        Mockito.when(reactiveMongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class)))
+                .thenReturn(Mono.just(new Inventory("L1", 1)));
+
+        // 3 + 4 in the buckets and 1 parked on the record
+        StepVerifier.create(reactiveInventoryService.decrement("L1", 2, null))
+                .expectNext(8)
+                .verifyComplete();
+
+        // one bucket took the units; nothing went through the blocking services
+        Mockito.verify(reactiveMongoTemplate, Mockito.times(1)).updateFirst(Mockito.any(Query.class),
+                Mockito.any(UpdateDefinition.class), Mockito.eq(InventoryBucket.class));
+        Mockito.verify(inventoryService).alertOnCrossing(Mockito.eq("L1"),
+                Mockito.argThat(stock -> stock.getQuantity() == 8), Mockito.eq(2));
+        Mockito.verifyNoMoreInteractions(inventoryService);
+        Mockito.verify(stripedInventory, Mockito.never()).tryDecrement(Mockito.anyString(), Mockito.anyInt(), Mockito.anyInt());
+
+        logger.info("End testStripedDecrementRunsOnTheReactiveTemplate Testing");
+    }
+
+    @Test
+    public void testStripedDecrementHandsTheGatherToTheBlockingService() {
+        Mockito.when(stripedInventory.knownStripes("L1")).thenReturn(2);
+        // no single bucket holds 5, and the gather through the record finds too little
+        Mockito.when(reactiveMongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(UpdateDefinition.class),
+                        Mockito.eq(InventoryBucket.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+        Mockito.when(stripedInventory.gather("L1", 5, MovementType.ORDER_DECREMENT)).thenReturn(false);
+
+        StepVerifier.create(reactiveInventoryService.decrement("L1", 5, null)).verifyComplete();
+
+        // two single-bucket tries; the units never leave a bucket on the reactive side
+        Mockito.verify(reactiveMongoTemplate, Mockito.times(2)).updateFirst(Mockito.any(Query.class),
+                Mockito.any(UpdateDefinition.class), Mockito.eq(InventoryBucket.class));
+        Mockito.verify(inventoryService, Mockito.never()).alertOnCrossing(Mockito.anyString(), Mockito.any(), Mockito.anyInt());
+
+        logger.info("End testStripedDecrementHandsTheGatherToTheBlockingService Testing");
+    }
+
+    @Test
+    public void testStripedIncrementWithoutRecordIsNotFound() {
+        Mockito.when(stripedInventory.knownStripes("L1")).thenReturn(1);
+        Mockito.when(reactiveMongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(UpdateDefinition.class),
+                        Mockito.eq(InventoryBucket.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+        Mockito.when(reactiveMongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(UpdateDefinition.class),
+                        Mockito.eq(Inventory.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+
+        StepVerifier.create(reactiveInventoryService.increment("L1", 2, null))
+                .expectError(NotFoundException.class)
+                .verify();
+
+        logger.info("End testStripedIncrementWithoutRecordIsNotFound Testing");
+    }
+
+    @Test
+    public void testKeyedRetryIsAnsweredFromRecord() {
+        Mockito.when(reactiveMongoTemplate.findById("k1", IdempotencyRecord.class))
+                .thenReturn(Mono.just(new IdempotencyRecord("k1", "L1", "decrement", 3, 4, Instant.now())));
+
+        StepVerifier.create(reactiveInventoryService.decrement("L1", 3, "k1"))
+                .expectNext(4)
+                .verifyComplete();
+
+        Mockito.verify(reactiveMongoTemplate, Mockito.never()).findAndModify(Mockito.any(Query.class),
+                Mockito.any(UpdateDefinition.class), Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class));
+
+        logger.info("End testKeyedRetryIsAnsweredFromRecord Testing");
+    }
+
+    @Test
+    public void testReserveAllRollsBackWhenShort() {
+        stubDecrement("L1", new Inventory("L1", 5));
+        stubDecrement("L2", null);
+        Mockito.when(reactiveMongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class)))
+                .thenReturn(Mono.just(new Inventory("L2", 0)));
+
+        ReservationResult result = reactiveInventoryService.reserveAll(List.of(
+                new StockLine("L1", 2), new StockLine("L2", 1), new StockLine("L3", 1))).block();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertFalse(result.isReserved());
+        Assertions.assertEquals(LineStatus.ROLLED_BACK, result.getLines().get(0).getStatus());
+        Assertions.assertEquals(LineStatus.INSUFFICIENT, result.getLines().get(1).getStatus());
+        Assertions.assertEquals(LineStatus.SKIPPED, result.getLines().get(2).getStatus());
+        Mockito.verify(inventoryService).incrementAll(Map.of("L1", 2));
+
+        logger.info("End testReserveAllRollsBackWhenShort Testing");
+    }
+}
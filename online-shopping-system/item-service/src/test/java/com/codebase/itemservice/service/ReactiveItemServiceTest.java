@@ -0,0 +1,97 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.cache.ItemCache;
+import com.codebase.itemservice.model.Item;
+import com.codebase.itemservice.search.ItemSearchService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveItemServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveItemServiceTest.class);
+
+    @Mock
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Mock
+    private ItemService itemService;
+
+    @Mock
+    private ItemSearchService searchService;
+
+    @Mock
+    private ItemCache itemCache;
+
+    @Mock
+    private ReactiveChangeOutbox changeOutbox;
+
+    @InjectMocks
+    private ReactiveItemService reactiveItemService;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    private static Item item(String id) {
+        Item item = new Item("Apple iphone 15", "The latest Apple smartphone", List.of(), "111111111111", 999.99);
+        item.setId(id);
+        return item;
+    }
+
+    @Test
+    public void testFindByIdLoadsAndCachesMiss() {
+        Item item = item("L1");
+        Mockito.when(itemCache.getAllPresent(Set.of("L1"))).thenReturn(Map.of());
+        Mockito.when(reactiveMongoTemplate.findById("L1", Item.class)).thenReturn(Mono.just(item));
+
+        StepVerifier.create(reactiveItemService.findById("L1")).expectNext(item).verifyComplete();
+
+        Mockito.verify(itemCache).put(item, 0L);
+
+        logger.info("End testFindByIdLoadsAndCachesMiss Testing");
+    }
+
+    @Test
+    public void testFindByIdServesCachedItem() {
+        Item item = item("L1");
+        Mockito.when(itemCache.getAllPresent(Set.of("L1"))).thenReturn(Map.of("L1", item));
+
+        StepVerifier.create(reactiveItemService.findById("L1")).expectNext(item).verifyComplete();
+
+        Mockito.verifyNoInteractions(reactiveMongoTemplate);
+
+        logger.info("End testFindByIdServesCachedItem Testing");
+    }
+
+    @Test
+    public void testUpdateIndexesMarksAndInvalidates() {
+        Item item = item("L1");
+        Mockito.when(reactiveMongoTemplate.save(item)).thenReturn(Mono.just(item));
+
+        StepVerifier.create(reactiveItemService.update(item)).expectNext(item).verifyComplete();
+
+        Mockito.verify(searchService).index(item);
+        // marked for the relay by the save itself
+        Assertions.assertNotNull(item.getUnpublishedAt());
+        Mockito.verify(itemCache).invalidate("L1");
+
+        logger.info("End testUpdateIndexesMarksAndInvalidates Testing");
+    }
+}
@@ -0,0 +1,87 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.event.StockAlertEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+
+@ExtendWith(MockitoExtension.class)
+class StockAlertPublisherTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockAlertPublisherTest.class);
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @Test
+    public void testFlushSendsInBatchesKeyedByItem() {
+        StockAlertPublisher publisher = new StockAlertPublisher(kafkaTemplate, 10);
+        ReflectionTestUtils.setField(publisher, "batchSize", 2);
+        for (int i = 0; i < 5; i++) {
+            publisher.publish(alert("L" + i));
+        }
+
+        Assertions.assertEquals(5, publisher.flush());
+
+        Mockito.verify(kafkaTemplate).send(Mockito.eq("stock-alerts"), Mockito.eq("L3"), Mockito.any(StockAlertEvent.class));
+        Mockito.verify(kafkaTemplate, Mockito.times(5)).send(Mockito.anyString(), Mockito.anyString(), Mockito.any());
+        // one producer flush per batch: 2 + 2 + 1
+        Mockito.verify(kafkaTemplate, Mockito.times(3)).flush();
+        Assertions.assertEquals(0, publisher.flush());
+
+        logger.info("End testFlushSendsInBatchesKeyedByItem Testing");
+    }
+
+    @Test
+    public void testFlushStopsAtFirstFailedSendAndRetriesTheRest() {
+        StockAlertPublisher publisher = new StockAlertPublisher(kafkaTemplate, 10);
+        for (int i = 0; i < 3; i++) {
+            publisher.publish(alert("L" + i));
+        }
+        Mockito.when(kafkaTemplate.send(Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(null)
+                .thenThrow(new KafkaException("no metadata within max.block.ms"))
+                .thenReturn(null);
+
+        Assertions.assertEquals(1, publisher.flush());
+        // the outage cost one blocked send, not one per alert
+        Mockito.verify(kafkaTemplate, Mockito.times(2)).send(Mockito.anyString(), Mockito.anyString(), Mockito.any());
+
+        Assertions.assertEquals(2, publisher.flush());
+        Mockito.verify(kafkaTemplate, Mockito.times(2)).send(Mockito.eq("stock-alerts"), Mockito.eq("L1"), Mockito.any(StockAlertEvent.class));
+
+        logger.info("End testFlushStopsAtFirstFailedSendAndRetriesTheRest Testing");
+    }
+
+    @Test
+    public void testPublishDropsWhenQueueIsFull() {
+        StockAlertPublisher publisher = new StockAlertPublisher(kafkaTemplate, 2);
+        publisher.publish(alert("L1"));
+        publisher.publish(alert("L2"));
+        publisher.publish(alert("L3"));
+
+        Assertions.assertEquals(2, publisher.flush());
+
+        logger.info("End testPublishDropsWhenQueueIsFull Testing");
+    }
+
+    private static StockAlertEvent alert(String itemId) {
+        return new StockAlertEvent(itemId, StockAlertEvent.Type.OUT_OF_STOCK, 0, null, Instant.now());
+    }
+}
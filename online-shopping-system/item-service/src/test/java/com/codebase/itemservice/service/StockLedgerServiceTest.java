@@ -0,0 +1,205 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.dto.LedgerRebuildResult;
+import com.codebase.itemservice.exception.ConflictException;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.Inventory.Movement;
+import com.codebase.itemservice.model.Inventory.MovementType;
+import com.codebase.itemservice.model.StockLedgerSegment;
+import com.mongodb.client.result.UpdateResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+@ExtendWith(MockitoExtension.class)
+class StockLedgerServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockLedgerServiceTest.class);
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private StockLedgerService ledgerService;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @Test
+    public void testRebuildFoldsSegmentsAndTail() {
+        Inventory inv = new Inventory("L1", 0);
+        inv.setQuantity(99);
+        inv.setVersion(7L);
+        inv.setCompactedSegments(1);
+        // the opening lives in the compacted segment, the tail only carries deltas
+        inv.setMovements(new ArrayList<>(List.of(
+                Movement.delta(MovementType.ORDER_DECREMENT, -2, null),
+                Movement.delta(MovementType.CANCEL_INCREMENT, 1, null))));
+        StockLedgerSegment segment = new StockLedgerSegment("L1", 0, List.of(
+                Movement.set(MovementType.OPENING, 10, null),
+                Movement.delta(MovementType.ORDER_DECREMENT, -3, null),
+                Movement.set(MovementType.MANUAL_SET, 20, null)), Instant.now());
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(inv);
+        Mockito.when(mongoTemplate.stream(Mockito.any(Query.class), Mockito.eq(StockLedgerSegment.class)))
+                .thenReturn(Stream.of(segment));
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Inventory.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        LedgerRebuildResult result = ledgerService.rebuild("L1");
+
+        Assertions.assertEquals(99, result.getPreviousQuantity());
+        Assertions.assertEquals(19, result.getRebuiltQuantity());
+        Assertions.assertEquals(5, result.getMovements());
+        // the snapshot is only overwritten at the version the ledger was read at
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate).updateFirst(captor.capture(), Mockito.any(Update.class), Mockito.eq(Inventory.class));
+        Assertions.assertEquals(7L, captor.getValue().getQueryObject().get("version"));
+        logger.info("End testRebuildFoldsSegmentsAndTail Testing");
+    }
+
+    @Test
+    public void testRebuildWithoutOpening() {
+        Inventory inv = new Inventory("L1", 0);
+        inv.setMovements(new ArrayList<>(List.of(Movement.delta(MovementType.ORDER_DECREMENT, -2, null))));
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(inv);
+        Mockito.when(mongoTemplate.stream(Mockito.any(Query.class), Mockito.eq(StockLedgerSegment.class)))
+                .thenReturn(Stream.empty());
+
+        Assertions.assertThrows(ConflictException.class, () -> ledgerService.rebuild("L1"));
+        Mockito.verify(mongoTemplate, Mockito.never())
+                .updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Inventory.class));
+        logger.info("End testRebuildWithoutOpening Testing");
+    }
+
+    @Test
+    public void testCompactWritesSegmentThenCutsTail() {
+        Inventory due = new Inventory("L1", 5);
+        due.setCompactedSegments(2);
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(List.of(due));
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(AggregationUpdate.class),
+                Mockito.eq(Inventory.class))).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        Assertions.assertEquals(1, ledgerService.compact());
+
+        ArgumentCaptor<StockLedgerSegment> segment = ArgumentCaptor.forClass(StockLedgerSegment.class);
+        Mockito.verify(mongoTemplate).insert(segment.capture());
+        Assertions.assertEquals(2, segment.getValue().getSegment());
+        Assertions.assertEquals(1, segment.getValue().getMovements().size());
+        // the cut only applies if no other compaction advanced the segment count first
+        ArgumentCaptor<Query> cut = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate).updateFirst(cut.capture(), Mockito.any(AggregationUpdate.class), Mockito.eq(Inventory.class));
+        Assertions.assertTrue(cut.getValue().getQueryObject().toJson().contains("compactedSegments"));
+        logger.info("End testCompactWritesSegmentThenCutsTail Testing");
+    }
+
+    @Test
+    public void testCompactKeepsCuttingUntilRecordIsBelowThreshold() {
+        Inventory due = new Inventory("L1", 5);
+        due.setCompactedSegments(0);
+        Inventory stillDue = new Inventory("L1", 5);
+        stillDue.setCompactedSegments(1);
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(List.of(due));
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(stillDue, (Inventory) null);
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(AggregationUpdate.class),
+                Mockito.eq(Inventory.class))).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        Assertions.assertEquals(2, ledgerService.compact());
+
+        ArgumentCaptor<StockLedgerSegment> segments = ArgumentCaptor.forClass(StockLedgerSegment.class);
+        Mockito.verify(mongoTemplate, Mockito.times(2)).insert(segments.capture());
+        Assertions.assertEquals(List.of(0, 1), segments.getAllValues().stream().map(StockLedgerSegment::getSegment).toList());
+        // each cut ends the tail with a checkpoint of the quantity
+        ArgumentCaptor<AggregationUpdate> cut = ArgumentCaptor.forClass(AggregationUpdate.class);
+        Mockito.verify(mongoTemplate, Mockito.times(2)).updateFirst(Mockito.any(Query.class), cut.capture(), Mockito.eq(Inventory.class));
+        Assertions.assertTrue(cut.getValue().toString().contains("CHECKPOINT"));
+        logger.info("End testCompactKeepsCuttingUntilRecordIsBelowThreshold Testing");
+    }
+
+    @Test
+    public void testRebuildRefusesTailAtLimit() {
+        Inventory inv = new Inventory("L1", 0);
+        List<Movement> full = new ArrayList<>();
+        for (int i = 0; i < StockLedgerService.MAX_TAIL; i++) {
+            full.add(Movement.delta(MovementType.ORDER_DECREMENT, -1, null));
+        }
+        inv.setMovements(full);
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(inv);
+        Mockito.when(mongoTemplate.stream(Mockito.any(Query.class), Mockito.eq(StockLedgerSegment.class)))
+                .thenReturn(Stream.empty());
+
+        Assertions.assertThrows(ConflictException.class, () -> ledgerService.rebuild("L1"));
+        Mockito.verify(mongoTemplate, Mockito.never())
+                .updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Inventory.class));
+        logger.info("End testRebuildRefusesTailAtLimit Testing");
+    }
+
+    @Test
+    public void testRebuildChecksCheckpointsInsteadOfResettingToThem() {
+        Inventory inv = new Inventory("L1", 0);
+        inv.setQuantity(4);
+        inv.setVersion(3L);
+        inv.setCompactedSegments(2);
+        inv.setMovements(new ArrayList<>(List.of(
+                new Movement(MovementType.CHECKPOINT, null, 4, null, Instant.now()),
+                Movement.delta(MovementType.ORDER_DECREMENT, -1, null))));
+        StockLedgerSegment first = new StockLedgerSegment("L1", 0, List.of(
+                Movement.set(MovementType.OPENING, 10, null),
+                Movement.delta(MovementType.ORDER_DECREMENT, -3, null)), Instant.now());
+        // the snapshot had drifted to 4 when the second segment was cut
+        StockLedgerSegment second = new StockLedgerSegment("L1", 1, List.of(
+                new Movement(MovementType.CHECKPOINT, null, 7, null, Instant.now()),
+                Movement.delta(MovementType.ORDER_DECREMENT, -2, null)), Instant.now());
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(inv);
+        Mockito.when(mongoTemplate.stream(Mockito.any(Query.class), Mockito.eq(StockLedgerSegment.class)))
+                .thenReturn(Stream.of(first, second));
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Inventory.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        LedgerRebuildResult result = ledgerService.rebuild("L1");
+
+        Assertions.assertEquals(4, result.getRebuiltQuantity());
+        Assertions.assertEquals(2, result.getCheckpoints());
+        Assertions.assertEquals(1, result.getCheckpointMismatches());
+        logger.info("End testRebuildChecksCheckpointsInsteadOfResettingToThem Testing");
+    }
+
+    @Test
+    public void testRebuildRestartsFromResync() {
+        Inventory inv = new Inventory("L1", 0);
+        inv.setQuantity(2);
+        inv.setMovements(new ArrayList<>(List.of(
+                Movement.delta(MovementType.ORDER_DECREMENT, -3, null),
+                new Movement(MovementType.RESYNC, null, 5, null, Instant.now()),
+                Movement.delta(MovementType.ORDER_DECREMENT, -1, null))));
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(inv);
+        Mockito.when(mongoTemplate.stream(Mockito.any(Query.class), Mockito.eq(StockLedgerSegment.class)))
+                .thenReturn(Stream.empty());
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Inventory.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        LedgerRebuildResult result = ledgerService.rebuild("L1");
+
+        Assertions.assertEquals(4, result.getRebuiltQuantity());
+        Assertions.assertEquals(0, result.getCheckpointMismatches());
+        logger.info("End testRebuildRestartsFromResync Testing");
+    }
+}
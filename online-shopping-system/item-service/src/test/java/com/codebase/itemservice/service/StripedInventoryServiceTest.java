@@ -0,0 +1,273 @@
+package com.codebase.itemservice.service;
+
+import com.codebase.itemservice.exception.ConflictException;
+import com.codebase.itemservice.model.Inventory;
+import com.codebase.itemservice.model.InventoryBucket;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+@ExtendWith(MockitoExtension.class)
+class StripedInventoryServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(StripedInventoryServiceTest.class);
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private StripedInventoryService stripedInventoryService;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @Test
+    public void testTryDecrementFallsBackToNeighbourBucket() {
+        // first pick is empty, the neighbour has stock
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        Assertions.assertTrue(stripedInventoryService.tryDecrement("L1", 4, 1));
+        Mockito.verify(mongoTemplate, Mockito.times(2))
+                .updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(InventoryBucket.class));
+
+        logger.info("End testTryDecrementFallsBackToNeighbourBucket Testing");
+    }
+
+    @Test
+    public void testTryDecrementGathersAcrossBuckets() {
+        // no single bucket holds 3 units, but together they do
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(new ArrayList<>(List.of(new InventoryBucket("L1", 0, 1), new InventoryBucket("L1", 1, 2))));
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Inventory.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        Assertions.assertTrue(stripedInventoryService.tryDecrement("L1", 2, 3));
+        Mockito.verify(mongoTemplate, Mockito.never()).bulkOps(Mockito.any(BulkOperations.BulkMode.class), Mockito.eq(InventoryBucket.class));
+
+        // both buckets are parked on the record (+2, +1), which then gives up the 3 units in one update
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate, Mockito.atLeastOnce()).updateFirst(Mockito.any(Query.class), captor.capture(), Mockito.eq(Inventory.class));
+        Assertions.assertEquals(List.of(2, 1, -3), quantityChanges(captor.getAllValues()));
+
+        logger.info("End testTryDecrementGathersAcrossBuckets Testing");
+    }
+
+    @Test
+    public void testTryDecrementWithNotEnoughInTotal() {
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(new ArrayList<>(List.of(new InventoryBucket("L1", 0, 1), new InventoryBucket("L1", 1, 1))));
+
+        Assertions.assertFalse(stripedInventoryService.tryDecrement("L1", 2, 3));
+
+        logger.info("End testTryDecrementWithNotEnoughInTotal Testing");
+    }
+
+    @Test
+    public void testRestripeFillsBucketsOneAtATime() {
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class))).thenReturn(restriping("L1", 4));
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(new ArrayList<>())
+                .thenReturn(new ArrayList<>(List.of(new InventoryBucket("L1", 0, 3), new InventoryBucket("L1", 1, 3),
+                        new InventoryBucket("L1", 2, 2), new InventoryBucket("L1", 3, 2))));
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class))).thenReturn(null);
+        Mockito.when(mongoTemplate.insert(Mockito.any(InventoryBucket.class))).thenAnswer(inv -> {
+            InventoryBucket b = inv.getArgument(0);
+            b.setId("b" + b.getBucket());
+            return b;
+        });
+        // the record as each step reads it: 10 units spread over 4 buckets, nothing left over
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class)))
+                .thenReturn(new Inventory("L1", 10), new Inventory("L1", 7), new Inventory("L1", 4),
+                        new Inventory("L1", 2), new Inventory("L1", 0), new Inventory("L1", 0));
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Inventory.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        Assertions.assertEquals(10, stripedInventoryService.restripe("L1", 4));
+
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate, Mockito.times(6)).updateFirst(Mockito.any(Query.class), captor.capture(), Mockito.eq(Inventory.class));
+        List<Object> taken = captor.getAllValues().stream()
+                .map(u -> ((Document) u.getUpdateObject().get("$inc")).get("quantity"))
+                .filter(Objects::nonNull)
+                .toList();
+        Assertions.assertEquals(List.of(-3, -3, -2, -2, 0), taken);
+        Assertions.assertTrue(captor.getValue().modifies("restripeGeneration"));
+        Assertions.assertEquals(4, stripedInventoryService.knownStripes("L1"));
+
+        logger.info("End testRestripeFillsBucketsOneAtATime Testing");
+    }
+
+    @Test
+    public void testRestripeDrainsOldBucketsIntoRecord() {
+        InventoryBucket old = new InventoryBucket("L1", 0, 6);
+        old.setId("old");
+        InventoryBucket draining = new InventoryBucket("L1", 0, 0);
+        draining.setId("old");
+        draining.setDraining(6);
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class))).thenReturn(restriping("L1", 0));
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(new ArrayList<>(List.of(old)))
+                .thenReturn(new ArrayList<>());
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(AggregationUpdate.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(InventoryBucket.class))).thenReturn(draining);
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(new Inventory("L1", 6));
+
+        Assertions.assertEquals(6, stripedInventoryService.restripe("L1", 0));
+
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate, Mockito.times(2)).updateFirst(Mockito.any(Query.class), captor.capture(), Mockito.eq(Inventory.class));
+        Assertions.assertEquals(6, ((Document) captor.getAllValues().get(0).getUpdateObject().get("$inc")).get("quantity"));
+        Mockito.verify(mongoTemplate).remove(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class));
+        Assertions.assertEquals(0, stripedInventoryService.knownStripes("L1"));
+
+        logger.info("End testRestripeDrainsOldBucketsIntoRecord Testing");
+    }
+
+    @Test
+    public void testRestripeWhileRestriping() {
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Inventory.class))).thenReturn(null);
+        Mockito.when(mongoTemplate.exists(Mockito.any(Query.class), Mockito.eq(Inventory.class))).thenReturn(true);
+
+        Assertions.assertThrows(ConflictException.class, () -> stripedInventoryService.restripe("L1", 4));
+        Mockito.verify(mongoTemplate, Mockito.never()).find(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class));
+
+        logger.info("End testRestripeWhileRestriping Testing");
+    }
+
+    @Test
+    public void testIncrementIntoMissingBucketGoesToRecord() {
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Inventory.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        stripedInventoryService.increment("L1", 4, 5);
+
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate).updateFirst(Mockito.any(Query.class), captor.capture(), Mockito.eq(Inventory.class));
+        Assertions.assertEquals(5, ((Document) captor.getValue().getUpdateObject().get("$inc")).get("quantity"));
+
+        logger.info("End testIncrementIntoMissingBucketGoesToRecord Testing");
+    }
+
+    @Test
+    public void testRebalanceMovesSurplusThroughTheRecord() {
+        InventoryBucket full = new InventoryBucket("L1", 0, 20);
+        full.setId("b0");
+        InventoryBucket empty = new InventoryBucket("L1", 1, 0);
+        empty.setId("b1");
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(new ArrayList<>(List.of(full, empty)));
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        Mockito.when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Inventory.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        Mockito.when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(InventoryBucket.class))).thenReturn(empty);
+        // the record as the moves read it: the 10 parked units, then nothing left for the first bucket
+        Mockito.when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Inventory.class)))
+                .thenReturn(new Inventory("L1", 10), new Inventory("L1", 10), new Inventory("L1", 0));
+
+        stripedInventoryService.rebalance("L1");
+
+        ArgumentCaptor<Update> bucketUpdates = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate, Mockito.atLeastOnce()).updateFirst(Mockito.any(Query.class), bucketUpdates.capture(),
+                Mockito.eq(InventoryBucket.class));
+        // the full bucket remembers the move in the same update that takes its surplus
+        Update take = bucketUpdates.getAllValues().get(0);
+        Assertions.assertEquals(-10, ((Document) take.getUpdateObject().get("$inc")).get("quantity"));
+        Assertions.assertTrue(take.modifies("transfers"));
+        ArgumentCaptor<Update> recordUpdates = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate, Mockito.atLeastOnce()).updateFirst(Mockito.any(Query.class), recordUpdates.capture(),
+                Mockito.eq(Inventory.class));
+        Assertions.assertEquals(List.of(10, -10), quantityChanges(recordUpdates.getAllValues()));
+
+        logger.info("End testRebalanceMovesSurplusThroughTheRecord Testing");
+    }
+
+    @Test
+    public void testSweepFinishesAMoveOntoTheRecordLeftHalfDone() {
+        String id = new ObjectId(Date.from(Instant.now().minusSeconds(3600))).toHexString();
+        InventoryBucket bucket = new InventoryBucket("L1", 0, 6);
+        bucket.setId("b0");
+        bucket.setTransfers(List.of(new Inventory.Transfer(id, -4)));
+        Mockito.when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(InventoryBucket.class)))
+                .thenReturn(new ArrayList<>(List.of(bucket)));
+
+        stripedInventoryService.sweepRecord(new Inventory("L1", 0));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate, Mockito.times(2)).updateFirst(query.capture(), update.capture(), Mockito.eq(Inventory.class));
+        // credited once under the move's id, then forgotten
+        Assertions.assertEquals(4, ((Document) update.getAllValues().get(0).getUpdateObject().get("$inc")).get("quantity"));
+        Assertions.assertEquals(new Document("$ne", id), query.getAllValues().get(0).getQueryObject().get("transfers.id"));
+        Assertions.assertTrue(update.getAllValues().get(1).getUpdateObject().containsKey("$pull"));
+        Mockito.verify(mongoTemplate).updateFirst(Mockito.any(Query.class), Mockito.argThat((Update u) ->
+                u.getUpdateObject().containsKey("$pull")), Mockito.eq(InventoryBucket.class));
+
+        logger.info("End testSweepFinishesAMoveOntoTheRecordLeftHalfDone Testing");
+    }
+
+    @Test
+    public void testRestripeRejectsBadCount() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> stripedInventoryService.restripe("L1", -1));
+        Mockito.verifyNoInteractions(mongoTemplate);
+
+        logger.info("End testRestripeRejectsBadCount Testing");
+    }
+
+    private static List<Object> quantityChanges(List<Update> updates) {
+        return updates.stream()
+                .map(u -> (Document) u.getUpdateObject().get("$inc"))
+                .filter(Objects::nonNull)
+                .map(inc -> inc.get("quantity"))
+                .toList();
+    }
+
+    private static Inventory restriping(String itemId, int stripes) {
+        Inventory inv = new Inventory();
+        inv.setItemId(itemId);
+        inv.setRestripeTo(stripes);
+        inv.setRestripeGeneration(new ObjectId().toHexString());
+        return inv;
+    }
+}
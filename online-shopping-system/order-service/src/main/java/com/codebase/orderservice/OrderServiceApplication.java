@@ -5,8 +5,10 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.data.cassandra.repository.config.EnableCassandraRepositories;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @EnableKafka
+@EnableScheduling
 @EnableFeignClients(basePackages = "com.codebase.orderservice.client")
 @EnableCassandraRepositories(basePackages = "com.codebase.orderservice.repository")
 @SpringBootApplication
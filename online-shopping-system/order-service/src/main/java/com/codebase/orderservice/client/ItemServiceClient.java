@@ -5,19 +5,44 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.Collection;
+import java.util.List;
+
 @FeignClient(name = "item-service", url = "${item.service.url}")
 public interface ItemServiceClient {
 
-    @GetMapping("/items/{id}")
+    // Summary endpoints project only id/name/upc/price, which is all ItemDto carries
+    @GetMapping("/items/{id}/summary")
     ItemDto getItem(@PathVariable("id") String id);
 
+    // One round-trip for a whole basket; unknown ids are left out of the result
+    @PostMapping("/items/batch/summary")
+    List<ItemDto> getItems(@RequestBody Collection<String> ids);
+
     record ItemDto(String id, String name, String upc, Double price) {}
 
+    // Same Idempotency-Key on a retry -> applied once, original result returned
     @PostMapping("/items/{id}/inventory/decrement")
-    ResponseEntity<Integer> decrement(@PathVariable("id") String id, @RequestParam("quantity") int qty);
+    ResponseEntity<Integer> decrement(@PathVariable("id") String id, @RequestParam("quantity") int qty,
+                                      @RequestHeader("Idempotency-Key") String idempotencyKey);
 
     @PostMapping("/items/{id}/inventory/increment")
-    ResponseEntity<Integer> increment(@PathVariable("id") String id, @RequestParam("quantity") int qty);
+    ResponseEntity<Integer> increment(@PathVariable("id") String id, @RequestParam("quantity") int qty,
+                                      @RequestHeader("Idempotency-Key") String idempotencyKey);
+
+    // All-or-nothing reservation of a whole basket; 409 when any line is short.
+    // Same Idempotency-Key on a retry -> taken once, same outcome returned
+    @PostMapping("/items/inventory/reserve")
+    ResponseEntity<ReservationResult> reserve(@RequestHeader("Idempotency-Key") String idempotencyKey,
+                                              @RequestBody List<StockLine> lines);
+
+    record StockLine(String itemId, int quantity) {}
+
+    record ReservationResult(boolean reserved, List<LineResult> lines) {}
+
+    record LineResult(String itemId, int quantity, String status) {}
 }
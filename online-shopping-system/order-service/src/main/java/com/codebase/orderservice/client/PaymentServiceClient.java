@@ -1,8 +1,11 @@
 package com.codebase.orderservice.client;
 
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 
 /**
  * Feign client to call payment-service.
@@ -10,8 +13,14 @@ import org.springframework.web.bind.annotation.RequestBody;
 @FeignClient(name = "payment-service", url = "${payment.service.url}")
 public interface PaymentServiceClient {
 
+    // Same Idempotency-Key when a payment is resubmitted -> the provider charges once
     @PostMapping("/payments")
-    PaymentResponse submitPayment(@RequestBody PaymentRequest request);
+    PaymentResponse submitPayment(@RequestHeader("Idempotency-Key") String idempotencyKey,
+                                  @RequestBody PaymentRequest request);
+
+    // Payment taken under an Idempotency-Key; 404 -> none was taken
+    @GetMapping("/payments/{idempotencyKey}")
+    PaymentResponse getPayment(@PathVariable("idempotencyKey") String idempotencyKey);
 
     record PaymentRequest(String orderId, String userId, Double amount) {}
     record PaymentResponse(String status) {}
@@ -0,0 +1,54 @@
+package com.codebase.orderservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread pools of order placement.
+ *
+ * <p>Worker pool for the remote calls of order placement (pricing, stock
+ * reservation, payment, event publish). It is bounded: when every thread
+ * is busy and the queue is full, new placements are turned away with 503
+ * instead of piling up behind a slow dependency.</p>
+ */
+@Configuration
+public class PlacementExecutorConfig {
+
+    @Bean(name = "orderPlacementExecutor")
+    public ThreadPoolTaskExecutor orderPlacementExecutor(
+            @Value("${order.placement.threads:64}") int threads,
+            @Value("${order.placement.queue-capacity:256}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("order-placement-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Workers running accepted asynchronous placements end to end. Their
+     * count, not the speed of the payment provider, bounds how many
+     * placements are in progress; the queue absorbs bursts and a full
+     * queue turns new orders away with 503.
+     */
+    @Bean(name = "orderIntakeExecutor")
+    public ThreadPoolTaskExecutor orderIntakeExecutor(
+            @Value("${order.async.workers:16}") int workers,
+            @Value("${order.async.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("order-intake-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
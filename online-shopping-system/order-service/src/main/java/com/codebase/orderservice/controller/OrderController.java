@@ -1,14 +1,20 @@
 package com.codebase.orderservice.controller;
 
+import com.codebase.orderservice.dto.OrderPage;
 import com.codebase.orderservice.dto.OrderRequest;
 import com.codebase.orderservice.dto.OrderResponse;
+import com.codebase.orderservice.model.OrderStatus;
 import com.codebase.orderservice.service.OrderAppService;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.net.URI;
+import java.time.Instant;
 import java.util.*;
 
 @RestController
@@ -30,6 +36,24 @@ public class OrderController {
                 .body(appService.create(request, userId));
     }
 
+    // Async placement: persisted as PENDING and answered with 202 at once; follow via GET /orders/{id} or /events
+    @PostMapping("/async")
+    public ResponseEntity<OrderResponse> createAsync(@Valid @RequestBody OrderRequest request,
+                                                     Authentication auth) {
+        String userId = (String) auth.getPrincipal();
+        OrderResponse resp = appService.createAsync(request, userId);
+        return ResponseEntity.accepted()
+                .location(URI.create("/orders/" + resp.getOrderId()))
+                .body(resp);
+    }
+
+    // Server-Sent Events with the order's status, ending once it is PAID, COMPLETED or CANCELLED
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable("id") UUID id, Authentication auth) {
+        String userId = (String) auth.getPrincipal();
+        return appService.subscribe(id, userId);
+    }
+
     // Get Order by ID（Only bond with current user）
     @GetMapping("/{id}")
     public ResponseEntity<OrderResponse> get(@PathVariable("id") UUID id,
@@ -56,19 +80,26 @@ public class OrderController {
         return ResponseEntity.ok(appService.cancel(id, userId));
     }
 
-    // List all orders with current user. Bond with current user
+    // List the current user's orders one page at a time, newest first; pass nextToken back as "after"
     @GetMapping
-    public ResponseEntity<Map<String, Object>> list(Authentication auth) {
+    public ResponseEntity<Map<String, Object>> list(
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "status", required = false) OrderStatus status,
+            @RequestParam(value = "from", required = false) Instant from,
+            @RequestParam(value = "to", required = false) Instant to,
+            Authentication auth) {
         String userId = (String) auth.getPrincipal();
-        List<OrderResponse> resp = appService.list(userId);
+        OrderPage page = appService.list(userId, status, from, to, limit, after);
         Map<String, Object> body = new HashMap<>();
-        if (resp.isEmpty()) {
+        if (page.getOrders().isEmpty()) {
             body.put("message", "no orders");
             body.put("data", Collections.emptyList());
         } else {
             body.put("message", "success");
-            body.put("data", resp);
+            body.put("data", page.getOrders());
         }
+        body.put("nextToken", page.getNextToken());
         return ResponseEntity.ok(body);
     }
 }
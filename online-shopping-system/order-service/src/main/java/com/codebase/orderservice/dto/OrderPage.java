@@ -0,0 +1,39 @@
+package com.codebase.orderservice.dto;
+
+import java.util.List;
+
+/**
+ * One page of a user's order history, newest first. {@code nextToken} is
+ * an opaque cursor to pass back as {@code after}; it is null on the last
+ * page. A filtered page may hold fewer orders than asked for and still
+ * have a next page.
+ */
+public class OrderPage {
+
+    private List<OrderResponse> orders;
+    private String nextToken;
+
+    public OrderPage() {
+    }
+
+    public OrderPage(List<OrderResponse> orders, String nextToken) {
+        this.orders = orders;
+        this.nextToken = nextToken;
+    }
+
+    public List<OrderResponse> getOrders() {
+        return orders;
+    }
+
+    public void setOrders(List<OrderResponse> orders) {
+        this.orders = orders;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public void setNextToken(String nextToken) {
+        this.nextToken = nextToken;
+    }
+}
@@ -7,7 +7,8 @@ import java.util.List;
 
 /**
  * Request body for creating or updating an order.
- * Contains userId and a list of items to order.
+ * Contains userId and a list of items to order, optionally with a
+ * signed price quote from item-service for those items.
  */
 public class OrderRequest {
 
@@ -17,6 +18,8 @@ public class OrderRequest {
     @NotEmpty
     private List<OrderItemRequest> items;
 
+    private PriceQuote quote;
+
     public String getUserId() {
         return userId;
     }
@@ -32,5 +35,12 @@ public class OrderRequest {
     public void setItems(List<OrderItemRequest> items) {
         this.items = items;
     }
-}
 
+    public PriceQuote getQuote() {
+        return quote;
+    }
+
+    public void setQuote(PriceQuote quote) {
+        this.quote = quote;
+    }
+}
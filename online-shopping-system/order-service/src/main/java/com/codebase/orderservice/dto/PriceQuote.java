@@ -0,0 +1,48 @@
+package com.codebase.orderservice.dto;
+
+import java.util.Map;
+
+/**
+ * Signed price quote issued by item-service ({@code POST /items/quotes})
+ * and passed along with an order so its lines can be priced without
+ * calling item-service again. See PriceQuoteVerifier.
+ */
+public class PriceQuote {
+
+    private Map<String, Double> prices;
+    private long issuedAt;
+    private long expiresAt;
+    private String signature;
+
+    public Map<String, Double> getPrices() {
+        return prices;
+    }
+
+    public void setPrices(Map<String, Double> prices) {
+        this.prices = prices;
+    }
+
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    public void setIssuedAt(long issuedAt) {
+        this.issuedAt = issuedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public void setSignature(String signature) {
+        this.signature = signature;
+    }
+}
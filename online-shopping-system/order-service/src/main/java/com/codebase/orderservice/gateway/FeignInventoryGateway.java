@@ -3,37 +3,84 @@ package com.codebase.orderservice.gateway;
 
 import com.codebase.orderservice.client.ItemServiceClient;
 import feign.FeignException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
 @Service
 public class FeignInventoryGateway implements InventoryGateway {
 
     private final ItemServiceClient client;
 
+    @Value("${item.inventory.retry.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${item.inventory.retry.backoff-ms:100}")
+    private long backoffMs = 100;
+
     public FeignInventoryGateway(ItemServiceClient client) {
         this.client = client;
     }
 
     @Override
-    public boolean tryDecrement(String itemId, int qty) {
+    public boolean tryDecrementAll(Map<String, Integer> quantities) {
+        return tryDecrementAll(quantities, UUID.randomUUID().toString());
+    }
+
+    @Override
+    public boolean tryDecrementAll(Map<String, Integer> quantities, String key) {
+        List<ItemServiceClient.StockLine> lines = quantities.entrySet().stream()
+                .map(e -> new ItemServiceClient.StockLine(e.getKey(), e.getValue()))
+                .toList();
         try {
-            client.decrement(itemId, qty); // 2xx 即成功
+            withRetry(() -> client.reserve(key, lines)); // 2xx 即整单成功；同一 key 重试只扣一次
             return true;
         } catch (FeignException e) {
-            // 409 -> 库存不足；404 -> 库存/商品不存在；其它 -> 交给上层处理或记录
-            if (e.status() == 409 || e.status() == 404) return false;
+            // 409 -> 某行库存不足，item-service 已回滚整单
+            if (e.status() == 409) return false;
             throw e;
         }
     }
 
     @Override
-    public void increment(String itemId, int qty) {
+    public void increment(String itemId, int qty, String idempotencyKey) {
         try {
-            client.increment(itemId, qty); // 不关心返回值
+            withRetry(() -> client.increment(itemId, qty, idempotencyKey)); // 不关心返回值
         } catch (FeignException e) {
             // 404 代表没有对应库存（严格模式下不应发生），可按需记录告警
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Retry a keyed call on I/O errors and 5xx responses. Only used for
+     * calls carrying an Idempotency-Key, so a retry of a request that did
+     * reach item-service is answered with the first result.
+     */
+    private <T> ResponseEntity<T> withRetry(Supplier<ResponseEntity<T>> call) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (FeignException e) {
+                boolean transientFailure = e.status() == -1 || e.status() >= 500;
+                if (!transientFailure || attempt >= maxAttempts) {
+                    throw e;
+                }
+                sleep(backoffMs * attempt);
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.codebase.orderservice.gateway;
 
+import java.util.Map;
+
 public interface InventoryGateway {
-    boolean tryDecrement(String itemId, int qty); // 409 -> false
-    void increment(String itemId, int qty);
+    boolean tryDecrementAll(Map<String, Integer> quantities); // all-or-nothing, 409 -> false
+    boolean tryDecrementAll(Map<String, Integer> quantities, String idempotencyKey); // same key -> same outcome, safe to replay
+    void increment(String itemId, int qty, String idempotencyKey); // same key -> applied once, safe to retry
 }
@@ -0,0 +1,119 @@
+package com.codebase.orderservice.model;
+
+import org.springframework.data.cassandra.core.cql.Ordering;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Copy of an {@link Order} in the orders_by_user query table. Rows are
+ * partitioned by user_id and clustered by created_at (newest first) and
+ * order_id, so listing a user's orders reads one partition in order.
+ * created_at never changes, so every write of an order lands on the
+ * same row.
+ */
+@Table("orders_by_user")
+public class OrderByUser {
+
+    @PrimaryKeyColumn(name = "user_id", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private String userId;
+
+    @PrimaryKeyColumn(name = "created_at", ordinal = 1, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.DESCENDING)
+    private Instant createdAt;
+
+    @PrimaryKeyColumn(name = "order_id", ordinal = 2, type = PrimaryKeyType.CLUSTERED)
+    private UUID orderId;
+
+    @Column("items")
+    @Frozen
+    private List<OrderItem> items;
+
+    @Column("total_price")
+    private double totalPrice;
+
+    @Column("status")
+    private OrderStatus status;
+
+    @Column("updated_at")
+    private Instant updatedAt;
+
+    public OrderByUser() {
+    }
+
+    /** Row for an order; orders written before created_at existed sort last. */
+    public static OrderByUser of(Order order) {
+        OrderByUser row = new OrderByUser();
+        row.userId = order.getUserId();
+        row.createdAt = order.getCreatedAt() != null ? order.getCreatedAt() : Instant.EPOCH;
+        row.orderId = order.getOrderId();
+        row.items = order.getItems();
+        row.totalPrice = order.getTotalPrice();
+        row.status = order.getStatus();
+        row.updatedAt = order.getUpdatedAt();
+        return row;
+    }
+
+    public Order toOrder() {
+        return new Order(orderId, userId, items, totalPrice, status,
+                Instant.EPOCH.equals(createdAt) ? null : createdAt, updatedAt);
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public UUID getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(UUID orderId) {
+        this.orderId = orderId;
+    }
+
+    public List<OrderItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<OrderItem> items) {
+        this.items = items;
+    }
+
+    public double getTotalPrice() {
+        return totalPrice;
+    }
+
+    public void setTotalPrice(double totalPrice) {
+        this.totalPrice = totalPrice;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(OrderStatus status) {
+        this.status = status;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,188 @@
+package com.codebase.orderservice.model;
+
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Journal of one order placement, keyed by the order id. It is written
+ * before each step runs, so after a crash the recovery worker knows how
+ * far the placement got and whether to finish or compensate it. While a
+ * saga is neither COMPLETED nor COMPENSATED it is also listed in
+ * {@link OrderSagaInFlight}.
+ */
+@Table("order_sagas")
+public class OrderSaga {
+
+    /** Forward steps, in order. */
+    public enum Step {
+        /** Accepted for asynchronous placement, waiting for an intake worker. */
+        QUEUED,
+        RESERVE_STOCK,
+        CREATE_ORDER,
+        CHARGE_PAYMENT,
+        CONFIRM
+    }
+
+    public enum State {
+        RUNNING,
+        COMPENSATING,
+        COMPLETED,
+        COMPENSATED
+    }
+
+    @PrimaryKey
+    @Column("saga_id")
+    private UUID sagaId;
+
+    @Column("user_id")
+    private String userId;
+
+    @Column("state")
+    private State state;
+
+    @Column("step")
+    private Step step;
+
+    /** Units to reserve per item id. */
+    @Column("quantities")
+    private Map<String, Integer> quantities;
+
+    /** Items whose reservation is known to have been applied. */
+    @Column("reserved")
+    private Set<String> reserved;
+
+    /** Whether every reservation call has answered, so {@code reserved} is complete. */
+    @Column("reservation_known")
+    private boolean reservationKnown;
+
+    @Column("total_price")
+    private double totalPrice;
+
+    /** Times the recovery worker has picked the saga up. */
+    @Column("attempts")
+    private int attempts;
+
+    @Column("last_error")
+    private String lastError;
+
+    @Column("created_at")
+    private Instant createdAt;
+
+    @Column("updated_at")
+    private Instant updatedAt;
+
+    public OrderSaga() {
+    }
+
+    public OrderSaga(UUID sagaId, String userId, Map<String, Integer> quantities, Instant createdAt) {
+        this.sagaId = sagaId;
+        this.userId = userId;
+        this.quantities = quantities;
+        this.state = State.RUNNING;
+        this.step = Step.RESERVE_STOCK;
+        this.createdAt = createdAt;
+        this.updatedAt = createdAt;
+    }
+
+    public UUID getSagaId() {
+        return sagaId;
+    }
+
+    public void setSagaId(UUID sagaId) {
+        this.sagaId = sagaId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    public Step getStep() {
+        return step;
+    }
+
+    public void setStep(Step step) {
+        this.step = step;
+    }
+
+    public Map<String, Integer> getQuantities() {
+        return quantities;
+    }
+
+    public void setQuantities(Map<String, Integer> quantities) {
+        this.quantities = quantities;
+    }
+
+    public Set<String> getReserved() {
+        return reserved;
+    }
+
+    public void setReserved(Set<String> reserved) {
+        this.reserved = reserved;
+    }
+
+    public boolean isReservationKnown() {
+        return reservationKnown;
+    }
+
+    public void setReservationKnown(boolean reservationKnown) {
+        this.reservationKnown = reservationKnown;
+    }
+
+    public double getTotalPrice() {
+        return totalPrice;
+    }
+
+    public void setTotalPrice(double totalPrice) {
+        this.totalPrice = totalPrice;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
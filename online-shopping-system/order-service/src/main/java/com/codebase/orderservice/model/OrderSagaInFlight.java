@@ -0,0 +1,52 @@
+package com.codebase.orderservice.model;
+
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.util.UUID;
+
+/**
+ * Index of unfinished sagas, spread over a fixed number of shard
+ * partitions so that the recovery worker reads a few small partitions
+ * instead of scanning order_sagas.
+ */
+@Table("order_sagas_in_flight")
+public class OrderSagaInFlight {
+
+    public static final int SHARDS = 16;
+
+    @PrimaryKeyColumn(name = "shard", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private int shard;
+
+    @PrimaryKeyColumn(name = "saga_id", ordinal = 1, type = PrimaryKeyType.CLUSTERED)
+    private UUID sagaId;
+
+    public OrderSagaInFlight() {
+    }
+
+    public OrderSagaInFlight(UUID sagaId) {
+        this.shard = shardOf(sagaId);
+        this.sagaId = sagaId;
+    }
+
+    public static int shardOf(UUID sagaId) {
+        return Math.floorMod(sagaId.hashCode(), SHARDS);
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public void setShard(int shard) {
+        this.shard = shard;
+    }
+
+    public UUID getSagaId() {
+        return sagaId;
+    }
+
+    public void setSagaId(UUID sagaId) {
+        this.sagaId = sagaId;
+    }
+}
@@ -7,6 +7,8 @@ package com.codebase.orderservice.model;
  * resume order handling after failures.
  */
 public enum OrderStatus {
+    /** Accepted for asynchronous placement; stock and payment not settled yet. */
+    PENDING,
     CREATED,
     PAID,
     COMPLETED,
@@ -3,7 +3,6 @@ package com.codebase.orderservice.repository;
 import com.codebase.orderservice.model.Order;
 import org.springframework.data.cassandra.repository.CassandraRepository;
 
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -16,6 +15,4 @@ import java.util.UUID;
 public interface OrderRepository extends CassandraRepository<Order, UUID> {
 
     Optional<Order> findByOrderIdAndUserId(UUID orderId, String userId);
-
-    List<Order> findAllByUserId(String userId);
 }
\ No newline at end of file
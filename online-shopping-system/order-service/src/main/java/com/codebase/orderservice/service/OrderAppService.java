@@ -1,98 +1,222 @@
 package com.codebase.orderservice.service;
 
 import com.codebase.orderservice.client.ItemServiceClient;
-import com.codebase.orderservice.client.PaymentServiceClient;
+import com.codebase.orderservice.dto.OrderItemRequest;
 import com.codebase.orderservice.dto.OrderItemResponse;
+import com.codebase.orderservice.dto.OrderPage;
 import com.codebase.orderservice.dto.OrderRequest;
 import com.codebase.orderservice.dto.OrderResponse;
-import com.codebase.orderservice.event.OrderEvent;
 import com.codebase.orderservice.gateway.InventoryGateway;
 import com.codebase.orderservice.model.Order;
 import com.codebase.orderservice.model.OrderItem;
+import com.codebase.orderservice.model.OrderSaga;
 import com.codebase.orderservice.model.OrderStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 public class OrderAppService {
 
+    private static final Logger log = LoggerFactory.getLogger(OrderAppService.class);
+
     private final OrderService domainService;
     private final ItemServiceClient itemClient;
-    private final PaymentServiceClient paymentClient;
-    private final OrderEventProducer eventProducer;
     private final InventoryGateway inventoryGateway;
+    private final PriceQuoteVerifier quoteVerifier;
+    private final PlacementStages stages;
+    private final OrderSagaOrchestrator sagaOrchestrator;
+    private final AsyncTaskExecutor intakeExecutor;
+    private final OrderStatusNotifier statusNotifier;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${order.history.max-page-size:100}")
+    private int maxPageSize = 100;
+
+    /** Deadline for a whole placement, from pricing to the final status write. */
+    @Value("${order.placement.timeout:PT10S}")
+    private Duration placementTimeout = Duration.ofSeconds(10);
 
     public OrderAppService(OrderService domainService,
                            ItemServiceClient itemClient,
-                           PaymentServiceClient paymentClient,
-                           OrderEventProducer eventProducer,
-                           InventoryGateway inventoryGateway) {
+                           InventoryGateway inventoryGateway,
+                           PriceQuoteVerifier quoteVerifier,
+                           PlacementStages stages,
+                           OrderSagaOrchestrator sagaOrchestrator,
+                           @Qualifier("orderIntakeExecutor") AsyncTaskExecutor intakeExecutor,
+                           OrderStatusNotifier statusNotifier,
+                           MeterRegistry meterRegistry) {
         this.domainService = domainService;
         this.itemClient = itemClient;
-        this.paymentClient = paymentClient;
-        this.eventProducer = eventProducer;
         this.inventoryGateway = inventoryGateway;
+        this.quoteVerifier = quoteVerifier;
+        this.stages = stages;
+        this.sagaOrchestrator = sagaOrchestrator;
+        this.intakeExecutor = intakeExecutor;
+        this.statusNotifier = statusNotifier;
+        this.meterRegistry = meterRegistry;
     }
 
-    /** Create Order: use current userId to avoid fake login*/
+    /**
+     * Create Order: use current userId to avoid fake login.
+     *
+     * <p>Placement runs its remote calls on the bounded placement pool:
+     * pricing and the stock reservation run side by side (the reservation
+     * needs only quantities), and the CREATED event is published while
+     * payment is in flight. The whole placement shares one deadline; a
+     * stage still running when it passes is cancelled and the request
+     * answered with 504. Each stage is timed as
+     * {@code order.placement.stage{stage=...}}.</p>
+     *
+     * <p>Every step is journaled as an {@link OrderSaga} by
+     * {@link OrderSagaOrchestrator}, so a placement cut off by a crash or
+     * timeout is compensated or finished by its recovery worker instead of
+     * leaving stock held.</p>
+     */
     public OrderResponse create(OrderRequest req, String userId) {
-        // 1) price items
-        List<OrderItem> items = req.getItems().stream().map(i -> {
-            var dto = itemClient.getItem(i.getItemId());
-            double price = dto.price() != null ? dto.price() : 0.0;
-            return new OrderItem(i.getItemId(), i.getQuantity(), price);
-        }).toList();
+        UUID orderId = UUID.randomUUID();
+        return timedPlacement(() -> {
+            long deadline = System.nanoTime() + placementTimeout.toNanos();
+            return place(req, pricing -> sagaOrchestrator.place(orderId, userId, quantities(req), pricing, deadline,
+                    items -> domainService.createOrder(orderId, userId, items)));
+        });
+    }
 
-        double total = items.stream().mapToDouble(it -> it.getUnitPrice() * it.getQuantity()).sum();
+    /**
+     * Accept an order for placement in the background. The request is
+     * validated (including a price quote's signature), its saga journaled
+     * and the order persisted as PENDING, then handed to the bounded
+     * intake pool and returned at once; pricing, stock and payment run on
+     * a worker. When the pool and its queue are full the order is
+     * cancelled and 503 returned, so callers back off instead of queueing
+     * without bound. Progress shows up in GET /orders/{id} and
+     * {@link #subscribe}.
+     */
+    public OrderResponse createAsync(OrderRequest req, String userId) {
+        quoteVerifier.verifiedPrices(req.getQuote());
+        List<OrderItem> lines = req.getItems().stream()
+                .map(i -> new OrderItem(i.getItemId(), i.getQuantity(), 0.0))
+                .toList();
+        UUID orderId = UUID.randomUUID();
+        OrderSaga saga = sagaOrchestrator.accept(orderId, userId, quantities(req));
+        Order pending = domainService.createPendingOrder(orderId, userId, lines);
+        try {
+            intakeExecutor.execute(() -> placePending(pending, saga, req));
+        } catch (TaskRejectedException e) {
+            sagaOrchestrator.abandon(saga, "Order intake is at capacity");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Order intake is at capacity, retry later");
+        }
+        return toResponse(pending);
+    }
 
-        // 2) decrement inventory
-        List<OrderItem> decremented = new ArrayList<>();
+    /**
+     * Worker side of {@link #createAsync}. The placement deadline starts
+     * when a worker picks the order up. A placement that fails before the
+     * order left PENDING cancels it here. An order whose worker never
+     * finishes, because the instance died with it queued or running, is
+     * cancelled or completed by saga recovery from the journal written at
+     * intake.
+     */
+    private void placePending(Order pending, OrderSaga saga, OrderRequest req) {
+        UUID orderId = pending.getOrderId();
         try {
-            for (OrderItem it : items) {
-                itemClient.decrement(it.getItemId(), it.getQuantity()); // 若不足会抛 409
-                decremented.add(it);
-            }
-        } catch (Exception e) {
-            for (OrderItem it : decremented) {
-                try { itemClient.increment(it.getItemId(), it.getQuantity()); } catch (Exception ignore) {}
+            OrderResponse placed = timedPlacement(() -> {
+                long deadline = System.nanoTime() + placementTimeout.toNanos();
+                return place(req, pricing -> sagaOrchestrator.placeAccepted(saga, pricing, deadline, items -> {
+                    pending.setItems(items);
+                    pending.setTotalPrice(items.stream().mapToDouble(it -> it.getUnitPrice() * it.getQuantity()).sum());
+                    pending.setStatus(OrderStatus.CREATED);
+                    Order created = domainService.save(pending);
+                    statusNotifier.publish(toResponse(created));
+                    return created;
+                }));
+            });
+            statusNotifier.publish(placed);
+        } catch (RuntimeException e) {
+            log.warn("Placement of order {} failed: {}", orderId, e.getMessage());
+            Order current = domainService.getOrder(orderId).orElse(pending);
+            if (current.getStatus() == OrderStatus.PENDING) {
+                current = domainService.cancelOrder(orderId).orElse(current);
             }
-            throw new ResponseStatusException(HttpStatus.CONFLICT, "Insufficient inventory");
+            statusNotifier.publish(toResponse(current));
         }
+    }
 
-        // 3) persist order as CREATED（bond with current user）
-        Order order = domainService.createOrder(userId, items);
-
-        // 4) publish CREATED event
-        eventProducer.sendOrderEvent(new OrderEvent(
-                order.getOrderId().toString(),
-                order.getUserId(),
-                items.stream().map(i -> new OrderEvent.ItemLine(i.getItemId(), i.getQuantity())).toList(),
-                total,
-                order.getStatus()
-        ));
-
-        // 5) call payment
-        var payResp = paymentClient.submitPayment(
-                new PaymentServiceClient.PaymentRequest(order.getOrderId().toString(), order.getUserId(), total)
-        );
+    /**
+     * Stream status changes of an order as Server-Sent Events, starting
+     * with its current state; the stream ends once the order is final.
+     */
+    public SseEmitter subscribe(UUID id, String userId) {
+        OrderResponse current = get(id, userId);
+        if (current == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found");
+        }
+        return statusNotifier.subscribe(current);
+    }
 
-        // 6) payment successfully -> marked as PAID
-        if (payResp != null && "SUCCESS".equalsIgnoreCase(payResp.status())) {
-            domainService.markOrderPaid(order.getOrderId());
-            return toResponse(domainService.getOrder(order.getOrderId()).orElse(order));
+    /**
+     * Catch status changes the local workers did not announce, such as
+     * an order placed by another instance, by re-reading every order
+     * with an open stream.
+     */
+    @Scheduled(fixedDelayString = "${order.async.status-poll-ms:1000}")
+    public void pollSubscribedOrders() {
+        for (UUID id : statusNotifier.subscribedOrders()) {
+            try {
+                domainService.getOrder(id).map(this::toResponse).ifPresent(statusNotifier::publish);
+            } catch (RuntimeException e) {
+                log.debug("Status poll of order {} failed: {}", id, e.getMessage());
+            }
         }
+    }
 
-        // 7) payment failed → roll back inventory and cancel order
-        for (OrderItem it : decremented) {
-            try { itemClient.increment(it.getItemId(), it.getQuantity()); } catch (Exception ignore) {}
+    private OrderResponse timedPlacement(Supplier<OrderResponse> placement) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            OrderResponse response = placement.get();
+            outcome = response.getStatus() == OrderStatus.PAID ? "paid" : "cancelled";
+            return response;
+        } catch (ResponseStatusException e) {
+            outcome = e.getStatusCode().value() == HttpStatus.GATEWAY_TIMEOUT.value() ? "timeout" : "rejected";
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("order.placement", "outcome", outcome));
         }
-        domainService.cancelOrder(order.getOrderId());
-        return toResponse(domainService.getOrder(order.getOrderId()).orElse(order));
+    }
+
+    // pricing runs while the saga reserves stock; the saga takes it from there
+    private OrderResponse place(OrderRequest req, Function<Future<List<OrderItem>>, Order> saga) {
+        Future<List<OrderItem>> pricing = stages.start("price", () -> priceItems(req));
+        return toResponse(saga.apply(pricing));
+    }
+
+    private static Map<String, Integer> quantities(OrderRequest req) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItemRequest line : req.getItems()) {
+            quantities.merge(line.getItemId(), line.getQuantity(), Integer::sum);
+        }
+        return quantities;
     }
 
     /** Can only be updated with status "Created" and bong with current user. */
@@ -105,11 +229,7 @@ public class OrderAppService {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Only CREATED orders can be updated");
         }
 
-        List<OrderItem> items = req.getItems().stream().map(i -> {
-            var dto = itemClient.getItem(i.getItemId());
-            double price = dto.price() != null ? dto.price() : 0.0;
-            return new OrderItem(i.getItemId(), i.getQuantity(), price);
-        }).collect(Collectors.toList());
+        List<OrderItem> items = priceItems(req);
 
         double total = items.stream().mapToDouble(it -> it.getUnitPrice() * it.getQuantity()).sum();
         existing.setItems(items);
@@ -126,9 +246,22 @@ public class OrderAppService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found"));
         ensureOwner(order, userId);
 
+        if (order.getStatus() == OrderStatus.PENDING) {
+            // nothing is known to be reserved yet; the worker settles it
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Order is still being placed");
+        }
         if (order.getStatus() != OrderStatus.CANCELLED) {
+            if (sagaOrchestrator.isRunning(id)) {
+                // its payment may still go through; the saga settles the order
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Order is still being placed");
+            }
+            // one release per item: lines of the same item share its idempotency key
+            Map<String, Integer> quantities = new LinkedHashMap<>();
             for (OrderItem line : order.getItems()) {
-                inventoryGateway.increment(line.getItemId(), line.getQuantity());
+                quantities.merge(line.getItemId(), line.getQuantity(), Integer::sum);
+            }
+            for (Map.Entry<String, Integer> e : quantities.entrySet()) {
+                inventoryGateway.increment(e.getKey(), e.getValue(), OrderSagaOrchestrator.releaseKey(order.getOrderId(), e.getKey()));
             }
             order = domainService.cancelOrder(id)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found"));
@@ -145,13 +278,62 @@ public class OrderAppService {
         return toResponse(order);
     }
 
-    /** list all order of current user */
-    public List<OrderResponse> list(String userId) {
-        List<Order> orders = domainService.getOrdersForUser(userId);
-        if (orders == null || orders.isEmpty()) {
-            return Collections.emptyList();
+    /**
+     * List one page of the current user's orders, newest first. Pass the
+     * returned {@code nextToken} as {@code after} to continue; the token
+     * is tied to the user and filters it was issued for.
+     */
+    public OrderPage list(String userId, OrderStatus status, Instant from, Instant to, int limit, String after) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        String filter = OrderPageToken.fingerprint(userId, status, from, to);
+        CassandraPageRequest page = CassandraPageRequest.first(size);
+        if (after != null && !after.isBlank()) {
+            OrderPageToken token = OrderPageToken.decode(after);
+            if (!token.filter().equals(filter)) {
+                throw new IllegalArgumentException("Page token does not match this listing");
+            }
+            page = CassandraPageRequest.of(page, token.pagingState());
+        }
+
+        Slice<Order> slice = domainService.getOrdersForUser(userId, status, from, to, page);
+        String next = null;
+        if (slice.hasNext()) {
+            next = new OrderPageToken(filter, ((CassandraPageRequest) slice.nextPageable()).getPagingState()).encode();
+        }
+        return new OrderPage(slice.getContent().stream().map(this::toResponse).toList(), next);
+    }
+
+    /**
+     * Price every line of the request. Items covered by a valid price
+     * quote take the quoted price without a call; the rest are priced
+     * with a single batch lookup against item-service, so the number of
+     * round-trips does not grow with the size of the basket.
+     */
+    private List<OrderItem> priceItems(OrderRequest req) {
+        Map<String, Double> quoted = quoteVerifier.verifiedPrices(req.getQuote());
+        Set<String> unquoted = req.getItems().stream()
+                .map(OrderItemRequest::getItemId)
+                .filter(id -> !quoted.containsKey(id))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, Double> live = new HashMap<>();
+        if (!unquoted.isEmpty()) {
+            for (ItemServiceClient.ItemDto dto : itemClient.getItems(unquoted)) {
+                live.putIfAbsent(dto.id(), dto.price() != null ? dto.price() : 0.0);
+            }
+        }
+
+        List<OrderItem> items = new ArrayList<>(req.getItems().size());
+        for (OrderItemRequest i : req.getItems()) {
+            Double price = quoted.containsKey(i.getItemId()) ? quoted.get(i.getItemId()) : live.get(i.getItemId());
+            if (price == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Item not found: " + i.getItemId());
+            }
+            items.add(new OrderItem(i.getItemId(), i.getQuantity(), price));
         }
-        return orders.stream().map(this::toResponse).toList();
+        return items;
     }
 
     private void ensureOwner(Order order, String userId) {
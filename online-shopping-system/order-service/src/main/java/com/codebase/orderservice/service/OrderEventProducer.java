@@ -4,8 +4,11 @@ import com.codebase.orderservice.event.OrderEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Sends order events to Kafka topic.
  */
@@ -19,9 +22,10 @@ public class OrderEventProducer {
         this.kafkaTemplate = kafkaTemplate;
     }
 
-    public void sendOrderEvent(OrderEvent event) {
+    /** @return completes once the broker has acknowledged the event */
+    public CompletableFuture<SendResult<String, OrderEvent>> sendOrderEvent(OrderEvent event) {
         LOGGER.info("Sending OrderEvent for orderId={}", event.getOrderId());
-        kafkaTemplate.send("order-events", event.getOrderId(), event);
+        return kafkaTemplate.send("order-events", event.getOrderId(), event);
     }
 }
 
@@ -0,0 +1,86 @@
+package com.codebase.orderservice.service;
+
+import com.codebase.orderservice.model.Order;
+import com.codebase.orderservice.model.OrderByUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.cassandra.core.CassandraTemplate;
+import org.springframework.data.cassandra.core.InsertOptions;
+import org.springframework.data.cassandra.core.cql.QueryOptions;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.stream.Stream;
+
+/**
+ * Copies orders written before orders_by_user existed into that table.
+ * Enable with {@code order.history.backfill.enabled} for one start after
+ * upgrading; it pages through orders in the background and is safe to
+ * run again.
+ *
+ * <p>Each row is written with the order's updated_at as its write
+ * timestamp. A live write that changed the order meanwhile carries a
+ * later timestamp, so a stale copy from the scan never overwrites it.</p>
+ */
+@Component
+public class OrderHistoryBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderHistoryBackfill.class);
+
+    private final CassandraTemplate cassandraTemplate;
+
+    @Value("${order.history.backfill.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.history.backfill.page-size:500}")
+    private int pageSize = 500;
+
+    public OrderHistoryBackfill(CassandraTemplate cassandraTemplate) {
+        this.cassandraTemplate = cassandraTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread worker = new Thread(() -> {
+            try {
+                backfill();
+            } catch (RuntimeException e) {
+                log.error("orders_by_user backfill stopped", e);
+            }
+        }, "orders-by-user-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * @return number of rows written
+     */
+    public long backfill() {
+        long copied = 0;
+        long skipped = 0;
+        Query all = Query.empty().queryOptions(QueryOptions.builder().pageSize(pageSize).build());
+        try (Stream<Order> orders = cassandraTemplate.stream(all, Order.class)) {
+            for (Order order : (Iterable<Order>) orders::iterator) {
+                if (order.getUserId() == null) {
+                    skipped++;
+                    continue;
+                }
+                Instant version = order.getUpdatedAt() != null ? order.getUpdatedAt()
+                        : order.getCreatedAt() != null ? order.getCreatedAt() : Instant.EPOCH;
+                cassandraTemplate.insert(OrderByUser.of(order), InsertOptions.builder().timestamp(version).build());
+                if (++copied % 10_000 == 0) {
+                    log.info("orders_by_user backfill: {} orders copied", copied);
+                }
+            }
+        }
+        log.info("orders_by_user backfill finished: {} orders copied, {} without user skipped", copied, skipped);
+        return copied;
+    }
+}
@@ -0,0 +1,62 @@
+package com.codebase.orderservice.service;
+
+import com.codebase.orderservice.model.OrderStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Cassandra paging state of an order history query, encoded as an opaque
+ * URL-safe string. A fingerprint of the user and filters travels with it
+ * so that a token cannot be replayed against a different listing.
+ *
+ * @param filter      fingerprint of the listing the token was issued for
+ * @param pagingState driver paging state where the next page starts
+ */
+record OrderPageToken(String filter, ByteBuffer pagingState) {
+
+    private static final String SEP = ".";
+
+    /**
+     * Fingerprint of a listing: the first 8 bytes of a SHA-256 over the
+     * user and each filter, so that listings differing in any of them
+     * (an unset bound included) get different fingerprints.
+     */
+    static String fingerprint(String userId, OrderStatus status, Instant from, Instant to) {
+        String listing = String.join("\n", userId,
+                status == null ? "-" : status.name(),
+                from == null ? "-" : from.toString(),
+                to == null ? "-" : to.toString());
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(listing.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    String encode() {
+        ByteBuffer state = pagingState.duplicate();
+        byte[] bytes = new byte[state.remaining()];
+        state.get(bytes);
+        return filter + SEP + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    static OrderPageToken decode(String token) {
+        try {
+            int sep = token.indexOf(SEP);
+            byte[] state = Base64.getUrlDecoder().decode(token.substring(sep + 1));
+            if (sep <= 0 || state.length == 0) {
+                throw new IllegalArgumentException();
+            }
+            return new OrderPageToken(token.substring(0, sep), ByteBuffer.wrap(state));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+    }
+}
@@ -0,0 +1,583 @@
+package com.codebase.orderservice.service;
+
+import com.codebase.orderservice.client.PaymentServiceClient;
+import com.codebase.orderservice.event.OrderEvent;
+import com.codebase.orderservice.gateway.InventoryGateway;
+import com.codebase.orderservice.model.Order;
+import com.codebase.orderservice.model.OrderItem;
+import com.codebase.orderservice.model.OrderSaga;
+import com.codebase.orderservice.model.OrderSaga.State;
+import com.codebase.orderservice.model.OrderSaga.Step;
+import com.codebase.orderservice.model.OrderSagaInFlight;
+import com.codebase.orderservice.model.OrderStatus;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import feign.FeignException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.cassandra.core.CassandraTemplate;
+import org.springframework.data.cassandra.core.InsertOptions;
+import org.springframework.data.cassandra.core.UpdateOptions;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.cassandra.core.query.Criteria;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Runs order placement as a saga journaled in order_sagas: reserve stock,
+ * create the order, charge the payment, confirm. The journal is written
+ * before each step, so a placement cut short by a crash or a deadline is
+ * picked up by {@link #recover()} and either finished or compensated.
+ * Each journal write is conditional on the previous one, so only the
+ * runner that last wrote a saga can take it further.
+ * An order accepted for asynchronous placement is journaled by
+ * {@link #accept} before it is acknowledged, so it is settled even when
+ * the instance dies while the order waits for a worker.
+ *
+ * <p>Every remote step can be replayed. Stock is reserved with one keyed
+ * basket reservation, all lines or none, and released per item with the
+ * same keys that a manual cancel uses. The payment carries a key derived
+ * from the order id, but the provider is not relied on to deduplicate
+ * it: before charging again, recovery asks whether a payment was already
+ * taken under that key. Recovery finishes a saga that reached the
+ * payment step. It compensates any saga that stopped earlier, because
+ * the client has already been told that its placement failed.</p>
+ *
+ * <p>Finished sagas are written with a TTL of
+ * {@code order.saga.retention}; unfinished ones never expire.</p>
+ */
+@Service
+public class OrderSagaOrchestrator {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderSagaOrchestrator.class);
+
+    private final CassandraTemplate cassandraTemplate;
+    private final OrderService domainService;
+    private final InventoryGateway inventoryGateway;
+    private final PaymentServiceClient paymentClient;
+    private final OrderEventProducer eventProducer;
+    private final PlacementStages stages;
+
+    @Value("${order.placement.timeout:PT10S}")
+    private Duration placementTimeout = Duration.ofSeconds(10);
+
+    /** A saga untouched for this long is considered abandoned by its runner. */
+    @Value("${order.saga.recovery.stale-after:PT1M}")
+    private Duration staleAfter = Duration.ofMinutes(1);
+
+    /** How long an accepted order may wait for an intake worker before recovery cancels it. */
+    @Value("${order.async.intake-timeout:PT5M}")
+    private Duration intakeTimeout = Duration.ofMinutes(5);
+
+    /** How long a finished saga is kept for diagnosis. */
+    @Value("${order.saga.retention:P30D}")
+    private Duration retention = Duration.ofDays(30);
+
+    /** Sagas read per page of a shard, and most due sagas taken per shard and recovery run. */
+    @Value("${order.saga.recovery.batch-size:100}")
+    private int recoveryBatchSize = 100;
+
+    /** Sagas recovered at the same time. */
+    @Value("${order.saga.recovery.parallelism:4}")
+    private int recoveryParallelism = 4;
+
+    public OrderSagaOrchestrator(CassandraTemplate cassandraTemplate, OrderService domainService,
+                                 InventoryGateway inventoryGateway, PaymentServiceClient paymentClient,
+                                 OrderEventProducer eventProducer, PlacementStages stages) {
+        this.cassandraTemplate = cassandraTemplate;
+        this.domainService = domainService;
+        this.inventoryGateway = inventoryGateway;
+        this.paymentClient = paymentClient;
+        this.eventProducer = eventProducer;
+        this.stages = stages;
+    }
+
+    /**
+     * Place an order. Stock is reserved while {@code pricing} runs; the
+     * CREATED event is published while payment is in flight.
+     *
+     * @param persist writes the priced order as CREATED
+     * @return the order as PAID, or CANCELLED when the payment was declined
+     * @throws ResponseStatusException 409 when stock is short, 504 when the deadline passes
+     */
+    public Order place(UUID orderId, String userId, Map<String, Integer> quantities,
+                       Future<List<OrderItem>> pricing, long deadline, Function<List<OrderItem>, Order> persist) {
+        OrderSaga saga;
+        try {
+            saga = begin(orderId, userId, quantities, Step.RESERVE_STOCK);
+        } catch (RuntimeException e) {
+            pricing.cancel(true);
+            throw e;
+        }
+        return run(saga, pricing, deadline, persist);
+    }
+
+    /**
+     * Journal an order accepted for asynchronous placement, before it is
+     * acknowledged. Until a worker takes it over with
+     * {@link #placeAccepted}, recovery cancels it once it has waited
+     * {@code order.async.intake-timeout}.
+     */
+    public OrderSaga accept(UUID orderId, String userId, Map<String, Integer> quantities) {
+        return begin(orderId, userId, quantities, Step.QUEUED);
+    }
+
+    /**
+     * Place an order journaled by {@link #accept}, as {@link #place} does.
+     * The worker first takes the saga over with a conditional write, so it
+     * never runs a placement that recovery has started to cancel.
+     *
+     * @throws ResponseStatusException 409 when recovery took the saga first
+     */
+    public Order placeAccepted(OrderSaga saga, Future<List<OrderItem>> pricing, long deadline,
+                               Function<List<OrderItem>, Order> persist) {
+        boolean taken;
+        try {
+            saga.setStep(Step.RESERVE_STOCK);
+            taken = claim(saga, Instant.now());
+        } catch (RuntimeException e) {
+            pricing.cancel(true);
+            throw e;
+        }
+        if (!taken) {
+            pricing.cancel(true);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Order placement was taken over by recovery");
+        }
+        return run(saga, pricing, deadline, persist);
+    }
+
+    /**
+     * Settle an accepted order that will not be placed, such as one the
+     * intake pool refused. Nothing was reserved, so this only cancels the
+     * order and closes the saga.
+     */
+    public void abandon(OrderSaga saga, String reason) {
+        saga.setReserved(Set.of());
+        saga.setReservationKnown(true);
+        compensate(saga, reason);
+    }
+
+    private Order run(OrderSaga saga, Future<List<OrderItem>> pricing, long deadline,
+                      Function<List<OrderItem>, Order> persist) {
+        UUID orderId = saga.getSagaId();
+        String userId = saga.getUserId();
+        Order order;
+        try {
+            // 1) reserve the basket, side by side with pricing
+            if (!reserve(saga, deadline)) {
+                pricing.cancel(true);
+                compensate(saga, "Insufficient inventory");
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Insufficient inventory");
+            }
+            List<OrderItem> items = stages.await(pricing, deadline, "Pricing");
+
+            // 2) persist order as CREATED
+            saga.setStep(Step.CREATE_ORDER);
+            saga.setTotalPrice(total(items));
+            journal(saga);
+            order = stages.timer("persist").record(() -> persist.apply(items));
+            saga.setStep(Step.CHARGE_PAYMENT);
+            journal(saga);
+        } catch (RuntimeException e) {
+            pricing.cancel(true);
+            // a saga taken over belongs to its new runner, which settles it
+            if (saga.getState() == State.RUNNING && !(e instanceof SagaTakenOverException)) {
+                compensateLater(saga, e.getMessage());
+            }
+            throw e;
+        }
+
+        // 3) publish CREATED event while the payment is in flight
+        OrderEvent event = new OrderEvent(orderId.toString(), userId,
+                order.getItems().stream().map(i -> new OrderEvent.ItemLine(i.getItemId(), i.getQuantity())).toList(),
+                saga.getTotalPrice(), order.getStatus());
+        Future<?> publishing = startPublish(event);
+        Future<PaymentServiceClient.PaymentResponse> payment;
+        try {
+            payment = stages.start("payment", () -> submitPayment(saga));
+        } catch (RuntimeException e) {
+            // never sent, so nothing can have been charged
+            compensateLater(saga, e.getMessage());
+            throw e;
+        }
+        PaymentServiceClient.PaymentResponse payResp;
+        try {
+            payResp = stages.await(payment, deadline, "Payment");
+        } catch (RuntimeException e) {
+            // the charge may still go through: the saga stays at CHARGE_PAYMENT for recovery
+            log.warn("Payment of order {} did not complete, left to recovery: {}", orderId, e.getMessage());
+            throw e;
+        } finally {
+            awaitPublish(publishing, deadline, orderId);
+        }
+        return settle(saga, payResp, order);
+    }
+
+    /**
+     * Resume or compensate unfinished sagas whose runner has gone quiet:
+     * once shortly after startup, then on a schedule. Each saga is
+     * claimed with a conditional write, so concurrent instances do not
+     * both work on it. Claimed sagas run in batches of
+     * {@code order.saga.recovery.parallelism} on the placement pool, each
+     * saga's steps one after another. A saga that fails again waits
+     * longer before its next attempt.
+     *
+     * @return number of sagas finished or compensated
+     */
+    @Scheduled(initialDelayString = "${order.saga.recovery.initial-delay-ms:15000}",
+            fixedDelayString = "${order.saga.recovery.interval-ms:30000}")
+    public int recover() {
+        Instant now = Instant.now();
+        List<OrderSaga> due = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < OrderSagaInFlight.SHARDS; shard++) {
+                due.addAll(dueSagas(shard, now));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Saga recovery scan failed: {}", e.getMessage());
+        }
+
+        int settled = 0;
+        for (int from = 0; from < due.size(); from += recoveryParallelism) {
+            List<Future<Boolean>> batch = new ArrayList<>();
+            boolean poolFull = false;
+            try {
+                for (OrderSaga saga : due.subList(from, Math.min(from + recoveryParallelism, due.size()))) {
+                    saga.setAttempts(saga.getAttempts() + 1);
+                    if (claim(saga, now)) {
+                        batch.add(stages.start("recover", () -> resume(saga)));
+                    }
+                }
+            } catch (ResponseStatusException e) {
+                log.info("Placement pool is full, saga recovery continues next run");
+                poolFull = true;
+            } catch (RuntimeException e) {
+                log.warn("Saga claim failed: {}", e.getMessage());
+            }
+            long deadline = System.nanoTime() + placementTimeout.multipliedBy(3).toNanos();
+            for (Future<Boolean> f : batch) {
+                try {
+                    if (stages.await(f, deadline, "Saga recovery")) {
+                        settled++;
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Saga recovery attempt failed: {}", e.getMessage());
+                }
+            }
+            // the sagas already started are awaited above before giving up on the rest
+            if (poolFull) {
+                break;
+            }
+        }
+        if (!due.isEmpty()) {
+            log.info("Saga recovery: {} of {} due sagas settled", settled, due.size());
+        }
+        return settled;
+    }
+
+    /**
+     * Idempotency key for handing back an order's units of one item. It is
+     * stable per order and item, so retries, a compensation and a later
+     * cancel cannot return the same stock twice.
+     */
+    static String releaseKey(UUID orderId, String itemId) {
+        return "order-" + orderId + "-release-" + itemId;
+    }
+
+    private static String reserveKey(UUID orderId) {
+        return "order-" + orderId + "-reserve";
+    }
+
+    private static String paymentKey(UUID orderId) {
+        return "order-" + orderId + "-payment";
+    }
+
+    /** Journal a new saga and list it as in flight, in one unlogged batch. */
+    private OrderSaga begin(UUID orderId, String userId, Map<String, Integer> quantities, Step step) {
+        OrderSaga saga = new OrderSaga(orderId, userId, new LinkedHashMap<>(quantities), Instant.now());
+        saga.setStep(step);
+        cassandraTemplate.batchOps(BatchType.UNLOGGED)
+                .insert(saga)
+                .insert(new OrderSagaInFlight(orderId))
+                .execute();
+        return saga;
+    }
+
+    /**
+     * Journal the next step, provided no other runner has written the saga
+     * since this one last did. The write is conditional on the same
+     * {@code updated_at} as {@link #claim}, so a runner whose saga was taken
+     * over by recovery stops before its next step instead of overwriting
+     * the new owner's progress.
+     *
+     * @throws SagaTakenOverException when another runner wrote the saga
+     */
+    private void journal(OrderSaga saga) {
+        if (!claim(saga, Instant.now())) {
+            throw new SagaTakenOverException(saga.getSagaId());
+        }
+    }
+
+    /**
+     * Journal the final state and drop the saga from the in-flight index.
+     * The row is rewritten whole, nulls included, so that every column
+     * expires with it.
+     */
+    private void finish(OrderSaga saga, State state) {
+        saga.setState(state);
+        saga.setUpdatedAt(Instant.now());
+        cassandraTemplate.batchOps(BatchType.UNLOGGED)
+                .insert(saga, InsertOptions.builder().ttl(retention).withInsertNulls().build())
+                .delete(new OrderSagaInFlight(saga.getSagaId()))
+                .execute();
+    }
+
+    /**
+     * Reserve the whole basket with one keyed call. The journal records
+     * the outcome as soon as it is known.
+     *
+     * @return whether every line was reserved
+     */
+    private boolean reserve(OrderSaga saga, long deadline) {
+        Future<Boolean> call = stages.start("reserve",
+                () -> inventoryGateway.tryDecrementAll(saga.getQuantities(), reserveKey(saga.getSagaId())));
+        boolean reserved = stages.await(call, deadline, "Stock reservation");
+        saga.setReserved(reserved ? new HashSet<>(saga.getQuantities().keySet()) : Set.of());
+        saga.setReservationKnown(true);
+        journal(saga);
+        return reserved;
+    }
+
+    // publishing is skipped rather than failing the order when the pool is full
+    private Future<?> startPublish(OrderEvent event) {
+        try {
+            return stages.start("publish", () -> eventProducer.sendOrderEvent(event).get());
+        } catch (ResponseStatusException e) {
+            log.warn("OrderEvent for order {} not sent: {}", event.getOrderId(), e.getReason());
+            return null;
+        }
+    }
+
+    private PaymentServiceClient.PaymentResponse submitPayment(OrderSaga saga) {
+        UUID orderId = saga.getSagaId();
+        return paymentClient.submitPayment(paymentKey(orderId),
+                new PaymentServiceClient.PaymentRequest(orderId.toString(), saga.getUserId(), saga.getTotalPrice()));
+    }
+
+    /**
+     * Payment the provider holds under the saga's key, or null when none
+     * was taken. Asked before a payment is resubmitted, so that a charge
+     * which went through before its runner stopped is never sent twice.
+     */
+    private PaymentServiceClient.PaymentResponse paymentStatus(OrderSaga saga) {
+        try {
+            return paymentClient.getPayment(paymentKey(saga.getSagaId()));
+        } catch (FeignException.NotFound e) {
+            return null;
+        }
+    }
+
+    /** Confirm a paid order, or compensate a declined one. */
+    private Order settle(OrderSaga saga, PaymentServiceClient.PaymentResponse payResp, Order order) {
+        UUID orderId = saga.getSagaId();
+        if (payResp != null && "SUCCESS".equalsIgnoreCase(payResp.status())) {
+            saga.setStep(Step.CONFIRM);
+            journal(saga);
+            return confirm(saga, order);
+        }
+        compensate(saga, "Payment declined");
+        return domainService.getOrder(orderId).orElse(order);
+    }
+
+    /** Mark a paid order PAID, unless it was cancelled while its payment went through. */
+    private Order confirm(OrderSaga saga, Order order) {
+        UUID orderId = saga.getSagaId();
+        Order current = domainService.getOrder(orderId).orElse(order);
+        if (current != null && current.getStatus() == OrderStatus.CANCELLED) {
+            // the stock went back with the cancel; the charge has to be refunded by hand
+            log.error("Order {} was charged after it was cancelled, refund payment {}", orderId, paymentKey(orderId));
+            compensate(saga, "Charged after cancellation, refund required");
+            return current;
+        }
+        Order paid = stages.timer("confirm").record(() -> domainService.markOrderPaid(orderId).orElse(current));
+        finish(saga, State.COMPLETED);
+        return paid;
+    }
+
+    /**
+     * Undo a saga: cancel its order if one was written, then hand back
+     * the stock it holds. When the outcome of the reservation is not
+     * known, the keyed basket reservation is replayed first. A replay is
+     * answered with the original outcome, or takes the units now, so
+     * afterwards every line is released if it reports success. A failure
+     * leaves the saga COMPENSATING for the recovery worker. The calls run
+     * one after another on the calling thread, which may itself be a
+     * placement pool thread.
+     */
+    private void compensate(OrderSaga saga, String reason) {
+        saga.setState(State.COMPENSATING);
+        saga.setLastError(reason);
+        journal(saga);
+
+        domainService.getOrder(saga.getSagaId())
+                .filter(o -> o.getStatus() != OrderStatus.CANCELLED)
+                .ifPresent(o -> domainService.cancelOrder(o.getOrderId()));
+
+        boolean held = saga.isReservationKnown()
+                ? saga.getReserved() != null && !saga.getReserved().isEmpty()
+                : inventoryGateway.tryDecrementAll(saga.getQuantities(), reserveKey(saga.getSagaId()));
+        if (held) {
+            saga.getQuantities().forEach((itemId, qty) ->
+                    inventoryGateway.increment(itemId, qty, releaseKey(saga.getSagaId(), itemId)));
+        }
+        finish(saga, State.COMPENSATED);
+        log.info("Compensated placement of order {}: {}", saga.getSagaId(), reason);
+    }
+
+    /**
+     * Compensate off the request thread after a failed placement. If the
+     * pool is full or the compensation fails, the recovery worker
+     * finishes it.
+     */
+    private void compensateLater(OrderSaga saga, String reason) {
+        try {
+            stages.start("compensate", () -> {
+                try {
+                    compensate(saga, reason);
+                } catch (RuntimeException e) {
+                    log.warn("Compensation of order {} failed, left to recovery: {}", saga.getSagaId(), e.getMessage());
+                }
+                return null;
+            });
+        } catch (ResponseStatusException e) {
+            log.warn("Compensation of order {} left to recovery: pool is full", saga.getSagaId());
+        }
+    }
+
+    /** Continue a claimed saga from its journaled step. */
+    private boolean resume(OrderSaga saga) {
+        log.info("Recovering saga of order {} at {} ({})", saga.getSagaId(), saga.getStep(), saga.getState());
+        if (saga.getState() == State.COMPENSATING) {
+            compensate(saga, saga.getLastError());
+            return true;
+        }
+        switch (saga.getStep()) {
+            // no worker took it over, so no reservation was sent
+            case QUEUED -> abandon(saga, "Order was not picked up for placement");
+            case RESERVE_STOCK, CREATE_ORDER -> compensate(saga, "Placement abandoned before payment");
+            case CHARGE_PAYMENT -> {
+                PaymentServiceClient.PaymentResponse earlier = paymentStatus(saga);
+                Order order = domainService.getOrder(saga.getSagaId()).orElse(null);
+                if (earlier != null) {
+                    settle(saga, earlier, order);
+                } else if (order == null) {
+                    compensate(saga, "Order record missing at payment");
+                } else if (order.getStatus() == OrderStatus.CANCELLED) {
+                    compensate(saga, "Order cancelled before payment");
+                } else {
+                    settle(saga, stages.timer("payment").record(() -> submitPayment(saga)), order);
+                }
+            }
+            case CONFIRM -> confirm(saga, null);
+        }
+        return true;
+    }
+
+    /**
+     * Unfinished sagas of one shard whose runner has been quiet past their
+     * backoff. The shard is read page by page, so sagas still within their
+     * backoff cannot hide due ones further down the partition.
+     */
+    private List<OrderSaga> dueSagas(int shard, Instant now) {
+        Query inShard = Query.query(Criteria.where("shard").is(shard))
+                .pageRequest(CassandraPageRequest.first(recoveryBatchSize));
+        List<OrderSaga> due = new ArrayList<>();
+        while (true) {
+            Slice<OrderSagaInFlight> page = cassandraTemplate.slice(inShard, OrderSagaInFlight.class);
+            List<UUID> ids = page.stream().map(OrderSagaInFlight::getSagaId).toList();
+            if (!ids.isEmpty()) {
+                collectDue(ids, now, due);
+            }
+            if (!page.hasNext() || due.size() >= recoveryBatchSize) {
+                return due.size() > recoveryBatchSize ? due.subList(0, recoveryBatchSize) : due;
+            }
+            inShard = inShard.pageRequest(page.nextPageable());
+        }
+    }
+
+    /** Add the due sagas among one page of index entries, pruning entries of finished or expired sagas. */
+    private void collectDue(List<UUID> ids, Instant now, List<OrderSaga> due) {
+        Set<UUID> found = new HashSet<>();
+        for (OrderSaga saga : cassandraTemplate.select(Query.query(Criteria.where("saga_id").in(ids)), OrderSaga.class)) {
+            found.add(saga.getSagaId());
+            if (saga.getState() == State.COMPLETED || saga.getState() == State.COMPENSATED) {
+                cassandraTemplate.delete(new OrderSagaInFlight(saga.getSagaId()));
+                continue;
+            }
+            Duration quiet = saga.getStep() == Step.QUEUED ? intakeTimeout : staleAfter;
+            Duration wait = quiet.multipliedBy(Math.min(saga.getAttempts() + 1, 10));
+            if (saga.getUpdatedAt() == null || saga.getUpdatedAt().plus(wait).isBefore(now)) {
+                due.add(saga);
+            }
+        }
+        // index entries whose saga has expired from the journal
+        ids.stream().filter(id -> !found.contains(id))
+                .forEach(id -> cassandraTemplate.delete(new OrderSagaInFlight(id)));
+    }
+
+    /** Whether the placement saga of an order has not finished yet. */
+    public boolean isRunning(UUID orderId) {
+        OrderSaga saga = cassandraTemplate.selectOneById(orderId, OrderSaga.class);
+        return saga != null && saga.getState() == State.RUNNING;
+    }
+
+    /** Take a saga over, unless another runner wrote it since it was read. */
+    private boolean claim(OrderSaga saga, Instant now) {
+        Instant seen = saga.getUpdatedAt();
+        saga.setUpdatedAt(now);
+        UpdateOptions unchanged = UpdateOptions.builder()
+                .ifCondition(Criteria.where("updated_at").is(seen))
+                .build();
+        return cassandraTemplate.update(saga, unchanged).wasApplied();
+    }
+
+    // the event is best effort once payment is under way: a failed or late publish is logged, not fatal
+    private void awaitPublish(Future<?> publishing, long deadline, UUID orderId) {
+        if (publishing == null) {
+            return;
+        }
+        try {
+            stages.await(publishing, deadline, "Event publish");
+        } catch (RuntimeException e) {
+            log.warn("OrderEvent for order {} was not acknowledged: {}", orderId, e.getMessage());
+        }
+    }
+
+    private static double total(List<OrderItem> items) {
+        return items.stream().mapToDouble(it -> it.getUnitPrice() * it.getQuantity()).sum();
+    }
+
+    /** The saga was written by another runner since this one last journaled it. */
+    static final class SagaTakenOverException extends ResponseStatusException {
+
+        SagaTakenOverException(UUID sagaId) {
+            super(HttpStatus.CONFLICT, "Placement of order " + sagaId + " was taken over by another runner");
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package com.codebase.orderservice.service;
 
 import com.codebase.orderservice.model.Order;
+import com.codebase.orderservice.model.OrderByUser;
 import com.codebase.orderservice.model.OrderItem;
 import com.codebase.orderservice.model.OrderStatus;
 import com.codebase.orderservice.repository.OrderRepository;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import org.springframework.data.cassandra.core.CassandraTemplate;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.cassandra.core.query.Criteria;
+import org.springframework.data.cassandra.core.query.CriteriaDefinition;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -15,21 +24,34 @@ import java.util.UUID;
 public class OrderService {
 
     private final OrderRepository orderRepository;
+    private final CassandraTemplate cassandraTemplate;
 
-    public OrderService(OrderRepository orderRepository) {
+    public OrderService(OrderRepository orderRepository, CassandraTemplate cassandraTemplate) {
         this.orderRepository = orderRepository;
+        this.cassandraTemplate = cassandraTemplate;
     }
 
     /** Create a new order. Start in CREATED state. */
     public Order createOrder(String userId, List<OrderItem> items) {
-        UUID orderId = UUID.randomUUID();
+        return createOrder(UUID.randomUUID(), userId, items);
+    }
+
+    /** Create a new order under an id chosen by the caller. Start in CREATED state. */
+    public Order createOrder(UUID orderId, String userId, List<OrderItem> items) {
         Instant now = Instant.now();
         double totalPrice = items.stream()
                 .mapToDouble(i -> i.getUnitPrice() * i.getQuantity())
                 .sum();
 
         Order order = new Order(orderId, userId, items, totalPrice, OrderStatus.CREATED, now, now);
-        return orderRepository.save(order);
+        return write(order);
+    }
+
+    /** Record an accepted order before it is placed. Start in PENDING state. */
+    public Order createPendingOrder(UUID orderId, String userId, List<OrderItem> items) {
+        Instant now = Instant.now();
+        Order order = new Order(orderId, userId, items, 0.0, OrderStatus.PENDING, now, now);
+        return write(order);
     }
 
     /** Cancel an existing order. */
@@ -60,7 +82,7 @@ public class OrderService {
     /** Save updated order (items/total/updatedAt ...). */
     public Order save(Order order) {
         order.setUpdatedAt(Instant.now());
-        return orderRepository.save(order);
+        return write(order);
     }
 
     /** Get the specific order from current user */
@@ -72,15 +94,50 @@ public class OrderService {
         }
     }
 
-    /** Get all orders of current user */
-    public List<Order> getOrdersForUser(String userId) {
-        try {
-            return orderRepository.findAllByUserId(userId);
-        } catch (Throwable ignore) {
-            return getAllOrders().stream()
-                    .filter(o -> userId.equals(o.getUserId()))
-                    .toList();
+    /**
+     * Read one page of a user's orders, newest first, from their
+     * orders_by_user partition. The page resumes from the driver's paging
+     * state, so a deep page costs the same as the first. A time range
+     * restricts the created_at clustering column; a status filter is
+     * evaluated by Cassandra within the partition only.
+     *
+     * @param page page size and, after the first page, the paging state to resume from
+     */
+    public Slice<Order> getOrdersForUser(String userId, OrderStatus status, Instant from, Instant to,
+                                         CassandraPageRequest page) {
+        List<CriteriaDefinition> criteria = new ArrayList<>();
+        criteria.add(Criteria.where("user_id").is(userId));
+        if (from != null) {
+            criteria.add(Criteria.where("created_at").gte(from));
+        }
+        if (to != null) {
+            criteria.add(Criteria.where("created_at").lt(to));
+        }
+        if (status != null) {
+            criteria.add(Criteria.where("status").is(status.name()));
+        }
+        Query q = Query.query(criteria).pageRequest(page);
+        if (status != null) {
+            q = q.withAllowFiltering();
+        }
+        return cassandraTemplate.slice(q, OrderByUser.class).map(OrderByUser::toOrder);
+    }
+
+    /**
+     * Write an order to orders and orders_by_user in one unlogged batch:
+     * a single round-trip, without the batch log a logged batch would
+     * write first. Both rows are plain upserts of the same state, so a
+     * retry after a partial failure brings them back in line.
+     */
+    private Order write(Order order) {
+        if (order.getUserId() == null) {
+            return orderRepository.save(order);
         }
+        cassandraTemplate.batchOps(BatchType.UNLOGGED)
+                .insert(order)
+                .insert(OrderByUser.of(order))
+                .execute();
+        return order;
     }
 
     /** Update order status helper. */
@@ -90,7 +147,7 @@ public class OrderService {
             Order order = optionalOrder.get();
             order.setStatus(newStatus);
             order.setUpdatedAt(Instant.now());
-            return Optional.of(orderRepository.save(order));
+            return Optional.of(write(order));
         }
         return Optional.empty();
     }
@@ -0,0 +1,124 @@
+package com.codebase.orderservice.service;
+
+import com.codebase.orderservice.dto.OrderResponse;
+import com.codebase.orderservice.model.OrderStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Open Server-Sent Event streams of order status, per order. An emitter
+ * holds no thread while it waits, so open streams cost memory only; their
+ * number is still capped by {@code order.async.max-streams}. A "status"
+ * event carrying the order is sent whenever its status differs from the
+ * last one sent, and the stream completes once the order is final.
+ */
+@Component
+public class OrderStatusNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderStatusNotifier.class);
+
+    private static final Set<OrderStatus> FINAL = EnumSet.of(OrderStatus.PAID, OrderStatus.COMPLETED, OrderStatus.CANCELLED);
+
+    private final Map<UUID, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger open = new AtomicInteger();
+
+    @Value("${order.async.stream-timeout:PT2M}")
+    private Duration streamTimeout = Duration.ofMinutes(2);
+
+    @Value("${order.async.max-streams:10000}")
+    private int maxStreams = 10000;
+
+    /**
+     * Open a stream for an order, starting with its current state. A
+     * stream for an order that is already final ends after that event.
+     */
+    public SseEmitter subscribe(OrderResponse current) {
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        if (FINAL.contains(current.getStatus())) {
+            send(emitter, current);
+            emitter.complete();
+            return emitter;
+        }
+        if (open.incrementAndGet() > maxStreams) {
+            open.decrementAndGet();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many open order streams, poll GET /orders/{id}");
+        }
+        UUID id = UUID.fromString(current.getOrderId());
+        Subscription sub = subscriptions.compute(id, (k, s) -> {
+            Subscription joined = s != null ? s : new Subscription(current.getStatus());
+            joined.emitters.add(emitter);
+            return joined;
+        });
+        Runnable remove = () -> {
+            if (sub.emitters.remove(emitter)) {
+                open.decrementAndGet();
+            }
+            subscriptions.computeIfPresent(id, (k, s) -> s.emitters.isEmpty() ? null : s);
+        };
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+        send(emitter, current);
+        return emitter;
+    }
+
+    /** Send the order to its streams if its status changed since the last event. */
+    public void publish(OrderResponse order) {
+        Subscription sub = subscriptions.get(UUID.fromString(order.getOrderId()));
+        if (sub == null) {
+            return;
+        }
+        synchronized (sub) {
+            if (order.getStatus() == sub.lastStatus) {
+                return;
+            }
+            sub.lastStatus = order.getStatus();
+        }
+        boolean last = FINAL.contains(order.getStatus());
+        for (SseEmitter emitter : sub.emitters) {
+            send(emitter, order);
+            if (last) {
+                emitter.complete();
+            }
+        }
+    }
+
+    /** Orders with at least one open stream. */
+    public Set<UUID> subscribedOrders() {
+        return Set.copyOf(subscriptions.keySet());
+    }
+
+    private void send(SseEmitter emitter, OrderResponse order) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(order));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Order stream for {} closed: {}", order.getOrderId(), e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+
+    private static final class Subscription {
+
+        private final Set<SseEmitter> emitters = new CopyOnWriteArraySet<>();
+        private OrderStatus lastStatus;
+
+        private Subscription(OrderStatus lastStatus) {
+            this.lastStatus = lastStatus;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.codebase.orderservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the remote calls of order placement on the bounded placement
+ * pool, each timed as {@code order.placement.stage{stage=...}}, and waits
+ * for them against a shared deadline.
+ */
+@Component
+public class PlacementStages {
+
+    private final AsyncTaskExecutor placementExecutor;
+    private final MeterRegistry meterRegistry;
+
+    public PlacementStages(@Qualifier("orderPlacementExecutor") AsyncTaskExecutor placementExecutor,
+                           MeterRegistry meterRegistry) {
+        this.placementExecutor = placementExecutor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Run one stage on the placement pool, timed under its stage name.
+     *
+     * @throws ResponseStatusException 503 when the pool and its queue are full
+     */
+    public <T> Future<T> start(String stage, Callable<T> work) {
+        Timer timer = timer(stage);
+        try {
+            return placementExecutor.submit(() -> timer.recordCallable(work));
+        } catch (TaskRejectedException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Order placement is at capacity, retry later");
+        }
+    }
+
+    /**
+     * Wait for a stage until the deadline. A stage still running then is
+     * cancelled (its thread interrupted) and reported as 504; a failure
+     * inside the stage is rethrown as is.
+     */
+    public <T> T await(Future<T> future, long deadline, String stage) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, stage + " did not complete in time");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Order placement interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(stage + " failed", e.getCause());
+        }
+    }
+
+    public Timer timer(String stage) {
+        return meterRegistry.timer("order.placement.stage", "stage", stage);
+    }
+}
@@ -0,0 +1,81 @@
+package com.codebase.orderservice.service;
+
+import com.codebase.orderservice.dto.PriceQuote;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks price quotes signed by item-service with the shared
+ * {@code item.quote.secret}. The canonical form must match the one
+ * item-service signs (PriceQuoteService there).
+ */
+@Component
+public class PriceQuoteVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    public PriceQuoteVerifier(@Value("${item.quote.secret}") String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("item.quote.secret is empty; set ITEM_QUOTE_SECRET");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    /**
+     * Prices a quote vouches for. A missing or expired quote vouches for
+     * nothing, so the caller looks every item up live; a quote whose
+     * signature does not match has been altered and is refused.
+     *
+     * @return quoted unit price per item id, empty when there is no usable quote
+     * @throws IllegalArgumentException if the signature is missing or wrong
+     */
+    public Map<String, Double> verifiedPrices(PriceQuote quote) {
+        if (quote == null || quote.getPrices() == null) {
+            return Map.of();
+        }
+        if (quote.getSignature() == null || !MessageDigest.isEqual(
+                sign(canonical(quote)).getBytes(StandardCharsets.US_ASCII),
+                quote.getSignature().getBytes(StandardCharsets.US_ASCII))) {
+            throw new IllegalArgumentException("Price quote signature is invalid");
+        }
+        if (System.currentTimeMillis() >= quote.getExpiresAt()) {
+            return Map.of();
+        }
+        return quote.getPrices();
+    }
+
+    // one "id=price" per line: ids that could forge a line break are never signed by item-service
+    private static String canonical(PriceQuote quote) {
+        StringBuilder sb = new StringBuilder("v1\n").append(quote.getIssuedAt()).append('\n').append(quote.getExpiresAt());
+        for (Map.Entry<String, Double> e : new TreeMap<>(quote.getPrices()).entrySet()) {
+            String id = e.getKey();
+            if (e.getValue() == null || id.indexOf('\n') >= 0 || id.indexOf('=') >= 0) {
+                throw new IllegalArgumentException("Price quote is malformed");
+            }
+            sb.append('\n').append(id).append('=').append(e.getValue());
+        }
+        return sb.toString();
+    }
+
+    private String sign(String canonical) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] digest = mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot verify price quote", e);
+        }
+    }
+}
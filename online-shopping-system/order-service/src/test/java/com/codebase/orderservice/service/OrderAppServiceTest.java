@@ -0,0 +1,267 @@
+package com.codebase.orderservice.service;
+
+import com.codebase.orderservice.client.ItemServiceClient;
+import com.codebase.orderservice.dto.OrderItemRequest;
+import com.codebase.orderservice.dto.OrderPage;
+import com.codebase.orderservice.dto.OrderRequest;
+import com.codebase.orderservice.dto.OrderResponse;
+import com.codebase.orderservice.gateway.InventoryGateway;
+import com.codebase.orderservice.model.Order;
+import com.codebase.orderservice.model.OrderItem;
+import com.codebase.orderservice.model.OrderSaga;
+import com.codebase.orderservice.model.OrderStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+@ExtendWith(MockitoExtension.class)
+class OrderAppServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderAppServiceTest.class);
+
+    @Mock
+    private OrderService domainService;
+
+    @Mock
+    private ItemServiceClient itemClient;
+
+    @Mock
+    private InventoryGateway inventoryGateway;
+
+    @Mock
+    private PriceQuoteVerifier quoteVerifier;
+
+    @Mock
+    private PlacementStages stages;
+
+    @Mock
+    private OrderSagaOrchestrator sagaOrchestrator;
+
+    @Mock
+    private AsyncTaskExecutor intakeExecutor;
+
+    @Mock
+    private OrderStatusNotifier statusNotifier;
+
+    private OrderAppService appService;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @BeforeEach
+    void init() {
+        appService = new OrderAppService(domainService, itemClient, inventoryGateway, quoteVerifier, stages,
+                sagaOrchestrator, intakeExecutor, statusNotifier, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testListResumesFromTheTokenItIssued() {
+        ByteBuffer state = ByteBuffer.wrap(new byte[]{7, 7, 7});
+        CassandraPageRequest second = CassandraPageRequest.of(PageRequest.of(0, 2), state);
+        Mockito.when(domainService.getOrdersForUser(Mockito.eq("u1"), Mockito.isNull(), Mockito.isNull(), Mockito.isNull(),
+                        Mockito.any(CassandraPageRequest.class)))
+                .thenReturn(new SliceImpl<>(List.of(order("u1"), order("u1")), second, true),
+                        new SliceImpl<>(List.of(order("u1")), second, false));
+
+        OrderPage first = appService.list("u1", null, null, null, 2, null);
+        OrderPage last = appService.list("u1", null, null, null, 2, first.getNextToken());
+
+        Assertions.assertEquals(2, first.getOrders().size());
+        Assertions.assertNotNull(first.getNextToken());
+        Assertions.assertNull(last.getNextToken());
+        ArgumentCaptor<CassandraPageRequest> pages = ArgumentCaptor.forClass(CassandraPageRequest.class);
+        Mockito.verify(domainService, Mockito.times(2)).getOrdersForUser(Mockito.eq("u1"), Mockito.isNull(),
+                Mockito.isNull(), Mockito.isNull(), pages.capture());
+        Assertions.assertNull(pages.getAllValues().get(0).getPagingState());
+        Assertions.assertEquals(state, pages.getAllValues().get(1).getPagingState());
+        logger.info("End List Resume Testing");
+    }
+
+    @Test
+    public void testTokenOfAnotherListingIsRejected() {
+        CassandraPageRequest second = CassandraPageRequest.of(PageRequest.of(0, 2), ByteBuffer.wrap(new byte[]{1}));
+        Mockito.when(domainService.getOrdersForUser(Mockito.eq("u1"), Mockito.isNull(), Mockito.isNull(), Mockito.isNull(),
+                        Mockito.any(CassandraPageRequest.class)))
+                .thenReturn(new SliceImpl<>(List.of(order("u1")), second, true));
+        String token = appService.list("u1", null, null, null, 2, null).getNextToken();
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> appService.list("u2", null, null, null, 2, token));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> appService.list("u1", OrderStatus.PAID, null, null, 2, token));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> appService.list("u1", null, Instant.EPOCH, null, 2, token));
+        Mockito.verify(domainService, Mockito.times(1)).getOrdersForUser(Mockito.any(), Mockito.any(), Mockito.any(),
+                Mockito.any(), Mockito.any());
+        logger.info("End Token Mismatch Testing");
+    }
+
+    @Test
+    public void testAcceptedOrderIsJournaledBeforeItIsAcknowledged() {
+        OrderSaga saga = new OrderSaga(UUID.randomUUID(), "u1", Map.of("i1", 2), Instant.now());
+        Mockito.when(sagaOrchestrator.accept(Mockito.any(UUID.class), Mockito.eq("u1"), Mockito.eq(Map.of("i1", 2))))
+                .thenReturn(saga);
+        Mockito.when(domainService.createPendingOrder(Mockito.any(UUID.class), Mockito.eq("u1"), Mockito.anyList()))
+                .thenAnswer(inv -> pending(inv.getArgument(0), "u1"));
+
+        OrderResponse accepted = appService.createAsync(request("i1", 1, "i1", 1), "u1");
+
+        Assertions.assertEquals(OrderStatus.PENDING, accepted.getStatus());
+        // journal, then the order, then the worker: an order is never acknowledged without a saga
+        InOrder inOrder = Mockito.inOrder(sagaOrchestrator, domainService, intakeExecutor);
+        ArgumentCaptor<UUID> sagaId = ArgumentCaptor.forClass(UUID.class);
+        inOrder.verify(sagaOrchestrator).accept(sagaId.capture(), Mockito.eq("u1"), Mockito.eq(Map.of("i1", 2)));
+        inOrder.verify(domainService).createPendingOrder(Mockito.eq(sagaId.getValue()), Mockito.eq("u1"), Mockito.anyList());
+        inOrder.verify(intakeExecutor).execute(Mockito.any(Runnable.class));
+        Assertions.assertEquals(sagaId.getValue().toString(), accepted.getOrderId());
+        logger.info("End Accept Journal Testing");
+    }
+
+    @Test
+    public void testRefusedIntakeAbandonsTheSaga() {
+        OrderSaga saga = new OrderSaga(UUID.randomUUID(), "u1", Map.of("i1", 1), Instant.now());
+        Mockito.when(sagaOrchestrator.accept(Mockito.any(UUID.class), Mockito.eq("u1"), Mockito.anyMap())).thenReturn(saga);
+        Mockito.when(domainService.createPendingOrder(Mockito.any(UUID.class), Mockito.eq("u1"), Mockito.anyList()))
+                .thenAnswer(inv -> pending(inv.getArgument(0), "u1"));
+        Mockito.doThrow(new TaskRejectedException("full")).when(intakeExecutor).execute(Mockito.any(Runnable.class));
+
+        ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class,
+                () -> appService.createAsync(request("i1", 1), "u1"));
+
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getStatusCode().value());
+        Mockito.verify(sagaOrchestrator).abandon(saga, "Order intake is at capacity");
+        logger.info("End Refused Intake Testing");
+    }
+
+    @Test
+    public void testFailedWorkerCancelsPendingOrder() {
+        UUID orderId = UUID.randomUUID();
+        OrderSaga saga = new OrderSaga(orderId, "u1", Map.of("i1", 1), Instant.now());
+        Mockito.when(sagaOrchestrator.accept(Mockito.any(UUID.class), Mockito.eq("u1"), Mockito.anyMap())).thenReturn(saga);
+        Mockito.when(domainService.createPendingOrder(Mockito.any(UUID.class), Mockito.eq("u1"), Mockito.anyList()))
+                .thenReturn(pending(orderId, "u1"));
+        Mockito.when(stages.start(Mockito.eq("price"), Mockito.any()))
+                .thenThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Order placement is at capacity"));
+        Mockito.when(domainService.getOrder(orderId)).thenReturn(Optional.of(pending(orderId, "u1")));
+        Order cancelled = pending(orderId, "u1");
+        cancelled.setStatus(OrderStatus.CANCELLED);
+        Mockito.when(domainService.cancelOrder(orderId)).thenReturn(Optional.of(cancelled));
+
+        appService.createAsync(request("i1", 1), "u1");
+        ArgumentCaptor<Runnable> worker = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(intakeExecutor).execute(worker.capture());
+        worker.getValue().run();
+
+        ArgumentCaptor<OrderResponse> published = ArgumentCaptor.forClass(OrderResponse.class);
+        Mockito.verify(statusNotifier).publish(published.capture());
+        Assertions.assertEquals(OrderStatus.CANCELLED, published.getValue().getStatus());
+        Mockito.verify(sagaOrchestrator, Mockito.never()).placeAccepted(Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any());
+        logger.info("End Failed Worker Testing");
+    }
+
+    @Test
+    public void testWorkerPlacesTheAcceptedSaga() {
+        UUID orderId = UUID.randomUUID();
+        OrderSaga saga = new OrderSaga(orderId, "u1", Map.of("i1", 1), Instant.now());
+        Mockito.when(sagaOrchestrator.accept(Mockito.any(UUID.class), Mockito.eq("u1"), Mockito.anyMap())).thenReturn(saga);
+        Mockito.when(domainService.createPendingOrder(Mockito.any(UUID.class), Mockito.eq("u1"), Mockito.anyList()))
+                .thenReturn(pending(orderId, "u1"));
+        Mockito.when(stages.start(Mockito.eq("price"), Mockito.any())).thenReturn(new CompletableFuture<>());
+        Order paid = pending(orderId, "u1");
+        paid.setStatus(OrderStatus.PAID);
+        Mockito.when(sagaOrchestrator.placeAccepted(Mockito.eq(saga), Mockito.any(), Mockito.anyLong(), Mockito.any()))
+                .thenReturn(paid);
+
+        appService.createAsync(request("i1", 1), "u1");
+        ArgumentCaptor<Runnable> worker = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(intakeExecutor).execute(worker.capture());
+        worker.getValue().run();
+
+        ArgumentCaptor<OrderResponse> published = ArgumentCaptor.forClass(OrderResponse.class);
+        Mockito.verify(statusNotifier).publish(published.capture());
+        Assertions.assertEquals(OrderStatus.PAID, published.getValue().getStatus());
+        Mockito.verify(domainService, Mockito.never()).cancelOrder(Mockito.any());
+        logger.info("End Worker Placement Testing");
+    }
+
+    @Test
+    public void testCancelRefusesAnOrderStillBeingPlaced() {
+        Order created = order("u1");
+        created.setStatus(OrderStatus.CREATED);
+        Mockito.when(domainService.getOrder(created.getOrderId())).thenReturn(Optional.of(created));
+        Mockito.when(sagaOrchestrator.isRunning(created.getOrderId())).thenReturn(true);
+
+        ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class,
+                () -> appService.cancel(created.getOrderId(), "u1"));
+
+        Assertions.assertEquals(HttpStatus.CONFLICT.value(), e.getStatusCode().value());
+        Mockito.verifyNoInteractions(inventoryGateway);
+        Mockito.verify(domainService, Mockito.never()).cancelOrder(Mockito.any());
+        logger.info("End Cancel Running Testing");
+    }
+
+    @Test
+    public void testCancelReleasesAPlacedOrder() {
+        Order paid = order("u1");
+        UUID orderId = paid.getOrderId();
+        Mockito.when(domainService.getOrder(orderId)).thenReturn(Optional.of(paid));
+        Mockito.when(sagaOrchestrator.isRunning(orderId)).thenReturn(false);
+        Order cancelled = order("u1");
+        cancelled.setStatus(OrderStatus.CANCELLED);
+        Mockito.when(domainService.cancelOrder(orderId)).thenReturn(Optional.of(cancelled));
+
+        OrderResponse response = appService.cancel(orderId, "u1");
+
+        Assertions.assertEquals(OrderStatus.CANCELLED, response.getStatus());
+        Mockito.verify(inventoryGateway).increment("i1", 1, "order-" + orderId + "-release-i1");
+        logger.info("End Cancel Placed Testing");
+    }
+
+    private static OrderRequest request(Object... lines) {
+        List<OrderItemRequest> items = new ArrayList<>();
+        for (int i = 0; i < lines.length; i += 2) {
+            items.add(new OrderItemRequest((String) lines[i], (Integer) lines[i + 1]));
+        }
+        OrderRequest req = new OrderRequest();
+        req.setItems(items);
+        return req;
+    }
+
+    private static Order pending(UUID orderId, String userId) {
+        Instant now = Instant.now();
+        return new Order(orderId, userId, new ArrayList<>(List.of(new OrderItem("i1", 1, 0.0))), 0.0, OrderStatus.PENDING, now, now);
+    }
+
+    private static Order order(String userId) {
+        Instant now = Instant.now();
+        return new Order(UUID.randomUUID(), userId, List.of(new OrderItem("i1", 1, 9.5)), 9.5, OrderStatus.PAID, now, now);
+    }
+}
@@ -0,0 +1,61 @@
+package com.codebase.orderservice.service;
+
+import com.codebase.orderservice.model.OrderStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+class OrderPageTokenTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPageTokenTest.class);
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @Test
+    public void testTokenRoundTrip() {
+        ByteBuffer state = ByteBuffer.wrap(new byte[]{0, 1, 2, (byte) 0xfe, (byte) 0xff});
+        String encoded = new OrderPageToken("1a2b3c", state).encode();
+
+        OrderPageToken decoded = OrderPageToken.decode(encoded);
+
+        Assertions.assertEquals("1a2b3c", decoded.filter());
+        Assertions.assertEquals(state, decoded.pagingState());
+        // encoding reads a copy: the driver's buffer is left as it was
+        Assertions.assertEquals(5, state.remaining());
+        Assertions.assertTrue(encoded.matches("[0-9a-f]+\\.[A-Za-z0-9_-]+"), encoded);
+        logger.info("End Token Round Trip Testing");
+    }
+
+    @Test
+    public void testFingerprintTellsListingsApart() {
+        String all = OrderPageToken.fingerprint("u1", null, null, null);
+
+        Assertions.assertEquals(all, OrderPageToken.fingerprint("u1", null, null, null));
+        Assertions.assertEquals(16, all.length());
+        Assertions.assertNotEquals(all, OrderPageToken.fingerprint("u2", null, null, null));
+        Assertions.assertNotEquals(all, OrderPageToken.fingerprint("u1", OrderStatus.PAID, null, null));
+        // an epoch bound hashes like no bound under Objects.hash
+        Assertions.assertNotEquals(all, OrderPageToken.fingerprint("u1", null, Instant.EPOCH, null));
+        Assertions.assertNotEquals(OrderPageToken.fingerprint("u1", null, Instant.EPOCH, null),
+                OrderPageToken.fingerprint("u1", null, null, Instant.EPOCH));
+        logger.info("End Fingerprint Testing");
+    }
+
+    @Test
+    public void testMalformedTokenIsRejected() {
+        for (String token : new String[]{"", "abc", ".AAEC", "1a2b.", "1a2b.!!!"}) {
+            IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> OrderPageToken.decode(token), token);
+            Assertions.assertEquals("Invalid page token", e.getMessage());
+        }
+        logger.info("End Malformed Token Testing");
+    }
+}
@@ -0,0 +1,417 @@
+package com.codebase.orderservice.service;
+
+import com.codebase.orderservice.client.PaymentServiceClient;
+import com.codebase.orderservice.gateway.InventoryGateway;
+import com.codebase.orderservice.model.Order;
+import com.codebase.orderservice.model.OrderItem;
+import com.codebase.orderservice.model.OrderSaga;
+import com.codebase.orderservice.model.OrderSaga.State;
+import com.codebase.orderservice.model.OrderSaga.Step;
+import com.codebase.orderservice.model.OrderSagaInFlight;
+import com.codebase.orderservice.model.OrderStatus;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import feign.FeignException;
+import feign.Request;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.cassandra.core.CassandraBatchOperations;
+import org.springframework.data.cassandra.core.CassandraTemplate;
+import org.springframework.data.cassandra.core.EntityWriteResult;
+import org.springframework.data.cassandra.core.UpdateOptions;
+import org.springframework.data.cassandra.core.cql.WriteOptions;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+@ExtendWith(MockitoExtension.class)
+class OrderSagaOrchestratorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderSagaOrchestratorTest.class);
+
+    @Mock
+    private CassandraTemplate cassandraTemplate;
+
+    @Mock
+    private OrderService domainService;
+
+    @Mock
+    private InventoryGateway inventoryGateway;
+
+    @Mock
+    private PaymentServiceClient paymentClient;
+
+    @Mock
+    private OrderEventProducer eventProducer;
+
+    @Mock
+    private PlacementStages stages;
+
+    @Mock
+    private CassandraBatchOperations batch;
+
+    private OrderSagaOrchestrator orchestrator;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @BeforeEach
+    void init() {
+        orchestrator = new OrderSagaOrchestrator(cassandraTemplate, domainService, inventoryGateway, paymentClient,
+                eventProducer, stages);
+    }
+
+    @Test
+    public void testAcceptJournalsQueuedSagaInFlight() {
+        stubBatch();
+        UUID orderId = UUID.randomUUID();
+
+        OrderSaga saga = orchestrator.accept(orderId, "u1", Map.of("i1", 2));
+
+        Assertions.assertEquals(Step.QUEUED, saga.getStep());
+        Assertions.assertEquals(State.RUNNING, saga.getState());
+        ArgumentCaptor<Object> inserted = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(batch, Mockito.times(2)).insert(inserted.capture());
+        Assertions.assertSame(saga, inserted.getAllValues().get(0));
+        Assertions.assertEquals(orderId, ((OrderSagaInFlight) inserted.getAllValues().get(1)).getSagaId());
+        Mockito.verify(batch).execute();
+        logger.info("End Accept Testing");
+    }
+
+    @Test
+    public void testWorkerLosingTheClaimDoesNotPlace() {
+        OrderSaga saga = saga(Step.QUEUED, Instant.now().minusSeconds(600));
+        stubClaim(false);
+        CompletableFuture<List<OrderItem>> pricing = new CompletableFuture<>();
+
+        ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class,
+                () -> orchestrator.placeAccepted(saga, pricing, System.nanoTime() + 1_000_000_000L, items -> null));
+
+        Assertions.assertEquals(HttpStatus.CONFLICT.value(), e.getStatusCode().value());
+        Assertions.assertTrue(pricing.isCancelled());
+        Mockito.verifyNoInteractions(inventoryGateway, paymentClient, domainService);
+        logger.info("End Lost Claim Testing");
+    }
+
+    @Test
+    public void testAbandonCancelsWithoutTouchingStock() {
+        stubBatch();
+        stubClaim(true);
+        OrderSaga saga = saga(Step.QUEUED, Instant.now());
+        Mockito.when(domainService.getOrder(saga.getSagaId())).thenReturn(Optional.of(order(saga.getSagaId(), OrderStatus.PENDING)));
+
+        orchestrator.abandon(saga, "Order intake is at capacity");
+
+        Mockito.verify(domainService).cancelOrder(saga.getSagaId());
+        Mockito.verifyNoInteractions(inventoryGateway);
+        Assertions.assertEquals(State.COMPENSATED, saga.getState());
+        Mockito.verify(batch).delete(Mockito.any(OrderSagaInFlight.class));
+        logger.info("End Abandon Testing");
+    }
+
+    @Test
+    public void testFinishedSagaExpiresAfterRetention() {
+        stubBatch();
+        stubClaim(true);
+        OrderSaga saga = saga(Step.QUEUED, Instant.now());
+        Mockito.when(domainService.getOrder(saga.getSagaId())).thenReturn(Optional.empty());
+
+        orchestrator.abandon(saga, "Order intake is at capacity");
+
+        ArgumentCaptor<WriteOptions> options = ArgumentCaptor.forClass(WriteOptions.class);
+        Mockito.verify(batch).insert(Mockito.same(saga), options.capture());
+        Assertions.assertEquals(Duration.ofDays(30), options.getValue().getTtl());
+        // running steps are journaled without a TTL, conditional on the last write
+        ArgumentCaptor<UpdateOptions> journaled = ArgumentCaptor.forClass(UpdateOptions.class);
+        Mockito.verify(cassandraTemplate).update(Mockito.same(saga), journaled.capture());
+        Assertions.assertTrue(journaled.getValue().getTtl().isNegative());
+        Assertions.assertNotNull(journaled.getValue().getIfCondition());
+        logger.info("End Retention Testing");
+    }
+
+    @Test
+    public void testQueuedSagaWaitsForTheIntakeTimeout() {
+        // quiet for longer than stale-after (1 minute) but within the intake timeout (5 minutes)
+        OrderSaga saga = saga(Step.QUEUED, Instant.now().minus(Duration.ofMinutes(3)));
+        stubInFlight(saga);
+
+        Assertions.assertEquals(0, orchestrator.recover());
+
+        Mockito.verify(cassandraTemplate, Mockito.never()).update(Mockito.any(), Mockito.any(UpdateOptions.class));
+        logger.info("End Queued Wait Testing");
+    }
+
+    @Test
+    public void testRecoveryCancelsAnOrderNoWorkerTook() {
+        OrderSaga saga = saga(Step.QUEUED, Instant.now().minus(Duration.ofMinutes(6)));
+        stubInFlight(saga);
+        stubClaim(true);
+        stubBatch();
+        stubStagesInline();
+        Mockito.when(domainService.getOrder(saga.getSagaId())).thenReturn(Optional.of(order(saga.getSagaId(), OrderStatus.PENDING)));
+
+        Assertions.assertEquals(1, orchestrator.recover());
+
+        Mockito.verify(domainService).cancelOrder(saga.getSagaId());
+        // no reservation was ever sent, so none is replayed or released
+        Mockito.verifyNoInteractions(inventoryGateway, paymentClient);
+        Assertions.assertEquals(State.COMPENSATED, saga.getState());
+        Assertions.assertEquals(1, saga.getAttempts());
+        logger.info("End Queued Recovery Testing");
+    }
+
+    @Test
+    public void testCompensationReplaysTheBasketBeforeReleasing() {
+        // cut off while reserving: whether the basket was taken is unknown
+        OrderSaga saga = saga(Step.RESERVE_STOCK, Instant.now().minus(Duration.ofMinutes(2)));
+        stubInFlight(saga);
+        stubClaim(true);
+        stubBatch();
+        stubStagesInline();
+        String key = "order-" + saga.getSagaId();
+        Mockito.when(inventoryGateway.tryDecrementAll(Map.of("i1", 2), key + "-reserve")).thenReturn(true);
+
+        Assertions.assertEquals(1, orchestrator.recover());
+
+        InOrder inOrder = Mockito.inOrder(inventoryGateway);
+        inOrder.verify(inventoryGateway).tryDecrementAll(Map.of("i1", 2), key + "-reserve");
+        inOrder.verify(inventoryGateway).increment("i1", 2, key + "-release-i1");
+        Assertions.assertEquals(State.COMPENSATED, saga.getState());
+        logger.info("End Basket Replay Testing");
+    }
+
+    @Test
+    public void testRefusedReplayReleasesNothing() {
+        OrderSaga saga = saga(Step.RESERVE_STOCK, Instant.now().minus(Duration.ofMinutes(2)));
+        stubInFlight(saga);
+        stubClaim(true);
+        stubBatch();
+        stubStagesInline();
+        Mockito.when(inventoryGateway.tryDecrementAll(Mockito.anyMap(), Mockito.anyString())).thenReturn(false);
+
+        Assertions.assertEquals(1, orchestrator.recover());
+
+        Mockito.verify(inventoryGateway, Mockito.never()).increment(Mockito.anyString(), Mockito.anyInt(), Mockito.anyString());
+        Assertions.assertEquals(State.COMPENSATED, saga.getState());
+        logger.info("End Refused Replay Testing");
+    }
+
+    @Test
+    public void testChargeThatWentThroughIsNotSentAgain() {
+        OrderSaga saga = charging();
+        stubInFlight(saga);
+        stubClaim(true);
+        stubBatch();
+        stubStagesInline();
+        UUID orderId = saga.getSagaId();
+        Mockito.when(paymentClient.getPayment("order-" + orderId + "-payment"))
+                .thenReturn(new PaymentServiceClient.PaymentResponse("SUCCESS"));
+        Mockito.when(domainService.getOrder(orderId)).thenReturn(Optional.of(order(orderId, OrderStatus.CREATED)));
+        Mockito.when(domainService.markOrderPaid(orderId)).thenReturn(Optional.of(order(orderId, OrderStatus.PAID)));
+
+        Assertions.assertEquals(1, orchestrator.recover());
+
+        Mockito.verify(paymentClient, Mockito.never()).submitPayment(Mockito.anyString(), Mockito.any());
+        Mockito.verify(domainService).markOrderPaid(orderId);
+        Assertions.assertEquals(State.COMPLETED, saga.getState());
+        logger.info("End Earlier Payment Testing");
+    }
+
+    @Test
+    public void testUnchargedOrderIsChargedOnRecovery() {
+        OrderSaga saga = charging();
+        stubInFlight(saga);
+        stubClaim(true);
+        stubBatch();
+        stubStagesInline();
+        UUID orderId = saga.getSagaId();
+        Mockito.when(paymentClient.getPayment("order-" + orderId + "-payment")).thenThrow(notFound());
+        Mockito.when(domainService.getOrder(orderId)).thenReturn(Optional.of(order(orderId, OrderStatus.CREATED)));
+        Mockito.when(paymentClient.submitPayment(Mockito.eq("order-" + orderId + "-payment"), Mockito.any()))
+                .thenReturn(new PaymentServiceClient.PaymentResponse("SUCCESS"));
+        Mockito.when(domainService.markOrderPaid(orderId)).thenReturn(Optional.of(order(orderId, OrderStatus.PAID)));
+
+        Assertions.assertEquals(1, orchestrator.recover());
+
+        Mockito.verify(paymentClient).submitPayment(Mockito.anyString(), Mockito.any());
+        Assertions.assertEquals(State.COMPLETED, saga.getState());
+        logger.info("End Recovered Payment Testing");
+    }
+
+    @Test
+    public void testCancelledOrderIsNotCharged() {
+        OrderSaga saga = charging();
+        stubInFlight(saga);
+        stubClaim(true);
+        stubBatch();
+        stubStagesInline();
+        UUID orderId = saga.getSagaId();
+        Mockito.when(paymentClient.getPayment(Mockito.anyString())).thenThrow(notFound());
+        Mockito.when(domainService.getOrder(orderId)).thenReturn(Optional.of(order(orderId, OrderStatus.CANCELLED)));
+
+        Assertions.assertEquals(1, orchestrator.recover());
+
+        Mockito.verify(paymentClient, Mockito.never()).submitPayment(Mockito.anyString(), Mockito.any());
+        Mockito.verify(domainService, Mockito.never()).markOrderPaid(Mockito.any());
+        // the reservation is known to be held, so it is released without a replay
+        Mockito.verify(inventoryGateway, Mockito.never()).tryDecrementAll(Mockito.anyMap(), Mockito.anyString());
+        Mockito.verify(inventoryGateway).increment("i1", 2, "order-" + orderId + "-release-i1");
+        Assertions.assertEquals(State.COMPENSATED, saga.getState());
+        logger.info("End Cancelled Payment Testing");
+    }
+
+    @Test
+    public void testRecoveryReadsEveryPageOfAShard() {
+        OrderSaga waiting = saga(Step.QUEUED, Instant.now());
+        OrderSaga due = saga(Step.QUEUED, Instant.now().minus(Duration.ofMinutes(6)));
+        CassandraPageRequest first = CassandraPageRequest.of(PageRequest.of(0, 100), ByteBuffer.wrap(new byte[]{1}));
+        Mockito.when(cassandraTemplate.slice(Mockito.any(Query.class), Mockito.eq(OrderSagaInFlight.class)))
+                .thenReturn(new SliceImpl<>(List.of(new OrderSagaInFlight(waiting.getSagaId())), first, true),
+                        new SliceImpl<>(List.of(new OrderSagaInFlight(due.getSagaId())), first.next(), false),
+                        new SliceImpl<>(List.of()));
+        Mockito.when(cassandraTemplate.select(Mockito.any(Query.class), Mockito.eq(OrderSaga.class)))
+                .thenReturn(List.of(waiting), List.of(due));
+        stubClaim(true);
+        stubBatch();
+        stubStagesInline();
+
+        Assertions.assertEquals(1, orchestrator.recover());
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(cassandraTemplate, Mockito.atLeast(2)).slice(queries.capture(), Mockito.eq(OrderSagaInFlight.class));
+        Assertions.assertEquals(Optional.of(ByteBuffer.wrap(new byte[]{1})), queries.getAllValues().get(1).getPagingState());
+        Mockito.verify(domainService).getOrder(due.getSagaId());
+        Mockito.verify(domainService, Mockito.never()).getOrder(waiting.getSagaId());
+        logger.info("End Shard Paging Testing");
+    }
+
+    @Test
+    public void testLostClaimSkipsRecovery() {
+        OrderSaga saga = charging();
+        stubInFlight(saga);
+        stubClaim(false);
+
+        Assertions.assertEquals(0, orchestrator.recover());
+
+        Mockito.verifyNoInteractions(inventoryGateway, paymentClient, domainService, stages);
+        Assertions.assertEquals(State.RUNNING, saga.getState());
+        logger.info("End Lost Recovery Claim Testing");
+    }
+
+    @Test
+    public void testRunnerStopsWhenItsSagaWasTakenOver() {
+        OrderSaga saga = charging();
+        stubInFlight(saga);
+        stubStagesInline();
+        UUID orderId = saga.getSagaId();
+        Mockito.when(paymentClient.getPayment("order-" + orderId + "-payment"))
+                .thenReturn(new PaymentServiceClient.PaymentResponse("SUCCESS"));
+        Mockito.when(domainService.getOrder(orderId)).thenReturn(Optional.of(order(orderId, OrderStatus.CREATED)));
+        // the claim applies, but another runner writes the saga before CONFIRM is journaled
+        EntityWriteResult<OrderSaga> claimed = writeResult(true);
+        EntityWriteResult<OrderSaga> overtaken = writeResult(false);
+        Mockito.when(cassandraTemplate.update(Mockito.any(OrderSaga.class), Mockito.any(UpdateOptions.class)))
+                .thenReturn(claimed, overtaken);
+
+        Assertions.assertEquals(0, orchestrator.recover());
+
+        Mockito.verify(domainService, Mockito.never()).markOrderPaid(Mockito.any());
+        Mockito.verify(cassandraTemplate, Mockito.never()).batchOps(Mockito.any(BatchType.class));
+        Mockito.verifyNoInteractions(inventoryGateway);
+        logger.info("End Taken Over Testing");
+    }
+
+    private void stubBatch() {
+        Mockito.when(cassandraTemplate.batchOps(BatchType.UNLOGGED)).thenReturn(batch);
+        Mockito.lenient().when(batch.insert(Mockito.any(Object.class))).thenReturn(batch);
+        Mockito.lenient().when(batch.insert(Mockito.any(Object.class), Mockito.any(WriteOptions.class))).thenReturn(batch);
+        Mockito.lenient().when(batch.delete(Mockito.any(Object.class))).thenReturn(batch);
+    }
+
+    private void stubClaim(boolean applied) {
+        EntityWriteResult<OrderSaga> result = writeResult(applied);
+        Mockito.when(cassandraTemplate.update(Mockito.any(OrderSaga.class), Mockito.any(UpdateOptions.class))).thenReturn(result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EntityWriteResult<OrderSaga> writeResult(boolean applied) {
+        EntityWriteResult<OrderSaga> result = Mockito.mock(EntityWriteResult.class);
+        Mockito.when(result.wasApplied()).thenReturn(applied);
+        return result;
+    }
+
+    private void stubInFlight(OrderSaga saga) {
+        Mockito.when(cassandraTemplate.slice(Mockito.any(Query.class), Mockito.eq(OrderSagaInFlight.class)))
+                .thenReturn(new SliceImpl<>(List.of(new OrderSagaInFlight(saga.getSagaId()))), new SliceImpl<>(List.of()));
+        Mockito.when(cassandraTemplate.select(Mockito.any(Query.class), Mockito.eq(OrderSaga.class)))
+                .thenReturn(List.of(saga));
+    }
+
+    // run each stage on the calling thread; a failing stage fails its future, as on the pool
+    private void stubStagesInline() {
+        Mockito.when(stages.start(Mockito.anyString(), Mockito.any())).thenAnswer(inv -> {
+            Callable<?> work = inv.getArgument(1);
+            try {
+                return CompletableFuture.completedFuture(work.call());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+        Mockito.when(stages.await(Mockito.any(), Mockito.anyLong(), Mockito.anyString()))
+                .thenAnswer(inv -> ((CompletableFuture<?>) inv.getArgument(0)).join());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Mockito.lenient().when(stages.timer(Mockito.anyString())).thenAnswer(inv -> registry.timer(inv.getArgument(0)));
+    }
+
+    // journaled after the order was persisted, with the basket reserved
+    private static OrderSaga charging() {
+        OrderSaga saga = saga(Step.CHARGE_PAYMENT, Instant.now().minus(Duration.ofMinutes(2)));
+        saga.setReserved(Set.of("i1"));
+        saga.setReservationKnown(true);
+        saga.setTotalPrice(10.0);
+        return saga;
+    }
+
+    private static FeignException notFound() {
+        Request request = Request.create(Request.HttpMethod.GET, "/payments/x", Map.of(), null, StandardCharsets.UTF_8, null);
+        return new FeignException.NotFound("Not Found", request, null, Map.of());
+    }
+
+    private static OrderSaga saga(Step step, Instant updatedAt) {
+        OrderSaga saga = new OrderSaga(UUID.randomUUID(), "u1", Map.of("i1", 2), updatedAt);
+        saga.setStep(step);
+        return saga;
+    }
+
+    private static Order order(UUID orderId, OrderStatus status) {
+        Instant now = Instant.now();
+        return new Order(orderId, "u1", List.of(new OrderItem("i1", 2, 5.0)), 10.0, status, now, now);
+    }
+}
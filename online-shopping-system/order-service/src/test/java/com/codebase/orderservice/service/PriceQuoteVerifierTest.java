@@ -0,0 +1,94 @@
+package com.codebase.orderservice.service;
+
+import com.codebase.orderservice.dto.PriceQuote;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+class PriceQuoteVerifierTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriceQuoteVerifierTest.class);
+
+    // issued by item-service's PriceQuoteService under "test-secret", see PriceQuoteServiceTest there
+    private static final long ISSUED_AT = 1700000000000L;
+    private static final long EXPIRES_AT = 4102444800000L;
+    private static final String SIGNATURE = "OEhraII63BuDBTdlz5AhudSUfDUEn73voI7-TInxGU8";
+
+    // same key, expired two minutes after it was issued
+    private static final String EXPIRED_SIGNATURE = "ljIKETP1tQgayUihbHyPV_i46VXzqnFWcVHbi4aIrWk";
+
+    private PriceQuoteVerifier verifier;
+
+    @BeforeAll
+    static void setUp() {
+        logger.info("Start Testing");
+    }
+
+    @BeforeEach
+    void init() {
+        verifier = new PriceQuoteVerifier("test-secret");
+    }
+
+    @Test
+    public void testQuoteIssuedByItemServiceIsAccepted() {
+        Map<String, Double> prices = verifier.verifiedPrices(quote(Map.of("i1", 999.99, "i2", 899.99), EXPIRES_AT, SIGNATURE));
+
+        Assertions.assertEquals(Map.of("i1", 999.99, "i2", 899.99), prices);
+        logger.info("End Issued Quote Testing");
+    }
+
+    @Test
+    public void testAlteredQuoteIsRefused() {
+        PriceQuote cheaper = quote(Map.of("i1", 1.0, "i2", 899.99), EXPIRES_AT, SIGNATURE);
+        PriceQuote dropped = quote(Map.of("i1", 999.99), EXPIRES_AT, SIGNATURE);
+        PriceQuote unsigned = quote(Map.of("i1", 999.99, "i2", 899.99), EXPIRES_AT, null);
+        PriceQuoteVerifier otherKey = new PriceQuoteVerifier("other-secret");
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> verifier.verifiedPrices(cheaper));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> verifier.verifiedPrices(dropped));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> verifier.verifiedPrices(unsigned));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> otherKey.verifiedPrices(quote(Map.of("i1", 999.99, "i2", 899.99), EXPIRES_AT, SIGNATURE)));
+        logger.info("End Altered Quote Testing");
+    }
+
+    @Test
+    public void testExpiredOrMissingQuoteVouchesForNothing() {
+        PriceQuote expired = quote(Map.of("i1", 999.99), ISSUED_AT + 120_000, EXPIRED_SIGNATURE);
+
+        Assertions.assertEquals(Map.of(), verifier.verifiedPrices(expired));
+        Assertions.assertEquals(Map.of(), verifier.verifiedPrices(null));
+        logger.info("End Expired Quote Testing");
+    }
+
+    @Test
+    public void testLineBreakInIdIsMalformed() {
+        Map<String, Double> prices = new HashMap<>();
+        prices.put("i1\ni9", 1.0);
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> verifier.verifiedPrices(quote(prices, EXPIRES_AT, SIGNATURE)));
+        logger.info("End Malformed Quote Testing");
+    }
+
+    @Test
+    public void testBlankSecretFailsStartup() {
+        Assertions.assertThrows(IllegalStateException.class, () -> new PriceQuoteVerifier(""));
+        logger.info("End Blank Secret Testing");
+    }
+
+    private static PriceQuote quote(Map<String, Double> prices, long expiresAt, String signature) {
+        PriceQuote quote = new PriceQuote();
+        quote.setPrices(prices);
+        quote.setIssuedAt(ISSUED_AT);
+        quote.setExpiresAt(expiresAt);
+        quote.setSignature(signature);
+        return quote;
+    }
+}